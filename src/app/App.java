@@ -1,29 +1,202 @@
 package app;
 
+import common.metrics.InMemoryMetricsRegistry;
 import domain.policy.FinePolicy;
 import domain.policy.LoanPolicy;
 import domain.policy.StandardFinePolicy;
 import domain.policy.StandardLoanPolicy;
 import domain.service.Library;
+import infrastructure.persistence.CatalogSnapshot;
+import infrastructure.persistence.LibraryStore;
+import infrastructure.persistence.ReplicationPrimary;
+import infrastructure.persistence.ReplicationReplica;
+import infrastructure.persistence.SyncPolicy;
 import presentation.ConsoleMenu;
+import presentation.LibraryHttpServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
 
 public class App {
 
+    /** Lock stripes when the library is shared with HTTP clients, e.g. self-service kiosks. */
+    private static final int HTTP_LOCK_STRIPES = 64;
+
+    /** Requests the HTTP front end serves at once. */
+    private static final int HTTP_MAX_CONCURRENT = 64;
+
+    /** Requests the HTTP front end holds waiting before it turns clients away. */
+    private static final int HTTP_MAX_QUEUED = 512;
+
+    /** Events queued for a replica before it is disconnected for falling behind. */
+    private static final int REPLICATION_MAX_BACKLOG = 100_000;
+
     /**
      * Application entry point - Sets up the Library and runs the console UI.
+     * <p>
+     *     Options:
+     * </p>
+     * <ul>
+     *     <li>{@code --data <dir>} keeps the library in the given directory between runs.</li>
+     *     <li>{@code --catalog <file>} seeds a new library from a binary catalogue snapshot
+     *         instead of the demo CSV files, writing the snapshot first if it is missing.</li>
+     *     <li>{@code --metrics <file>} writes the library's metrics to the given file on exit.</li>
+     *     <li>{@code --archive-after-days <n>} moves loans returned more than the given number
+     *         of days ago into the loan archive on start-up.</li>
+     *     <li>{@code --http <port>} also serves the library over HTTP while the console runs.</li>
+     *     <li>{@code --replicate <port>} ships every change to replicas connecting on the port.</li>
+     *     <li>{@code --replica-of <host:port>} follows that primary without a console until
+     *         Enter is pressed, serving read-only over HTTP if {@code --http} is given too.</li>
+     * </ul>
      *
-     * @param args allows for passing arguments to the program on the command line
+     * @param args the command line options above
+     * @throws IOException if the data directory or catalogue cannot be read or written, the
+     *                     HTTP or replication port cannot be bound, or the primary cannot be reached
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
 
         // Injects policy interfaces with their configurations and creates Library object
         LoanPolicy loanPolicy = new StandardLoanPolicy(14);        // 14 day loan period
         FinePolicy finePolicy = new StandardFinePolicy(50);     // 50 pence per day fine
-        Library library = new Library(loanPolicy, finePolicy);
+        InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+        String httpPort = option(args, "--http");
+        Library library = new Library(loanPolicy, finePolicy, httpPort == null ? 1 : HTTP_LOCK_STRIPES, metrics);
+
+        String replicaOf = option(args, "--replica-of");
+        if (replicaOf != null) {
+            followPrimary(library, replicaOf, httpPort, metrics);
+            return;
+        }
+
+        Path dataDirectory = pathOption(args, "--data");
+        Path catalog = pathOption(args, "--catalog");
+        Path metricsFile = pathOption(args, "--metrics");
+        String archiveAfterDays = option(args, "--archive-after-days");
+        String replicationPort = option(args, "--replicate");
+        try {
+            if (dataDirectory == null) {
+                loadCatalog(library, catalog);
+                archiveLoans(library, archiveAfterDays);
+                serve(library, httpPort, replicationPort, metrics);
+                return;
+            }
+
+            // Restores the library from its data directory, seeding it with demo data on first run
+            try (LibraryStore store = LibraryStore.open(dataDirectory, library, SyncPolicy.everyRecord(), 10_000)) {
+                if (store.isFresh()) {
+                    loadCatalog(library, catalog);
+                }
+                archiveLoans(library, archiveAfterDays);
+                serve(library, httpPort, replicationPort, metrics);
+                store.checkpoint();
+            }
+        } finally {
+            if (metricsFile != null) {
+                Files.writeString(metricsFile, metrics.toText());
+            }
+        }
+    }
+
+    private static void loadCatalog(Library library, Path catalog) throws IOException {
+        if (catalog == null) {
+            DemoDataLoader.loadDemoData(library);
+        } else if (Files.exists(catalog)) {
+            CatalogSnapshot.load(catalog, library);
+        } else {
+            DemoDataLoader.loadDemoData(library);
+            CatalogSnapshot.write(library, catalog);
+        }
+    }
 
-        DemoDataLoader.loadDemoData(library);
+    private static void archiveLoans(Library library, String archiveAfterDays) {
+        if (archiveAfterDays == null) return;
+        library.archiveReturnedLoans(LocalDate.now().minusDays(Integer.parseInt(archiveAfterDays)));
+    }
+
+    /** Runs the console, shipping changes to replicas if a replication port was given, until the console exits. */
+    private static void serve(Library library, String httpPort, String replicationPort,
+                              InMemoryMetricsRegistry metrics) throws IOException {
+        if (replicationPort == null) {
+            serve(library, httpPort, metrics);
+            return;
+        }
+        InetSocketAddress address = new InetSocketAddress(Integer.parseInt(replicationPort));
+        try (ReplicationPrimary primary = ReplicationPrimary.start(library, address, REPLICATION_MAX_BACKLOG,
+                metrics)) {
+            System.out.println("Accepting replicas on port " + primary.port());
+            serve(library, httpPort, metrics);
+        }
+    }
+
+    /** Runs the console, and the HTTP front end alongside it if a port was given, until the console exits. */
+    private static void serve(Library library, String httpPort, InMemoryMetricsRegistry metrics) throws IOException {
+        if (httpPort == null) {
+            new ConsoleMenu(library).run();
+            return;
+        }
+        InetSocketAddress address = new InetSocketAddress(Integer.parseInt(httpPort));
+        try (LibraryHttpServer server = LibraryHttpServer.start(library, address, HTTP_MAX_CONCURRENT,
+                HTTP_MAX_QUEUED, metrics)) {
+            System.out.println("Serving the library over HTTP on port " + server.port());
+            new ConsoleMenu(library).run();
+        }
+    }
+
+    /**
+     * Follows a primary, serving the copy read-only over HTTP if a port was given, and
+     * reports how far it trails every few seconds until Enter is pressed.
+     */
+    private static void followPrimary(Library library, String primaryAddress, String httpPort,
+                                      InMemoryMetricsRegistry metrics) throws IOException {
+        int colon = primaryAddress.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Expected --replica-of <host:port>, got " + primaryAddress);
+        }
+        InetSocketAddress primary = new InetSocketAddress(primaryAddress.substring(0, colon),
+                Integer.parseInt(primaryAddress.substring(colon + 1)));
+        try (ReplicationReplica replica = ReplicationReplica.connect(primary, library, metrics);
+             LibraryHttpServer server = httpPort == null ? null : LibraryHttpServer.startReadOnly(library,
+                     new InetSocketAddress(Integer.parseInt(httpPort)), HTTP_MAX_CONCURRENT, HTTP_MAX_QUEUED, metrics)) {
+            System.out.println("Following " + primaryAddress
+                    + (server == null ? "" : ", serving read-only over HTTP on port " + server.port())
+                    + "; press Enter to stop");
+            BufferedReader console = new BufferedReader(new InputStreamReader(System.in));
+            while (replica.isConnected()) {
+                if (console.ready()) {
+                    console.readLine();
+                    break;
+                }
+                System.out.printf("applied %,d, %,d behind, last lag %.1f ms%n", replica.appliedSequence(),
+                        replica.lagEvents(), replica.lastLagNanos() / 1e6);
+                try {
+                    Thread.sleep(5_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (!replica.isConnected()) {
+                System.out.println("Lost the primary; the copy holds sequence " + library.currentSequence());
+            }
+        }
+    }
+
+    private static Path pathOption(String[] args, String name) {
+        String value = option(args, name);
+        return value == null ? null : Path.of(value);
+    }
 
-        // Starts the console UI
-        new ConsoleMenu(library).run();
+    private static String option(String[] args, String name) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return null;
     }
 }
@@ -3,16 +3,18 @@ package app;
 import infrastructure.csv.CsvFactory;
 import domain.service.Library;
 import infrastructure.csv.BookFactory;
+import infrastructure.csv.CsvImporter;
 import infrastructure.csv.DvdFactory;
+import infrastructure.csv.ImportReport;
 import infrastructure.csv.MagazineFactory;
 import infrastructure.csv.MemberFactory;
 
-import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 
 /**
@@ -27,42 +29,35 @@ public class DemoDataLoader {
 
 
     public static void loadDemoData(Library library) {
-        loadCsv("resources/data/members.csv",   new MemberFactory(),   library::addMember);
-        loadCsv("resources/data/books.csv",     new BookFactory(),     library::addItem);
-        loadCsv("resources/data/dvds.csv",      new DvdFactory(),      library::addItem);
-        loadCsv("resources/data/magazines.csv", new MagazineFactory(), library::addItem);
-    }
-
-    private static <T> void loadCsv(String classpath,
-                                    CsvFactory<T> factory,
-                                    Consumer<T> consumer) {
-        for (String[] row : readCsv(classpath)) {
-            if (row.length == 0) continue;
-            consumer.accept(factory.fromRow(row));
+        // Reads the four files at once; their rows are parsed by the importer's shared threads
+        try (CsvImporter importer = new CsvImporter();
+             ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor()) {
+            readers.execute(() -> loadCsv(importer, "resources/data/members.csv",   new MemberFactory(),   library::addMembers));
+            readers.execute(() -> loadCsv(importer, "resources/data/books.csv",     new BookFactory(),     library::addItems));
+            readers.execute(() -> loadCsv(importer, "resources/data/dvds.csv",      new DvdFactory(),      library::addItems));
+            readers.execute(() -> loadCsv(importer, "resources/data/magazines.csv", new MagazineFactory(), library::addItems));
         }
     }
 
     // Reads from src/resources/data
-    private static List<String[]> readCsv(String classpath) {
-        List<String[]> rows = new ArrayList<>();
+    private static <T> void loadCsv(CsvImporter importer,
+                                    String classpath,
+                                    CsvFactory<T> factory,
+                                    Consumer<? super List<T>> consumer) {
         try {
             InputStream in = App.class.getClassLoader().getResourceAsStream(classpath);
             if (in == null) {
                 System.err.println("CSV file not found on classpath: " + classpath);
-                return rows;
+                return;
             }
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
-                String line; boolean header = true;
-                while ((line = br.readLine()) != null) {
-                    line = line.trim();
-                    if (line.isBlank()) continue;
-                    if (header) { header = false; continue; }
-                    rows.add(line.split(",", -1));
+            try (InputStreamReader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                ImportReport report = importer.importFrom(classpath, reader, factory, consumer);
+                for (ImportReport.RowError error : report.errors()) {
+                    System.err.println("Skipped row " + error);
                 }
             }
         } catch (Exception e) {
             System.err.println("Error reading CSV " + classpath + ": " + e.getMessage());
         }
-        return rows;
     }
 }
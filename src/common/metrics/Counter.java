@@ -0,0 +1,37 @@
+package common.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic count of events, e.g. operations performed or rejected.
+ * <p>
+ *     Increments from different threads are spread over separate cells instead of
+ *     contending on one value, and do not allocate once a thread has its cell.
+ * </p>
+ */
+public final class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    /** Adds one to the count. */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Adds to the count.
+     *
+     * @param amount the amount to add; must not be negative
+     */
+    public void add(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Counters cannot be decreased");
+        }
+        count.add(amount);
+    }
+
+    /** @return the current count */
+    public long count() {
+        return count.sum();
+    }
+}
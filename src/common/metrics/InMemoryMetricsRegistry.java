@@ -0,0 +1,93 @@
+package common.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry that keeps its metrics in memory and reports them as plain text, one metric per
+ * line in name order:
+ * <pre>
+ * library.items 1200
+ * library.loanItem.calls 5300
+ * library.loanItem.latency count=5300 mean=2.1us p50=1.9us p90=3.0us p99=7.7us max=412.0us
+ * </pre>
+ */
+public final class InMemoryMetricsRegistry implements MetricsRegistry {
+
+    private final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+
+    @Override
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(requireName(name), n -> new Counter());
+    }
+
+    @Override
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(requireName(name), n -> new LatencyHistogram());
+    }
+
+    @Override
+    public void gauge(String name, LongSupplier value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Gauge value cannot be null");
+        }
+        gauges.put(requireName(name), value);
+    }
+
+    /**
+     * Writes every metric's current value as text.
+     *
+     * @param out where to write the metrics
+     * @throws IOException if the text cannot be written
+     */
+    public void writeText(Appendable out) throws IOException {
+        Map<String, String> lines = new TreeMap<>();
+        counters.forEach((name, counter) -> lines.put(name, Long.toString(counter.count())));
+        gauges.forEach((name, gauge) -> lines.put(name, Long.toString(gauge.getAsLong())));
+        histograms.forEach((name, histogram) -> lines.put(name, format(histogram.snapshot())));
+        for (Map.Entry<String, String> line : lines.entrySet()) {
+            out.append(line.getKey()).append(' ').append(line.getValue()).append('\n');
+        }
+    }
+
+    /** @return every metric's current value as text */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        try {
+            writeText(text);
+        } catch (IOException e) {
+            // A StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return text.toString();
+    }
+
+    // ---------------------------------------- Internals ------------------------------------
+
+    private static String requireName(String name) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Metric name cannot be blank");
+        }
+        return name;
+    }
+
+    private static String format(LatencyHistogram.Snapshot snapshot) {
+        return "count=" + snapshot.count()
+                + " mean=" + micros(snapshot.mean())
+                + " p50=" + micros(snapshot.valueAt(0.5))
+                + " p90=" + micros(snapshot.valueAt(0.9))
+                + " p99=" + micros(snapshot.valueAt(0.99))
+                + " max=" + micros(snapshot.max());
+    }
+
+    private static String micros(double nanos) {
+        return String.format(Locale.ROOT, "%.1fus", nanos / 1000);
+    }
+}
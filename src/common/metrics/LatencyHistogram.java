@@ -0,0 +1,125 @@
+package common.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of durations, in nanoseconds, from which percentiles can be read.
+ * <p>
+ *     Durations are counted in log-linear buckets: each power of two is split into eight
+ *     equal buckets, so a percentile is accurate to within 12.5%. Durations of about 18
+ *     minutes or more share the last bucket. Recording adds to one bucket's {@link LongAdder}
+ *     and so never allocates or blocks once a thread has its cells; reading takes a
+ *     {@link Snapshot} that is not atomic with respect to concurrent recording.
+ * </p>
+ */
+public final class LatencyHistogram {
+
+    /** Each power of two is split into {@code 1 << SUB_BITS} buckets. */
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /** Largest power of two with its own buckets; about 18 minutes in nanoseconds. */
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_TRACKED = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos the duration in nanoseconds; negative durations count as zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets[indexOf(Math.min(value, MAX_TRACKED))].increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Records the time elapsed since a {@link System#nanoTime()} reading.
+     *
+     * @param startNanos the reading taken when the operation started
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /** @return the durations recorded so far */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        return new Snapshot(counts, count, sum.sum(), max.get());
+    }
+
+    /**
+     * Durations recorded up to some point.
+     *
+     * @param counts the number of durations in each bucket
+     * @param count the total number of durations
+     * @param sum the total of the durations, in nanoseconds
+     * @param max the longest duration, in nanoseconds
+     */
+    public record Snapshot(long[] counts, long count, long sum, long max) {
+
+        /** @return the mean duration in nanoseconds, or 0 if none were recorded */
+        public double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Estimates a percentile as the upper bound of the bucket holding it.
+         *
+         * @param quantile the fraction of durations at or below the result, e.g. 0.99
+         * @return the duration in nanoseconds, or 0 if none were recorded
+         */
+        public long valueAt(double quantile) {
+            if (quantile < 0 || quantile > 1) {
+                throw new IllegalArgumentException("Quantile must be between 0 and 1");
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+    }
+
+    // ---------------------------------------- Internals ------------------------------------
+
+    /** Maps a duration no greater than {@link #MAX_TRACKED} to its bucket. */
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /** @return the longest duration counted in a bucket */
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return ((SUB_BUCKETS + sub) << (exponent - SUB_BITS)) + width - 1;
+    }
+}
@@ -0,0 +1,66 @@
+package common.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Source of named metrics for a component to record into.
+ * <p>
+ *     Components look their metrics up once, when they are created, and keep them, so a
+ *     registry is free to do any allocation or bookkeeping it needs at that point. Asking
+ *     for the same name twice returns the same metric. Implementations decide where the
+ *     values end up, e.g. {@link InMemoryMetricsRegistry} keeps them for a text dump.
+ * </p>
+ */
+public interface MetricsRegistry {
+
+    /**
+     * @param name the counter's name, e.g. {@code "library.loanItem.calls"}
+     * @return the counter registered under the name, created if necessary
+     */
+    Counter counter(String name);
+
+    /**
+     * @param name the histogram's name, e.g. {@code "library.loanItem.latency"}
+     * @return the histogram registered under the name, created if necessary
+     */
+    LatencyHistogram histogram(String name);
+
+    /**
+     * Registers a value that is read whenever the metrics are reported, e.g. a collection
+     * size. Replaces any gauge already registered under the name.
+     *
+     * @param name the gauge's name
+     * @param value supplies the current value; must be thread-safe
+     */
+    void gauge(String name, LongSupplier value);
+
+    /**
+     * Returns a view of this registry that puts the given prefix before every name, so that
+     * several instances of one component can share a registry, e.g. {@code "shard0."}.
+     *
+     * @param prefix prepended to every name, including any separator; must not be null
+     * @return a registry recording into this one
+     */
+    default MetricsRegistry withPrefix(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Metric prefix cannot be null");
+        }
+        MetricsRegistry target = this;
+        return new MetricsRegistry() {
+            @Override
+            public Counter counter(String name) {
+                return target.counter(prefix + name);
+            }
+
+            @Override
+            public LatencyHistogram histogram(String name) {
+                return target.histogram(prefix + name);
+            }
+
+            @Override
+            public void gauge(String name, LongSupplier value) {
+                target.gauge(prefix + name, value);
+            }
+        };
+    }
+}
@@ -1,7 +1,7 @@
 package domain.model;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 /** Concrete media type representing a book in the Library's collection.
  * <p>
@@ -20,8 +20,8 @@ public class Book extends MediaItem {
     /** Year of publication (e.g., 2004). */
     private int yearOfPublish;
 
-    /** Category labels (e.g. 'Fiction', 'History'). */
-    private final List<String> categories = new ArrayList<>();
+    /** Category labels (e.g. 'Fiction', 'History'), shared through {@link CatalogDictionary}. */
+    private List<String> categories;
 
     /**
      * Constructs a Book with full metadata.
@@ -39,6 +39,23 @@ public class Book extends MediaItem {
         setCategories(categories);
     }
 
+    /**
+     * Constructs a Book with an existing identifier, e.g. when restoring a saved item.
+     *
+     * @param mediaId the book's unique identifier
+     * @param title book title
+     * @param author name of the author
+     * @param yearOfPublish year of publication
+     * @param categories list of category labels
+     */
+    public Book(UUID mediaId, String title, String author, int yearOfPublish, List<String> categories) {
+        super(mediaId);
+        setTitle(title);
+        setAuthor(author);
+        setYearOfPublish(yearOfPublish);
+        setCategories(categories);
+    }
+
     /** @return the books title */
     public String getTitle() {
         return title;
@@ -50,6 +67,7 @@ public class Book extends MediaItem {
             throw new IllegalArgumentException("Title cannot be null or blank");
         }
         this.title = title;
+        descriptionChanged();
     }
 
     /** @return the authors name */
@@ -62,7 +80,8 @@ public class Book extends MediaItem {
         if ((author == null) || author.isBlank()) {
             throw new IllegalArgumentException("Author cannot be null or blank");
         }
-        this.author = author;
+        this.author = CatalogDictionary.intern(author);
+        descriptionChanged();
     }
 
     /** @return the year of publication (0 if unknown) */
@@ -78,18 +97,18 @@ public class Book extends MediaItem {
         this.yearOfPublish = yearOfPublish;
     }
 
-    /** @return a copy of the list of categories */
+    /** @return the list of categories; unmodifiable */
+    @Override
     public List<String> getCategories() {
-        return List.copyOf(categories);
+        return categories;
     }
 
-    /** @param categories new list of category labels; cannot be null/empty */
+    /** @param categories new list of category labels; cannot be null/empty or contain null */
     public void setCategories(List<String> categories) {
         if  (categories == null || categories.isEmpty()) {
             throw new IllegalArgumentException("Categories cannot be null or empty");
         }
-        this.categories.clear();
-        this.categories.addAll(categories);
+        this.categories = CatalogDictionary.internAll(categories);
     }
 
     /** @return a formatted string representing the book, including title and author */
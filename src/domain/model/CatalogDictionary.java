@@ -0,0 +1,98 @@
+package domain.model;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Weak interner for the attribute values that repeat across media items, such as authors,
+ * publishers, age ratings and category lists.
+ * <p>
+ *     Each distinct value is kept as one canonical instance for as long as some item
+ *     still refers to it. Items store the canonical instance instead of their own copy,
+ *     and share one unmodifiable list of categories with every other item in the same
+ *     categories, so a large catalogue holds each repeated value once. Values are matched
+ *     exactly; normalising them is left to the indexes that need it.
+ * </p>
+ * <p>
+ *     Entries are held weakly, so values no longer used by any item are reclaimed by the
+ *     garbage collector, and libraries in the same JVM share values without keeping each
+ *     other's alive. Thread-safe; values are spread over {@value #STRIPES} independently
+ *     locked maps by hash, so items built on several threads at once, e.g. by a parallel
+ *     import, rarely wait for each other.
+ * </p>
+ */
+public final class CatalogDictionary {
+
+    /** Number of maps values are spread over; a power of two. */
+    private static final int STRIPES = 64;
+
+    /** Canonical values, each mapped to a weak reference to itself; each map is its own lock. */
+    private static final Map<Object, WeakReference<Object>>[] canonical = newStripes();
+
+    private CatalogDictionary() {}
+
+    /**
+     * Returns the canonical instance of a value, adding it to the dictionary if it is new.
+     *
+     * @param value the value to intern; may be null
+     * @return a string equal to {@code value}, shared by every caller; null if it is null
+     */
+    public static String intern(String value) {
+        return value == null ? null : canonical(value);
+    }
+
+    /**
+     * Returns the canonical instance of a list of values, e.g. an item's categories.
+     *
+     * @param values the values to intern; must not be null or contain null
+     * @return an unmodifiable list equal to {@code values}, holding canonical values
+     */
+    public static List<String> internAll(List<String> values) {
+        List<String> interned = new ArrayList<>(values.size());
+        for (String value : values) {
+            if (value == null) {
+                throw new IllegalArgumentException("Dictionary values cannot be null");
+            }
+            interned.add(canonical(value));
+        }
+        return canonical(List.copyOf(interned));
+    }
+
+    /** @return the number of distinct values and lists still in use */
+    public static int size() {
+        int size = 0;
+        for (Map<Object, WeakReference<Object>> stripe : canonical) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T canonical(T value) {
+        int h = value.hashCode();
+        // Spreads higher bits downwards so the mask sees them
+        h ^= (h >>> 16);
+        Map<Object, WeakReference<Object>> stripe = canonical[h & (STRIPES - 1)];
+        synchronized (stripe) {
+            WeakReference<Object> existing = stripe.get(value);
+            Object shared = existing == null ? null : existing.get();
+            if (shared != null) return (T) shared;
+            stripe.put(value, new WeakReference<>(value));
+            return value;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map<Object, WeakReference<Object>>[] newStripes() {
+        Map<Object, WeakReference<Object>>[] stripes = new Map[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new WeakHashMap<>();
+        }
+        return stripes;
+    }
+}
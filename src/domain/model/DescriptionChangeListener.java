@@ -0,0 +1,19 @@
+package domain.model;
+
+/**
+ * Callback notified whenever the title, author or publisher of a {@link MediaItem} changes.
+ * <p>
+ *     Allows aggregates that index items by their text to keep their indexes current when
+ *     a setter such as {@link Book#setTitle(String)} is called directly on the entity.
+ * </p>
+ */
+@FunctionalInterface
+public interface DescriptionChangeListener {
+
+    /**
+     * Called after an item's title, author or publisher has been changed.
+     *
+     * @param item the item whose description changed
+     */
+    void descriptionChanged(MediaItem item);
+}
@@ -1,7 +1,7 @@
 package domain.model;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Concrete media type representing a DVD in the Library's collection.
@@ -24,8 +24,8 @@ public class Dvd extends MediaItem {
     /** Age rating of the Dvd. */
     private String ageRating;
 
-    /** Category labels (e.g. 'Horror', 'Comedy'). */
-    private final List<String> categories =  new ArrayList<>();
+    /** Category labels (e.g. 'Horror', 'Comedy'), shared through {@link CatalogDictionary}. */
+    private List<String> categories;
 
     /**
      * Constructs a Dvd with full metadata.
@@ -45,6 +45,26 @@ public class Dvd extends MediaItem {
         setCategories(categories);
     }
 
+    /**
+     * Constructs a Dvd with an existing identifier, e.g. when restoring a saved item.
+     *
+     * @param mediaId the Dvd's unique identifier
+     * @param title Dvd title
+     * @param yearOfRelease year of release
+     * @param durationMinutes runtime in minutes
+     * @param ageRating age rating label
+     * @param categories list of category labels
+     */
+    public Dvd(UUID mediaId, String title, int yearOfRelease, int durationMinutes, String ageRating,
+               List<String> categories) {
+        super(mediaId);
+        setTitle(title);
+        setYearOfRelease(yearOfRelease);
+        setDurationMinutes(durationMinutes);
+        setAgeRating(ageRating);
+        setCategories(categories);
+    }
+
     /** @return the Dvd's title */
     public String getTitle() {
         return title;
@@ -56,6 +76,7 @@ public class Dvd extends MediaItem {
             throw new IllegalArgumentException("Title cannot be null or blank");
         }
         this.title = title;
+        descriptionChanged();
     }
 
     /** @return the year of release (0 if unknown) */
@@ -94,21 +115,21 @@ public class Dvd extends MediaItem {
         if (ageRating == null || ageRating.isBlank()) {
             throw new IllegalArgumentException("AgeRating cannot be null or blank");
         }
-        this.ageRating = ageRating;
+        this.ageRating = CatalogDictionary.intern(ageRating);
     }
 
-    /** @return a copy of the list of categories */
+    /** @return the list of categories; unmodifiable */
+    @Override
     public List<String> getCategories() {
-        return List.copyOf(categories);
+        return categories;
     }
 
-    /** @param categories new list of category labels; cannot be null/empty */
+    /** @param categories new list of category labels; cannot be null/empty or contain null */
     public void setCategories(List<String> categories) {
         if  (categories == null || categories.isEmpty()) {
             throw new IllegalArgumentException("Categories cannot be null or empty");
         }
-        this.categories.clear();
-        this.categories.addAll(categories);
+        this.categories = CatalogDictionary.internAll(categories);
     }
 
     /** @return a formatted string representing the DVD, including title, duration and age rating */
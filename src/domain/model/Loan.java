@@ -11,6 +11,13 @@ import java.util.UUID;
  *     the item is returned, upon which the loan transitions to {@link LoanStatus#RETURNED},
  *     and any fine is recorded.
  * </p>
+ * <p>
+ *     Dates are held as epoch days rather than {@link LocalDate} objects, as a library
+ *     keeps every loan it has ever made; the getters convert them back. The member and
+ *     item are held by UUID rather than by a library's surrogate IDs, so a loan means the
+ *     same thing outside the library that made it. A library creates its loans with the
+ *     member's and item's own UUID objects, so each reference costs no more than an int.
+ * </p>
  */
 public class Loan {
 
@@ -23,14 +30,17 @@ public class Loan {
     /** Identifier of the media item being borrowed. */
     private final UUID mediaId;
 
-    /** The date the item was checked out. */
-    private final LocalDate loanDate;
+    /** Marks a date that has not been set. */
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    /** The date the item was checked out, as an epoch day. */
+    private final int loanDay;
 
-    /** The date the item is due to be returned. */
-    private final LocalDate dueDate;
+    /** The date the item is due to be returned, as an epoch day. */
+    private final int dueDay;
 
-    /** The date the item was returned, null until returned. */
-    private LocalDate returnDate;
+    /** The date the item was returned, as an epoch day; {@link #NO_DATE} until returned. */
+    private int returnDay = NO_DATE;
 
     /** The current status of the loan. */
     private LoanStatus status;
@@ -47,18 +57,31 @@ public class Loan {
      * @param dueDate the date the item is due to be returned
      */
     public Loan(UUID memberId, UUID mediaId, LocalDate loanDate, LocalDate dueDate) {
-        this.loanId = UUID.randomUUID(); // Generates a random UUID number
+        this(UUID.randomUUID(), memberId, mediaId, loanDate, dueDate); // Generates a random UUID number
+    }
+
+    /**
+     * Creates an OUTSTANDING loan with an existing identifier, e.g. when restoring a saved loan.
+     *
+     * @param loanId the loan's unique identifier
+     * @param memberId the borrowing members UUID
+     * @param mediaId the UUID of the media item being borrowed
+     * @param loanDate the date the loan was created
+     * @param dueDate the date the item is due to be returned
+     */
+    public Loan(UUID loanId, UUID memberId, UUID mediaId, LocalDate loanDate, LocalDate dueDate) {
+        this.loanId = loanId;
         this.memberId = memberId;
         this.mediaId = mediaId;
-        this.loanDate = loanDate;
-        this.dueDate = dueDate;
+        this.loanDay = toDay(loanDate);
+        this.dueDay = toDay(dueDate);
         this.status = LoanStatus.OUTSTANDING; // Sets default state to OUTSTANDING
     }
 
     /**
      * Marks the loan status as returned and records the return date.
      * <p>
-     *     Sets {@code status} to {@link LoanStatus#RETURNED} and stores {@link #returnDate}.
+     *     Sets {@code status} to {@link LoanStatus#RETURNED} and stores the return date.
      *     Loan cannot be returned twice and the return date cannot be null.
      * </p>
      *
@@ -69,7 +92,7 @@ public class Loan {
             throw new IllegalStateException("Loan is already returned, cannot be returned twice.");
         }
 
-        this.returnDate = returnDate;
+        this.returnDay = toDay(returnDate);
         // Marks the loan as returned
         this.status = LoanStatus.RETURNED;
     }
@@ -85,7 +108,7 @@ public class Loan {
             throw new IllegalArgumentException("Current Date cannot be null.");
         }
         // Returns true only if loan is still outstanding and past due date
-        return status == LoanStatus.OUTSTANDING && currentDate.isAfter(dueDate);
+        return status == LoanStatus.OUTSTANDING && currentDate.toEpochDay() > dueDay;
     }
 
     /**
@@ -119,17 +142,22 @@ public class Loan {
 
     /** @return the date the loan was issued */
     public LocalDate getLoanDate() {
-        return loanDate;
+        return toDate(loanDay);
     }
 
     /** @return the date the item is due to be returned */
     public LocalDate getDueDate() {
-        return dueDate;
+        return toDate(dueDay);
+    }
+
+    /** @return the due date as a day count from 1970-01-01, for cheap ordering and comparison */
+    public long getDueEpochDay() {
+        return dueDay;
     }
 
     /** @return the date the item was returned; null if not yet returned */
     public LocalDate getReturnDate() {
-        return returnDate;
+        return toDate(returnDay);
     }
 
     /** @return the current status of the loan, OUTSTANDING or RETURNED */
@@ -149,8 +177,16 @@ public class Loan {
                 "LoanId: " + loanId + "\n" +
                 "MemberId: " + memberId + "\n" +
                 "MediaId: " + mediaId + "\n" +
-                "Start Date: " + loanDate + "\n" +
-                "Due Date: " + dueDate + "\n" +
+                "Start Date: " + getLoanDate() + "\n" +
+                "Due Date: " + getDueDate() + "\n" +
                 "Status: " + status;
     }
+
+    private static int toDay(LocalDate date) {
+        return date == null ? NO_DATE : Math.toIntExact(date.toEpochDay());
+    }
+
+    private static LocalDate toDate(int day) {
+        return day == NO_DATE ? null : LocalDate.ofEpochDay(day);
+    }
 }
@@ -1,7 +1,7 @@
 package domain.model;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 /** Concrete media type representing a magazine in the Library's collection.
  * <p>
@@ -20,8 +20,8 @@ public class Magazine extends MediaItem {
     /** Year of publication of this issue. */
     private int yearOfPublish;
 
-    /** Category labels (e.g. 'Technology', 'Fashion'). */
-    private final List<String> categories =  new ArrayList<>();
+    /** Category labels (e.g. 'Technology', 'Fashion'), shared through {@link CatalogDictionary}. */
+    private List<String> categories;
 
     /**
      * Constructs a Magazine with full metadata.
@@ -39,6 +39,23 @@ public class Magazine extends MediaItem {
         setCategories(categories);
     }
 
+    /**
+     * Constructs a Magazine with an existing identifier, e.g. when restoring a saved item.
+     *
+     * @param mediaId the magazine's unique identifier
+     * @param title magazine title
+     * @param publisher author or editor name
+     * @param yearOfPublish year of publication
+     * @param categories list of category labels
+     */
+    public Magazine(UUID mediaId, String title, String publisher, int yearOfPublish, List<String> categories) {
+        super(mediaId);
+        setTitle(title);
+        setPublisher(publisher);
+        setYearOfPublish(yearOfPublish);
+        setCategories(categories);
+    }
+
     /** @return the magazines title */
     public String getTitle() {
         return title;
@@ -50,6 +67,7 @@ public class Magazine extends MediaItem {
             throw new IllegalArgumentException("Title cannot be null or blank");
         }
         this.title = title;
+        descriptionChanged();
     }
 
     /** @return the publishers name */
@@ -62,7 +80,8 @@ public class Magazine extends MediaItem {
         if (publisher == null || publisher.isBlank()) {
             throw new IllegalArgumentException("Publisher cannot be null or blank");
         }
-        this.publisher = publisher;
+        this.publisher = CatalogDictionary.intern(publisher);
+        descriptionChanged();
     }
 
     /** @return the year of publication (0 if unknown) */
@@ -78,18 +97,18 @@ public class Magazine extends MediaItem {
         this.yearOfPublish = yearOfPublish;
     }
 
-    /** @return a copy of the list of categories */
+    /** @return the list of categories; unmodifiable */
+    @Override
     public List<String> getCategories() {
-        return List.copyOf(categories);
+        return categories;
     }
 
-    /** @param categories new list of category labels; cannot be null/empty */
+    /** @param categories new list of category labels; cannot be null/empty or contain null */
     public void setCategories(List<String> categories) {
         if  (categories == null || categories.isEmpty()) {
             throw new IllegalArgumentException("Categories cannot be null or empty");
         }
-        this.categories.clear();
-        this.categories.addAll(categories);
+        this.categories = CatalogDictionary.internAll(categories);
     }
 
     /** @return a formatted string representing the magazine, including title and publisher */
@@ -1,5 +1,7 @@
 package domain.model;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -19,9 +21,30 @@ public abstract class MediaItem {
     /** Current availability status of the item. */
     private AvailabilityStatus status;
 
+    /**
+     * Listeners notified when this item's status changes; replaced rather than modified so
+     * that the many items without listeners share one empty list.
+     */
+    private volatile List<StatusChangeListener> statusListeners = List.of();
+
+    /** Listeners notified when this item's title, author or publisher changes; replaced like the above. */
+    private volatile List<DescriptionChangeListener> descriptionListeners = List.of();
+
     /** Constructs a new MediaItem with a generated unique identifier. */
     protected MediaItem() {
-        this.mediaId = UUID.randomUUID(); // Generates a random unique identifier number
+        this(UUID.randomUUID()); // Generates a random unique identifier number
+    }
+
+    /**
+     * Constructs a MediaItem with an existing identifier, e.g. when restoring a saved item.
+     *
+     * @param mediaId the item's unique identifier; cannot be null
+     */
+    protected MediaItem(UUID mediaId) {
+        if (mediaId == null) {
+            throw new IllegalArgumentException("MediaId cannot be null");
+        }
+        this.mediaId = mediaId;
         this.status = AvailabilityStatus.AVAILABLE;
     }
 
@@ -38,6 +61,12 @@ public abstract class MediaItem {
     /** @return the books title */
     public abstract String getTitle();
 
+    /**
+     * @return the item's category labels (e.g. 'Fiction', 'History'); an unmodifiable list
+     *         shared with every other item in the same categories
+     */
+    public abstract List<String> getCategories();
+
     /**
      * Sets a new availability status for the media item.
      *
@@ -48,7 +77,55 @@ public abstract class MediaItem {
         if (status == null) {
             throw new IllegalArgumentException("Status cannot be null");
         }
+        AvailabilityStatus oldStatus = this.status;
         this.status = status;
+        if (oldStatus == status) return;
+        for (StatusChangeListener listener : statusListeners) {
+            listener.statusChanged(this, oldStatus, status);
+        }
+    }
+
+    /** @param listener listener to notify whenever this item's status changes */
+    public synchronized void addStatusChangeListener(StatusChangeListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        List<StatusChangeListener> listeners = new ArrayList<>(statusListeners);
+        listeners.add(listener);
+        statusListeners = List.copyOf(listeners);
+    }
+
+    /** @param listener a previously added listener to stop notifying */
+    public synchronized void removeStatusChangeListener(StatusChangeListener listener) {
+        List<StatusChangeListener> listeners = new ArrayList<>(statusListeners);
+        if (listeners.remove(listener)) {
+            statusListeners = List.copyOf(listeners);
+        }
+    }
+
+    /** @param listener listener to notify whenever this item's title, author or publisher changes */
+    public synchronized void addDescriptionChangeListener(DescriptionChangeListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        List<DescriptionChangeListener> listeners = new ArrayList<>(descriptionListeners);
+        listeners.add(listener);
+        descriptionListeners = List.copyOf(listeners);
+    }
+
+    /** @param listener a previously added listener to stop notifying */
+    public synchronized void removeDescriptionChangeListener(DescriptionChangeListener listener) {
+        List<DescriptionChangeListener> listeners = new ArrayList<>(descriptionListeners);
+        if (listeners.remove(listener)) {
+            descriptionListeners = List.copyOf(listeners);
+        }
+    }
+
+    /** Notifies listeners after a subclass has changed the item's title, author or publisher. */
+    protected void descriptionChanged() {
+        for (DescriptionChangeListener listener : descriptionListeners) {
+            listener.descriptionChanged(this);
+        }
     }
 
     /**
@@ -1,5 +1,7 @@
 package domain.model;
 
+import java.util.UUID;
+
 /**
  * Represents a library member who can borrow and reserve media items.
  * <p>
@@ -24,6 +26,18 @@ public class Member extends Person {
         this.activeMember = true; // default to active
     }
 
+    /**
+     * Constructs an active Member with an existing identifier, e.g. when restoring a saved member.
+     *
+     * @param id the member's unique identifier
+     * @param name the member's full name
+     * @param email the member's email address
+     */
+    public Member(UUID id, String name, String email) {
+        super(id, name, email);
+        this.activeMember = true; // default to active
+    }
+
     /** @return {@code true} if the member is active */
     public boolean isActiveMember() {
         return activeMember;
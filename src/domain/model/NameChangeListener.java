@@ -0,0 +1,21 @@
+package domain.model;
+
+/**
+ * Callback notified whenever the name of a {@link Person} changes.
+ * <p>
+ *     Allows aggregates that index people by name to keep their indexes current when
+ *     {@link Person#setName(String)} is called directly on the entity.
+ * </p>
+ */
+@FunctionalInterface
+public interface NameChangeListener {
+
+    /**
+     * Called after a person's name has been changed.
+     *
+     * @param person the person whose name changed
+     * @param oldName the previous name; may be null
+     * @param newName the new name; may be null
+     */
+    void nameChanged(Person person, String oldName, String newName);
+}
@@ -2,7 +2,9 @@ package domain.model;
 
 import common.ValidationException;
 
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Abstract superclass that represents a person within the library system.
@@ -22,6 +24,9 @@ public abstract class Person {
     /** Contact email address for this person. */
     private String email;
 
+    /** Listeners notified when this person's name changes. */
+    private final List<NameChangeListener> nameListeners = new CopyOnWriteArrayList<>();
+
     /**
      * Constructs a new Person instance with a generated unique ID.
      *
@@ -30,7 +35,22 @@ public abstract class Person {
      * @throws IllegalArgumentException if the email is invalid
      */
     protected Person(String name, String email) {
-        this.id = UUID.randomUUID(); // Generates a random unique identifier number
+        this(UUID.randomUUID(), name, email); // Generates a random unique identifier number
+    }
+
+    /**
+     * Constructs a Person with an existing identifier, e.g. when restoring a saved person.
+     *
+     * @param id the person's unique identifier; cannot be null
+     * @param name the person's full name
+     * @param email the person's email address; must contain '@'
+     * @throws IllegalArgumentException if the id is null
+     */
+    protected Person(UUID id, String name, String email) {
+        if (id == null) {
+            throw new IllegalArgumentException("Id cannot be null");
+        }
+        this.id = id;
         setName(name);
         setEmail(email); // Validation handled in setter
     }
@@ -47,7 +67,24 @@ public abstract class Person {
 
     /** @param name new full name */
     public void setName(String name) {
+        String oldName = this.name;
         this.name = name;
+        for (NameChangeListener listener : nameListeners) {
+            listener.nameChanged(this, oldName, name);
+        }
+    }
+
+    /** @param listener listener to notify whenever this person's name changes */
+    public void addNameChangeListener(NameChangeListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        nameListeners.add(listener);
+    }
+
+    /** @param listener a previously added listener to stop notifying */
+    public void removeNameChangeListener(NameChangeListener listener) {
+        nameListeners.remove(listener);
     }
 
     /** @return the persons email */
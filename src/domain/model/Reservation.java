@@ -36,11 +36,23 @@ public class Reservation {
      * @param createdDate the creation date of the reservation
      */
     public Reservation(UUID memberId, UUID mediaId, LocalDate createdDate) {
+        this(UUID.randomUUID(), memberId, mediaId, createdDate); // Generates a random UUID number
+    }
+
+    /**
+     * Creates an ACTIVE reservation with an existing identifier, e.g. when restoring a saved reservation.
+     *
+     * @param reservationId the reservation's unique identifier
+     * @param memberId the reserving members UUID
+     * @param mediaId the UUID of the media item being reserved
+     * @param createdDate the creation date of the reservation
+     */
+    public Reservation(UUID reservationId, UUID memberId, UUID mediaId, LocalDate createdDate) {
         // Throws illegal argument exception if any of the arguments given in parameter are null
-        if (memberId == null || mediaId == null || createdDate == null){
-            throw new IllegalArgumentException("MemberId, mediaId, and created date cannot be null");
+        if (reservationId == null || memberId == null || mediaId == null || createdDate == null){
+            throw new IllegalArgumentException("ReservationId, memberId, mediaId, and created date cannot be null");
         }
-        this.reservationId = UUID.randomUUID(); // Generates a random UUID number
+        this.reservationId = reservationId;
         this.memberId = memberId;
         this.mediaId = mediaId;
         this.createdDate = createdDate;
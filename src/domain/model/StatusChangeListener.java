@@ -0,0 +1,21 @@
+package domain.model;
+
+/**
+ * Callback notified whenever the availability status of a {@link MediaItem} changes.
+ * <p>
+ *     Allows aggregates that index items by status to keep their indexes current when
+ *     {@link MediaItem#setStatus(AvailabilityStatus)} is called directly on the entity.
+ * </p>
+ */
+@FunctionalInterface
+public interface StatusChangeListener {
+
+    /**
+     * Called after an item's status has been changed.
+     *
+     * @param item the item whose status changed
+     * @param oldStatus the previous status
+     * @param newStatus the new status
+     */
+    void statusChanged(MediaItem item, AvailabilityStatus oldStatus, AvailabilityStatus newStatus);
+}
@@ -10,6 +10,10 @@ public interface FinePolicy {
     /**
      * Calculates the fine in pence for an item returned on {@code returnDate}
      * when the due date was {@code dueDate}.
+     * <p>
+     *     Must be 0 when the item is returned on or before its due date; fine assessment
+     *     relies on this to skip loans that are not yet overdue.
+     * </p>
      *
      * @param dueDate the due date of the loan
      * @param returnDate the actual return date of the loan
@@ -29,13 +29,19 @@ public class StandardFinePolicy implements FinePolicy {
 
     /**
      * {@inheritDoc}
+     * <p>
+     *     Fines too large for an {@code int} are capped at {@link Integer#MAX_VALUE} pence
+     *     rather than wrapping around to a negative amount.
+     * </p>
      */
     @Override
     public int calculateFine(LocalDate dueDate, LocalDate returnDate) {
         // Ensures that the difference between the two dates cannot be negative
         long daysLate = Math.max(0, ChronoUnit.DAYS.between(dueDate, returnDate));
-        long total = daysLate * pencePerDay;
-        // Returns calculated fine cast to int
-        return (int) total;
+        // Checks the bound before multiplying, as even a long product can overflow
+        if (daysLate > Integer.MAX_VALUE / pencePerDay) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) (daysLate * pencePerDay);
     }
 }
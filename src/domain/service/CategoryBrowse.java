@@ -0,0 +1,17 @@
+package domain.service;
+
+import domain.model.MediaItem;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of browsing the catalogue by category.
+ *
+ * @param total the number of items matching the query
+ * @param items up to the requested number of matching items, in a stable order
+ * @param categoryCounts the number of matching items in each category, largest first;
+ *                       categories with no matching items are left out
+ */
+public record CategoryBrowse(int total, List<MediaItem> items, Map<String, Integer> categoryCounts) {
+}
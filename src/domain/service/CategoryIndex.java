@@ -0,0 +1,148 @@
+package domain.service;
+
+import java.util.*;
+
+/**
+ * Facet index from each category to the ordinals filed under it, for browsing by genre.
+ * <p>
+ *     Entries are identified by dense {@code int} ordinals chosen by the caller (the
+ *     Library uses its items' surrogate IDs), and each category keeps a
+ *     {@link CompressedBitmap} of the ordinals filed under it. A {@link CategoryQuery} is
+ *     answered by combining those bitmaps, so its cost depends on the size of the bitmaps
+ *     rather than on the number of categories each entry has, and counting the matches in
+ *     every category costs one bitmap intersection per category. Categories are normalised
+ *     by trimming them and lowercasing them; each is reported under the spelling it was
+ *     first indexed with.
+ * </p>
+ * <p>
+ *     Not thread-safe; callers are responsible for synchronisation.
+ * </p>
+ */
+final class CategoryIndex {
+
+    private static final Facet[] NO_FACETS = new Facet[0];
+
+    /** The categories each ordinal is filed under; null where the ordinal is not indexed. */
+    private Facet[][] facetsByOrdinal = new Facet[1024][];
+
+    /** Every indexed ordinal, for negating queries. */
+    private final CompressedBitmap all = new CompressedBitmap();
+
+    /** Categories by normalised name. */
+    private final Map<String, Facet> facets = new HashMap<>();
+
+    /** One category and the ordinals filed under it. */
+    private static final class Facet {
+
+        private final String label;
+        private final CompressedBitmap ordinals = new CompressedBitmap();
+
+        private Facet(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Files an ordinal under the given categories, replacing any it was previously filed under.
+     *
+     * @param ordinal the ordinal to index; must not be negative
+     * @param categories the categories; null and blank categories are ignored
+     */
+    void put(int ordinal, Collection<String> categories) {
+        remove(ordinal);
+        if (ordinal >= facetsByOrdinal.length) {
+            facetsByOrdinal = Arrays.copyOf(facetsByOrdinal, Math.max(ordinal + 1, facetsByOrdinal.length * 2));
+        }
+        Set<Facet> filed = new LinkedHashSet<>();
+        for (String category : categories) {
+            String name = normalise(category);
+            if (name.isEmpty()) continue;
+            Facet facet = facets.computeIfAbsent(name, n -> new Facet(category.strip()));
+            facet.ordinals.add(ordinal);
+            filed.add(facet);
+        }
+        facetsByOrdinal[ordinal] = filed.toArray(NO_FACETS);
+        all.add(ordinal);
+    }
+
+    /**
+     * Removes an ordinal from every category it is filed under.
+     *
+     * @param ordinal the ordinal to remove
+     */
+    void remove(int ordinal) {
+        if (!contains(ordinal)) return;
+        for (Facet facet : facetsByOrdinal[ordinal]) {
+            facet.ordinals.remove(ordinal);
+            if (facet.ordinals.isEmpty()) {
+                facets.remove(normalise(facet.label));
+            }
+        }
+        facetsByOrdinal[ordinal] = null;
+        all.remove(ordinal);
+    }
+
+    /**
+     * Finds the ordinals matching a query.
+     *
+     * @param query the categories to match
+     * @return a new bitmap of the matching ordinals, which the caller may modify
+     */
+    CompressedBitmap match(CategoryQuery query) {
+        return switch (query) {
+            case CategoryQuery.Category c -> {
+                Facet facet = facets.get(normalise(c.name()));
+                yield facet == null ? new CompressedBitmap() : facet.ordinals.copy();
+            }
+            case CategoryQuery.And and -> {
+                CompressedBitmap result = all.copy();
+                for (CategoryQuery operand : and.operands()) {
+                    if (result.isEmpty()) break;
+                    result = result.and(match(operand));
+                }
+                yield result;
+            }
+            case CategoryQuery.Or or -> {
+                CompressedBitmap result = new CompressedBitmap();
+                for (CategoryQuery operand : or.operands()) {
+                    result = result.or(match(operand));
+                }
+                yield result;
+            }
+            case CategoryQuery.Not not -> all.andNot(match(not.operand()));
+        };
+    }
+
+    /**
+     * @param ordinal an ordinal; may be negative
+     * @return {@code true} if the ordinal is indexed
+     */
+    boolean contains(int ordinal) {
+        return ordinal >= 0 && ordinal < facetsByOrdinal.length && facetsByOrdinal[ordinal] != null;
+    }
+
+    /**
+     * Counts how many of the given ordinals are filed under each category.
+     *
+     * @param ordinals the ordinals to count, e.g. the result of a query
+     * @return the count for each category with at least one of the ordinals, largest first
+     */
+    Map<String, Integer> counts(CompressedBitmap ordinals) {
+        List<Map.Entry<String, Integer>> counts = new ArrayList<>();
+        for (Facet facet : facets.values()) {
+            int count = facet.ordinals.andCardinality(ordinals);
+            if (count > 0) counts.add(Map.entry(facet.label, count));
+        }
+        counts.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey(String.CASE_INSENSITIVE_ORDER)));
+        Map<String, Integer> ordered = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> count : counts) {
+            ordered.put(count.getKey(), count.getValue());
+        }
+        return ordered;
+    }
+
+    private static String normalise(String category) {
+        return category == null ? "" : category.strip().toLowerCase(Locale.ROOT);
+    }
+}
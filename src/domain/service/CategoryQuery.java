@@ -0,0 +1,84 @@
+package domain.service;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Boolean expression over item categories, for browsing the catalogue by genre.
+ * <p>
+ *     Category names are matched ignoring case and surrounding whitespace. For example,
+ *     fantasy or science fiction, but not horror:
+ * </p>
+ * <pre>
+ * CategoryQuery.and(CategoryQuery.anyOf("Fantasy", "Science Fiction"), CategoryQuery.not(CategoryQuery.category("Horror")))
+ * </pre>
+ */
+public sealed interface CategoryQuery {
+
+    /** Items in a category. */
+    record Category(String name) implements CategoryQuery {
+        public Category {
+            if (name == null || name.isBlank()) {
+                throw new IllegalArgumentException("Category cannot be blank");
+            }
+        }
+    }
+
+    /** Items matching every operand; with no operands, every item. */
+    record And(List<CategoryQuery> operands) implements CategoryQuery {
+        public And {
+            operands = List.copyOf(operands);
+        }
+    }
+
+    /** Items matching at least one operand; with no operands, no items. */
+    record Or(List<CategoryQuery> operands) implements CategoryQuery {
+        public Or {
+            operands = List.copyOf(operands);
+        }
+    }
+
+    /** Items not matching the operand. */
+    record Not(CategoryQuery operand) implements CategoryQuery {
+        public Not {
+            if (operand == null) {
+                throw new IllegalArgumentException("Operand cannot be null");
+            }
+        }
+    }
+
+    /** @return a query for items in the category */
+    static CategoryQuery category(String name) {
+        return new Category(name);
+    }
+
+    /** @return a query for every item */
+    static CategoryQuery everything() {
+        return new And(List.of());
+    }
+
+    /** @return a query for items matching every operand */
+    static CategoryQuery and(CategoryQuery... operands) {
+        return new And(List.of(operands));
+    }
+
+    /** @return a query for items matching at least one operand */
+    static CategoryQuery or(CategoryQuery... operands) {
+        return new Or(List.of(operands));
+    }
+
+    /** @return a query for items not matching the operand */
+    static CategoryQuery not(CategoryQuery operand) {
+        return new Not(operand);
+    }
+
+    /** @return a query for items in every one of the categories */
+    static CategoryQuery allOf(String... names) {
+        return new And(Arrays.stream(names).map(CategoryQuery::category).toList());
+    }
+
+    /** @return a query for items in at least one of the categories */
+    static CategoryQuery anyOf(String... names) {
+        return new Or(Arrays.stream(names).map(CategoryQuery::category).toList());
+    }
+}
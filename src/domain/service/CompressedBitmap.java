@@ -0,0 +1,458 @@
+package domain.service;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Compressed set of non-negative {@code int}s, in the style of a Roaring bitmap.
+ * <p>
+ *     Values are grouped by their high 16 bits into containers of at most 65536 values.
+ *     A container holding up to 4096 values stores them as a sorted {@code char[]}; a
+ *     fuller one switches to a fixed 8 KB bitset. Sparse sets therefore cost about two bytes
+ *     per value, dense ones about one bit, and set operations work a container at a time,
+ *     either by merging sorted arrays or by combining 64 values per machine word.
+ * </p>
+ * <p>
+ *     Not thread-safe; callers are responsible for synchronisation. The set operations
+ *     return new bitmaps and leave their operands unchanged.
+ * </p>
+ */
+final class CompressedBitmap {
+
+    /** Largest number of values kept in an array container. */
+    private static final int MAX_ARRAY_SIZE = 4096;
+
+    /** Words in a bitset container: 65536 bits. */
+    private static final int WORDS = 1024;
+
+    /** The high 16 bits of each container's values, in ascending order. */
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size;
+
+    /**
+     * Adds a value to the set.
+     *
+     * @param value the value to add; must not be negative
+     */
+    void add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Bitmap values cannot be negative");
+        }
+        char high = (char) (value >>> 16);
+        int i = find(high);
+        if (i < 0) {
+            i = -i - 1;
+            insert(i, high, new ArrayContainer());
+        }
+        containers[i] = containers[i].add((char) value);
+    }
+
+    /**
+     * Removes a value from the set, if present.
+     *
+     * @param value the value to remove
+     */
+    void remove(int value) {
+        if (value < 0) return;
+        int i = find((char) (value >>> 16));
+        if (i < 0) return;
+        Container container = containers[i].remove((char) value);
+        if (container.cardinality() == 0) {
+            delete(i);
+        } else {
+            containers[i] = container;
+        }
+    }
+
+    /** @return whether the set holds the value */
+    boolean contains(int value) {
+        if (value < 0) return false;
+        int i = find((char) (value >>> 16));
+        return i >= 0 && containers[i].contains((char) value);
+    }
+
+    /** @return the number of values in the set */
+    int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    /** @return whether the set is empty */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** @return the values in both this set and the other */
+    CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        for (int i = 0, j = 0; i < size && j < other.size; ) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], Container.and(containers[i++], other.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    /** @return the values in this set, the other or both */
+    CompressedBitmap or(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i++].copy());
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j++].copy());
+            } else {
+                result.append(keys[i], Container.or(containers[i++], other.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    /** @return the values in this set but not in the other */
+    CompressedBitmap andNot(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        for (int i = 0, j = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) j++;
+            if (j < other.size && other.keys[j] == keys[i]) {
+                result.append(keys[i], Container.andNot(containers[i], other.containers[j]));
+            } else {
+                result.append(keys[i], containers[i].copy());
+            }
+        }
+        return result;
+    }
+
+    /** @return the number of values in both this set and the other, without building the intersection */
+    int andCardinality(CompressedBitmap other) {
+        int cardinality = 0;
+        for (int i = 0, j = 0; i < size && j < other.size; ) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                cardinality += Container.andCardinality(containers[i++], other.containers[j++]);
+            }
+        }
+        return cardinality;
+    }
+
+    /** @return an independent copy of the set */
+    CompressedBitmap copy() {
+        CompressedBitmap copy = new CompressedBitmap();
+        for (int i = 0; i < size; i++) {
+            copy.append(keys[i], containers[i].copy());
+        }
+        return copy;
+    }
+
+    /**
+     * Visits the values in ascending order.
+     *
+     * @param action called with each value; returning {@code false} stops the visit
+     * @return {@code false} if the action stopped the visit early
+     */
+    boolean forEach(IntPredicate action) {
+        for (int i = 0; i < size; i++) {
+            if (!containers[i].forEach(keys[i] << 16, action)) return false;
+        }
+        return true;
+    }
+
+    // ---------------------------------------- Internals ------------------------------------
+
+    private int find(char high) {
+        return Arrays.binarySearch(keys, 0, size, high);
+    }
+
+    private void insert(int index, char high, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = high;
+        containers[index] = container;
+        size++;
+    }
+
+    private void delete(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        containers[--size] = null;
+    }
+
+    /** Adds a container after every existing one, dropping it if it is empty. */
+    private void append(char high, Container container) {
+        if (container.cardinality() > 0) {
+            insert(size, high, container);
+        }
+    }
+
+    /** The values of one bitmap sharing the same high 16 bits, stored by their low 16 bits. */
+    private abstract static sealed class Container permits ArrayContainer, BitsetContainer {
+
+        abstract int cardinality();
+
+        /** @return the container now holding the value, which may be a new one */
+        abstract Container add(char value);
+
+        /** @return the container now lacking the value, which may be a new one */
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        /** @return the values as a bitset, which the caller may modify */
+        abstract long[] toWords();
+
+        abstract Container copy();
+
+        abstract boolean forEach(int high, IntPredicate action);
+
+        static Container and(Container a, Container b) {
+            if (a instanceof ArrayContainer array) return array.filter(b, true);
+            if (b instanceof ArrayContainer array) return array.filter(a, true);
+            long[] words = a.toWords();
+            long[] other = ((BitsetContainer) b).words;
+            for (int i = 0; i < WORDS; i++) words[i] &= other[i];
+            return fromWords(words);
+        }
+
+        static Container or(Container a, Container b) {
+            if (a instanceof ArrayContainer x && b instanceof ArrayContainer y
+                    && x.size + y.size <= MAX_ARRAY_SIZE) {
+                return x.union(y);
+            }
+            long[] words = a.toWords();
+            if (b instanceof BitsetContainer bitset) {
+                for (int i = 0; i < WORDS; i++) words[i] |= bitset.words[i];
+            } else {
+                ArrayContainer array = (ArrayContainer) b;
+                for (int i = 0; i < array.size; i++) words[array.values[i] >>> 6] |= 1L << array.values[i];
+            }
+            return fromWords(words);
+        }
+
+        static Container andNot(Container a, Container b) {
+            if (a instanceof ArrayContainer array) return array.filter(b, false);
+            long[] words = a.toWords();
+            if (b instanceof BitsetContainer bitset) {
+                for (int i = 0; i < WORDS; i++) words[i] &= ~bitset.words[i];
+            } else {
+                ArrayContainer array = (ArrayContainer) b;
+                for (int i = 0; i < array.size; i++) words[array.values[i] >>> 6] &= ~(1L << array.values[i]);
+            }
+            return fromWords(words);
+        }
+
+        static int andCardinality(Container a, Container b) {
+            if (a instanceof ArrayContainer array) return array.countIn(b);
+            if (b instanceof ArrayContainer array) return array.countIn(a);
+            long[] x = ((BitsetContainer) a).words;
+            long[] y = ((BitsetContainer) b).words;
+            int cardinality = 0;
+            for (int i = 0; i < WORDS; i++) cardinality += Long.bitCount(x[i] & y[i]);
+            return cardinality;
+        }
+
+        /** @return the cheaper container for a bitset's values */
+        static Container fromWords(long[] words) {
+            int cardinality = 0;
+            for (long word : words) cardinality += Long.bitCount(word);
+            if (cardinality > MAX_ARRAY_SIZE) return new BitsetContainer(words, cardinality);
+            ArrayContainer array = new ArrayContainer(new char[Math.max(cardinality, 4)], 0);
+            for (int i = 0; i < WORDS; i++) {
+                for (long word = words[i]; word != 0; word &= word - 1) {
+                    array.values[array.size++] = (char) (i * 64 + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return array;
+        }
+    }
+
+    /** Up to {@link #MAX_ARRAY_SIZE} values in a sorted array. */
+    private static final class ArrayContainer extends Container {
+
+        private char[] values;
+        private int size;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        Container add(char value) {
+            int i = Arrays.binarySearch(values, 0, size, value);
+            if (i >= 0) return this;
+            if (size == MAX_ARRAY_SIZE) {
+                long[] words = toWords();
+                words[value >>> 6] |= 1L << value;
+                return new BitsetContainer(words, size + 1);
+            }
+            i = -i - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(MAX_ARRAY_SIZE, size * 2));
+            }
+            System.arraycopy(values, i, values, i + 1, size - i);
+            values[i] = value;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int i = Arrays.binarySearch(values, 0, size, value);
+            if (i < 0) return this;
+            System.arraycopy(values, i + 1, values, i, size - i - 1);
+            size--;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        @Override
+        long[] toWords() {
+            long[] words = new long[WORDS];
+            for (int i = 0; i < size; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return words;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(size, 4)), size);
+        }
+
+        @Override
+        boolean forEach(int high, IntPredicate action) {
+            for (int i = 0; i < size; i++) {
+                if (!action.test(high | values[i])) return false;
+            }
+            return true;
+        }
+
+        /** @return the values that are ({@code keep}) or are not in the other container */
+        ArrayContainer filter(Container other, boolean keep) {
+            char[] kept = new char[Math.max(size, 4)];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (other.contains(values[i]) == keep) kept[count++] = values[i];
+            }
+            return new ArrayContainer(kept, count);
+        }
+
+        /** @return the number of values also in the other container */
+        int countIn(Container other) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (other.contains(values[i])) count++;
+            }
+            return count;
+        }
+
+        /** @return the merged values of both arrays, which together hold at most {@link #MAX_ARRAY_SIZE} */
+        ArrayContainer union(ArrayContainer other) {
+            char[] merged = new char[Math.max(size + other.size, 4)];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < size || j < other.size) {
+                if (j == other.size || (i < size && values[i] < other.values[j])) {
+                    merged[count++] = values[i++];
+                } else if (i == size || values[i] > other.values[j]) {
+                    merged[count++] = other.values[j++];
+                } else {
+                    merged[count++] = values[i++];
+                    j++;
+                }
+            }
+            return new ArrayContainer(merged, count);
+        }
+    }
+
+    /** More than {@link #MAX_ARRAY_SIZE} values as one bit per possible value. */
+    private static final class BitsetContainer extends Container {
+
+        private final long[] words;
+        private int cardinality;
+
+        BitsetContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) return this;
+            words[value >>> 6] &= ~bit;
+            cardinality--;
+            return cardinality > MAX_ARRAY_SIZE ? this : fromWords(words);
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        long[] toWords() {
+            return words.clone();
+        }
+
+        @Override
+        Container copy() {
+            return new BitsetContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        boolean forEach(int high, IntPredicate action) {
+            for (int i = 0; i < WORDS; i++) {
+                for (long word = words[i]; word != 0; word &= word - 1) {
+                    if (!action.test(high | (i * 64 + Long.numberOfTrailingZeros(word)))) return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package domain.service;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Table of values indexed by a dense {@code int} surrogate ID from a {@link UuidIndex}.
+ * <p>
+ *     Values are kept in fixed-size chunks of a growable directory, so a lookup is two
+ *     array reads and an entry costs one reference slot, rather than the node, key and
+ *     boxed hash of a {@code Map} entry. Growing copies only the directory, never a chunk,
+ *     so writes racing with growth are never lost.
+ * </p>
+ * <p>
+ *     Thread-safe. Reads take no lock; writes to different IDs do not contend unless one
+ *     of them has to grow the directory. Iteration is weakly consistent.
+ * </p>
+ *
+ * @param <T> the type of value stored
+ */
+final class DenseTable<T> implements Iterable<T> {
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /** The chunks; entries past the last allocated chunk are null. */
+    private volatile AtomicReferenceArray<Object>[] chunks = newDirectory(1);
+
+    /** The number of non-null values. */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param id a surrogate ID; may be negative, meaning no ID
+     * @return the value stored under the ID, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    T get(int id) {
+        if (id < 0) return null;
+        AtomicReferenceArray<Object>[] directory = chunks;
+        int chunk = id >>> CHUNK_BITS;
+        if (chunk >= directory.length || directory[chunk] == null) return null;
+        return (T) directory[chunk].get(id & CHUNK_MASK);
+    }
+
+    /**
+     * Stores a value under an ID, replacing any value already stored there.
+     *
+     * @param id a surrogate ID; must not be negative
+     * @param value the value to store; null removes the ID's value
+     * @return the value previously stored under the ID, or null
+     */
+    @SuppressWarnings("unchecked")
+    T set(int id, T value) {
+        if (value == null) return remove(id);
+        T previous = (T) chunk(id).getAndSet(id & CHUNK_MASK, value);
+        if (previous == null) size.incrementAndGet();
+        return previous;
+    }
+
+    /**
+     * Removes the value stored under an ID.
+     *
+     * @param id a surrogate ID; may be negative, meaning no ID
+     * @return the value previously stored under the ID, or null
+     */
+    @SuppressWarnings("unchecked")
+    T remove(int id) {
+        if (get(id) == null) return null;
+        T previous = (T) chunks[id >>> CHUNK_BITS].getAndSet(id & CHUNK_MASK, null);
+        if (previous != null) size.decrementAndGet();
+        return previous;
+    }
+
+    /** @return the number of IDs with a value */
+    int size() {
+        return size.get();
+    }
+
+    /** @return an iterator over the values in ID order */
+    @Override
+    public Iterator<T> iterator() {
+        return stream().iterator();
+    }
+
+    /** @return the values in ID order */
+    Stream<T> stream() {
+        AtomicReferenceArray<Object>[] directory = chunks;
+        return IntStream.range(0, directory.length)
+                .filter(chunk -> directory[chunk] != null)
+                .boxed()
+                .flatMap(chunk -> IntStream.range(0, CHUNK_SIZE)
+                        .mapToObj(i -> get((chunk << CHUNK_BITS) | i)))
+                .filter(value -> value != null);
+    }
+
+    /** @return the chunk holding the ID, allocating it and growing the directory if needed */
+    private AtomicReferenceArray<Object> chunk(int id) {
+        int chunk = id >>> CHUNK_BITS;
+        AtomicReferenceArray<Object>[] directory = chunks;
+        if (chunk < directory.length && directory[chunk] != null) return directory[chunk];
+        synchronized (this) {
+            directory = chunks;
+            if (chunk >= directory.length) {
+                AtomicReferenceArray<Object>[] grown = newDirectory(Math.max(chunk + 1, directory.length * 2));
+                System.arraycopy(directory, 0, grown, 0, directory.length);
+                directory = grown;
+            } else if (directory[chunk] != null) {
+                return directory[chunk];
+            } else {
+                directory = directory.clone();
+            }
+            directory[chunk] = new AtomicReferenceArray<>(CHUNK_SIZE);
+            chunks = directory;
+            return directory[chunk];
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static AtomicReferenceArray<Object>[] newDirectory(int length) {
+        return new AtomicReferenceArray[length];
+    }
+}
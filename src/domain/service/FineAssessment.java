@@ -0,0 +1,28 @@
+package domain.service;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Result of assessing the fines accrued to date on every outstanding loan.
+ *
+ * @param date the date fines were accrued to
+ * @param totalPence the fines accrued across all outstanding loans, in pence
+ * @param penceByMember the fines accrued on each member's outstanding loans, in pence;
+ *                      members who owe nothing are left out
+ * @param overdueLoans the number of outstanding loans past their due date
+ * @param loansRecomputed the number of loans whose fine was calculated by this assessment
+ *                        rather than carried over from the previous one
+ */
+public record FineAssessment(LocalDate date, long totalPence, Map<UUID, Long> penceByMember,
+                             int overdueLoans, int loansRecomputed) {
+
+    /**
+     * @param memberId the ID of a member
+     * @return the fines accrued on the member's outstanding loans, in pence
+     */
+    public long owedBy(UUID memberId) {
+        return penceByMember.getOrDefault(memberId, 0L);
+    }
+}
@@ -0,0 +1,153 @@
+package domain.service;
+
+import domain.model.Loan;
+import domain.policy.FinePolicy;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Batch engine that assesses the fines accrued to date on outstanding loans, as totals per
+ * member.
+ * <p>
+ *     Fines are calculated in parallel by a fork/join task that splits the loans into
+ *     ranges, calculates each loan's fine with the {@link FinePolicy}, and merges the
+ *     per-member changes of each range on the way back up.
+ * </p>
+ * <p>
+ *     Assessments are incremental. The engine keeps the fine of every overdue loan from the
+ *     previous assessment, and only calls the policy for loans whose fine may have changed
+ *     since: on the same date, loans that have become overdue since; on a later date, every
+ *     overdue loan, as their fines grow daily. Loans not yet due owe nothing under the
+ *     {@link FinePolicy} contract and are never calculated, and loans returned since are
+ *     dropped. Totals are kept as {@code long}s, so they cannot overflow.
+ * </p>
+ * <p>
+ *     Thread-safe; assessments are serialised.
+ * </p>
+ */
+final class FineEngine {
+
+    /** Loans per fork/join leaf; below this, splitting costs more than it saves. */
+    private static final int LEAF_SIZE = 1024;
+
+    private final FinePolicy finePolicy;
+    private final ForkJoinPool pool;
+
+    /** The fine of each overdue loan as of {@link #assessedOn}, by loan identity. */
+    private final Map<Loan, Integer> fines = new IdentityHashMap<>();
+
+    /** Each member's total of {@link #fines}; members owing nothing have no entry. */
+    private final Map<UUID, Long> totals = new HashMap<>();
+
+    private long total;
+
+    /** The date of the previous assessment, or null if there has been none. */
+    private LocalDate assessedOn;
+
+    /**
+     * @param finePolicy the policy to calculate each loan's fine with
+     * @param pool the pool to calculate fines in
+     */
+    FineEngine(FinePolicy finePolicy, ForkJoinPool pool) {
+        this.finePolicy = finePolicy;
+        this.pool = pool;
+    }
+
+    /**
+     * Assesses the fines accrued on the given loans up to the given date.
+     *
+     * @param outstanding every outstanding loan; may change while it is read
+     * @param today the date to accrue fines to
+     * @return the fines owed, in total and by member
+     */
+    synchronized FineAssessment assess(Iterable<Loan> outstanding, LocalDate today) {
+        boolean sameDay = today.equals(assessedOn);
+        long day = today.toEpochDay();
+        Set<Loan> overdue = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Loan> changed = new ArrayList<>();
+        for (Loan loan : outstanding) {
+            if (loan.getDueEpochDay() >= day) continue;
+            overdue.add(loan);
+            if (!sameDay || !fines.containsKey(loan)) changed.add(loan);
+        }
+
+        // Drops loans that were returned, or are no longer overdue if the date went back
+        for (Iterator<Map.Entry<Loan, Integer>> it = fines.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Loan, Integer> entry = it.next();
+            if (!overdue.contains(entry.getKey())) {
+                addToMember(entry.getKey().getMemberId(), -entry.getValue());
+                it.remove();
+            }
+        }
+
+        Loan[] batch = changed.toArray(new Loan[0]);
+        int[] calculated = new int[batch.length];
+        Map<UUID, Long> changes = pool.invoke(new Assess(batch, calculated, 0, batch.length, today));
+        for (int i = 0; i < batch.length; i++) {
+            fines.put(batch[i], calculated[i]);
+        }
+        changes.forEach(this::addToMember);
+
+        assessedOn = today;
+        return new FineAssessment(today, total, Map.copyOf(totals), overdue.size(), batch.length);
+    }
+
+    private void addToMember(UUID memberId, long pence) {
+        if (pence == 0) return;
+        total += pence;
+        totals.merge(memberId, pence, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    /**
+     * Calculates the fines of a range of loans, and returns how much each member's total
+     * changes by compared with the fines the engine held for those loans.
+     */
+    @SuppressWarnings("serial") // never serialised; tasks only run in this JVM's pool
+    private final class Assess extends RecursiveTask<Map<UUID, Long>> {
+
+        private final Loan[] loans;
+        private final int[] calculated;
+        private final int from;
+        private final int to;
+        private final LocalDate today;
+
+        private Assess(Loan[] loans, int[] calculated, int from, int to, LocalDate today) {
+            this.loans = loans;
+            this.calculated = calculated;
+            this.from = from;
+            this.to = to;
+            this.today = today;
+        }
+
+        @Override
+        protected Map<UUID, Long> compute() {
+            if (to - from > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+                Assess right = new Assess(loans, calculated, middle, to, today);
+                right.fork();
+                Map<UUID, Long> left = new Assess(loans, calculated, from, middle, today).compute();
+                return merge(left, right.join());
+            }
+            Map<UUID, Long> changes = new HashMap<>();
+            for (int i = from; i < to; i++) {
+                Loan loan = loans[i];
+                int fine = finePolicy.calculateFine(loan.getDueDate(), today);
+                calculated[i] = fine;
+                // The engine's map is only read while tasks run
+                long change = (long) fine - fines.getOrDefault(loan, 0);
+                if (change != 0) changes.merge(loan.getMemberId(), change, Long::sum);
+            }
+            return changes;
+        }
+
+        private static Map<UUID, Long> merge(Map<UUID, Long> a, Map<UUID, Long> b) {
+            Map<UUID, Long> larger = a.size() >= b.size() ? a : b;
+            Map<UUID, Long> smaller = larger == a ? b : a;
+            smaller.forEach((memberId, change) -> larger.merge(memberId, change, Long::sum));
+            return larger;
+        }
+    }
+}
@@ -1,12 +1,27 @@
 package domain.service;
 
 import common.ValidationException;
+import common.metrics.InMemoryMetricsRegistry;
+import common.metrics.MetricsRegistry;
 import domain.model.*;
 import domain.policy.FinePolicy;
 import domain.policy.LoanPolicy;
 
+import java.time.Clock;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Aggregate root class that coordinates all the behaviour for domain entities within the
@@ -16,28 +31,231 @@ import java.util.*;
  *     {@link Reservation}s, and performs behaviours such as adding/removing items,
  *     loaning/returning items, and managing reservations.
  * </p>
+ * <p>
+ *     Safe for use by several threads at once. Operations on an item are serialised by a
+ *     lock striped on its media ID, and operations on a member by a lock striped on their
+ *     member ID; where both are needed the item lock is always taken first. The number of
+ *     stripes sets how many unrelated checkouts can proceed in parallel.
+ * </p>
+ * <p>
+ *     Every successful mutation is published as a numbered {@link LibraryEvent} to any
+ *     registered {@link LibraryEventListener}s, and can be repeated on another library with
+ *     {@link #replay}; this is how state is persisted and recovered.
+ * </p>
+ * <p>
+ *     Every mutation also publishes a new {@link LibrarySnapshot}, fixing which entities
+ *     exist and each item's status, which {@link #snapshot()} hands out without locking,
+ *     for queries and reports that must neither wait for nor hold up the desks.
+ * </p>
  */
 public class Library {
 
+    // Internally every item, member, loan and reservation is identified by a dense int
+    // surrogate ID, assigned the first time its UUID is seen. Item, member and reservation
+    // IDs are never reused; a loan's ID is released when the loan is archived and handed to
+    // a later loan, so the loan tables only grow with the loans not yet archived.
+    // The public API stays UUID-based; UUIDs are translated once at the boundary, and the
+    // collections below are flat tables indexed by surrogate ID rather than hash maps of UUIDs.
+
+    /** Surrogate IDs of media items. */
+    private final UuidIndex itemIds = new UuidIndex();
+
+    /** Surrogate IDs of members. */
+    private final UuidIndex memberIds = new UuidIndex();
+
+    /** Surrogate IDs of loans in {@link #loans}; released when a loan is archived. */
+    private final UuidIndex loanIds = new UuidIndex();
+
+    /** Surrogate IDs of reservations. */
+    private final UuidIndex reservationIds = new UuidIndex();
+
+    /**
+     * All media items by surrogate ID.
+     */
+    private final DenseTable<MediaItem> items = new DenseTable<>();
+
+    /**
+     * The same media items ordered by UUID, so that listings can resume from a cursor.
+     * <p>
+     *     Kept apart from {@link #items} so that the lookups on every loan and return stay
+     *     array lookups; only adding and removing items pays for the ordering.
+     * </p>
+     */
+    private final ConcurrentNavigableMap<UUID, MediaItem> itemsInIdOrder = new ConcurrentSkipListMap<>();
+
+    /**
+     * Outstanding and recently returned loans by surrogate ID; the hot tier of the loan
+     * history.
+     */
+    private final DenseTable<Loan> loans = new DenseTable<>();
+
+    /**
+     * Returned loans moved out of {@link #loans} by {@link #archiveReturnedLoans}; the cold
+     * tier of the loan history, held off the heap.
+     */
+    private final LoanArchive loanArchive = new LoanArchive();
+
+    /**
+     * Guards moving loans from {@link #loans} to {@link #loanArchive}. Readers of the whole
+     * loan history hold the read lock, so they see each loan in exactly one tier; acquired
+     * before any item lock.
+     */
+    private final ReadWriteLock archiveLock = new ReentrantReadWriteLock();
+
+    /**
+     * Outstanding loans by the surrogate ID of the media item on loan.
+     * <p>
+     *     Secondary index over {@link #loans} so that returns do not need to scan the full
+     *     loan history. Kept up to date by {@link #loanItem} and {@link #returnItem}.
+     * </p>
+     */
+    private final DenseTable<Loan> openLoansByItem = new DenseTable<>();
+
+    /**
+     * Outstanding loans of each member by surrogate ID, ordered by due date (earliest first).
+     * <p>
+     *     Members without outstanding loans have no entry. Lets the overdue check compare
+     *     only the member's earliest due date with today. Each set is guarded by its
+     *     member's lock.
+     * </p>
+     */
+    private final DenseTable<NavigableSet<Loan>> openLoansByMember = new DenseTable<>();
+
+    /**
+     * Orders loans by due date, with the loan ID as a tie-breaker so distinct loans due
+     * on the same day are all retained.
+     */
+    private static final Comparator<Loan> BY_DUE_DATE =
+            Comparator.comparingLong(Loan::getDueEpochDay).thenComparing(Loan::getLoanId);
+
+    /**
+     * Orders loan histories by loan date, latest first.
+     */
+    private static final Comparator<Loan> MOST_RECENT_FIRST =
+            Comparator.comparing(Loan::getLoanDate, Comparator.reverseOrder());
+
+    /**
+     * All members by surrogate ID.
+     */
+    private final DenseTable<Member> members = new DenseTable<>();
+
+    /**
+     * The same members ordered by UUID, so that listings can resume from a cursor.
+     */
+    private final ConcurrentNavigableMap<UUID, Member> membersInIdOrder = new ConcurrentSkipListMap<>();
+
+    /**
+     * Reservation queues by media item surrogate ID; each queue is guarded by its item's lock.
+     */
+    private final DenseTable<ReservationQueue> reservationsByItem = new DenseTable<>();
+
+    /**
+     * All reservations by surrogate ID.
+     */
+    private final DenseTable<Reservation> reservations = new DenseTable<>();
+
+    /**
+     * Buckets outstanding loans by the day they become overdue, for overdue notices.
+     */
+    private final OverdueScheduler overdueScheduler;
+
+    /**
+     * Trigram index over the title, author and publisher of every media item.
+     */
+    private final NGramIndex<UUID> mediaSearchIndex = new NGramIndex<>();
+
+    /**
+     * Bitmap facet index over the categories of every media item, by surrogate ID.
+     */
+    private final CategoryIndex categoryIndex = new CategoryIndex();
+
+    /**
+     * Guards {@link #mediaSearchIndex} and {@link #categoryIndex}; searches share the read
+     * lock so they are only held up by items being added or removed, never by loans or
+     * returns.
+     */
+    private final ReadWriteLock mediaSearchLock = new ReentrantReadWriteLock();
+
+    /**
+     * Re-indexes an item's text whenever its title, author or publisher is changed on it.
+     */
+    private final DescriptionChangeListener itemRedescribed = this::indexText;
+
+    /**
+     * Bitmaps of the items in each availability status, by surrogate ID.
+     */
+    private final StatusIndex statusIndex = new StatusIndex();
+
+    /**
+     * Guards {@link #statusIndex}; always acquired after {@link #mediaSearchLock}, which
+     * must be held to check that an item has been indexed.
+     */
+    private final ReadWriteLock statusLock = new ReentrantReadWriteLock();
+
+    /**
+     * Re-files an item in the status index whenever {@link MediaItem#setStatus} is called
+     * on it.
+     */
+    private final StatusChangeListener itemStatusChanged = (item, oldStatus, newStatus) -> indexStatus(item);
+
+    /**
+     * Case-insensitive name index over every member, kept current through renames.
+     */
+    private final MemberNameIndex memberNameIndex = new MemberNameIndex();
+
+    /**
+     * Guards {@link #memberNameIndex}.
+     */
+    private final ReadWriteLock memberNameLock = new ReentrantReadWriteLock();
+
+    /**
+     * Re-indexes a member whenever {@link Person#setName(String)} is called on them.
+     */
+    private final NameChangeListener memberRenamed = (person, oldName, newName) -> indexMember((Member) person);
+
+    /**
+     * The most recently published snapshot. Each mutation replaces it with a copy changed by
+     * compare-and-set, after changing the tables above and before releasing its locks, so
+     * the snapshots of one item or member are published in the order of its changes.
+     */
+    private final AtomicReference<LibrarySnapshot> snapshot = new AtomicReference<>(LibrarySnapshot.EMPTY);
+
+    /**
+     * Listeners notified of every mutation.
+     */
+    private final List<LibraryEventListener> eventListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * The first exception thrown by a listener. Once set, every mutation is refused, since
+     * a listener such as a write-ahead log must not fall behind the state it records.
+     */
+    private final AtomicReference<RuntimeException> listenerFailure = new AtomicReference<>();
+
+    /**
+     * Whether the current thread has published events whose listeners have not yet been
+     * told that the operation released its locks.
+     */
+    private final ThreadLocal<Boolean> eventsPending = ThreadLocal.withInitial(() -> false);
+
     /**
-     * All media items by ID.
+     * Sequence number of the most recently published or replayed event.
      */
-    private final Map<UUID, MediaItem> items = new HashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
 
     /**
-     * All loans by ID.
+     * Locks striped by media item ID.
      */
-    private final Map<UUID, Loan> loans = new HashMap<>();
+    private final LockStripes itemLocks;
 
     /**
-     * All members by ID.
+     * Locks striped by member ID; always acquired after any item lock.
      */
-    private final Map<UUID, Member> members = new HashMap<>();
+    private final LockStripes memberLocks;
 
     /**
-     * All reservations by ID.
+     * Source of today's date for loans, returns, reservations and overdue checks.
      */
-    private final Map<UUID, Deque<Reservation>> reservationsByMediaItem = new HashMap<>();
+    private final Clock clock;
 
     /**
      * Policy for calculating due dates.
@@ -50,17 +268,91 @@ public class Library {
     private final FinePolicy finePolicy;
 
     /**
-     * Constructs a Library aggregate with configured loan and fine policies.
+     * Assesses the fines accrued on outstanding loans.
+     */
+    private final FineEngine fineEngine;
+
+    /**
+     * Call counts and latencies of the public operations.
+     */
+    private final LibraryMetrics metrics;
+
+    /**
+     * Constructs a Library aggregate with configured loan and fine policies, intended for
+     * a single desk. Every item shares one lock and every member shares another.
      *
      * @param loanPolicy policy for calculating due dates; must not be null
      * @param finePolicy policy for calculating fines; must not be null
      */
     public Library(LoanPolicy loanPolicy, FinePolicy finePolicy) {
+        this(loanPolicy, finePolicy, 1);
+    }
+
+    /**
+     * Constructs a Library aggregate for use by several desks at once.
+     *
+     * @param loanPolicy policy for calculating due dates; must not be null
+     * @param finePolicy policy for calculating fines; must not be null
+     * @param lockStripes number of locks to stripe items and members across (e.g. a small
+     *                    multiple of the number of cores); must be positive
+     */
+    public Library(LoanPolicy loanPolicy, FinePolicy finePolicy, int lockStripes) {
+        this(loanPolicy, finePolicy, lockStripes, new InMemoryMetricsRegistry());
+    }
+
+    /**
+     * Constructs a Library aggregate for use by several desks at once that reports its
+     * metrics to the given registry.
+     * <p>
+     *     Every public operation records its calls, rejections and latency (see
+     *     {@link LibraryMetrics}), and the registry is given gauges for the number of items,
+     *     members, loans, open and archived loans and reservations, and for the reservation
+     *     waitlists.
+     * </p>
+     *
+     * @param loanPolicy policy for calculating due dates; must not be null
+     * @param finePolicy policy for calculating fines; must not be null
+     * @param lockStripes number of locks to stripe items and members across; must be positive
+     * @param metricsRegistry where to record metrics; must not be null
+     */
+    public Library(LoanPolicy loanPolicy, FinePolicy finePolicy, int lockStripes, MetricsRegistry metricsRegistry) {
+        this(loanPolicy, finePolicy, lockStripes, metricsRegistry, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Constructs a Library aggregate that takes today's date from the given clock rather
+     * than the system clock, e.g. to simulate years of circulation in minutes, or to test
+     * due dates and fines.
+     *
+     * @param loanPolicy policy for calculating due dates; must not be null
+     * @param finePolicy policy for calculating fines; must not be null
+     * @param lockStripes number of locks to stripe items and members across; must be positive
+     * @param metricsRegistry where to record metrics; must not be null
+     * @param clock the clock to read today's date from, in its time zone; must not be null
+     */
+    public Library(LoanPolicy loanPolicy, FinePolicy finePolicy, int lockStripes, MetricsRegistry metricsRegistry,
+                   Clock clock) {
         if (loanPolicy == null || finePolicy == null) {
             throw new ValidationException("Policies cannot be null");
         }
+        if (lockStripes <= 0) {
+            throw new ValidationException("Lock stripes must be positive");
+        }
+        if (metricsRegistry == null) {
+            throw new ValidationException("Metrics registry cannot be null");
+        }
+        if (clock == null) {
+            throw new ValidationException("Clock cannot be null");
+        }
+        this.clock = clock;
+        this.overdueScheduler = new OverdueScheduler(LocalDate.now(clock));
         this.loanPolicy = loanPolicy;
         this.finePolicy = finePolicy;
+        this.fineEngine = new FineEngine(finePolicy, ForkJoinPool.commonPool());
+        this.itemLocks = new LockStripes(lockStripes);
+        this.memberLocks = new LockStripes(lockStripes);
+        this.metrics = new LibraryMetrics(metricsRegistry);
+        registerGauges(metricsRegistry);
     }
 
     // ---------------------------------------- Items ----------------------------------------
@@ -71,10 +363,63 @@ public class Library {
      * @param item a non null {@link MediaItem}
      */
     public void addItem(MediaItem item) {
-        if (item == null) {
-            throw new ValidationException("Item cannot be null");
+        long start = System.nanoTime();
+        try {
+            requireWritable();
+            if (item == null) {
+                throw new ValidationException("Item cannot be null");
+            }
+            ReentrantLock itemLock = itemLocks.lock(item.getMediaId());
+            try {
+                applyItemAdded(item);
+                publish(new LibraryEvent.ItemAdded(item));
+            } finally {
+                itemLock.unlock();
+            }
+        } catch (ValidationException e) {
+            metrics.addItem.reject();
+            throw e;
+        } finally {
+            finishEvents();
+            metrics.addItem.record(start);
+        }
+    }
+
+    /**
+     * Adds a batch of media items, e.g. during a bulk import.
+     * <p>
+     *     Takes every item lock and the search index lock once for the whole batch instead
+     *     of once per item, so other item operations wait until the batch is in. Keep
+     *     batches to a few thousand items.
+     * </p>
+     *
+     * @param batch non null {@link MediaItem}s
+     */
+    public void addItems(Collection<? extends MediaItem> batch) {
+        long start = System.nanoTime();
+        try {
+            requireWritable();
+            if (batch == null || batch.stream().anyMatch(Objects::isNull)) {
+                throw new ValidationException("Items cannot be null");
+            }
+            itemLocks.lockAll();
+            mediaSearchLock.writeLock().lock();
+            try {
+                for (MediaItem item : batch) {
+                    applyItemAdded(item);
+                    publish(new LibraryEvent.ItemAdded(item));
+                }
+            } finally {
+                mediaSearchLock.writeLock().unlock();
+                itemLocks.unlockAll();
+            }
+        } catch (ValidationException e) {
+            metrics.addItems.reject();
+            throw e;
+        } finally {
+            finishEvents();
+            metrics.addItems.record(start);
         }
-        items.put(item.getMediaId(), item);
     }
 
     /**
@@ -83,15 +428,33 @@ public class Library {
      * @param mediaId the ID of the item to remove
      */
     public void removeItem(UUID mediaId) {
-        // Retrieves the item from items Map by its ID
-        MediaItem item = items.get(mediaId);
+        long start = System.nanoTime();
+        try {
+            requireWritable();
+            ReentrantLock itemLock = itemLocks.lock(mediaId);
+            try {
+                // Retrieves the item from items Map by its ID
+                MediaItem item = findItem(mediaId);
 
-        if (!item.isAvailable()) {
-            throw new ValidationException("Cannot remove: item is not available");
-        } else if (hasActiveReservation(mediaId)) {
-            throw new ValidationException("Cannot remove: item has active reservation");
+                if (item == null) {
+                    throw new ValidationException("Item not found.");
+                } else if (!item.isAvailable()) {
+                    throw new ValidationException("Cannot remove: item is not available");
+                } else if (hasActiveReservation(mediaId)) {
+                    throw new ValidationException("Cannot remove: item has active reservation");
+                }
+                applyItemRemoved(mediaId);
+                publish(new LibraryEvent.ItemRemoved(mediaId));
+            } finally {
+                itemLock.unlock();
+            }
+        } catch (ValidationException e) {
+            metrics.removeItem.reject();
+            throw e;
+        } finally {
+            finishEvents();
+            metrics.removeItem.record(start);
         }
-        items.remove(mediaId);
     }
 
     // ---------------------------------------- Members --------------------------------------
@@ -102,10 +465,62 @@ public class Library {
      * @param member a non null {@link Member}
      */
     public void addMember(Member member) {
-        if (member == null) {
-            throw new ValidationException("Member cannot be null");
+        long start = System.nanoTime();
+        try {
+            requireWritable();
+            if (member == null) {
+                throw new ValidationException("Member cannot be null");
+            }
+            ReentrantLock memberLock = memberLocks.lock(member.getId());
+            try {
+                applyMemberAdded(member);
+                publish(new LibraryEvent.MemberAdded(member));
+            } finally {
+                memberLock.unlock();
+            }
+        } catch (ValidationException e) {
+            metrics.addMember.reject();
+            throw e;
+        } finally {
+            finishEvents();
+            metrics.addMember.record(start);
+        }
+    }
+
+    /**
+     * Adds a batch of members, e.g. during a bulk import.
+     * <p>
+     *     Takes every member lock and the name index lock once for the whole batch instead
+     *     of once per member, so other member operations wait until the batch is in.
+     * </p>
+     *
+     * @param batch non null {@link Member}s
+     */
+    public void addMembers(Collection<? extends Member> batch) {
+        long start = System.nanoTime();
+        try {
+            requireWritable();
+            if (batch == null || batch.stream().anyMatch(Objects::isNull)) {
+                throw new ValidationException("Members cannot be null");
+            }
+            memberLocks.lockAll();
+            memberNameLock.writeLock().lock();
+            try {
+                for (Member member : batch) {
+                    applyMemberAdded(member);
+                    publish(new LibraryEvent.MemberAdded(member));
+                }
+            } finally {
+                memberNameLock.writeLock().unlock();
+                memberLocks.unlockAll();
+            }
+        } catch (ValidationException e) {
+            metrics.addMembers.reject();
+            throw e;
+        } finally {
+            finishEvents();
+            metrics.addMembers.record(start);
         }
-        members.put(member.getId(), member);
     }
 
     /**
@@ -114,13 +529,30 @@ public class Library {
      * @param memberId the ID of the member to remove
      */
     public void removeMember(UUID memberId) {
-        // Retrieves the member from members Map by their ID
-        Member member = members.get(memberId);
+        long start = System.nanoTime();
+        try {
+            requireWritable();
+            ReentrantLock memberLock = memberLocks.lock(memberId);
+            try {
+                // Retrieves the member from members Map by their ID
+                Member member = findMember(memberId);
 
-        if (memberHasOverdueLoans(memberId)) {
-            throw new ValidationException("Cannot remove: member has overdue loans");
+                if (memberHasOverdueLoans(memberId)) {
+                    throw new ValidationException("Cannot remove: member has overdue loans");
+                }
+                if (member == null) return;
+                applyMemberRemoved(memberId);
+                publish(new LibraryEvent.MemberRemoved(memberId));
+            } finally {
+                memberLock.unlock();
+            }
+        } catch (ValidationException e) {
+            metrics.removeMember.reject();
+            throw e;
+        } finally {
+            finishEvents();
+            metrics.removeMember.record(start);
         }
-        members.remove(memberId);
     }
 
     // ---------------------------------------- Loans ----------------------------------------
@@ -141,30 +573,52 @@ public class Library {
      * @return the created {@link Loan}
      */
     public Loan loanItem(UUID memberId, UUID mediaId) {
-        Member member = members.get(memberId);
-        MediaItem item = items.get(mediaId);
-
-        // Checks for invariant complicity
-        if (!member.isActiveMember()) {
-            throw new ValidationException("Cannot loan item while inactive member");
-        } else if (memberHasOverdueLoans(memberId)) {
-            throw new ValidationException("Cannot loan item with overdue loans");
-        } else if (!item.isAvailable()) {
-            throw new ValidationException("Item is not currently available");
-        }
+        long start = System.nanoTime();
+        try {
+            requireWritable();
+            ReentrantLock itemLock = itemLocks.lock(mediaId);
+            try {
+                ReentrantLock memberLock = memberLocks.lock(memberId);
+                try {
+                    Member member = findMember(memberId);
+                    MediaItem item = findItem(mediaId);
 
-        // Gets current date and calculates the loans due date
-        LocalDate loanDate = LocalDate.now();
-        LocalDate dueDate = loanPolicy.calculateDueDate(loanDate);
+                    // Checks for invariant complicity
+                    if (member == null) {
+                        throw new ValidationException("Member not found.");
+                    } else if (item == null) {
+                        throw new ValidationException("Item not found.");
+                    } else if (!member.isActiveMember()) {
+                        throw new ValidationException("Cannot loan item while inactive member");
+                    } else if (memberHasOverdueLoans(memberId)) {
+                        throw new ValidationException("Cannot loan item with overdue loans");
+                    } else if (!item.isAvailable()) {
+                        throw new ValidationException("Item is not currently available");
+                    }
 
-        // Creates new loan object and add to loans Map
-        Loan loan = new Loan(member.getId(), item.getMediaId(), loanDate, dueDate);
-        loans.put(loan.getLoanId(), loan);
+                    // Gets current date and calculates the loans due date
+                    LocalDate loanDate = today();
+                    LocalDate dueDate = loanPolicy.calculateDueDate(loanDate);
 
-        // Changes item state
-        item.setStatus(AvailabilityStatus.ON_LOAN);
+                    // Creates new loan object, adds it to loans Map and marks the item ON_LOAN
+                    Loan loan = new Loan(member.getId(), item.getMediaId(), loanDate, dueDate);
+                    applyLoan(loan);
+                    publish(new LibraryEvent.ItemLoaned(loan));
 
-        return loan;
+                    return loan;
+                } finally {
+                    memberLock.unlock();
+                }
+            } finally {
+                itemLock.unlock();
+            }
+        } catch (ValidationException e) {
+            metrics.loanItem.reject();
+            throw e;
+        } finally {
+            finishEvents();
+            metrics.loanItem.record(start);
+        }
     }
 
     /**
@@ -174,26 +628,165 @@ public class Library {
      * @return the returned {@link Loan}
      */
     public Loan returnItem(UUID mediaId) {
-        MediaItem item = items.get(mediaId);
-        Loan loan = findOpenLoanByMediaId(mediaId);
+        long start = System.nanoTime();
+        try {
+            requireWritable();
+            ReentrantLock itemLock = itemLocks.lock(mediaId);
+            try {
+                Loan loan = findOpenLoanByMediaId(mediaId);
 
-        // Gets current date and calculate any fine accrued
-        LocalDate returnDate = LocalDate.now();
-        int fine = finePolicy.calculateFine(loan.getDueDate(), returnDate);
+                // Gets current date and calculate any fine accrued
+                LocalDate returnDate = today();
+                int fine = finePolicy.calculateFine(loan.getDueDate(), returnDate);
 
-        // Records fine amount
-        loan.setFineAccrued(fine);
+                applyReturn(loan, returnDate, fine);
+                publish(new LibraryEvent.ItemReturned(loan.getLoanId(), returnDate, fine));
+                return loan;
+            } finally {
+                itemLock.unlock();
+            }
+        } catch (ValidationException e) {
+            metrics.returnItem.reject();
+            throw e;
+        } finally {
+            finishEvents();
+            metrics.returnItem.record(start);
+        }
+    }
 
-        // Changes loan status to RETURNED and record return date
-        loan.markReturned(returnDate);
+    /**
+     * Moves loans returned before the given date out of the loan table into the off-heap
+     * loan archive, so that the table only holds outstanding and recently returned loans.
+     * <p>
+     *     Archived loans still appear in {@link #loanHistoryOfMember}, {@link #loanHistoryOfItem}
+     *     and {@link #exportState}, but are no longer held as {@link Loan} objects. Each
+     *     archived loan is published as a {@link LibraryEvent.LoanArchived} event, so stores
+     *     and replicas archive it too. Visits every loan in the table; meant to be called
+     *     periodically, e.g. with a cutoff a fixed number of days before today.
+     * </p>
+     *
+     * @param returnedBefore loans returned before this date are archived
+     * @return the number of loans archived
+     */
+    public int archiveReturnedLoans(LocalDate returnedBefore) {
+        long start = System.nanoTime();
+        try {
+            requireWritable();
+            if (returnedBefore == null) {
+                throw new ValidationException("Cutoff date cannot be null");
+            }
+            int archived = 0;
+            archiveLock.writeLock().lock();
+            try {
+                for (Loan loan : loans) {
+                    if (loan.getStatus() != LoanStatus.RETURNED) continue;
+                    // The item lock makes the return that closed the loan visible in full
+                    ReentrantLock itemLock = itemLocks.lock(loan.getMediaId());
+                    try {
+                        if (!loan.getReturnDate().isBefore(returnedBefore)) continue;
+                        applyArchive(loan);
+                        publish(new LibraryEvent.LoanArchived(loan));
+                        archived++;
+                    } finally {
+                        itemLock.unlock();
+                    }
+                }
+            } finally {
+                archiveLock.writeLock().unlock();
+            }
+            return archived;
+        } catch (ValidationException e) {
+            metrics.archiveReturnedLoans.reject();
+            throw e;
+        } finally {
+            finishEvents();
+            metrics.archiveReturnedLoans.record(start);
+        }
+    }
 
-        // Updates item status to RESERVED if it has a reservation; else AVAILABLE
-        if (hasActiveReservation(mediaId)) {
-            item.setStatus(AvailabilityStatus.RESERVED);
-        } else {
-            item.setStatus(AvailabilityStatus.AVAILABLE);
+    /**
+     * Lists every loan a member has ever made, from both the loan table and the archive.
+     * <p>
+     *     Costs time in proportion to the number of loans in the table plus the member's
+     *     archived loans. Archived loans are returned as detached copies.
+     * </p>
+     *
+     * @param memberId the ID of the member
+     * @return the member's loans, most recent loan date first; empty if there are none
+     */
+    public List<Loan> loanHistoryOfMember(UUID memberId) {
+        long start = System.nanoTime();
+        try {
+            if (memberId == null) {
+                throw new ValidationException("Member ID cannot be null");
+            }
+            List<Loan> history = new ArrayList<>();
+            archiveLock.readLock().lock();
+            try {
+                for (Loan loan : loans) {
+                    if (memberId.equals(loan.getMemberId())) history.add(loan);
+                }
+                loanArchive.forEachOfMember(memberIds.get(memberId), history::add);
+            } finally {
+                archiveLock.readLock().unlock();
+            }
+            history.sort(MOST_RECENT_FIRST);
+            return history;
+        } catch (ValidationException e) {
+            metrics.loanHistory.reject();
+            throw e;
+        } finally {
+            metrics.loanHistory.record(start);
+        }
+    }
+
+    /**
+     * Lists every loan of a media item, from both the loan table and the archive. Costs
+     * time like {@link #loanHistoryOfMember}.
+     *
+     * @param mediaId the ID of the item
+     * @return the item's loans, most recent loan date first; empty if there are none
+     */
+    public List<Loan> loanHistoryOfItem(UUID mediaId) {
+        long start = System.nanoTime();
+        try {
+            if (mediaId == null) {
+                throw new ValidationException("Media ID cannot be null");
+            }
+            List<Loan> history = new ArrayList<>();
+            archiveLock.readLock().lock();
+            try {
+                for (Loan loan : loans) {
+                    if (mediaId.equals(loan.getMediaId())) history.add(loan);
+                }
+                loanArchive.forEachOfItem(itemIds.get(mediaId), history::add);
+            } finally {
+                archiveLock.readLock().unlock();
+            }
+            history.sort(MOST_RECENT_FIRST);
+            return history;
+        } catch (ValidationException e) {
+            metrics.loanHistory.reject();
+            throw e;
+        } finally {
+            metrics.loanHistory.record(start);
+        }
+    }
+
+    /**
+     * Checks whether a member has an outstanding loan past its due date, e.g. for a
+     * coordinator that spreads one member's loans over several libraries.
+     *
+     * @param memberId the ID of the member; may be null
+     * @return {@code true} if the member has an overdue loan in this library
+     */
+    public boolean hasOverdueLoans(UUID memberId) {
+        ReentrantLock memberLock = memberLocks.lock(memberId);
+        try {
+            return memberHasOverdueLoans(memberId);
+        } finally {
+            memberLock.unlock();
         }
-        return loan;
     }
 
     // ---------------------------------------- Reservations ---------------------------------
@@ -206,149 +799,1309 @@ public class Library {
      * @return the successfully placed {@link Reservation}
      */
     public Reservation placeReservation(UUID memberId, UUID mediaId) {
-        Member member = members.get(memberId);
+        long start = System.nanoTime();
+        try {
+            requireWritable();
+            ReentrantLock itemLock = itemLocks.lock(mediaId);
+            try {
+                ReentrantLock memberLock = memberLocks.lock(memberId);
+                try {
+                    Member member = findMember(memberId);
 
-        if (member == null) {
-            throw new ValidationException("Member not found.");
-        }
-
-        if (!member.isActiveMember()) {
-            throw new ValidationException("Inactive members cannot reserve items.");
-        }
-
-        // Gets queue of reservations for given mediaId
-        Deque<Reservation> reservations = reservationsByMediaItem.computeIfAbsent(mediaId,
-                id -> new ArrayDeque<>());
-        Reservation r = new Reservation(memberId, mediaId, LocalDate.now());
-        reservations.addLast(r);
-        return r;
-    }
+                    if (member == null) {
+                        throw new ValidationException("Member not found.");
+                    }
 
+                    if (findItem(mediaId) == null) {
+                        throw new ValidationException("Item not found.");
+                    }
 
-    public boolean fulfillReservation(UUID mediaId) {
-        MediaItem item = items.get(mediaId);
-        if (item == null) throw new ValidationException("Item not found.");
+                    if (!member.isActiveMember()) {
+                        throw new ValidationException("Inactive members cannot reserve items.");
+                    }
 
-        if(fulfillNextReservation(mediaId)) {
-            item.setStatus(AvailabilityStatus.RESERVED);
-            return true;
+                    // Adds the reservation to the back of the item's queue
+                    Reservation r = new Reservation(memberId, mediaId, today());
+                    applyReservation(r);
+                    publish(new LibraryEvent.ReservationPlaced(r));
+                    return r;
+                } finally {
+                    memberLock.unlock();
+                }
+            } finally {
+                itemLock.unlock();
+            }
+        } catch (ValidationException e) {
+            metrics.placeReservation.reject();
+            throw e;
+        } finally {
+            finishEvents();
+            metrics.placeReservation.record(start);
         }
-        return false;
-    }
-
-    // ---------------------------------------- Lookups and Listings -------------------------
-
-    public List<MediaItem> listItems() {
-        return new ArrayList<>(items.values());
     }
 
-    public List<Member> listMembers() {
-        return new ArrayList<>(members.values());
-    }
-
-    public List<MediaItem> searchMedia(String keyword) {
-        if (keyword == null) keyword = "";
-        String q = keyword.toLowerCase();
-        List<MediaItem> results = new ArrayList<>();
-        for (MediaItem item : items.values()) {
-            String title = item.getTitle() == null ? "" : item.getTitle().toLowerCase();
 
-            String author = "";
-            if (item instanceof Book book) {
-                author = (book.getAuthor() == null) ? "" : book.getAuthor().toLowerCase();
-            }
+    /**
+     * Cancels an ACTIVE reservation, removing it from its item's waitlist.
+     *
+     * @param reservationId the ID of the reservation to cancel
+     * @return {@code true} if the reservation was cancelled, {@code false} if it was no longer ACTIVE
+     */
+    public boolean cancelReservation(UUID reservationId) {
+        long start = System.nanoTime();
+        try {
+            requireWritable();
+            Reservation reservation = reservations.get(reservationIds.get(reservationId));
+            if (reservation == null) throw new ValidationException("Reservation not found.");
 
-            if (title.contains(q) || author.contains(q)) {
-                results.add(item);
+            ReentrantLock itemLock = itemLocks.lock(reservation.getMediaId());
+            try {
+                if (!applyCancellation(reservation)) return false;
+                publish(new LibraryEvent.ReservationCancelled(reservationId));
+                return true;
+            } finally {
+                itemLock.unlock();
             }
+        } catch (ValidationException e) {
+            metrics.cancelReservation.reject();
+            throw e;
+        } finally {
+            finishEvents();
+            metrics.cancelReservation.record(start);
         }
-        results.sort(Comparator.comparing(
-                m -> m.getTitle() == null ? "" : m.getTitle(),
-                String.CASE_INSENSITIVE_ORDER
-        ));
-        return results;
     }
 
-    public List<Member> searchMembers(String keyword) {
-        if (keyword == null) keyword = "";
-        String q = keyword.toLowerCase();
-        List<Member> results = new ArrayList<>();
-        for (Member member : members.values()) {
-            String name = member.getName() == null ? "" : member.getName().toLowerCase();
+    /**
+     * Fulfils the oldest ACTIVE reservation on an item and holds the item for it.
+     *
+     * @param mediaId the ID of the reserved item
+     * @return {@code true} if a reservation was fulfilled, {@code false} if none were ACTIVE
+     */
+    public boolean fulfillReservation(UUID mediaId) {
+        long start = System.nanoTime();
+        try {
+            requireWritable();
+            ReentrantLock itemLock = itemLocks.lock(mediaId);
+            try {
+                MediaItem item = findItem(mediaId);
+                if (item == null) throw new ValidationException("Item not found.");
 
-            if (name.contains(q)) {
-                results.add(member);
+                if(applyFulfilment(item)) {
+                    publish(new LibraryEvent.ReservationFulfilled(mediaId));
+                    return true;
+                }
+                return false;
+            } finally {
+                itemLock.unlock();
             }
+        } catch (ValidationException e) {
+            metrics.fulfillReservation.reject();
+            throw e;
+        } finally {
+            finishEvents();
+            metrics.fulfillReservation.record(start);
         }
-        results.sort(Comparator.comparing(
-                m -> m.getName() == null ? "" : m.getName(),
-                String.CASE_INSENSITIVE_ORDER)
-        );
-        return results;
     }
 
-    // ---------------------------------------- Internals ------------------------------------
+    // ---------------------------------------- Events and Replay ----------------------------
 
     /**
-     * Checks if an active reservation currently exists on a given media item.
+     * Registers a listener to be notified of every subsequent mutation.
      *
-     * @param mediaId the ID of the item being checked for an active reservation
-     * @return {@code true} if an active reservation exists, {@code false} if no active reservation
+     * @param listener the listener to add
      */
-    private boolean hasActiveReservation(UUID mediaId) {
-        Deque<Reservation> reservations = reservationsByMediaItem.get(mediaId);
-        if (reservations == null || reservations.isEmpty()) return false;
-        for (Reservation reservation : reservations) {
-            if (reservation.getStatus() == ReservationStatus.ACTIVE) return true;
+    public void addEventListener(LibraryEventListener listener) {
+        if (listener == null) {
+            throw new ValidationException("Listener cannot be null");
         }
-        return false;
+        eventListeners.add(listener);
     }
 
     /**
-     * Looks for and returns any outstanding loans for a given media item.
+     * Stops notifying a previously registered listener.
      *
-     * @param mediaId the ID of the item being checked for outstanding loans
-     * @return the outstanding loan if it exists, else returns a ValidationException message
+     * @param listener the listener to remove
      */
-    private Loan findOpenLoanByMediaId(UUID mediaId) {
-        for (Loan loan : loans.values()) {
-            if (loan.getMediaId().equals(mediaId) && loan.getStatus() == LoanStatus.OUTSTANDING) {
-                return loan;
-            }
-        }
-        throw new ValidationException("No open loan found for mediaId: " + mediaId);
+    public void removeEventListener(LibraryEventListener listener) {
+        eventListeners.remove(listener);
     }
 
-    private boolean memberHasOverdueLoans (UUID memberId) {
-        LocalDate date = LocalDate.now();
+    /**
+     * Reports why the library stopped accepting changes. Once an event listener throws,
+     * the change that raised the event stays applied but every later mutation fails with
+     * an {@link IllegalStateException}; the library has to be rebuilt, e.g. recovered from
+     * its store.
+     *
+     * @return the first exception thrown by an event listener, or {@code null} if none has failed
+     */
+    public RuntimeException listenerFailure() {
+        return listenerFailure.get();
+    }
 
-        for  (Loan loan : loans.values()) {
-            if (loan.getMemberId().equals(memberId)
-                    && loan.getStatus() == LoanStatus.OUTSTANDING
-                    && loan.getDueDate().isBefore(date)) {
-                return true;
-            }
-        }
-        return false;
+    /** @return the sequence number of the most recently published or replayed event */
+    public long currentSequence() {
+        return sequence.get();
     }
 
     /**
-     * Finds and fulfills the next reservation on a media item if one exists.
+     * Moves the sequence number forward after restoring a snapshot, so that events published
+     * afterwards are numbered after every event the snapshot reflects.
      *
-     * @param mediaId the ID of the item being checked for the next active reservation
-     * @return {@code true} if active reservation was found and fulfilled, else returns {@code false}
+     * @param sequence the sequence number the restored state corresponds to
      */
-    private boolean fulfillNextReservation(UUID mediaId) {
-        Deque<Reservation> reservations = reservationsByMediaItem.get(mediaId);
-
-        if (reservations == null) return false;
+    public void restoreSequence(long sequence) {
+        this.sequence.accumulateAndGet(sequence, Math::max);
+    }
 
-        for (Reservation reservation : reservations) {
-            if (reservation.getStatus() == ReservationStatus.ACTIVE) {
-                reservation.fulfil();
-                return true;
-            }
-        }
-        return false;
+    /**
+     * Re-applies a previously published event, e.g. while recovering from a log.
+     * <p>
+     *     Business rules are not re-checked and listeners are not notified; the event is
+     *     assumed to have been valid when it was first published. Events affecting the
+     *     same item or member must be replayed in their original order.
+     * </p>
+     *
+     * @param sequence the event's original sequence number
+     * @param event the event to apply
+     */
+    public void replay(long sequence, LibraryEvent event) {
+        long start = System.nanoTime();
+        try {
+            switch (event) {
+                case LibraryEvent.ItemAdded e -> {
+                    ReentrantLock itemLock = itemLocks.lock(e.item().getMediaId());
+                    try {
+                        applyItemAdded(e.item());
+                    } finally {
+                        itemLock.unlock();
+                    }
+                }
+                case LibraryEvent.ItemRemoved e -> {
+                    ReentrantLock itemLock = itemLocks.lock(e.mediaId());
+                    try {
+                        applyItemRemoved(e.mediaId());
+                    } finally {
+                        itemLock.unlock();
+                    }
+                }
+                case LibraryEvent.MemberAdded e -> {
+                    ReentrantLock memberLock = memberLocks.lock(e.member().getId());
+                    try {
+                        applyMemberAdded(e.member());
+                    } finally {
+                        memberLock.unlock();
+                    }
+                }
+                case LibraryEvent.MemberRemoved e -> {
+                    ReentrantLock memberLock = memberLocks.lock(e.memberId());
+                    try {
+                        applyMemberRemoved(e.memberId());
+                    } finally {
+                        memberLock.unlock();
+                    }
+                }
+                case LibraryEvent.ItemLoaned e -> {
+                    ReentrantLock itemLock = itemLocks.lock(e.loan().getMediaId());
+                    try {
+                        ReentrantLock memberLock = memberLocks.lock(e.loan().getMemberId());
+                        try {
+                            applyLoan(e.loan());
+                        } finally {
+                            memberLock.unlock();
+                        }
+                    } finally {
+                        itemLock.unlock();
+                    }
+                }
+                case LibraryEvent.ItemReturned e -> {
+                    Loan loan = requireLoan(e.loanId());
+                    ReentrantLock itemLock = itemLocks.lock(loan.getMediaId());
+                    try {
+                        applyReturn(loan, e.returnDate(), e.fine());
+                    } finally {
+                        itemLock.unlock();
+                    }
+                }
+                case LibraryEvent.LoanArchived e -> {
+                    archiveLock.writeLock().lock();
+                    try {
+                        ReentrantLock itemLock = itemLocks.lock(e.loan().getMediaId());
+                        try {
+                            applyArchive(e.loan());
+                        } finally {
+                            itemLock.unlock();
+                        }
+                    } finally {
+                        archiveLock.writeLock().unlock();
+                    }
+                }
+                case LibraryEvent.ReservationPlaced e -> {
+                    ReentrantLock itemLock = itemLocks.lock(e.reservation().getMediaId());
+                    try {
+                        applyReservation(e.reservation());
+                    } finally {
+                        itemLock.unlock();
+                    }
+                }
+                case LibraryEvent.ReservationFulfilled e -> {
+                    ReentrantLock itemLock = itemLocks.lock(e.mediaId());
+                    try {
+                        MediaItem item = findItem(e.mediaId());
+                        if (item != null) applyFulfilment(item);
+                    } finally {
+                        itemLock.unlock();
+                    }
+                }
+                case LibraryEvent.ReservationCancelled e -> {
+                    Reservation reservation = reservations.get(reservationIds.get(e.reservationId()));
+                    if (reservation == null) {
+                        throw new IllegalStateException("Cannot replay: unknown reservation " + e.reservationId());
+                    }
+                    ReentrantLock itemLock = itemLocks.lock(reservation.getMediaId());
+                    try {
+                        applyCancellation(reservation);
+                    } finally {
+                        itemLock.unlock();
+                    }
+                }
+            }
+            this.sequence.accumulateAndGet(sequence, Math::max);
+        } finally {
+            metrics.replay.record(start);
+        }
+    }
+
+    /**
+     * Streams the library's entire state, as the events that would rebuild it when replayed
+     * into an empty library, to a sink.
+     * <p>
+     *     Holds every lock until the sink has seen every event, so the state is consistent
+     *     and includes exactly the events up to the returned sequence number. Entities passed
+     *     to the sink must be copied or serialised before it returns.
+     * </p>
+     *
+     * @param sink receives the events in replay order
+     * @return the sequence number of the last event reflected in the state
+     */
+    public long exportState(Consumer<LibraryEvent> sink) {
+        long start = System.nanoTime();
+        try {
+            archiveLock.readLock().lock();
+            itemLocks.lockAll();
+            memberLocks.lockAll();
+            try {
+                items.forEach(item -> sink.accept(new LibraryEvent.ItemAdded(item)));
+                members.forEach(member -> sink.accept(new LibraryEvent.MemberAdded(member)));
+                loanArchive.forEach(loan -> sink.accept(new LibraryEvent.LoanArchived(loan)));
+                loans.forEach(loan -> sink.accept(new LibraryEvent.ItemLoaned(loan)));
+                // Finished reservations first, then each waitlist in order so it is rebuilt FIFO
+                reservations.forEach(reservation -> {
+                    if (reservation.getStatus() != ReservationStatus.ACTIVE) {
+                        sink.accept(new LibraryEvent.ReservationPlaced(reservation));
+                    }
+                });
+                reservationsByItem.forEach(queue -> {
+                    for (Reservation reservation : queue.active()) {
+                        sink.accept(new LibraryEvent.ReservationPlaced(reservation));
+                    }
+                });
+                return sequence.get();
+            } finally {
+                memberLocks.unlockAll();
+                itemLocks.unlockAll();
+                archiveLock.readLock().unlock();
+            }
+        } finally {
+            metrics.exportState.record(start);
+        }
+    }
+
+    // ---------------------------------------- Overdue Notices ------------------------------
+
+    /**
+     * Advances the overdue clock to the given date and collects the outstanding loans that
+     * have become overdue since it was last advanced, e.g. to send nightly overdue notices.
+     * <p>
+     *     Runs in time proportional to the number of loans reported, not to the total number
+     *     of loans. Each loan is reported at most once.
+     * </p>
+     *
+     * @param today the current date
+     * @return the loans that became overdue since the previous call, earliest due date first
+     */
+    public List<Loan> collectNewlyOverdueLoans(LocalDate today) {
+        long start = System.nanoTime();
+        try {
+            if (today == null) {
+                throw new ValidationException("Date cannot be null");
+            }
+            return overdueScheduler.advanceTo(today);
+        } catch (ValidationException e) {
+            metrics.collectNewlyOverdueLoans.reject();
+            throw e;
+        } finally {
+            metrics.collectNewlyOverdueLoans.record(start);
+        }
+    }
+
+    /**
+     * Assesses the fines accrued up to the given date on every outstanding loan, e.g. to
+     * show what each member owes right now.
+     * <p>
+     *     Fines are calculated in parallel and incrementally: a repeat assessment only
+     *     calculates the fines of loans that have become overdue since, unless the date has
+     *     changed, and never calculates loans that are not yet due (see {@link FineEngine}).
+     *     Nothing is charged; fines are still recorded when items are returned.
+     * </p>
+     *
+     * @param today the date to accrue fines to
+     * @return the fines owed, in total and by member
+     */
+    public FineAssessment assessFines(LocalDate today) {
+        long start = System.nanoTime();
+        try {
+            if (today == null) {
+                throw new ValidationException("Date cannot be null");
+            }
+            return fineEngine.assess(openLoansByItem, today);
+        } catch (ValidationException e) {
+            metrics.assessFines.reject();
+            throw e;
+        } finally {
+            metrics.assessFines.record(start);
+        }
+    }
+
+    // ---------------------------------------- Lookups and Listings -------------------------
+
+    /**
+     * Takes a point-in-time view of which items, members and outstanding loans exist and
+     * of every item's status, e.g. for a report that must see every status as of one moment.
+     * <p>
+     *     Takes no lock and copies nothing: it returns the snapshot published by the most
+     *     recent change. Later changes do not alter that set or those statuses, but the
+     *     entities in it are the library's own; see {@link LibrarySnapshot} for which of
+     *     their fields read current values.
+     * </p>
+     *
+     * @return the current snapshot
+     */
+    public LibrarySnapshot snapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Copies every media item into a list, ordered by ID. Prefer {@link #listItems(Class,
+     * AvailabilityStatus, UUID, int)} or {@link #streamItems} for large catalogues.
+     *
+     * @return every media item
+     */
+    public List<MediaItem> listItems() {
+        long start = System.nanoTime();
+        try {
+            return new ArrayList<>(itemsInIdOrder.values());
+        } finally {
+            metrics.listItems.record(start);
+        }
+    }
+
+    /**
+     * Copies every member into a list, ordered by ID. Prefer {@link #listMembers(UUID, int)}
+     * or {@link #streamMembers} for large member lists.
+     *
+     * @return every member
+     */
+    public List<Member> listMembers() {
+        long start = System.nanoTime();
+        try {
+            return new ArrayList<>(membersInIdOrder.values());
+        } finally {
+            metrics.listMembers.record(start);
+        }
+    }
+
+    /**
+     * Lists one page of media items in ID order, optionally only those of one type or status.
+     * <p>
+     *     Pages are read straight from an ID-ordered view of the items, so each page costs
+     *     time and memory in proportion to its size (plus any items skipped by the filters)
+     *     however large the catalogue is. Items added or removed between pages appear or not
+     *     according to where their ID falls relative to the cursor.
+     * </p>
+     *
+     * @param type the type of item to list, e.g. {@code Book.class}; {@code MediaItem.class}
+     *             lists every type
+     * @param status the status items must have, or null for any status
+     * @param after the cursor from the previous page, or null to start from the beginning
+     * @param pageSize the maximum number of items on the page; must be positive
+     * @param <T> the type of item listed
+     * @return the page of items
+     */
+    public <T extends MediaItem> Page<T> listItems(Class<T> type, AvailabilityStatus status, UUID after,
+                                                   int pageSize) {
+        long start = System.nanoTime();
+        try {
+            if (type == null) {
+                throw new ValidationException("Type cannot be null");
+            } else if (pageSize <= 0) {
+                throw new ValidationException("Page size must be positive");
+            }
+            Collection<MediaItem> remaining = after == null
+                    ? itemsInIdOrder.values()
+                    : itemsInIdOrder.tailMap(after, false).values();
+            return page(remaining.stream()
+                    .filter(item -> type.isInstance(item) && (status == null || item.getStatus() == status))
+                    .map(type::cast), pageSize, MediaItem::getMediaId);
+        } catch (ValidationException e) {
+            metrics.listItems.reject();
+            throw e;
+        } finally {
+            metrics.listItems.record(start);
+        }
+    }
+
+    /**
+     * Lists one page of members in ID order. Costs time and memory in proportion to the page
+     * size, however many members there are.
+     *
+     * @param after the cursor from the previous page, or null to start from the beginning
+     * @param pageSize the maximum number of members on the page; must be positive
+     * @return the page of members
+     */
+    public Page<Member> listMembers(UUID after, int pageSize) {
+        long start = System.nanoTime();
+        try {
+            if (pageSize <= 0) {
+                throw new ValidationException("Page size must be positive");
+            }
+            Collection<Member> remaining = after == null
+                    ? membersInIdOrder.values()
+                    : membersInIdOrder.tailMap(after, false).values();
+            return page(remaining.stream(), pageSize, Member::getId);
+        } catch (ValidationException e) {
+            metrics.listMembers.reject();
+            throw e;
+        } finally {
+            metrics.listMembers.record(start);
+        }
+    }
+
+    /**
+     * Streams media items lazily in ID order, optionally only those of one type or status.
+     * <p>
+     *     Nothing is copied up front, and the stream is weakly consistent: it never fails
+     *     because of concurrent changes, and reflects some, all or none of the changes made
+     *     while it is being consumed.
+     * </p>
+     *
+     * @param type the type of item to stream; {@code MediaItem.class} streams every type
+     * @param status the status items must have, or null for any status
+     * @param <T> the type of item streamed
+     * @return the matching items
+     */
+    public <T extends MediaItem> Stream<T> streamItems(Class<T> type, AvailabilityStatus status) {
+        if (type == null) {
+            throw new ValidationException("Type cannot be null");
+        }
+        return itemsInIdOrder.values().stream()
+                .filter(item -> type.isInstance(item) && (status == null || item.getStatus() == status))
+                .map(type::cast);
+    }
+
+    /**
+     * Streams members lazily in ID order. Weakly consistent, like {@link #streamItems}.
+     *
+     * @return every member
+     */
+    public Stream<Member> streamMembers() {
+        return membersInIdOrder.values().stream();
+    }
+
+    /**
+     * Finds media items whose title, author or publisher contains the keyword, ignoring case.
+     *
+     * @param keyword the text to search for; null matches every item
+     * @return the matching items sorted by title
+     */
+    public List<MediaItem> searchMedia(String keyword) {
+        return searchMedia(keyword, null);
+    }
+
+    /**
+     * Finds media items whose title, author or publisher contains the keyword, ignoring
+     * case, and that are in the given status, e.g. only items that can be borrowed now.
+     *
+     * @param keyword the text to search for; null matches every item
+     * @param status the status items must have, or null for any status
+     * @return the matching items sorted by title
+     */
+    public List<MediaItem> searchMedia(String keyword, AvailabilityStatus status) {
+        long start = System.nanoTime();
+        try {
+            List<UUID> matches;
+            mediaSearchLock.readLock().lock();
+            try {
+                matches = mediaSearchIndex.search(keyword);
+            } finally {
+                mediaSearchLock.readLock().unlock();
+            }
+            List<MediaItem> results = new ArrayList<>(matches.size());
+            for (UUID mediaId : matches) {
+                MediaItem item = findItem(mediaId);
+                if (item != null && (status == null || item.getStatus() == status)) results.add(item);
+            }
+            results.sort(Comparator.comparing(
+                    m -> m.getTitle() == null ? "" : m.getTitle(),
+                    String.CASE_INSENSITIVE_ORDER
+            ));
+            return results;
+        } finally {
+            metrics.searchMedia.record(start);
+        }
+    }
+
+    /**
+     * Browses media items by category, e.g. every available fantasy or science fiction item.
+     * <p>
+     *     Answered from a bitmap index over the categories items had when they were added,
+     *     intersected with a bitmap of the items in the requested status, so its cost grows
+     *     with the number of matching items rather than the size of the catalogue.
+     * </p>
+     *
+     * @param query the categories to match
+     * @param status the status items must have, or null for any status
+     * @param limit the maximum number of items to return; must not be negative
+     * @return the number of matching items, up to {@code limit} of them, and how many of
+     *         them are in each category
+     */
+    public CategoryBrowse browseCategories(CategoryQuery query, AvailabilityStatus status, int limit) {
+        long start = System.nanoTime();
+        try {
+            if (query == null) {
+                throw new ValidationException("Query cannot be null");
+            } else if (limit < 0) {
+                throw new ValidationException("Limit cannot be negative");
+            }
+            mediaSearchLock.readLock().lock();
+            try {
+                CompressedBitmap matches = categoryIndex.match(query);
+                if (status != null) {
+                    statusLock.readLock().lock();
+                    try {
+                        matches = matches.and(statusIndex.ordinals(status));
+                    } finally {
+                        statusLock.readLock().unlock();
+                    }
+                }
+                List<MediaItem> page = new ArrayList<>(Math.min(limit, 1024));
+                matches.forEach(ordinal -> {
+                    if (page.size() == limit) return false;
+                    MediaItem item = items.get(ordinal);
+                    if (item != null) page.add(item);
+                    return true;
+                });
+                return new CategoryBrowse(matches.cardinality(), page, categoryIndex.counts(matches));
+            } finally {
+                mediaSearchLock.readLock().unlock();
+            }
+        } catch (ValidationException e) {
+            metrics.browseCategories.reject();
+            throw e;
+        } finally {
+            metrics.browseCategories.record(start);
+        }
+    }
+
+    /**
+     * Counts the media items in an availability status, in constant time and without
+     * locking, from the current {@link #snapshot()}.
+     *
+     * @param status the status to count
+     * @return the number of items currently in that status
+     */
+    public int countItems(AvailabilityStatus status) {
+        if (status == null) {
+            throw new ValidationException("Status cannot be null");
+        }
+        return snapshot.get().countItems(status);
+    }
+
+    /**
+     * Finds media items in an availability status, e.g. everything that can be borrowed
+     * right now, visiting only items in that status.
+     *
+     * @param status the status to look for
+     * @param limit the maximum number of items to return; must not be negative
+     * @return up to {@code limit} items in that status, in a stable order
+     */
+    public List<MediaItem> findItemsByStatus(AvailabilityStatus status, int limit) {
+        long start = System.nanoTime();
+        try {
+            if (status == null) {
+                throw new ValidationException("Status cannot be null");
+            } else if (limit < 0) {
+                throw new ValidationException("Limit cannot be negative");
+            }
+            List<MediaItem> found = new ArrayList<>(Math.min(limit, 1024));
+            mediaSearchLock.readLock().lock();
+            statusLock.readLock().lock();
+            try {
+                statusIndex.ordinals(status).forEach(ordinal -> {
+                    if (found.size() == limit) return false;
+                    MediaItem item = items.get(ordinal);
+                    if (item != null) found.add(item);
+                    return true;
+                });
+            } finally {
+                statusLock.readLock().unlock();
+                mediaSearchLock.readLock().unlock();
+            }
+            return found;
+        } catch (ValidationException e) {
+            metrics.findItemsByStatus.reject();
+            throw e;
+        } finally {
+            metrics.findItemsByStatus.record(start);
+        }
+    }
+
+    /**
+     * Finds members whose name contains the keyword, ignoring case.
+     *
+     * @param keyword the text to search for; null matches every member
+     * @return the matching members sorted by name
+     */
+    public List<Member> searchMembers(String keyword) {
+        long start = System.nanoTime();
+        try {
+            memberNameLock.readLock().lock();
+            try {
+                return memberNameIndex.bySubstring(keyword);
+            } finally {
+                memberNameLock.readLock().unlock();
+            }
+        } finally {
+            metrics.searchMembers.record(start);
+        }
+    }
+
+    /**
+     * Finds members whose name starts with the prefix, ignoring case.
+     *
+     * @param prefix the start of the name to search for; null matches every member
+     * @return the matching members sorted by name
+     */
+    public List<Member> searchMembersByPrefix(String prefix) {
+        long start = System.nanoTime();
+        try {
+            memberNameLock.readLock().lock();
+            try {
+                return memberNameIndex.byPrefix(prefix);
+            } finally {
+                memberNameLock.readLock().unlock();
+            }
+        } finally {
+            metrics.searchMembersByPrefix.record(start);
+        }
+    }
+
+    // ---------------------------------------- Consistency ----------------------------------
+
+    /**
+     * Verifies that the secondary indexes agree with the primary loan Map.
+     * <p>
+     *     Every OUTSTANDING loan must be indexed under its media ID and its member ID, every
+     *     indexed loan must be present in the loans Map and still OUTSTANDING, and an item
+     *     must be ON_LOAN exactly when it has an outstanding loan. Every item must also be
+     *     filed under its current status in the status index, and the current snapshot must
+     *     hold the same items, statuses and outstanding loans. Intended for tests and
+     *     diagnostics; holds every lock and runs in time proportional to the total number
+     *     of loans and items.
+     * </p>
+     *
+     * @throws IllegalStateException describing the first inconsistency found
+     */
+    public void verifyIndexes() {
+        itemLocks.lockAll();
+        memberLocks.lockAll();
+        try {
+            verifyLoanIndexes();
+            verifyStatusIndex();
+        } finally {
+            memberLocks.unlockAll();
+            itemLocks.unlockAll();
+        }
+    }
+
+    // ---------------------------------------- Internals ------------------------------------
+
+    /**
+     * Notifies listeners of a mutation. Called while the mutated entities are still locked.
+     * If a listener throws, the rest are still notified, then the library stops accepting
+     * changes and the first exception is rethrown.
+     *
+     * @param event the change that was made
+     */
+    private void publish(LibraryEvent event) {
+        long seq = sequence.incrementAndGet();
+        eventsPending.set(true);
+        RuntimeException failure = null;
+        for (LibraryEventListener listener : eventListeners) {
+            // Every listener sees the event even if an earlier one failed
+            try {
+                listener.onEvent(seq, event);
+            } catch (RuntimeException e) {
+                if (failure == null) failure = e; else failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) {
+            listenerFailure.compareAndSet(null, failure);
+            throw failure;
+        }
+    }
+
+    /**
+     * Calls {@link LibraryEventListener#afterEvents} if this thread published anything.
+     * Called by every mutation once it has released its locks.
+     */
+    private void finishEvents() {
+        if (!eventsPending.get()) return;
+        eventsPending.set(false);
+        RuntimeException failure = null;
+        for (LibraryEventListener listener : eventListeners) {
+            try {
+                listener.afterEvents();
+            } catch (RuntimeException e) {
+                if (failure == null) failure = e; else failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) {
+            listenerFailure.compareAndSet(null, failure);
+            throw failure;
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if a listener has failed, so the library no longer accepts changes
+     */
+    private void requireWritable() {
+        RuntimeException failure = listenerFailure.get();
+        if (failure != null) {
+            throw new IllegalStateException("Library stopped accepting changes after an event listener failed", failure);
+        }
+    }
+
+    /**
+     * Reports the sizes of the collections to a metrics registry. The sizes are read without
+     * locking, and the waitlist gauges visit every waitlist each time they are read.
+     * <p>
+     *     Called from the constructor, so the gauges capture the collections rather than
+     *     {@code this}: the library is not published half-built, and the registry does not
+     *     keep the library itself reachable.
+     * </p>
+     */
+    private void registerGauges(MetricsRegistry registry) {
+        registry.gauge("library.items", items::size);
+        registry.gauge("library.members", members::size);
+        AtomicReference<LibrarySnapshot> published = snapshot;
+        for (AvailabilityStatus status : AvailabilityStatus.values()) {
+            registry.gauge("library.items." + status.name().toLowerCase(Locale.ROOT),
+                    () -> published.get().countItems(status));
+        }
+        registry.gauge("library.loans", loans::size);
+        registry.gauge("library.loans.open", openLoansByItem::size);
+        registry.gauge("library.loans.archived", loanArchive::size);
+        registry.gauge("library.loans.archive.bytes", loanArchive::capacityBytes);
+        registry.gauge("library.reservations", reservations::size);
+        registry.gauge("library.reservations.waitlists", reservationsByItem::size);
+        registry.gauge("library.reservations.waiting",
+                () -> reservationsByItem.stream().mapToLong(ReservationQueue::waitingCount).sum());
+        registry.gauge("library.reservations.longestWaitlist",
+                () -> reservationsByItem.stream().mapToLong(ReservationQueue::waitingCount).max().orElse(0));
+    }
+
+    // Each apply method performs one mutation without re-checking business rules. They are
+    // shared by the public operations and replay; callers must hold the relevant locks.
+
+    /** Adds an item to the items Map and the search index. Requires the item's lock. */
+    private void applyItemAdded(MediaItem item) {
+        int id = itemIds.getOrAssign(item.getMediaId());
+        MediaItem previous = items.set(id, item);
+        itemsInIdOrder.put(item.getMediaId(), item);
+        mediaSearchLock.writeLock().lock();
+        try {
+            mediaSearchIndex.put(item.getMediaId(), searchableText(item));
+            categoryIndex.put(id, item.getCategories());
+            indexStatus(item);
+        } finally {
+            mediaSearchLock.writeLock().unlock();
+        }
+        snapshot.updateAndGet(s -> s.withItem(item));
+        if (previous != item) {
+            if (previous != null) {
+                previous.removeStatusChangeListener(itemStatusChanged);
+                previous.removeDescriptionChangeListener(itemRedescribed);
+            }
+            item.addStatusChangeListener(itemStatusChanged);
+            item.addDescriptionChangeListener(itemRedescribed);
+        }
+    }
+
+    /** Removes an item from the items Map and the search index. Requires the item's lock. */
+    private void applyItemRemoved(UUID mediaId) {
+        mediaSearchLock.writeLock().lock();
+        try {
+            int id = itemIds.get(mediaId);
+            MediaItem item = items.remove(id);
+            itemsInIdOrder.remove(mediaId);
+            if (item != null) {
+                item.removeStatusChangeListener(itemStatusChanged);
+                item.removeDescriptionChangeListener(itemRedescribed);
+            }
+            mediaSearchIndex.remove(mediaId);
+            if (categoryIndex.contains(id)) {
+                statusLock.writeLock().lock();
+                try {
+                    statusIndex.remove(id);
+                } finally {
+                    statusLock.writeLock().unlock();
+                }
+            }
+            categoryIndex.remove(id);
+        } finally {
+            mediaSearchLock.writeLock().unlock();
+        }
+        snapshot.updateAndGet(s -> s.withoutItem(mediaId));
+    }
+
+    /** Adds a member to the members Map and the name index. Requires the member's lock. */
+    private void applyMemberAdded(Member member) {
+        Member previous = members.set(memberIds.getOrAssign(member.getId()), member);
+        membersInIdOrder.put(member.getId(), member);
+        snapshot.updateAndGet(s -> s.withMember(member));
+        indexMember(member);
+        if (previous != member) {
+            member.addNameChangeListener(memberRenamed);
+        }
+    }
+
+    /** Removes a member from the members Map and the name index. Requires the member's lock. */
+    private void applyMemberRemoved(UUID memberId) {
+        int id = memberIds.get(memberId);
+        Member member = members.get(id);
+        if (member == null) return;
+        member.removeNameChangeListener(memberRenamed);
+        memberNameLock.writeLock().lock();
+        try {
+            members.remove(id);
+            membersInIdOrder.remove(memberId);
+            memberNameIndex.remove(memberId);
+        } finally {
+            memberNameLock.writeLock().unlock();
+        }
+        snapshot.updateAndGet(s -> s.withoutMember(memberId));
+    }
+
+    /**
+     * Records a loan; if it is outstanding, indexes it and marks its item ON_LOAN.
+     * Requires the item's and member's locks.
+     */
+    private void applyLoan(Loan loan) {
+        loans.set(loanIds.getOrAssign(loan.getLoanId()), loan);
+        if (loan.getStatus() != LoanStatus.OUTSTANDING) return;
+
+        openLoansByItem.set(itemIds.getOrAssign(loan.getMediaId()), loan);
+        int memberId = memberIds.getOrAssign(loan.getMemberId());
+        NavigableSet<Loan> memberLoans = openLoansByMember.get(memberId);
+        if (memberLoans == null) {
+            memberLoans = new TreeSet<>(BY_DUE_DATE);
+            openLoansByMember.set(memberId, memberLoans);
+        }
+        memberLoans.add(loan);
+        overdueScheduler.schedule(loan);
+        // Publishes the loan and the item's new status together
+        snapshot.updateAndGet(s -> s.withLoanOpened(loan));
+
+        MediaItem item = findItem(loan.getMediaId());
+        if (item != null) {
+            item.setStatus(AvailabilityStatus.ON_LOAN);
+        }
+    }
+
+    /**
+     * Moves a returned loan into the archive, removing it from the loan table if it is
+     * there. Requires the archive write lock and the item's lock.
+     */
+    private void applyArchive(Loan loan) {
+        int id = loanIds.get(loan.getLoanId());
+        if (id >= 0) {
+            loans.remove(id);
+            loanIds.release(loan.getLoanId());
+        }
+        loanArchive.append(loan, memberIds.getOrAssign(loan.getMemberId()), itemIds.getOrAssign(loan.getMediaId()));
+    }
+
+    /**
+     * Closes a loan and releases its item to the next reservation, if any.
+     * Requires the item's lock; takes the member's lock itself.
+     */
+    private void applyReturn(Loan loan, LocalDate returnDate, int fine) {
+        // The loan's member cannot change while the item lock is held
+        ReentrantLock memberLock = memberLocks.lock(loan.getMemberId());
+        try {
+            // Records fine amount
+            loan.setFineAccrued(fine);
+
+            // Changes loan status to RETURNED and record return date
+            loan.markReturned(returnDate);
+            openLoansByItem.remove(itemIds.get(loan.getMediaId()));
+            removeFromMemberIndex(loan);
+            overdueScheduler.cancel(loan);
+        } finally {
+            memberLock.unlock();
+        }
+
+        // Updates item status to RESERVED if it has a reservation; else AVAILABLE
+        MediaItem item = findItem(loan.getMediaId());
+        AvailabilityStatus status = item == null ? null
+                : hasActiveReservation(loan.getMediaId()) ? AvailabilityStatus.RESERVED : AvailabilityStatus.AVAILABLE;
+        snapshot.updateAndGet(s -> s.withLoanClosed(loan, status));
+        if (item != null) {
+            item.setStatus(status);
+        }
+    }
+
+    /** Records a reservation, queueing it if still ACTIVE. Requires the item's lock. */
+    private void applyReservation(Reservation reservation) {
+        reservations.set(reservationIds.getOrAssign(reservation.getReservationId()), reservation);
+        if (reservation.getStatus() != ReservationStatus.ACTIVE) return;
+        int itemId = itemIds.getOrAssign(reservation.getMediaId());
+        ReservationQueue queue = reservationsByItem.get(itemId);
+        if (queue == null) {
+            queue = new ReservationQueue();
+            reservationsByItem.set(itemId, queue);
+        }
+        queue.add(reservation);
+    }
+
+    /**
+     * Fulfils the item's next ACTIVE reservation and holds the item for it.
+     * Requires the item's lock.
+     *
+     * @return {@code true} if a reservation was fulfilled
+     */
+    private boolean applyFulfilment(MediaItem item) {
+        if (!fulfillNextReservation(item.getMediaId())) return false;
+        item.setStatus(AvailabilityStatus.RESERVED);
+        return true;
+    }
+
+    /**
+     * Cancels a reservation in its item's queue. Requires the item's lock.
+     *
+     * @return {@code true} if the reservation was ACTIVE and is now cancelled
+     */
+    private boolean applyCancellation(Reservation reservation) {
+        ReservationQueue queue = reservationsByItem.get(itemIds.get(reservation.getMediaId()));
+        return queue != null && queue.cancel(reservation);
+    }
+
+    /**
+     * Looks up a loan that an event being replayed refers to.
+     *
+     * @throws IllegalStateException if the loan is unknown
+     */
+    private Loan requireLoan(UUID loanId) {
+        Loan loan = loans.get(loanIds.get(loanId));
+        if (loan == null) {
+            throw new IllegalStateException("Cannot replay: unknown loan " + loanId);
+        }
+        return loan;
+    }
+
+    private void verifyLoanIndexes() {
+        int outstanding = 0;
+        for (Loan loan : loans) {
+            if (loans.get(loanIds.get(loan.getLoanId())) != loan) {
+                throw new IllegalStateException("Loan stored under wrong surrogate ID: " + loan.getLoanId());
+            }
+            if (loan.getStatus() != LoanStatus.OUTSTANDING) continue;
+            outstanding++;
+            if (openLoansByItem.get(itemIds.get(loan.getMediaId())) != loan) {
+                throw new IllegalStateException("Outstanding loan not indexed by mediaId: " + loan.getLoanId());
+            }
+            NavigableSet<Loan> memberLoans = openLoansByMember.get(memberIds.get(loan.getMemberId()));
+            if (memberLoans == null || !memberLoans.contains(loan)) {
+                throw new IllegalStateException("Outstanding loan not indexed by memberId: " + loan.getLoanId());
+            }
+        }
+        for (Loan loan : openLoansByItem) {
+            if (openLoansByItem.get(itemIds.get(loan.getMediaId())) != loan) {
+                throw new IllegalStateException("Loan indexed under wrong mediaId: " + loan.getLoanId());
+            } else if (loans.get(loanIds.get(loan.getLoanId())) != loan) {
+                throw new IllegalStateException("Indexed loan missing from loans: " + loan.getLoanId());
+            } else if (loan.getStatus() != LoanStatus.OUTSTANDING) {
+                throw new IllegalStateException("Indexed loan is not outstanding: " + loan.getLoanId());
+            }
+        }
+        if (outstanding != openLoansByItem.size()) {
+            throw new IllegalStateException("Open loan index size " + openLoansByItem.size()
+                    + " does not match outstanding loans " + outstanding);
+        }
+        LibrarySnapshot current = snapshot.get();
+        if (current.openLoanCount() != outstanding) {
+            throw new IllegalStateException("Snapshot open loans " + current.openLoanCount()
+                    + " do not match outstanding loans " + outstanding);
+        }
+        for (Loan loan : openLoansByItem) {
+            if (current.findOpenLoan(loan.getMediaId()) != loan) {
+                throw new IllegalStateException("Outstanding loan missing from snapshot: " + loan.getLoanId());
+            }
+        }
+        int memberIndexed = 0;
+        for (NavigableSet<Loan> memberLoans : openLoansByMember) {
+            if (memberLoans.isEmpty()) {
+                throw new IllegalStateException("Empty loan set retained for a member");
+            }
+            for (Loan loan : memberLoans) {
+                if (openLoansByMember.get(memberIds.get(loan.getMemberId())) != memberLoans
+                        || loan.getStatus() != LoanStatus.OUTSTANDING) {
+                    throw new IllegalStateException("Loan wrongly indexed by memberId: " + loan.getLoanId());
+                }
+                memberIndexed++;
+            }
+        }
+        if (outstanding != memberIndexed) {
+            throw new IllegalStateException("Member loan index size " + memberIndexed
+                    + " does not match outstanding loans " + outstanding);
+        }
+        for (MediaItem item : items) {
+            boolean onLoan = item.getStatus() == AvailabilityStatus.ON_LOAN;
+            if (onLoan != (openLoansByItem.get(itemIds.get(item.getMediaId())) != null)) {
+                throw new IllegalStateException("Item status " + item.getStatus()
+                        + " disagrees with open loan index: " + item.getMediaId());
+            }
+        }
+    }
+
+    /**
+     * Collects up to a page of entries from an ordered stream.
+     *
+     * @param entries the entries after the cursor, in ID order
+     * @param pageSize the maximum number of entries to collect
+     * @param idOf gives the ID of an entry, for the next cursor
+     * @return the page, with a cursor if it is full
+     */
+    private static <T> Page<T> page(Stream<T> entries, int pageSize, Function<T, UUID> idOf) {
+        List<T> page = entries.limit(pageSize).toList();
+        UUID nextCursor = page.size() == pageSize ? idOf.apply(page.getLast()) : null;
+        return new Page<>(page, nextCursor);
+    }
+
+    private void verifyStatusIndex() {
+        mediaSearchLock.readLock().lock();
+        statusLock.readLock().lock();
+        try {
+            int indexed = 0;
+            for (AvailabilityStatus status : AvailabilityStatus.values()) {
+                CompressedBitmap ordinals = statusIndex.ordinals(status);
+                if (ordinals.cardinality() != statusIndex.count(status)) {
+                    throw new IllegalStateException("Status count for " + status + " does not match its bitmap");
+                }
+                indexed += ordinals.cardinality();
+            }
+            if (indexed != items.size()) {
+                throw new IllegalStateException("Status index size " + indexed + " does not match items " + items.size());
+            }
+            LibrarySnapshot current = snapshot.get();
+            if (current.itemCount() != items.size()) {
+                throw new IllegalStateException("Snapshot items " + current.itemCount() + " do not match items " + items.size());
+            }
+            for (AvailabilityStatus status : AvailabilityStatus.values()) {
+                if (current.countItems(status) != statusIndex.count(status)) {
+                    throw new IllegalStateException("Snapshot count for " + status + " does not match the status index");
+                }
+            }
+            for (MediaItem item : items) {
+                int id = itemIds.get(item.getMediaId());
+                if (items.get(id) != item || !statusIndex.ordinals(item.getStatus()).contains(id)) {
+                    throw new IllegalStateException("Item not indexed under status " + item.getStatus()
+                            + ": " + item.getMediaId());
+                } else if (current.findItem(item.getMediaId()) != item
+                        || current.statusOf(item.getMediaId()) != item.getStatus()) {
+                    throw new IllegalStateException("Snapshot disagrees with item status " + item.getStatus()
+                            + ": " + item.getMediaId());
+                }
+            }
+        } finally {
+            statusLock.readLock().unlock();
+            mediaSearchLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Looks up a media item by ID.
+     *
+     * @param mediaId the ID of the item; may be null
+     * @return the item, or null if there is no such item
+     */
+    private MediaItem findItem(UUID mediaId) {
+        return items.get(itemIds.get(mediaId));
+    }
+
+    /**
+     * Looks up a member by ID.
+     *
+     * @param memberId the ID of the member; may be null
+     * @return the member, or null if there is no such member
+     */
+    private Member findMember(UUID memberId) {
+        return members.get(memberIds.get(memberId));
+    }
+
+    /**
+     * (Re-)indexes a member under their current name, provided they still belong to this
+     * library; a rename racing with {@link #removeMember} must not re-index them.
+     *
+     * @param member the member to index
+     */
+    private void indexMember(Member member) {
+        memberNameLock.writeLock().lock();
+        try {
+            if (findMember(member.getId()) == member) {
+                memberNameIndex.put(member);
+            }
+        } finally {
+            memberNameLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Re-indexes the text of an item, provided it still belongs to this library.
+     *
+     * @param item the item to index
+     */
+    private void indexText(MediaItem item) {
+        mediaSearchLock.writeLock().lock();
+        try {
+            int id = itemIds.get(item.getMediaId());
+            if (items.get(id) == item) {
+                mediaSearchIndex.put(item.getMediaId(), searchableText(item));
+            }
+        } finally {
+            mediaSearchLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Files an item in the status index under its current status, provided it still
+     * belongs to this library and has been indexed.
+     *
+     * @param item the item to index
+     */
+    private void indexStatus(MediaItem item) {
+        mediaSearchLock.readLock().lock();
+        try {
+            int id = itemIds.get(item.getMediaId());
+            if (!categoryIndex.contains(id) || items.get(id) != item) return;
+            statusLock.writeLock().lock();
+            try {
+                AvailabilityStatus status = item.getStatus();
+                statusIndex.put(id, status);
+                snapshot.updateAndGet(s -> s.withStatus(item, status));
+            } finally {
+                statusLock.writeLock().unlock();
+            }
+        } finally {
+            mediaSearchLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Collects the text fields of a media item that keyword searches match against.
+     *
+     * @param item the item being indexed
+     * @return the item's title, and its author or publisher where it has one
+     */
+    static String[] searchableText(MediaItem item) {
+        if (item instanceof Book book) {
+            return new String[] { book.getTitle(), book.getAuthor() };
+        } else if (item instanceof Magazine magazine) {
+            return new String[] { magazine.getTitle(), magazine.getPublisher() };
+        }
+        return new String[] { item.getTitle() };
+    }
+
+    /**
+     * Checks if an active reservation currently exists on a given media item.
+     *
+     * @param mediaId the ID of the item being checked for an active reservation
+     * @return {@code true} if an active reservation exists, {@code false} if no active reservation
+     */
+    private boolean hasActiveReservation(UUID mediaId) {
+        ReservationQueue queue = reservationsByItem.get(itemIds.get(mediaId));
+        return queue != null && queue.hasActive();
+    }
+
+    /**
+     * Looks up the outstanding loan for a given media item from the open loan index.
+     *
+     * @param mediaId the ID of the item being checked for outstanding loans
+     * @return the outstanding loan if it exists, else returns a ValidationException message
+     */
+    private Loan findOpenLoanByMediaId(UUID mediaId) {
+        Loan loan = openLoansByItem.get(itemIds.get(mediaId));
+        if (loan != null) {
+            return loan;
+        }
+        throw new ValidationException("No open loan found for mediaId: " + mediaId);
+    }
+
+    /**
+     * Checks whether a member has any outstanding loan past its due date.
+     * <p>
+     *     Only the member's earliest due date needs comparing, as their outstanding loans
+     *     are kept ordered by due date.
+     * </p>
+     *
+     * @param memberId the ID of the member being checked
+     * @return {@code true} if the member has an overdue loan, else {@code false}
+     */
+    private boolean memberHasOverdueLoans(UUID memberId) {
+        NavigableSet<Loan> memberLoans = openLoansByMember.get(memberIds.get(memberId));
+        if (memberLoans == null) return false;
+        return memberLoans.first().getDueEpochDay() < today().toEpochDay();
+    }
+
+    /** @return today's date according to the library's clock */
+    private LocalDate today() {
+        return LocalDate.now(clock);
+    }
+
+    /**
+     * Removes a returned loan from its member's outstanding loans, dropping the member's
+     * entry once they have none left.
+     *
+     * @param loan the loan being closed
+     */
+    private void removeFromMemberIndex(Loan loan) {
+        int memberId = memberIds.get(loan.getMemberId());
+        NavigableSet<Loan> memberLoans = openLoansByMember.get(memberId);
+        if (memberLoans == null) return;
+        memberLoans.remove(loan);
+        if (memberLoans.isEmpty()) {
+            openLoansByMember.remove(memberId);
+        }
+    }
+
+    /**
+     * Finds and fulfills the next reservation on a media item if one exists.
+     *
+     * @param mediaId the ID of the item being checked for the next active reservation
+     * @return {@code true} if active reservation was found and fulfilled, else returns {@code false}
+     */
+    private boolean fulfillNextReservation(UUID mediaId) {
+        ReservationQueue queue = reservationsByItem.get(itemIds.get(mediaId));
+        return queue != null && queue.fulfilNext() != null;
     }
 }
@@ -0,0 +1,51 @@
+package domain.service;
+
+import domain.model.Loan;
+import domain.model.MediaItem;
+import domain.model.Member;
+import domain.model.Reservation;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * A change made to the state of a {@link Library}.
+ * <p>
+ *     Events are published to {@link LibraryEventListener}s after each successful mutation,
+ *     and carry everything needed to repeat the mutation with {@link Library#replay} without
+ *     re-running the business rules or generating new IDs and dates. Events carrying an
+ *     entity describe that entity's full state at the time the event was published.
+ * </p>
+ */
+public sealed interface LibraryEvent {
+
+    /** A media item was added to the catalogue. */
+    record ItemAdded(MediaItem item) implements LibraryEvent {}
+
+    /** A media item was removed from the catalogue. */
+    record ItemRemoved(UUID mediaId) implements LibraryEvent {}
+
+    /** A member was registered. */
+    record MemberAdded(Member member) implements LibraryEvent {}
+
+    /** A member was removed. */
+    record MemberRemoved(UUID memberId) implements LibraryEvent {}
+
+    /** A loan was created. */
+    record ItemLoaned(Loan loan) implements LibraryEvent {}
+
+    /** An item was returned, closing its loan with the given fine. */
+    record ItemReturned(UUID loanId, LocalDate returnDate, int fine) implements LibraryEvent {}
+
+    /** A returned loan was moved out of the loan table into the loan archive. */
+    record LoanArchived(Loan loan) implements LibraryEvent {}
+
+    /** A reservation was placed on an item. */
+    record ReservationPlaced(Reservation reservation) implements LibraryEvent {}
+
+    /** The oldest active reservation on an item was fulfilled. */
+    record ReservationFulfilled(UUID mediaId) implements LibraryEvent {}
+
+    /** A reservation was cancelled. */
+    record ReservationCancelled(UUID reservationId) implements LibraryEvent {}
+}
@@ -0,0 +1,33 @@
+package domain.service;
+
+/**
+ * Callback notified of every change made to a {@link Library}.
+ * <p>
+ *     Listeners are called synchronously while the mutated entities are still locked, so
+ *     events affecting the same item or member are delivered in the order they happened.
+ *     Listeners should be quick, and must not call back into the library. Anything slow,
+ *     such as waiting for a record to reach disk, belongs in {@link #afterEvents}.
+ * </p>
+ * <p>
+ *     A listener that throws stops the library accepting further changes; see
+ *     {@link Library#listenerFailure()}.
+ * </p>
+ */
+@FunctionalInterface
+public interface LibraryEventListener {
+
+    /**
+     * Called after a mutation has been applied.
+     *
+     * @param sequence the event's sequence number; unique and increasing across the library
+     * @param event the change that was made
+     */
+    void onEvent(long sequence, LibraryEvent event);
+
+    /**
+     * Called on the same thread once the operation that published one or more events has
+     * released its locks, before it returns to its caller.
+     */
+    default void afterEvents() {
+    }
+}
@@ -0,0 +1,98 @@
+package domain.service;
+
+import common.metrics.Counter;
+import common.metrics.LatencyHistogram;
+import common.metrics.MetricsRegistry;
+
+/**
+ * The metrics a {@link Library} records, looked up once from its registry so that
+ * recording an operation never allocates.
+ * <p>
+ *     Each public operation {@code op} has a {@code library.op.calls} counter, a
+ *     {@code library.op.rejected} counter of calls refused by a business rule, and a
+ *     {@code library.op.latency} histogram including any time spent waiting for locks.
+ * </p>
+ */
+final class LibraryMetrics {
+
+    final Operation addItem;
+    final Operation addItems;
+    final Operation removeItem;
+    final Operation addMember;
+    final Operation addMembers;
+    final Operation removeMember;
+    final Operation loanItem;
+    final Operation returnItem;
+    final Operation archiveReturnedLoans;
+    final Operation loanHistory;
+    final Operation placeReservation;
+    final Operation cancelReservation;
+    final Operation fulfillReservation;
+    final Operation replay;
+    final Operation exportState;
+    final Operation collectNewlyOverdueLoans;
+    final Operation assessFines;
+    final Operation listItems;
+    final Operation listMembers;
+    final Operation searchMedia;
+    final Operation browseCategories;
+    final Operation findItemsByStatus;
+    final Operation searchMembers;
+    final Operation searchMembersByPrefix;
+
+    LibraryMetrics(MetricsRegistry registry) {
+        addItem = new Operation(registry, "addItem");
+        addItems = new Operation(registry, "addItems");
+        removeItem = new Operation(registry, "removeItem");
+        addMember = new Operation(registry, "addMember");
+        addMembers = new Operation(registry, "addMembers");
+        removeMember = new Operation(registry, "removeMember");
+        loanItem = new Operation(registry, "loanItem");
+        returnItem = new Operation(registry, "returnItem");
+        archiveReturnedLoans = new Operation(registry, "archiveReturnedLoans");
+        loanHistory = new Operation(registry, "loanHistory");
+        placeReservation = new Operation(registry, "placeReservation");
+        cancelReservation = new Operation(registry, "cancelReservation");
+        fulfillReservation = new Operation(registry, "fulfillReservation");
+        replay = new Operation(registry, "replay");
+        exportState = new Operation(registry, "exportState");
+        collectNewlyOverdueLoans = new Operation(registry, "collectNewlyOverdueLoans");
+        assessFines = new Operation(registry, "assessFines");
+        listItems = new Operation(registry, "listItems");
+        listMembers = new Operation(registry, "listMembers");
+        searchMedia = new Operation(registry, "searchMedia");
+        browseCategories = new Operation(registry, "browseCategories");
+        findItemsByStatus = new Operation(registry, "findItemsByStatus");
+        searchMembers = new Operation(registry, "searchMembers");
+        searchMembersByPrefix = new Operation(registry, "searchMembersByPrefix");
+    }
+
+    /** The metrics of one operation. */
+    static final class Operation {
+
+        private final Counter calls;
+        private final Counter rejected;
+        private final LatencyHistogram latency;
+
+        private Operation(MetricsRegistry registry, String name) {
+            calls = registry.counter("library." + name + ".calls");
+            rejected = registry.counter("library." + name + ".rejected");
+            latency = registry.histogram("library." + name + ".latency");
+        }
+
+        /** Counts a call that broke a business rule; {@link #record} must still be called. */
+        void reject() {
+            rejected.increment();
+        }
+
+        /**
+         * Counts a finished call, whether or not it succeeded, and its latency.
+         *
+         * @param startNanos the {@link System#nanoTime()} reading taken when the call started
+         */
+        void record(long startNanos) {
+            calls.increment();
+            latency.recordSince(startNanos);
+        }
+    }
+}
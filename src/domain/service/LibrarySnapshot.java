@@ -0,0 +1,281 @@
+package domain.service;
+
+import domain.model.AvailabilityStatus;
+import domain.model.Loan;
+import domain.model.MediaItem;
+import domain.model.Member;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Versioned, point-in-time view of a {@link Library}'s catalogue and circulation, taken
+ * with {@link Library#snapshot()}.
+ * <p>
+ *     A snapshot fixes, as of one moment: which items, members and outstanding loans the
+ *     library had, each item's availability status ({@link #statusOf}), and the status
+ *     counts. These are consistent with each other: an item is ON_LOAN in a snapshot
+ *     exactly when the snapshot has an open loan for it. Later changes never alter them,
+ *     so they can be queried, streamed in parallel or held across a long report without
+ *     any locking, and without holding up or being held up by desks issuing loans.
+ * </p>
+ * <p>
+ *     Nothing else is point-in-time. Entities are shared with the library rather than
+ *     copied, so every field read from an entity is its current value: titles, authors and
+ *     categories, {@link MediaItem#getStatus()}, member names and active flags, and a loan's
+ *     status, return date and fine. In particular, {@link #openLoans()} may return loans
+ *     since marked RETURNED, {@code findItem(id).getStatus()} may disagree with
+ *     {@code statusOf(id)}, and {@link #searchMedia} matches current titles. Those fields are
+ *     also read without the library's locks, so there is no happens-before edge with a
+ *     desk changing them afterwards: a reader may or may not see a later change, and may
+ *     see some fields of an entity from one change and some from another. Publishing is a
+ *     volatile write, so a reader sees at least what each entity held at that moment.
+ * </p>
+ * <p>
+ *     The library publishes a new snapshot with every change, built from the previous one
+ *     by {@link PersistentMap}s that share all but the changed paths, so publishing costs a
+ *     few small allocations however large the library is, and snapshots no longer referenced
+ *     are reclaimed by the garbage collector.
+ * </p>
+ */
+public final class LibrarySnapshot {
+
+    private static final AvailabilityStatus[] STATUSES = AvailabilityStatus.values();
+
+    /** The snapshot of an empty library. */
+    static final LibrarySnapshot EMPTY = new LibrarySnapshot(0, PersistentMap.empty(), PersistentMap.empty(),
+            PersistentMap.empty(), PersistentMap.empty(), new int[STATUSES.length]);
+
+    private final long version;
+    private final PersistentMap<UUID, MediaItem> items;
+    private final PersistentMap<UUID, AvailabilityStatus> statuses;
+    private final PersistentMap<UUID, Member> members;
+    private final PersistentMap<UUID, Loan> openLoans;
+    private final int[] statusCounts;
+
+    private LibrarySnapshot(long version, PersistentMap<UUID, MediaItem> items,
+                            PersistentMap<UUID, AvailabilityStatus> statuses, PersistentMap<UUID, Member> members,
+                            PersistentMap<UUID, Loan> openLoans, int[] statusCounts) {
+        this.version = version;
+        this.items = items;
+        this.statuses = statuses;
+        this.members = members;
+        this.openLoans = openLoans;
+        this.statusCounts = statusCounts;
+    }
+
+    /** @return the number of changes published before this snapshot; later snapshots have higher versions */
+    public long version() {
+        return version;
+    }
+
+    // ---------------------------------------- Lookups --------------------------------------
+
+    /**
+     * @param mediaId the ID of the item; may be null
+     * @return the item, or null if the library did not have it; its fields, including its
+     *         status, are current rather than as of this snapshot
+     */
+    public MediaItem findItem(UUID mediaId) {
+        return items.get(mediaId);
+    }
+
+    /**
+     * @param mediaId the ID of the item; may be null
+     * @return the item's status as of this snapshot, or null if the library did not have it
+     */
+    public AvailabilityStatus statusOf(UUID mediaId) {
+        return statuses.get(mediaId);
+    }
+
+    /**
+     * @param memberId the ID of the member; may be null
+     * @return the member, or null if the library did not have them
+     */
+    public Member findMember(UUID memberId) {
+        return members.get(memberId);
+    }
+
+    /**
+     * @param mediaId the ID of the item; may be null
+     * @return the item's outstanding loan as of this snapshot, or null if it was not on
+     *         loan; the loan itself may since have been returned
+     */
+    public Loan findOpenLoan(UUID mediaId) {
+        return openLoans.get(mediaId);
+    }
+
+    /** @return the number of media items */
+    public int itemCount() {
+        return items.size();
+    }
+
+    /** @return the number of members */
+    public int memberCount() {
+        return members.size();
+    }
+
+    /** @return the number of outstanding loans */
+    public int openLoanCount() {
+        return openLoans.size();
+    }
+
+    /**
+     * @param status the status to count; must not be null
+     * @return the number of items in that status
+     */
+    public int countItems(AvailabilityStatus status) {
+        return statusCounts[status.ordinal()];
+    }
+
+    // ---------------------------------------- Listings and Searches ------------------------
+
+    /**
+     * Streams the items, in no particular order. The stream splits well, so reports over a
+     * large catalogue can call {@link Stream#parallel()} on it.
+     *
+     * @return every media item
+     */
+    public Stream<MediaItem> items() {
+        return items.values();
+    }
+
+    /** @return every member, in no particular order; splits for parallel use like {@link #items()} */
+    public Stream<Member> members() {
+        return members.values();
+    }
+
+    /**
+     * @return every loan outstanding as of this snapshot, in no particular order, though some
+     *         may since have been returned; splits for parallel use like {@link #items()}
+     */
+    public Stream<Loan> openLoans() {
+        return openLoans.values();
+    }
+
+    /**
+     * Finds media items whose title, author or publisher contains the keyword, ignoring
+     * case, and that were in the given status. The status is as of this snapshot, but the
+     * text is matched as it is now. Matches the same items as
+     * {@link Library#searchMedia(String, AvailabilityStatus)}, but scans the snapshot in
+     * parallel instead of reading the library's index.
+     *
+     * @param keyword the text to search for; null matches every item
+     * @param status the status items must have had, or null for any status
+     * @return the matching items sorted by title
+     */
+    public List<MediaItem> searchMedia(String keyword, AvailabilityStatus status) {
+        String query = keyword == null ? "" : keyword.toLowerCase();
+        return items().parallel()
+                .filter(item -> status == null || statuses.get(item.getMediaId()) == status)
+                .filter(item -> matches(Library.searchableText(item), query))
+                .sorted(Comparator.comparing(m -> m.getTitle() == null ? "" : m.getTitle(),
+                        String.CASE_INSENSITIVE_ORDER))
+                .toList();
+    }
+
+    /**
+     * Finds members whose name contains the keyword, ignoring case, scanning the snapshot
+     * in parallel.
+     *
+     * @param keyword the text to search for; null matches every member
+     * @return the matching members sorted by name
+     */
+    public List<Member> searchMembers(String keyword) {
+        String query = keyword == null ? "" : keyword.toLowerCase();
+        return members().parallel()
+                .filter(member -> matches(new String[] { member.getName() }, query))
+                .sorted(Comparator.comparing((Member m) -> m.getName() == null ? "" : m.getName(),
+                                String.CASE_INSENSITIVE_ORDER)
+                        .thenComparing(Member::getId))
+                .toList();
+    }
+
+    // ---------------------------------------- Publishing -----------------------------------
+
+    // Each method returns the snapshot after one change, or this snapshot if the change
+    // makes no difference; the library applies them with a compare-and-set, so they may be
+    // called more than once and must not have side effects.
+
+    /** @return a snapshot with the item added or replaced, in its current status */
+    LibrarySnapshot withItem(MediaItem item) {
+        UUID mediaId = item.getMediaId();
+        AvailabilityStatus status = item.getStatus();
+        return next(items.put(mediaId, item), statuses.put(mediaId, status), members, openLoans,
+                recount(statuses.get(mediaId), status));
+    }
+
+    /** @return a snapshot without the item */
+    LibrarySnapshot withoutItem(UUID mediaId) {
+        if (items.get(mediaId) == null) return this;
+        return next(items.remove(mediaId), statuses.remove(mediaId), members, openLoans,
+                recount(statuses.get(mediaId), null));
+    }
+
+    /** @return a snapshot in which the item, if present, has the given status */
+    LibrarySnapshot withStatus(MediaItem item, AvailabilityStatus status) {
+        UUID mediaId = item.getMediaId();
+        AvailabilityStatus previous = statuses.get(mediaId);
+        if (items.get(mediaId) != item || previous == status) return this;
+        return next(items, statuses.put(mediaId, status), members, openLoans, recount(previous, status));
+    }
+
+    /** @return a snapshot with the member added or replaced */
+    LibrarySnapshot withMember(Member member) {
+        PersistentMap<UUID, Member> updated = members.put(member.getId(), member);
+        return updated == members ? this : next(items, statuses, updated, openLoans, statusCounts);
+    }
+
+    /** @return a snapshot without the member */
+    LibrarySnapshot withoutMember(UUID memberId) {
+        PersistentMap<UUID, Member> updated = members.remove(memberId);
+        return updated == members ? this : next(items, statuses, updated, openLoans, statusCounts);
+    }
+
+    /** @return a snapshot with the loan outstanding and its item, if present, ON_LOAN */
+    LibrarySnapshot withLoanOpened(Loan loan) {
+        return withLoan(loan.getMediaId(), openLoans.put(loan.getMediaId(), loan), AvailabilityStatus.ON_LOAN);
+    }
+
+    /**
+     * @param status the item's status once the loan is closed; null if it has no item
+     * @return a snapshot with the loan closed and its item, if present, in the given status
+     */
+    LibrarySnapshot withLoanClosed(Loan loan, AvailabilityStatus status) {
+        return withLoan(loan.getMediaId(), openLoans.remove(loan.getMediaId()), status);
+    }
+
+    // ---------------------------------------- Internals ------------------------------------
+
+    private LibrarySnapshot withLoan(UUID mediaId, PersistentMap<UUID, Loan> openLoans, AvailabilityStatus status) {
+        AvailabilityStatus previous = statuses.get(mediaId);
+        if (status == null || previous == null) {
+            return next(items, statuses, members, openLoans, statusCounts);
+        }
+        return next(items, statuses.put(mediaId, status), members, openLoans, recount(previous, status));
+    }
+
+    private LibrarySnapshot next(PersistentMap<UUID, MediaItem> items, PersistentMap<UUID, AvailabilityStatus> statuses,
+                                 PersistentMap<UUID, Member> members, PersistentMap<UUID, Loan> openLoans,
+                                 int[] statusCounts) {
+        return new LibrarySnapshot(version + 1, items, statuses, members, openLoans, statusCounts);
+    }
+
+    /** @return {@link #statusCounts} after one item moves between statuses; null means none */
+    private int[] recount(AvailabilityStatus before, AvailabilityStatus after) {
+        if (before == after) return statusCounts;
+        int[] counts = statusCounts.clone();
+        if (before != null) counts[before.ordinal()]--;
+        if (after != null) counts[after.ordinal()]++;
+        return counts;
+    }
+
+    private static boolean matches(String[] fields, String query) {
+        for (String field : fields) {
+            if (field != null && field.toLowerCase().contains(query)) return true;
+        }
+        return query.isEmpty();
+    }
+}
@@ -0,0 +1,188 @@
+package domain.service;
+
+import domain.model.Loan;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Append-only, off-heap archive of returned loans, the cold tier behind the Library's loan
+ * table.
+ * <p>
+ *     Records are stored column by column in direct buffers of {@link #SEGMENT_RECORDS}
+ *     records each, so an archived loan costs {@link #RECORD_BYTES} bytes outside the Java
+ *     heap and nothing on it. Besides the loan's fields, each record holds the number of
+ *     the previous record for the same member and for the same item, so each member's and
+ *     each item's history is a chain through the archive that is walked newest first
+ *     without scanning unrelated records; only the head of each chain is kept on the heap,
+ *     indexed by the Library's surrogate IDs. Records are never modified or removed.
+ * </p>
+ * <p>
+ *     Thread-safe; reads and appends are serialised on the archive.
+ * </p>
+ */
+final class LoanArchive {
+
+    /** Records per segment; each segment is one direct buffer. */
+    static final int SEGMENT_RECORDS = 1 << 16;
+
+    /** Marks the end of a chain. */
+    private static final int NONE = -1;
+
+    // Column offsets within a segment, in units of one value per record
+    private static final int LOAN_MSB = 0, LOAN_LSB = 1, MEMBER_MSB = 2, MEMBER_LSB = 3, MEDIA_MSB = 4, MEDIA_LSB = 5;
+    private static final int LONG_COLUMNS = 6;
+    private static final int LOAN_DAY = 0, DUE_DAY = 1, RETURN_DAY = 2, FINE = 3, PREVIOUS_OF_MEMBER = 4, PREVIOUS_OF_ITEM = 5;
+    private static final int INT_COLUMNS = 6;
+
+    /** Bytes of buffer per archived loan. */
+    static final int RECORD_BYTES = LONG_COLUMNS * Long.BYTES + INT_COLUMNS * Integer.BYTES;
+
+    private static final int INT_COLUMNS_START = LONG_COLUMNS * Long.BYTES * SEGMENT_RECORDS;
+
+    private final List<ByteBuffer> segments = new ArrayList<>();
+
+    private int count;
+
+    /** The newest record of each member, by member surrogate ID. */
+    private int[] headOfMember = emptyHeads(1024);
+
+    /** The newest record of each item, by item surrogate ID. */
+    private int[] headOfItem = emptyHeads(1024);
+
+    /**
+     * Archives a returned loan.
+     *
+     * @param loan the loan to archive; must be RETURNED
+     * @param memberId the surrogate ID of the loan's member
+     * @param itemId the surrogate ID of the loan's item
+     */
+    synchronized void append(Loan loan, int memberId, int itemId) {
+        if (count % SEGMENT_RECORDS == 0) {
+            segments.add(ByteBuffer.allocateDirect(RECORD_BYTES * SEGMENT_RECORDS));
+        }
+        headOfMember = ensureCapacity(headOfMember, memberId);
+        headOfItem = ensureCapacity(headOfItem, itemId);
+
+        int record = count;
+        putLong(record, LOAN_MSB, loan.getLoanId().getMostSignificantBits());
+        putLong(record, LOAN_LSB, loan.getLoanId().getLeastSignificantBits());
+        putLong(record, MEMBER_MSB, loan.getMemberId().getMostSignificantBits());
+        putLong(record, MEMBER_LSB, loan.getMemberId().getLeastSignificantBits());
+        putLong(record, MEDIA_MSB, loan.getMediaId().getMostSignificantBits());
+        putLong(record, MEDIA_LSB, loan.getMediaId().getLeastSignificantBits());
+        putInt(record, LOAN_DAY, Math.toIntExact(loan.getLoanDate().toEpochDay()));
+        putInt(record, DUE_DAY, Math.toIntExact(loan.getDueEpochDay()));
+        putInt(record, RETURN_DAY, Math.toIntExact(loan.getReturnDate().toEpochDay()));
+        putInt(record, FINE, loan.getFineAccrued());
+        putInt(record, PREVIOUS_OF_MEMBER, headOfMember[memberId]);
+        putInt(record, PREVIOUS_OF_ITEM, headOfItem[itemId]);
+        headOfMember[memberId] = record;
+        headOfItem[itemId] = record;
+        count++;
+    }
+
+    /**
+     * Passes every archived loan of a member to the action, most recently archived first.
+     *
+     * @param memberId the member's surrogate ID; may be negative, meaning no member
+     * @param action receives a fresh copy of each loan
+     */
+    synchronized void forEachOfMember(int memberId, Consumer<Loan> action) {
+        int record = memberId >= 0 && memberId < headOfMember.length ? headOfMember[memberId] : NONE;
+        for (; record != NONE; record = getInt(record, PREVIOUS_OF_MEMBER)) {
+            action.accept(read(record));
+        }
+    }
+
+    /**
+     * Passes every archived loan of an item to the action, most recently archived first.
+     *
+     * @param itemId the item's surrogate ID; may be negative, meaning no item
+     * @param action receives a fresh copy of each loan
+     */
+    synchronized void forEachOfItem(int itemId, Consumer<Loan> action) {
+        int record = itemId >= 0 && itemId < headOfItem.length ? headOfItem[itemId] : NONE;
+        for (; record != NONE; record = getInt(record, PREVIOUS_OF_ITEM)) {
+            action.accept(read(record));
+        }
+    }
+
+    /**
+     * Passes every archived loan to the action, oldest first.
+     *
+     * @param action receives a fresh copy of each loan
+     */
+    synchronized void forEach(Consumer<Loan> action) {
+        for (int record = 0; record < count; record++) {
+            action.accept(read(record));
+        }
+    }
+
+    /** @return the number of archived loans */
+    synchronized int size() {
+        return count;
+    }
+
+    /** @return the bytes of direct memory held by the archive */
+    synchronized long capacityBytes() {
+        return (long) segments.size() * RECORD_BYTES * SEGMENT_RECORDS;
+    }
+
+    // ---------------------------------------- Internals ------------------------------------
+
+    private Loan read(int record) {
+        Loan loan = new Loan(
+                new UUID(getLong(record, LOAN_MSB), getLong(record, LOAN_LSB)),
+                new UUID(getLong(record, MEMBER_MSB), getLong(record, MEMBER_LSB)),
+                new UUID(getLong(record, MEDIA_MSB), getLong(record, MEDIA_LSB)),
+                LocalDate.ofEpochDay(getInt(record, LOAN_DAY)),
+                LocalDate.ofEpochDay(getInt(record, DUE_DAY)));
+        loan.setFineAccrued(getInt(record, FINE));
+        loan.markReturned(LocalDate.ofEpochDay(getInt(record, RETURN_DAY)));
+        return loan;
+    }
+
+    private void putLong(int record, int column, long value) {
+        segments.get(record / SEGMENT_RECORDS).putLong(longOffset(record, column), value);
+    }
+
+    private long getLong(int record, int column) {
+        return segments.get(record / SEGMENT_RECORDS).getLong(longOffset(record, column));
+    }
+
+    private void putInt(int record, int column, int value) {
+        segments.get(record / SEGMENT_RECORDS).putInt(intOffset(record, column), value);
+    }
+
+    private int getInt(int record, int column) {
+        return segments.get(record / SEGMENT_RECORDS).getInt(intOffset(record, column));
+    }
+
+    private static int longOffset(int record, int column) {
+        return (column * SEGMENT_RECORDS + record % SEGMENT_RECORDS) * Long.BYTES;
+    }
+
+    private static int intOffset(int record, int column) {
+        return INT_COLUMNS_START + (column * SEGMENT_RECORDS + record % SEGMENT_RECORDS) * Integer.BYTES;
+    }
+
+    private static int[] ensureCapacity(int[] heads, int id) {
+        if (id < heads.length) return heads;
+        int length = heads.length;
+        int[] grown = Arrays.copyOf(heads, Math.max(id + 1, length * 2));
+        Arrays.fill(grown, length, grown.length, NONE);
+        return grown;
+    }
+
+    private static int[] emptyHeads(int length) {
+        int[] heads = new int[length];
+        Arrays.fill(heads, NONE);
+        return heads;
+    }
+}
@@ -0,0 +1,78 @@
+package domain.service;
+
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed pool of locks shared out between entities by hashing their IDs.
+ * <p>
+ *     Operations on the same ID always map to the same lock, while operations on
+ *     unrelated IDs usually map to different locks and so run in parallel. With a
+ *     single stripe every ID shares one lock.
+ * </p>
+ */
+final class LockStripes {
+
+    /** The pool of locks; its length is always a power of two. */
+    private final ReentrantLock[] locks;
+
+    /**
+     * Creates a pool with at least the requested number of stripes.
+     *
+     * @param stripes the minimum number of locks; rounded up to a power of two
+     */
+    LockStripes(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Stripes must be positive");
+        }
+        int size = Integer.highestOneBit(stripes);
+        if (size < stripes) size <<= 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Acquires the lock guarding an ID.
+     *
+     * @param id the ID to lock; null IDs share the first stripe
+     * @return the acquired lock, to be released by the caller
+     */
+    ReentrantLock lock(UUID id) {
+        ReentrantLock lock = locks[indexOf(id)];
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * Acquires every lock in the pool, in index order.
+     */
+    void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    /**
+     * Releases every lock in the pool, in reverse index order.
+     */
+    void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    /** @return the number of locks in the pool */
+    int size() {
+        return locks.length;
+    }
+
+    private int indexOf(UUID id) {
+        if (id == null) return 0;
+        int h = id.hashCode();
+        // Spreads higher bits downwards so the mask sees them
+        h ^= (h >>> 16);
+        return h & (locks.length - 1);
+    }
+}
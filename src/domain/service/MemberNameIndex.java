@@ -0,0 +1,127 @@
+package domain.service;
+
+import domain.model.Member;
+
+import java.util.*;
+
+/**
+ * Case-insensitive name index over library members.
+ * <p>
+ *     Members are held in a {@link TreeSet} ordered by {@link String#CASE_INSENSITIVE_ORDER}
+ *     (member ID as tie-breaker), so listing and prefix lookups read results straight out
+ *     of the set already sorted. Substring lookups use an {@link NGramIndex} to find the
+ *     candidates and only sort the members that matched.
+ * </p>
+ * <p>
+ *     Not thread-safe; callers are responsible for synchronisation.
+ * </p>
+ */
+final class MemberNameIndex {
+
+    /**
+     * Orders entries by name ignoring case, then by member ID.
+     */
+    private static final Comparator<Entry> BY_NAME = Comparator
+            .comparing(Entry::name, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(Entry::id);
+
+    /** Lowest possible UUID, used to position range lookups before any real member. */
+    private static final UUID MIN_ID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+
+    /** Every indexed member in name order. */
+    private final NavigableSet<Entry> sorted = new TreeSet<>(BY_NAME);
+
+    /** The entry currently held for each member, needed to find it again after a rename. */
+    private final Map<UUID, Entry> entries = new HashMap<>();
+
+    /** Trigram index over lowercased names for substring lookups. */
+    private final NGramIndex<UUID> substrings = new NGramIndex<>();
+
+    /**
+     * Indexes a member under their current name, replacing any previous entry.
+     *
+     * @param member the member to index
+     */
+    void put(Member member) {
+        remove(member.getId());
+        Entry entry = new Entry(nameOf(member.getName()), member.getId(), member);
+        sorted.add(entry);
+        entries.put(entry.id(), entry);
+        substrings.put(entry.id(), entry.name());
+    }
+
+    /**
+     * Removes a member from the index.
+     *
+     * @param memberId the ID of the member to remove
+     */
+    void remove(UUID memberId) {
+        Entry entry = entries.remove(memberId);
+        if (entry == null) return;
+        sorted.remove(entry);
+        substrings.remove(memberId);
+    }
+
+    /** @return every indexed member sorted by name */
+    List<Member> all() {
+        List<Member> results = new ArrayList<>(sorted.size());
+        for (Entry entry : sorted) {
+            results.add(entry.member());
+        }
+        return results;
+    }
+
+    /**
+     * Finds members whose name starts with the prefix, ignoring case.
+     *
+     * @param prefix the prefix to look up
+     * @return the matching members sorted by name
+     */
+    List<Member> byPrefix(String prefix) {
+        String p = nameOf(prefix);
+        List<Member> results = new ArrayList<>();
+        // Names sharing a case-insensitive prefix form a contiguous run in CASE_INSENSITIVE_ORDER
+        for (Entry entry : sorted.tailSet(new Entry(p, MIN_ID, null), true)) {
+            if (!entry.name().regionMatches(true, 0, p, 0, p.length())) break;
+            results.add(entry.member());
+        }
+        return results;
+    }
+
+    /**
+     * Finds members whose lowercased name contains the lowercased query.
+     *
+     * @param query the substring to look up
+     * @return the matching members sorted by name
+     */
+    List<Member> bySubstring(String query) {
+        if (query == null || query.isEmpty()) {
+            return all();
+        }
+        List<Entry> matches = new ArrayList<>();
+        for (UUID id : substrings.search(query)) {
+            matches.add(entries.get(id));
+        }
+        matches.sort(BY_NAME);
+        List<Member> results = new ArrayList<>(matches.size());
+        for (Entry entry : matches) {
+            results.add(entry.member());
+        }
+        return results;
+    }
+
+    /** @return the number of indexed members */
+    int size() {
+        return entries.size();
+    }
+
+    private static String nameOf(String name) {
+        return name == null ? "" : name;
+    }
+
+    /**
+     * Immutable index entry, capturing the name the member was indexed under so it can be
+     * located in the sorted set even after the member has been renamed.
+     */
+    private record Entry(String name, UUID id, Member member) {}
+}
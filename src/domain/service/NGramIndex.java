@@ -0,0 +1,141 @@
+package domain.service;
+
+import java.util.*;
+
+/**
+ * Inverted trigram index used to answer case-insensitive substring searches without
+ * scanning every indexed document.
+ * <p>
+ *     Each key is indexed with one or more text fields. Fields are normalised with
+ *     {@link String#toLowerCase()} and every run of three consecutive characters is added
+ *     to a posting set. A query is answered by taking the smallest posting set among the
+ *     query's trigrams as the candidates, then confirming each candidate with
+ *     {@link String#contains}, so the results are exactly the keys with a field containing
+ *     the lowercased query. Queries shorter than three characters fall back to checking
+ *     every document.
+ * </p>
+ * <p>
+ *     Not thread-safe; callers are responsible for synchronisation.
+ * </p>
+ *
+ * @param <K> the type of key being indexed
+ */
+final class NGramIndex<K> {
+
+    /** Length of the character runs stored in the posting sets. */
+    private static final int GRAM_LENGTH = 3;
+
+    /** The normalised fields of every indexed key. */
+    private final Map<K, String[]> documents = new HashMap<>();
+
+    /** Keys whose fields contain each trigram, keyed by the packed trigram. */
+    private final Map<Long, Set<K>> postings = new HashMap<>();
+
+    /**
+     * Indexes a key with the given fields, replacing any fields it was previously indexed with.
+     *
+     * @param key the key to index
+     * @param fields the text to index; null fields are treated as empty
+     */
+    void put(K key, String... fields) {
+        remove(key);
+        String[] normalised = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            normalised[i] = normalise(fields[i]);
+        }
+        documents.put(key, normalised);
+        for (long gram : grams(normalised)) {
+            postings.computeIfAbsent(gram, g -> new HashSet<>()).add(key);
+        }
+    }
+
+    /**
+     * Removes a key and all of its postings from the index.
+     *
+     * @param key the key to remove
+     */
+    void remove(K key) {
+        String[] fields = documents.remove(key);
+        if (fields == null) return;
+        for (long gram : grams(fields)) {
+            Set<K> keys = postings.get(gram);
+            if (keys == null) continue;
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * Finds every key with at least one field containing the query, ignoring case.
+     *
+     * @param query the substring to search for; null is treated as empty
+     * @return the matching keys in no particular order
+     */
+    List<K> search(String query) {
+        String q = normalise(query);
+        List<K> results = new ArrayList<>();
+        for (K key : candidates(q)) {
+            if (matches(documents.get(key), q)) {
+                results.add(key);
+            }
+        }
+        return results;
+    }
+
+    /** @return the number of indexed keys */
+    int size() {
+        return documents.size();
+    }
+
+    // ---------------------------------------- Internals ------------------------------------
+
+    /**
+     * Picks the smallest posting set among the query's trigrams, or every document for
+     * queries too short to have a trigram.
+     */
+    private Collection<K> candidates(String q) {
+        if (q.length() < GRAM_LENGTH) {
+            return documents.keySet();
+        }
+        Set<K> smallest = null;
+        for (int i = 0; i + GRAM_LENGTH <= q.length(); i++) {
+            Set<K> keys = postings.get(pack(q, i));
+            if (keys == null) {
+                return Collections.emptySet();
+            }
+            if (smallest == null || keys.size() < smallest.size()) {
+                smallest = keys;
+            }
+        }
+        return smallest;
+    }
+
+    private static boolean matches(String[] fields, String q) {
+        for (String field : fields) {
+            if (field.contains(q)) return true;
+        }
+        return false;
+    }
+
+    /** @return the distinct packed trigrams across all fields */
+    private static Set<Long> grams(String[] fields) {
+        Set<Long> grams = new HashSet<>();
+        for (String field : fields) {
+            for (int i = 0; i + GRAM_LENGTH <= field.length(); i++) {
+                grams.add(pack(field, i));
+            }
+        }
+        return grams;
+    }
+
+    /** Packs the three UTF-16 chars starting at {@code i} into a single long. */
+    private static long pack(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private static String normalise(String s) {
+        return s == null ? "" : s.toLowerCase();
+    }
+}
@@ -0,0 +1,164 @@
+package domain.service;
+
+import domain.model.Loan;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Calendar queue that buckets outstanding loans by the day they become overdue.
+ * <p>
+ *     A loan becomes overdue on the day after its due date (see {@link Loan#isOverdue}).
+ *     Loans becoming overdue within the next {@value #HORIZON_DAYS} days are kept in a ring
+ *     of daily buckets; loans further out wait in an overflow map and are moved into the
+ *     ring as the clock approaches them. Advancing the clock by a day empties exactly one
+ *     bucket, so the cost of each roll-over is proportional to the number of loans that
+ *     just became overdue rather than to the total number of loans. Loans that are already
+ *     overdue when scheduled, e.g. those recovered from a log after a restart, are held
+ *     apart and reported by the next advance.
+ * </p>
+ * <p>
+ *     Buckets are derived from each loan's due date, so cancelling a loan on return is
+ *     O(1) without any per-loan bookkeeping. All methods are synchronised.
+ * </p>
+ */
+public final class OverdueScheduler {
+
+    /** Number of daily buckets in the ring. */
+    private static final int HORIZON_DAYS = 1024;
+
+    /** Daily buckets, indexed by the epoch day a loan becomes overdue modulo the horizon. */
+    private final List<Map<UUID, Loan>> ring = new ArrayList<>(HORIZON_DAYS);
+
+    /** Loans already overdue when scheduled, reported by the next advance. */
+    private final Map<UUID, Loan> pastDue = new LinkedHashMap<>();
+
+    /** Loans becoming overdue beyond the ring's horizon, by epoch day. */
+    private final NavigableMap<Long, Map<UUID, Loan>> overflow = new TreeMap<>();
+
+    /** The epoch day the clock was last advanced to. */
+    private long today;
+
+    /** Number of loans currently scheduled. */
+    private int size;
+
+    /**
+     * Creates a scheduler whose clock starts at the given date.
+     *
+     * @param today the current date
+     */
+    public OverdueScheduler(LocalDate today) {
+        if (today == null) {
+            throw new IllegalArgumentException("Today cannot be null");
+        }
+        this.today = today.toEpochDay();
+        for (int i = 0; i < HORIZON_DAYS; i++) {
+            ring.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Schedules an outstanding loan to be reported on the day it becomes overdue, or by the
+     * next advance if it is overdue already.
+     *
+     * @param loan the outstanding loan
+     */
+    public synchronized void schedule(Loan loan) {
+        long day = overdueDay(loan);
+        Map<UUID, Loan> bucket = day <= today ? pastDue : bucketFor(day, true);
+        if (bucket.put(loan.getLoanId(), loan) == null) size++;
+    }
+
+    /**
+     * Removes a loan that has been returned before becoming overdue.
+     *
+     * @param loan a previously scheduled loan
+     * @return {@code true} if the loan was scheduled and has been removed
+     */
+    public synchronized boolean cancel(Loan loan) {
+        long day = overdueDay(loan);
+        Map<UUID, Loan> bucket = day <= today ? pastDue : bucketFor(day, false);
+        if (bucket == null || bucket.remove(loan.getLoanId()) == null) return false;
+        if (bucket.isEmpty() && day > today + HORIZON_DAYS) {
+            overflow.remove(day);
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Advances the clock and reports every scheduled loan that has become overdue since
+     * the previous advance, along with any scheduled when already overdue. Reported loans
+     * are no longer scheduled.
+     *
+     * @param newToday the new current date; dates not after the current one only report
+     *                 loans scheduled when already overdue
+     * @return the newly overdue loans, earliest due date first
+     */
+    public synchronized List<Loan> advanceTo(LocalDate newToday) {
+        long target = newToday.toEpochDay();
+        List<Loan> due = new ArrayList<>(pastDue.values());
+        pastDue.clear();
+        if (target > today) {
+            // Empties one ring bucket per elapsed day, up to a full turn of the ring
+            long ringEnd = Math.min(target, today + HORIZON_DAYS);
+            for (long day = today + 1; day <= ringEnd; day++) {
+                Map<UUID, Loan> bucket = ring.get(slot(day));
+                due.addAll(bucket.values());
+                bucket.clear();
+            }
+            // Anything further out than a full turn of the ring is still in the overflow
+            for (Iterator<Map<UUID, Loan>> it = overflow.headMap(target, true).values().iterator(); it.hasNext(); ) {
+                due.addAll(it.next().values());
+                it.remove();
+            }
+            today = target;
+
+            // Pulls loans that are now within the horizon into the ring
+            for (Iterator<Map.Entry<Long, Map<UUID, Loan>>> it =
+                    overflow.headMap(today + HORIZON_DAYS, true).entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Long, Map<UUID, Loan>> entry = it.next();
+                ring.get(slot(entry.getKey())).putAll(entry.getValue());
+                it.remove();
+            }
+        }
+        size -= due.size();
+        due.sort(Comparator.comparingLong(Loan::getDueEpochDay));
+        return due;
+    }
+
+    /** @return the date the clock was last advanced to */
+    public synchronized LocalDate today() {
+        return LocalDate.ofEpochDay(today);
+    }
+
+    /** @return the number of loans currently scheduled */
+    public synchronized int size() {
+        return size;
+    }
+
+    // ---------------------------------------- Internals ------------------------------------
+
+    /** @return the epoch day on which the loan first counts as overdue */
+    private static long overdueDay(Loan loan) {
+        return loan.getDueEpochDay() + 1;
+    }
+
+    private static int slot(long day) {
+        return (int) Math.floorMod(day, (long) HORIZON_DAYS);
+    }
+
+    /**
+     * Finds the bucket holding loans overdue on a future day.
+     *
+     * @param day an epoch day after today
+     * @param create whether to create a missing overflow bucket
+     * @return the bucket, or null if it is an overflow bucket that does not exist
+     */
+    private Map<UUID, Loan> bucketFor(long day, boolean create) {
+        if (day <= today + HORIZON_DAYS) {
+            return ring.get(slot(day));
+        }
+        return create ? overflow.computeIfAbsent(day, d -> new HashMap<>()) : overflow.get(day);
+    }
+}
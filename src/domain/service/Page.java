@@ -0,0 +1,20 @@
+package domain.service;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One page of a listing ordered by ID.
+ *
+ * @param entries the entries on this page, in ID order
+ * @param nextCursor the cursor to pass to fetch the next page, or null if this was the last
+ *                   page; a full page always has a cursor, so the page after it may be empty
+ * @param <T> the type of entry listed
+ */
+public record Page<T>(List<T> entries, UUID nextCursor) {
+
+    /** @return whether there may be more entries after this page */
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
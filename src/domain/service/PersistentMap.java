@@ -0,0 +1,308 @@
+package domain.service;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable hash map that shares structure between versions: a hash array mapped trie.
+ * <p>
+ *     Keys are placed in a tree of nodes with up to 32 children each, chosen by successive
+ *     five-bit slices of their hash. {@link #put} and {@link #remove} copy only the nodes
+ *     on the path to the key, at most seven, and return a new map that shares every other
+ *     node with this one; this map is left unchanged. Lookups walk the same path without
+ *     any locking, so a map can be read by any number of threads while newer versions are
+ *     built from it.
+ * </p>
+ * <p>
+ *     Null keys and values are not permitted.
+ * </p>
+ *
+ * @param <K> the type of key
+ * @param <V> the type of value
+ */
+final class PersistentMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final Branch EMPTY_ROOT = new Branch(0, new Object[0]);
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(EMPTY_ROOT, 0);
+
+    private final Branch root;
+    private final int size;
+
+    /** A key and its value, stored in the slot of a {@link Branch} or {@link Collision}. */
+    private record Entry(Object key, Object value) {}
+
+    /** A node with a child, or an entry, for each bit set in its bitmap. */
+    private record Branch(int bitmap, Object[] slots) {
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        Branch withSlot(int bit, Object slot) {
+            Object[] copy = slots.clone();
+            copy[index(bit)] = slot;
+            return new Branch(bitmap, copy);
+        }
+
+        Branch withInserted(int bit, Object slot) {
+            int index = index(bit);
+            Object[] copy = new Object[slots.length + 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            copy[index] = slot;
+            System.arraycopy(slots, index, copy, index + 1, slots.length - index);
+            return new Branch(bitmap | bit, copy);
+        }
+
+        Branch withRemoved(int bit) {
+            int index = index(bit);
+            Object[] copy = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            System.arraycopy(slots, index + 1, copy, index, copy.length - index);
+            return new Branch(bitmap & ~bit, copy);
+        }
+    }
+
+    /** Entries whose keys have identical hashes, below the last level of branches. */
+    private record Collision(Entry[] entries) {}
+
+    private PersistentMap(Branch root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /** @return the empty map */
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /** @return the number of keys in the map */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param key the key to look up; may be null
+     * @return the key's value, or null if the map does not contain it
+     */
+    @SuppressWarnings("unchecked")
+    V get(Object key) {
+        if (key == null) return null;
+        int hash = hash(key);
+        Object node = root;
+        for (int shift = 0; ; shift += BITS) {
+            if (node instanceof Branch branch) {
+                int bit = bit(hash, shift);
+                if ((branch.bitmap & bit) == 0) return null;
+                node = branch.slots[branch.index(bit)];
+            } else if (node instanceof Entry entry) {
+                return entry.key.equals(key) ? (V) entry.value : null;
+            } else {
+                for (Entry entry : ((Collision) node).entries) {
+                    if (entry.key.equals(key)) return (V) entry.value;
+                }
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @param key the key to add or replace; must not be null
+     * @param value the key's new value; must not be null
+     * @return a map with the key mapped to the value; this map if it already was
+     */
+    PersistentMap<K, V> put(K key, V value) {
+        boolean[] added = new boolean[1];
+        Branch updated = (Branch) put(root, 0, hash(key), new Entry(key, value), added);
+        return updated == root ? this : new PersistentMap<>(updated, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * @param key the key to remove; may be null
+     * @return a map without the key; this map if it did not contain it
+     */
+    PersistentMap<K, V> remove(Object key) {
+        if (key == null) return this;
+        Object updated = remove(root, 0, hash(key), key);
+        if (updated == root) return this;
+        return new PersistentMap<>(updated == null ? EMPTY_ROOT : (Branch) updated, size - 1);
+    }
+
+    /** @return the values, in no particular order; the stream can be split for parallel use */
+    Stream<V> values() {
+        return StreamSupport.stream(new ValueSpliterator<>(root.slots, 0, root.slots.length, size), false);
+    }
+
+    // ---------------------------------------- Internals ------------------------------------
+
+    private static Object put(Object node, int shift, int hash, Entry entry, boolean[] added) {
+        if (node instanceof Collision collision) {
+            Entry[] entries = collision.entries;
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].key.equals(entry.key)) {
+                    if (entries[i].value == entry.value) return node;
+                    Entry[] copy = entries.clone();
+                    copy[i] = entry;
+                    return new Collision(copy);
+                }
+            }
+            added[0] = true;
+            Entry[] copy = Arrays.copyOf(entries, entries.length + 1);
+            copy[entries.length] = entry;
+            return new Collision(copy);
+        }
+        Branch branch = (Branch) node;
+        int bit = bit(hash, shift);
+        if ((branch.bitmap & bit) == 0) {
+            added[0] = true;
+            return branch.withInserted(bit, entry);
+        }
+        Object slot = branch.slots[branch.index(bit)];
+        Object updated;
+        if (slot instanceof Entry existing) {
+            if (existing.key.equals(entry.key)) {
+                if (existing.value == entry.value) return node;
+                updated = entry;
+            } else {
+                added[0] = true;
+                updated = pair(existing, hash(existing.key), entry, hash, shift + BITS);
+            }
+        } else {
+            updated = put(slot, shift + BITS, hash, entry, added);
+            if (updated == slot) return node;
+        }
+        return branch.withSlot(bit, updated);
+    }
+
+    /** @return the node or entry to replace {@code node} with, null if it is now empty */
+    private static Object remove(Object node, int shift, int hash, Object key) {
+        if (node instanceof Collision collision) {
+            Entry[] entries = collision.entries;
+            for (int i = 0; i < entries.length; i++) {
+                if (!entries[i].key.equals(key)) continue;
+                if (entries.length == 2) return entries[1 - i];
+                Entry[] copy = new Entry[entries.length - 1];
+                System.arraycopy(entries, 0, copy, 0, i);
+                System.arraycopy(entries, i + 1, copy, i, copy.length - i);
+                return new Collision(copy);
+            }
+            return node;
+        }
+        Branch branch = (Branch) node;
+        int bit = bit(hash, shift);
+        if ((branch.bitmap & bit) == 0) return node;
+        Object slot = branch.slots[branch.index(bit)];
+        Object updated;
+        if (slot instanceof Entry entry) {
+            if (!entry.key.equals(key)) return node;
+            updated = null;
+        } else {
+            updated = remove(slot, shift + BITS, hash, key);
+            if (updated == slot) return node;
+            // Pulls a lone remaining entry up, so that the tree stays as shallow as possible
+            if (updated instanceof Branch child && child.slots.length == 1 && child.slots[0] instanceof Entry) {
+                updated = child.slots[0];
+            }
+        }
+        if (updated != null) return branch.withSlot(bit, updated);
+        return branch.slots.length == 1 ? null : branch.withRemoved(bit);
+    }
+
+    /** @return a node holding two entries with different keys */
+    private static Object pair(Entry first, int firstHash, Entry second, int secondHash, int shift) {
+        if (shift >= Integer.SIZE) {
+            return new Collision(new Entry[] { first, second });
+        }
+        int firstBit = bit(firstHash, shift);
+        int secondBit = bit(secondHash, shift);
+        if (firstBit == secondBit) {
+            return new Branch(firstBit, new Object[] { pair(first, firstHash, second, secondHash, shift + BITS) });
+        }
+        Object[] slots = Integer.compareUnsigned(firstBit, secondBit) < 0
+                ? new Object[] { first, second }
+                : new Object[] { second, first };
+        return new Branch(firstBit | secondBit, slots);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16) * 0x45D9F3B;
+    }
+
+    /**
+     * Visits the values below a range of slots, depth first. Splits by halving the range,
+     * descending into a lone branch to find more slots to split.
+     */
+    private static final class ValueSpliterator<V> implements Spliterator<V> {
+
+        private Object[] slots;
+        private int from;
+        private int to;
+        private final Deque<Object> pending = new ArrayDeque<>();
+        private long estimate;
+
+        private ValueSpliterator(Object[] slots, int from, int to, long estimate) {
+            this.slots = slots;
+            this.from = from;
+            this.to = to;
+            this.estimate = estimate;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super V> action) {
+            while (true) {
+                if (pending.isEmpty()) {
+                    if (from >= to) return false;
+                    pending.push(slots[from++]);
+                }
+                Object next = pending.pop();
+                if (next instanceof Entry entry) {
+                    action.accept((V) entry.value);
+                    return true;
+                }
+                Object[] children = next instanceof Branch branch ? branch.slots : ((Collision) next).entries;
+                for (int i = children.length - 1; i >= 0; i--) {
+                    pending.push(children[i]);
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<V> trySplit() {
+            if (!pending.isEmpty()) return null;
+            if (to - from == 1 && slots[from] instanceof Branch branch) {
+                slots = branch.slots;
+                from = 0;
+                to = slots.length;
+            }
+            if (to - from < 2) return null;
+            int middle = (from + to) >>> 1;
+            ValueSpliterator<V> prefix = new ValueSpliterator<>(slots, from, middle, estimate >>>= 1);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return IMMUTABLE | NONNULL;
+        }
+    }
+}
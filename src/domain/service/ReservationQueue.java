@@ -0,0 +1,124 @@
+package domain.service;
+
+import domain.model.Reservation;
+import domain.model.ReservationStatus;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * FIFO waitlist of reservations for a single media item.
+ * <p>
+ *     Only reservations that may still be ACTIVE are kept in the waitlist; once a
+ *     reservation is fulfilled or cancelled it leaves the waitlist, and is then only held
+ *     in the library's record of all reservations. Reservations
+ *     cancelled while waiting are dropped when they reach the head of the waitlist, or all
+ *     at once when they make up half of it, so finding the next ACTIVE reservation is
+ *     amortised O(1) however long the item's reservation history grows.
+ * </p>
+ * <p>
+ *     Not thread-safe; guarded by the owning item's lock in {@link Library}.
+ * </p>
+ */
+final class ReservationQueue {
+
+    /** Reservations in the order they were placed; the head is always checked before use. */
+    private final Deque<Reservation> waiting = new ArrayDeque<>();
+
+    /** Number of reservations cancelled through {@link #cancel} still sitting in the waitlist. */
+    private int cancelledWaiting;
+
+    /**
+     * Adds a new reservation to the back of the waitlist.
+     *
+     * @param reservation an ACTIVE reservation
+     */
+    void add(Reservation reservation) {
+        waiting.addLast(reservation);
+    }
+
+    /** @return {@code true} if the waitlist holds an ACTIVE reservation */
+    boolean hasActive() {
+        return peekActive() != null;
+    }
+
+    /**
+     * Fulfils the oldest ACTIVE reservation and removes it from the waitlist.
+     *
+     * @return the fulfilled reservation, or null if none are ACTIVE
+     */
+    Reservation fulfilNext() {
+        Reservation next = peekActive();
+        if (next == null) return null;
+        waiting.pollFirst();
+        next.fulfil();
+        return next;
+    }
+
+    /**
+     * Cancels a waiting reservation. It leaves the waitlist once it reaches the head, or
+     * when cancelled reservations make up half of the waitlist.
+     *
+     * @param reservation a reservation previously added to this queue
+     * @return {@code true} if the reservation was ACTIVE and has been cancelled
+     */
+    boolean cancel(Reservation reservation) {
+        if (reservation.getStatus() != ReservationStatus.ACTIVE) return false;
+        reservation.cancel();
+        cancelledWaiting++;
+        if (cancelledWaiting * 2 >= waiting.size()) {
+            compact();
+        }
+        return true;
+    }
+
+    /** @return the ACTIVE reservations in the order they were placed */
+    List<Reservation> active() {
+        List<Reservation> active = new ArrayList<>(waiting.size());
+        for (Reservation reservation : waiting) {
+            if (reservation.getStatus() == ReservationStatus.ACTIVE) active.add(reservation);
+        }
+        return active;
+    }
+
+    /** @return the number of reservations still waiting, including any not yet compacted */
+    int waitingCount() {
+        return waiting.size();
+    }
+
+    // ---------------------------------------- Internals ------------------------------------
+
+    /**
+     * Drops terminal reservations from the head of the waitlist until an ACTIVE one is found.
+     * Also covers reservations cancelled directly on the entity rather than through this queue.
+     *
+     * @return the oldest ACTIVE reservation, or null if there is none
+     */
+    private Reservation peekActive() {
+        Reservation head;
+        while ((head = waiting.peekFirst()) != null && head.getStatus() != ReservationStatus.ACTIVE) {
+            waiting.pollFirst();
+            if (head.getStatus() == ReservationStatus.CANCELLED && cancelledWaiting > 0) {
+                cancelledWaiting--;
+            }
+        }
+        return head;
+    }
+
+    /**
+     * Moves every terminal reservation out of the waitlist in a single pass.
+     */
+    private void compact() {
+        Iterator<Reservation> it = waiting.iterator();
+        while (it.hasNext()) {
+            Reservation reservation = it.next();
+            if (reservation.getStatus() != ReservationStatus.ACTIVE) {
+                it.remove();
+            }
+        }
+        cancelledWaiting = 0;
+    }
+}
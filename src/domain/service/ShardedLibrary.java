@@ -0,0 +1,492 @@
+package domain.service;
+
+import common.ValidationException;
+import common.metrics.InMemoryMetricsRegistry;
+import common.metrics.MetricsRegistry;
+import domain.model.*;
+import domain.policy.FinePolicy;
+import domain.policy.LoanPolicy;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Coordinator that splits one library's catalogue across several {@link Library} shards, so
+ * that circulation scales with the number of cores rather than with one aggregate.
+ * <p>
+ *     Items are partitioned by a hash of their media ID, and each item's loans and
+ *     reservation queue live on the same shard as the item, so checkouts, returns and
+ *     reservations are routed to exactly one shard. Members are replicated: every shard
+ *     holds the same {@link Member} instances, so a member's details and active flag read
+ *     the same everywhere, and member searches are answered by any one shard.
+ * </p>
+ * <p>
+ *     Each shard is driven by its own thread, which runs every change routed to it, so
+ *     the shards proceed in parallel and a shard's own locks are never contended by its
+ *     peers' work. Rules that span shards are checked by the coordinator: a checkout is
+ *     refused if the member has an overdue loan on any shard, and a member with an overdue
+ *     loan anywhere cannot be removed. Searches, listings and counts run on the caller's
+ *     thread, reading each shard directly as a {@link Library}'s reads are thread-safe, so
+ *     they never queue behind checkouts; the shards' sorted results are merged.
+ * </p>
+ * <p>
+ *     Thread-safe. Changes that touch several shards, such as adding a member or a batch
+ *     of items, are not atomic: while one is in progress it may be visible on some shards
+ *     but not yet others. Each shard publishes its own events, and records its metrics under
+ *     its own prefix, e.g. {@code shard0.library.loanItem.calls}.
+ * </p>
+ */
+public final class ShardedLibrary implements Closeable {
+
+    private static final Comparator<MediaItem> BY_TITLE = Comparator.comparing(
+            m -> m.getTitle() == null ? "" : m.getTitle(), String.CASE_INSENSITIVE_ORDER);
+
+    private static final Comparator<MediaItem> BY_MEDIA_ID = Comparator.comparing(MediaItem::getMediaId);
+
+    private final Library[] shards;
+    private final ExecutorService[] executors;
+
+    /**
+     * Constructs a sharded library reading today's date from the system clock.
+     *
+     * @param shardCount the number of shards, e.g. the number of cores; must be positive
+     * @param loanPolicy policy for calculating due dates; must not be null
+     * @param finePolicy policy for calculating fines; must not be null
+     */
+    public ShardedLibrary(int shardCount, LoanPolicy loanPolicy, FinePolicy finePolicy) {
+        this(shardCount, loanPolicy, finePolicy, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Constructs a sharded library whose shards all read today's date from the given clock.
+     *
+     * @param shardCount the number of shards, e.g. the number of cores; must be positive
+     * @param loanPolicy policy for calculating due dates; must not be null
+     * @param finePolicy policy for calculating fines; must not be null
+     * @param clock the clock to read today's date from; must not be null
+     */
+    public ShardedLibrary(int shardCount, LoanPolicy loanPolicy, FinePolicy finePolicy, Clock clock) {
+        this(shardCount, loanPolicy, finePolicy, new InMemoryMetricsRegistry(), clock);
+    }
+
+    /**
+     * Constructs a sharded library whose shards report their metrics to the given registry,
+     * each with its names prefixed by {@code "shard<index>."}.
+     *
+     * @param shardCount the number of shards, e.g. the number of cores; must be positive
+     * @param loanPolicy policy for calculating due dates; must not be null
+     * @param finePolicy policy for calculating fines; must not be null
+     * @param metricsRegistry where the shards record metrics; must not be null
+     * @param clock the clock to read today's date from; must not be null
+     */
+    public ShardedLibrary(int shardCount, LoanPolicy loanPolicy, FinePolicy finePolicy,
+                          MetricsRegistry metricsRegistry, Clock clock) {
+        if (shardCount <= 0) {
+            throw new ValidationException("Shard count must be positive");
+        }
+        if (metricsRegistry == null) {
+            throw new ValidationException("Metrics registry cannot be null");
+        }
+        shards = new Library[shardCount];
+        executors = new ExecutorService[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            // Each shard is only driven by its own thread, so one lock stripe is enough
+            shards[i] = new Library(loanPolicy, finePolicy, 1, metricsRegistry.withPrefix("shard" + i + "."), clock);
+            String name = "library-shard-" + i;
+            executors[i] = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /** @return the number of shards */
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * @param mediaId the ID of an item; may be null
+     * @return the index of the shard that holds the item
+     */
+    public int shardOf(UUID mediaId) {
+        if (mediaId == null) return 0;
+        int h = mediaId.hashCode();
+        // Spreads higher bits downwards, as for lock stripes
+        h ^= (h >>> 16);
+        return Math.floorMod(h, shards.length);
+    }
+
+    /** Stops the shards' threads once the operations already routed to them have run. */
+    @Override
+    public void close() {
+        for (ExecutorService executor : executors) {
+            executor.close();
+        }
+    }
+
+    // ---------------------------------------- Items ----------------------------------------
+
+    /**
+     * Adds a media item to the shard chosen by its media ID.
+     *
+     * @param item a non null {@link MediaItem}
+     */
+    public void addItem(MediaItem item) {
+        if (item == null) {
+            throw new ValidationException("Item cannot be null");
+        }
+        on(shardOf(item.getMediaId()), shard -> {
+            shard.addItem(item);
+            return null;
+        });
+    }
+
+    /**
+     * Adds a batch of items, each shard adding its share of the batch in parallel.
+     *
+     * @param batch non null {@link MediaItem}s
+     */
+    public void addItems(Collection<? extends MediaItem> batch) {
+        if (batch == null || batch.stream().anyMatch(Objects::isNull)) {
+            throw new ValidationException("Items cannot be null");
+        }
+        List<List<MediaItem>> byShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (MediaItem item : batch) {
+            byShard.get(shardOf(item.getMediaId())).add(item);
+        }
+        onEach(i -> {
+            if (!byShard.get(i).isEmpty()) shards[i].addItems(byShard.get(i));
+            return null;
+        });
+    }
+
+    /**
+     * Removes a media item from its shard.
+     *
+     * @param mediaId the ID of the item to remove
+     */
+    public void removeItem(UUID mediaId) {
+        on(shardOf(mediaId), shard -> {
+            shard.removeItem(mediaId);
+            return null;
+        });
+    }
+
+    // ---------------------------------------- Members --------------------------------------
+
+    /**
+     * Adds a member to every shard.
+     *
+     * @param member a non null {@link Member}
+     */
+    public void addMember(Member member) {
+        if (member == null) {
+            throw new ValidationException("Member cannot be null");
+        }
+        onEach(i -> {
+            shards[i].addMember(member);
+            return null;
+        });
+    }
+
+    /**
+     * Adds a batch of members to every shard, the shards in parallel.
+     *
+     * @param batch non null {@link Member}s
+     */
+    public void addMembers(Collection<? extends Member> batch) {
+        if (batch == null || batch.stream().anyMatch(Objects::isNull)) {
+            throw new ValidationException("Members cannot be null");
+        }
+        onEach(i -> {
+            shards[i].addMembers(batch);
+            return null;
+        });
+    }
+
+    /**
+     * Removes a member from every shard, unless they have an overdue loan on any of them.
+     *
+     * @param memberId the ID of the member to remove
+     */
+    public void removeMember(UUID memberId) {
+        if (hasOverdueLoans(memberId)) {
+            throw new ValidationException("Cannot remove: member has overdue loans");
+        }
+        onEach(i -> {
+            shards[i].removeMember(memberId);
+            return null;
+        });
+    }
+
+    // ---------------------------------------- Loans ----------------------------------------
+
+    /**
+     * Loans an item to a member on the item's shard, under the same rules as
+     * {@link Library#loanItem}, with overdue loans on every shard counted.
+     *
+     * @param memberId the ID of the member borrowing item
+     * @param mediaId the ID of the item being borrowed
+     * @return the created {@link Loan}
+     */
+    public Loan loanItem(UUID memberId, UUID mediaId) {
+        int home = shardOf(mediaId);
+        return on(home, shard -> {
+            // The item's shard checks its own loans; the others are asked directly, as their
+            // threads may be busy. A loan cannot become overdue on the day it is made, so a
+            // loan made elsewhere meanwhile cannot invalidate the check.
+            for (int i = 0; i < shards.length; i++) {
+                if (i != home && shards[i].hasOverdueLoans(memberId)) {
+                    throw new ValidationException("Cannot loan item with overdue loans");
+                }
+            }
+            return shard.loanItem(memberId, mediaId);
+        });
+    }
+
+    /**
+     * Returns an item on its shard.
+     *
+     * @param mediaId the ID of the item being returned
+     * @return the returned {@link Loan}
+     */
+    public Loan returnItem(UUID mediaId) {
+        return on(shardOf(mediaId), shard -> shard.returnItem(mediaId));
+    }
+
+    /**
+     * @param memberId the ID of the member; may be null
+     * @return {@code true} if the member has an overdue loan on any shard
+     */
+    public boolean hasOverdueLoans(UUID memberId) {
+        for (Library shard : shards) {
+            if (shard.hasOverdueLoans(memberId)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Collects, from every shard, the outstanding loans that have become overdue since the
+     * previous call.
+     *
+     * @param today the date to check against
+     * @return the newly overdue loans, shard by shard
+     */
+    public List<Loan> collectNewlyOverdueLoans(LocalDate today) {
+        List<Loan> overdue = new ArrayList<>();
+        onEach(i -> shards[i].collectNewlyOverdueLoans(today)).forEach(overdue::addAll);
+        return overdue;
+    }
+
+    // ---------------------------------------- Reservations ---------------------------------
+
+    /**
+     * Places a reservation on the item's shard.
+     *
+     * @param memberId the ID of the member reserving the item
+     * @param mediaId the ID of the item being reserved
+     * @return the created {@link Reservation}
+     */
+    public Reservation placeReservation(UUID memberId, UUID mediaId) {
+        return on(shardOf(mediaId), shard -> shard.placeReservation(memberId, mediaId));
+    }
+
+    /**
+     * Cancels a reservation, looking for it on each shard in turn, as its ID does not say
+     * which item it is for.
+     *
+     * @param reservationId the ID of the reservation to cancel
+     * @return {@code true} if the reservation was cancelled, {@code false} if it was no longer ACTIVE
+     */
+    public boolean cancelReservation(UUID reservationId) {
+        for (int i = 0; i < shards.length; i++) {
+            Boolean cancelled = on(i, shard -> {
+                try {
+                    return shard.cancelReservation(reservationId);
+                } catch (ValidationException e) {
+                    return null;    // Not this shard's reservation
+                }
+            });
+            if (cancelled != null) return cancelled;
+        }
+        throw new ValidationException("Reservation not found.");
+    }
+
+    /**
+     * Fulfils the oldest ACTIVE reservation on an item, on the item's shard.
+     *
+     * @param mediaId the ID of the reserved item
+     * @return {@code true} if a reservation was fulfilled, {@code false} if none were ACTIVE
+     */
+    public boolean fulfillReservation(UUID mediaId) {
+        return on(shardOf(mediaId), shard -> shard.fulfillReservation(mediaId));
+    }
+
+    // ---------------------------------------- Lookups and Listings -------------------------
+
+    /**
+     * Lists one page of media items in ID order across every shard, like
+     * {@link Library#listItems(Class, AvailabilityStatus, UUID, int)}. Each shard lists a
+     * page after the cursor and the pages are merged, keeping the first {@code pageSize}.
+     *
+     * @param type the type of item to list; {@code MediaItem.class} lists every type
+     * @param status the status items must have, or null for any status
+     * @param after the cursor from the previous page, or null to start from the beginning
+     * @param pageSize the maximum number of items on the page; must be positive
+     * @param <T> the type of item listed
+     * @return the page of items
+     */
+    public <T extends MediaItem> Page<T> listItems(Class<T> type, AvailabilityStatus status, UUID after,
+                                                   int pageSize) {
+        List<List<T>> pages = new ArrayList<>(shards.length);
+        for (Library shard : shards) {
+            pages.add(shard.listItems(type, status, after, pageSize).entries());
+        }
+        List<T> page = merge(pages, BY_MEDIA_ID, pageSize);
+        UUID nextCursor = page.size() == pageSize ? page.getLast().getMediaId() : null;
+        return new Page<>(page, nextCursor);
+    }
+
+    /**
+     * Finds media items whose title, author or publisher contains the keyword, ignoring
+     * case, searching each shard in turn.
+     *
+     * @param keyword the text to search for; null matches every item
+     * @param status the status items must have, or null for any status
+     * @return the matching items sorted by title
+     */
+    public List<MediaItem> searchMedia(String keyword, AvailabilityStatus status) {
+        List<List<MediaItem>> found = new ArrayList<>(shards.length);
+        for (Library shard : shards) {
+            found.add(shard.searchMedia(keyword, status));
+        }
+        return merge(found, BY_TITLE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds members whose name contains the keyword, ignoring case. Every shard holds every
+     * member, so one shard answers.
+     *
+     * @param keyword the text to search for; null matches every member
+     * @return the matching members sorted by name
+     */
+    public List<Member> searchMembers(String keyword) {
+        return shards[0].searchMembers(keyword);
+    }
+
+    /**
+     * Counts the media items in an availability status across every shard, from the
+     * shards' snapshots and without going through their threads.
+     *
+     * @param status the status to count
+     * @return the number of items currently in that status
+     */
+    public int countItems(AvailabilityStatus status) {
+        int count = 0;
+        for (Library shard : shards) {
+            count += shard.countItems(status);
+        }
+        return count;
+    }
+
+    /**
+     * Verifies every shard's indexes, and that every item is on the shard its ID maps to.
+     *
+     * @throws IllegalStateException describing the first inconsistency found
+     */
+    public void verifyIndexes() {
+        for (int i = 0; i < shards.length; i++) {
+            int index = i;
+            on(i, shard -> {
+                shard.verifyIndexes();
+                shard.snapshot().items().forEach(item -> {
+                    if (shardOf(item.getMediaId()) != index) {
+                        throw new IllegalStateException("Item on wrong shard " + index + ": " + item.getMediaId());
+                    }
+                });
+                return null;
+            });
+        }
+    }
+
+    // ---------------------------------------- Internals ------------------------------------
+
+    /**
+     * Runs an operation on a shard's thread and waits for it.
+     *
+     * @return the operation's result
+     * @throws RuntimeException whatever the operation threw, e.g. a ValidationException
+     */
+    private <T> T on(int shard, Function<Library, T> operation) {
+        return join(CompletableFuture.supplyAsync(() -> operation.apply(shards[shard]), executors[shard]));
+    }
+
+    /**
+     * Runs an operation on every shard's thread at once and waits for them all.
+     *
+     * @param operation given each shard's index
+     * @return each shard's result, in shard order
+     * @throws RuntimeException the first shard's failure, if any failed, once all have finished
+     */
+    private <T> List<T> onEach(Function<Integer, T> operation) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            int shard = i;
+            futures.add(CompletableFuture.supplyAsync(() -> operation.apply(shard), executors[i]));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).exceptionally(e -> null).join();
+        List<T> results = new ArrayList<>(shards.length);
+        for (CompletableFuture<T> future : futures) {
+            results.add(join(future));
+        }
+        return results;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Merges lists that are each sorted into one sorted list.
+     *
+     * @param sorted the lists, each sorted by {@code order}
+     * @param order the order of every list
+     * @param limit the most entries to merge
+     * @return up to {@code limit} of the entries, sorted
+     */
+    private static <T, U extends T> List<U> merge(List<List<U>> sorted, Comparator<T> order, int limit) {
+        int total = sorted.stream().mapToInt(List::size).sum();
+        List<U> merged = new ArrayList<>(Math.min(limit, total));
+        int[] positions = new int[sorted.size()];
+        // Heads of the lists, ordered by their next entry
+        PriorityQueue<Integer> heads = new PriorityQueue<>(Math.max(1, sorted.size()),
+                (a, b) -> order.compare(sorted.get(a).get(positions[a]), sorted.get(b).get(positions[b])));
+        for (int i = 0; i < sorted.size(); i++) {
+            if (!sorted.get(i).isEmpty()) heads.add(i);
+        }
+        while (!heads.isEmpty() && merged.size() < limit) {
+            int list = heads.poll();
+            merged.add(sorted.get(list).get(positions[list]++));
+            if (positions[list] < sorted.get(list).size()) heads.add(list);
+        }
+        return merged;
+    }
+}
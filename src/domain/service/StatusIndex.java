@@ -0,0 +1,85 @@
+package domain.service;
+
+import domain.model.AvailabilityStatus;
+
+import java.util.Arrays;
+
+/**
+ * Index of item ordinals by {@link AvailabilityStatus}.
+ * <p>
+ *     Keeps one {@link CompressedBitmap} per status, the status of every ordinal so that a
+ *     transition only has to touch the two bitmaps involved, and a running count per
+ *     status, so counting the items in a status takes constant time and listing them
+ *     visits only those items. Ordinals are shared with the {@link CategoryIndex}, so a
+ *     status bitmap can be intersected directly with a category query's result.
+ * </p>
+ * <p>
+ *     Not thread-safe; callers are responsible for synchronisation.
+ * </p>
+ */
+final class StatusIndex {
+
+    private static final AvailabilityStatus[] STATUSES = AvailabilityStatus.values();
+
+    /** Marks an ordinal that is not indexed. */
+    private static final byte NONE = -1;
+
+    /** The status of each ordinal, as its enum ordinal, or {@link #NONE}. */
+    private byte[] statuses = new byte[1024];
+
+    private final CompressedBitmap[] bitmaps = new CompressedBitmap[STATUSES.length];
+    private final int[] counts = new int[STATUSES.length];
+
+    StatusIndex() {
+        Arrays.fill(statuses, NONE);
+        for (int i = 0; i < bitmaps.length; i++) {
+            bitmaps[i] = new CompressedBitmap();
+        }
+    }
+
+    /**
+     * Files an ordinal under a status, moving it out of any status it was filed under.
+     *
+     * @param ordinal the item's ordinal
+     * @param status the item's current status
+     */
+    void put(int ordinal, AvailabilityStatus status) {
+        if (ordinal >= statuses.length) {
+            int length = statuses.length;
+            statuses = Arrays.copyOf(statuses, Math.max(ordinal + 1, length * 2));
+            Arrays.fill(statuses, length, statuses.length, NONE);
+        }
+        byte previous = statuses[ordinal];
+        byte next = (byte) status.ordinal();
+        if (previous == next) return;
+        if (previous != NONE) {
+            bitmaps[previous].remove(ordinal);
+            counts[previous]--;
+        }
+        bitmaps[next].add(ordinal);
+        counts[next]++;
+        statuses[ordinal] = next;
+    }
+
+    /**
+     * Removes an ordinal from the index.
+     *
+     * @param ordinal the item's ordinal
+     */
+    void remove(int ordinal) {
+        if (ordinal >= statuses.length || statuses[ordinal] == NONE) return;
+        bitmaps[statuses[ordinal]].remove(ordinal);
+        counts[statuses[ordinal]]--;
+        statuses[ordinal] = NONE;
+    }
+
+    /** @return the number of ordinals filed under the status */
+    int count(AvailabilityStatus status) {
+        return counts[status.ordinal()];
+    }
+
+    /** @return the ordinals filed under the status; must not be modified */
+    CompressedBitmap ordinals(AvailabilityStatus status) {
+        return bitmaps[status.ordinal()];
+    }
+}
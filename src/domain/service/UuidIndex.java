@@ -0,0 +1,212 @@
+package domain.service;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Dictionary from UUIDs to dense {@code int} surrogate IDs (0, 1, 2, ...).
+ * <p>
+ *     The Library's public API identifies entities by UUID, while its internal tables are
+ *     arrays indexed by surrogate ID. UUIDs are stored as pairs of {@code long}s in an
+ *     open-addressing hash table with linear probing, so the dictionary holds no UUID
+ *     objects and a lookup is a few reads from two flat arrays. An ID stays assigned to its
+ *     UUID until it is {@linkplain #release released}, after which it may be handed to
+ *     another UUID; IDs that are never released are never reused.
+ * </p>
+ * <p>
+ *     Thread-safe. Lookups are optimistic and take no lock unless they overlap an
+ *     assignment; assignments are serialised.
+ * </p>
+ */
+final class UuidIndex {
+
+    /** Marks an empty hash table slot. */
+    private static final int EMPTY = -1;
+
+    /** The table is grown when more than this fraction of its slots are used. */
+    private static final double MAX_LOAD = 0.6;
+
+    private final StampedLock lock = new StampedLock();
+
+    /** The current hash table; replaced as a whole when grown. */
+    private volatile Tables tables = new Tables(16);
+
+    /** The number of IDs ever handed out; the next new ID. */
+    private int size;
+
+    /** The number of UUIDs in the table. */
+    private int live;
+
+    /** Released IDs, reused before new ones are handed out. */
+    private int[] freeIds = new int[16];
+
+    private int freeCount;
+
+    /**
+     * The arrays of the hash table, swapped together so that a lookup never sees arrays of
+     * different generations.
+     *
+     * @param slots two longs (most and least significant bits) per hash table slot
+     * @param ids the surrogate ID in each hash table slot, or {@link #EMPTY}
+     */
+    private record Tables(long[] slots, int[] ids) {
+
+        /** @param capacity the number of hash table slots; a power of two */
+        Tables(int capacity) {
+            this(new long[capacity * 2], filledWithEmpty(capacity));
+        }
+
+        private static int[] filledWithEmpty(int capacity) {
+            int[] ids = new int[capacity];
+            Arrays.fill(ids, EMPTY);
+            return ids;
+        }
+
+        /** @return the number of IDs these tables can hold without exceeding {@link #MAX_LOAD} */
+        int idCapacity() {
+            return (int) (ids.length * MAX_LOAD);
+        }
+    }
+
+    /**
+     * Looks up the surrogate ID of a UUID.
+     *
+     * @param uuid the UUID to look up; may be null
+     * @return its surrogate ID, or -1 if none has been assigned
+     */
+    int get(UUID uuid) {
+        if (uuid == null) return -1;
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            int id = find(tables, msb, lsb);
+            if (lock.validate(stamp)) return id;
+        }
+        stamp = lock.readLock();
+        try {
+            return find(tables, msb, lsb);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Looks up the surrogate ID of a UUID, assigning the next one if it has none.
+     *
+     * @param uuid the UUID to look up; must not be null
+     * @return its surrogate ID
+     */
+    int getOrAssign(UUID uuid) {
+        int existing = get(uuid);
+        if (existing >= 0) return existing;
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        long stamp = lock.writeLock();
+        try {
+            int id = find(tables, msb, lsb);
+            if (id >= 0) return id;
+            if (live == tables.idCapacity()) {
+                tables = grow(tables);
+            }
+            id = freeCount > 0 ? freeIds[--freeCount] : size++;
+            live++;
+            Tables t = tables;
+            int slot = probe(t, msb, lsb);
+            t.slots[slot * 2] = msb;
+            t.slots[slot * 2 + 1] = lsb;
+            t.ids[slot] = id;
+            return id;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes a UUID from the dictionary so that its ID can be reused. The caller must
+     * already have dropped everything it stored under the ID.
+     *
+     * @param uuid the UUID to remove; may be null
+     * @return the ID it had, or -1 if it had none
+     */
+    int release(UUID uuid) {
+        if (uuid == null) return -1;
+        long stamp = lock.writeLock();
+        try {
+            Tables t = tables;
+            int mask = t.ids.length - 1;
+            int hole = slotOf(t, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            if (hole < 0) return -1;
+            int id = t.ids[hole];
+            // Shifts back every later entry of the probe run that may no longer be reachable
+            for (int i = (hole + 1) & mask; t.ids[i] != EMPTY; i = (i + 1) & mask) {
+                int home = hash(t.slots[i * 2], t.slots[i * 2 + 1]) & mask;
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    t.slots[hole * 2] = t.slots[i * 2];
+                    t.slots[hole * 2 + 1] = t.slots[i * 2 + 1];
+                    t.ids[hole] = t.ids[i];
+                    hole = i;
+                }
+            }
+            t.ids[hole] = EMPTY;
+            live--;
+            if (freeCount == freeIds.length) {
+                freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+            }
+            freeIds[freeCount++] = id;
+            return id;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // ---------------------------------------- Internals ------------------------------------
+
+    /**
+     * @return the ID in the slot holding the UUID, or -1; gives up after visiting every
+     *         slot, as an optimistic read may see a table that is being written
+     */
+    private static int find(Tables t, long msb, long lsb) {
+        int slot = slotOf(t, msb, lsb);
+        return slot < 0 ? -1 : t.ids[slot];
+    }
+
+    /** @return the slot holding the UUID, or -1; see {@link #find} */
+    private static int slotOf(Tables t, long msb, long lsb) {
+        int mask = t.ids.length - 1;
+        for (int i = hash(msb, lsb) & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+            if (t.ids[i] == EMPTY) return -1;
+            if (t.slots[i * 2] == msb && t.slots[i * 2 + 1] == lsb) return i;
+        }
+        return -1;
+    }
+
+    /** @return the first empty slot for a UUID known to be absent */
+    private static int probe(Tables t, long msb, long lsb) {
+        int mask = t.ids.length - 1;
+        int i = hash(msb, lsb) & mask;
+        while (t.ids[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private static Tables grow(Tables old) {
+        Tables grown = new Tables(old.ids.length * 2);
+        for (int i = 0; i < old.ids.length; i++) {
+            if (old.ids[i] == EMPTY) continue;
+            int slot = probe(grown, old.slots[i * 2], old.slots[i * 2 + 1]);
+            grown.slots[slot * 2] = old.slots[i * 2];
+            grown.slots[slot * 2 + 1] = old.slots[i * 2 + 1];
+            grown.ids[slot] = old.ids[i];
+        }
+        return grown;
+    }
+
+    /** Mixes both halves of a UUID, so that UUIDs differing only in a few bits spread out. */
+    private static int hash(long msb, long lsb) {
+        long h = (msb ^ Long.rotateLeft(lsb, 32)) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -4,11 +4,11 @@ import domain.model.Book;
 
 public class BookFactory implements CsvFactory<Book> {
     @Override
-    public Book fromRow(String[] r) {
-        String title  = r[0].trim();
-        String author = r[1].trim();
-        int year      = CsvUtils.parseInt(r[2], 0);
-        var cats      = CsvUtils.splitCats(r[3]);
+    public Book fromRecord(CsvRecord r) {
+        String title  = r.get(0);
+        String author = r.get(1);
+        int year      = r.getInt(2, 0);
+        var cats      = r.getList(3, '|');
         return new Book(title, author, year, cats);
     }
 }
\ No newline at end of file
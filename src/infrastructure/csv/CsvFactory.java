@@ -13,10 +13,21 @@ package infrastructure.csv;
 public interface CsvFactory<T> {
 
     /**
-     * Creates an instance of {@code T} from a row of CSV data.
+     * Creates an instance of {@code T} from a row of CSV data. The record may be reused for
+     * the next row once this returns, so implementations must not keep a reference to it.
+     *
+     * @param record one CSV row, as read by a {@link CsvTokenizer}
+     * @return the constructed object
+     */
+    T fromRecord(CsvRecord record);
+
+    /**
+     * Creates an instance of {@code T} from a row of CSV data that has already been split.
      *
      * @param row a {@code String[]} representing one CSV record
      * @return the constructed object
      */
-    T fromRow(String[] row);
+    default T fromRow(String[] row) {
+        return fromRecord(CsvRecord.of(row));
+    }
 }
\ No newline at end of file
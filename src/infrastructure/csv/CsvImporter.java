@@ -0,0 +1,265 @@
+package infrastructure.csv;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Streams CSV files into domain objects using a pool of parsing threads.
+ * <p>
+ *     The calling thread reads the source in blocks, cuts it into chunks of whole rows and
+ *     hands them to the pool, which splits each chunk with a {@link CsvTokenizer}, turns
+ *     each row into an object with a {@link CsvFactory} and passes each chunk's objects to
+ *     a sink as one batch. Only a fixed number of chunks may be in flight at once, so
+ *     memory use is bounded by the chunk size rather than by the size of the file. Rows the
+ *     factory rejects are reported in the {@link ImportReport} and the rest of the file is
+ *     still imported.
+ * </p>
+ * <p>
+ *     Batches reach the sink from several threads at once and in no particular order, so
+ *     the sink must be thread-safe, e.g. {@link domain.service.Library#addItems}. One
+ *     importer can run several imports at the same time, which then share its threads.
+ * </p>
+ */
+public final class CsvImporter implements AutoCloseable {
+
+    /** Number of rejected rows whose details are kept in each report. */
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final ExecutorService workers;
+    private final int chunkRows;
+    private final int maxChunksInFlight;
+
+    /**
+     * Creates an importer with a parsing thread per core, 4096 row chunks and two chunks in
+     * flight per thread.
+     */
+    public CsvImporter() {
+        this(Runtime.getRuntime().availableProcessors(), 4096, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an importer.
+     *
+     * @param parallelism number of parsing threads; must be positive
+     * @param chunkRows number of lines parsed and inserted together; must be positive
+     * @param maxChunksInFlight number of chunks each import may have read but not yet
+     *                          inserted; must be positive
+     */
+    public CsvImporter(int parallelism, int chunkRows, int maxChunksInFlight) {
+        if (parallelism <= 0 || chunkRows <= 0 || maxChunksInFlight <= 0) {
+            throw new IllegalArgumentException("Parallelism, chunk size and chunks in flight must be positive");
+        }
+        this.chunkRows = chunkRows;
+        this.maxChunksInFlight = maxChunksInFlight;
+        this.workers = Executors.newFixedThreadPool(parallelism, task -> {
+            Thread thread = new Thread(task, "csv-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Imports a UTF-8 CSV file whose first non-blank line is a header.
+     *
+     * @param file the file to import
+     * @param factory turns each data row into an object
+     * @param sink receives the objects in batches; must be thread-safe
+     * @param <T> the type of object being imported
+     * @return the number of rows imported and rejected
+     * @throws IOException if the file cannot be read
+     */
+    public <T> ImportReport importFile(Path file, CsvFactory<T> factory, Consumer<? super List<T>> sink)
+            throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importFrom(file.toString(), in, factory, sink);
+        }
+    }
+
+    /**
+     * Imports CSV text whose first non-blank line is a header. The reader is not closed.
+     *
+     * @param source a name for the text, used in the report
+     * @param reader the text to import
+     * @param factory turns each data row into an object
+     * @param sink receives the objects in batches; must be thread-safe
+     * @param <T> the type of object being imported
+     * @return the number of rows imported and rejected
+     * @throws IOException if the text cannot be read
+     */
+    public <T> ImportReport importFrom(String source, Reader reader, CsvFactory<T> factory,
+                                       Consumer<? super List<T>> sink) throws IOException {
+        Job<T> job = new Job<>(source, factory, sink);
+        Semaphore inFlight = new Semaphore(maxChunksInFlight);
+        try {
+            char[] pending = new char[1 << 16];
+            int filled = 0;
+            int scanned = 0;
+            int rows = 0;
+            boolean inQuotes = false;
+            long linesBeforeChunk = 0;
+            long lines = 0;
+            boolean headerPending = true;
+
+            // Cuts the text into chunks of whole rows; a line break inside quotes is not a row end
+            for (int read; job.failure.get() == null && (read = reader.read(pending, filled, pending.length - filled)) >= 0; ) {
+                filled += read;
+                for (; scanned < filled; scanned++) {
+                    char c = pending[scanned];
+                    if (c == '"') {
+                        inQuotes = !inQuotes;
+                    } else if (c == '\n') {
+                        lines++;
+                        if (!inQuotes && ++rows == chunkRows) {
+                            int cut = scanned + 1;
+                            headerPending = dispatch(job, inFlight, Arrays.copyOf(pending, cut),
+                                    linesBeforeChunk + 1, headerPending);
+                            System.arraycopy(pending, cut, pending, 0, filled - cut);
+                            filled -= cut;
+                            scanned = -1;
+                            rows = 0;
+                            linesBeforeChunk = lines;
+                        }
+                    }
+                }
+                if (filled == pending.length) {
+                    // A row longer than the buffer
+                    pending = Arrays.copyOf(pending, pending.length * 2);
+                }
+            }
+            if (filled > 0 && job.failure.get() == null) {
+                dispatch(job, inFlight, Arrays.copyOf(pending, filled), linesBeforeChunk + 1, headerPending);
+            }
+        } finally {
+            // Waits for every submitted chunk to finish
+            inFlight.acquireUninterruptibly(maxChunksInFlight);
+        }
+
+        RuntimeException failure = job.failure.get();
+        if (failure != null) throw failure;
+        return new ImportReport(source, job.imported.get(), job.rejected.get(), List.copyOf(job.errors));
+    }
+
+    /**
+     * Stops the parsing threads once every import in progress has finished.
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---------------------------------------- Internals ------------------------------------
+
+    /**
+     * Hands a chunk of whole rows to the pool, first skipping the header row if it has not
+     * been seen yet.
+     *
+     * @return whether the header is still to come, i.e. the chunk held only blank lines
+     */
+    private <T> boolean dispatch(Job<T> job, Semaphore inFlight, char[] chunk, long firstLineNumber,
+                                 boolean headerPending) throws IOException {
+        int offset = 0;
+        if (headerPending) {
+            CsvTokenizer tokenizer = new CsvTokenizer(chunk, 0, chunk.length, firstLineNumber);
+            CsvRecord header = new CsvRecord();
+            do {
+                if (!tokenizer.next(header)) return true;
+            } while (header.isBlank());
+            offset = tokenizer.offset();
+            firstLineNumber = tokenizer.lineNumber();
+        }
+
+        int start = offset;
+        long line = firstLineNumber;
+        inFlight.acquireUninterruptibly();
+        try {
+            workers.execute(() -> {
+                try {
+                    job.parse(new CsvTokenizer(chunk, start, chunk.length - start, line));
+                } catch (RuntimeException e) {
+                    job.failure.compareAndSet(null, e);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+        }
+        return false;
+    }
+
+    /** State shared by the chunks of one import. */
+    private static final class Job<T> {
+
+        private final String source;
+        private final CsvFactory<T> factory;
+        private final Consumer<? super List<T>> sink;
+
+        private final AtomicLong imported = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final Queue<ImportReport.RowError> errors = new ConcurrentLinkedQueue<>();
+
+        /** The first exception thrown by the sink, which stops the import. */
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        private Job(String source, CsvFactory<T> factory, Consumer<? super List<T>> sink) {
+            this.source = source;
+            this.factory = factory;
+            this.sink = sink;
+        }
+
+        /** Parses one chunk and hands its objects to the sink. */
+        void parse(CsvTokenizer rows) {
+            List<T> batch = new ArrayList<>();
+            CsvRecord record = new CsvRecord();
+            try {
+                while (rows.next(record)) {
+                    if (record.isBlank()) continue;
+                    try {
+                        T value = factory.fromRecord(record);
+                        if (value == null) {
+                            reject(record.lineNumber(), "Row produced no value");
+                        } else {
+                            batch.add(value);
+                        }
+                    } catch (IndexOutOfBoundsException e) {
+                        reject(record.lineNumber(), "Too few columns");
+                    } catch (RuntimeException e) {
+                        reject(record.lineNumber(), String.valueOf(e.getMessage()));
+                    }
+                }
+            } catch (IOException e) {
+                // Tokenizing an in-memory chunk does not read from anywhere
+                throw new UncheckedIOException(e);
+            }
+            if (!batch.isEmpty() && failure.get() == null) {
+                sink.accept(batch);
+                imported.addAndGet(batch.size());
+            }
+        }
+
+        private void reject(long lineNumber, String message) {
+            if (rejected.incrementAndGet() <= MAX_REPORTED_ERRORS) {
+                errors.add(new ImportReport.RowError(source, lineNumber, message));
+            }
+        }
+    }
+}
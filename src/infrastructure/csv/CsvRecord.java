@@ -0,0 +1,171 @@
+package infrastructure.csv;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One row of CSV data, held as slices of a reusable character buffer.
+ * <p>
+ *     A {@link CsvTokenizer} refills the same record for every row, so reading a file does
+ *     not allocate an array of strings per row; {@link CsvFactory} implementations pull
+ *     out only the fields they need, converting numbers straight from the buffer. Unquoted
+ *     fields have surrounding whitespace removed; quoted fields keep their contents exactly,
+ *     with doubled quotes unescaped.
+ * </p>
+ */
+public final class CsvRecord {
+
+    private char[] chars = new char[256];
+    private CharBuffer view = CharBuffer.wrap(chars);
+    private int length;
+
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int size;
+
+    /** Where the field currently being built starts in {@link #chars}. */
+    private int fieldStart;
+
+    private long lineNumber;
+
+    /**
+     * Creates a record holding the given fields, e.g. to reuse a factory on a row that was
+     * already split.
+     *
+     * @param fields the field values; nulls are treated as empty
+     * @return a new record
+     */
+    public static CsvRecord of(String... fields) {
+        CsvRecord record = new CsvRecord();
+        record.clear(0);
+        for (String field : fields) {
+            if (field != null) {
+                for (int i = 0; i < field.length(); i++) {
+                    record.append(field.charAt(i));
+                }
+            }
+            record.endField(false);
+        }
+        return record;
+    }
+
+    /** @return the number of fields in the row */
+    public int size() {
+        return size;
+    }
+
+    /** @return the one-based line number the row starts on */
+    public long lineNumber() {
+        return lineNumber;
+    }
+
+    /** @return {@code true} if the row is an empty or whitespace-only line */
+    public boolean isBlank() {
+        return size == 1 && starts[0] == ends[0];
+    }
+
+    /**
+     * @param i the zero-based field index
+     * @return the field as a string
+     * @throws IndexOutOfBoundsException if the row has too few fields
+     */
+    public String get(int i) {
+        checkIndex(i);
+        return new String(chars, starts[i], ends[i] - starts[i]);
+    }
+
+    /**
+     * Parses a field as a decimal {@code int} without creating a string.
+     *
+     * @param i the zero-based field index
+     * @param fallback value returned if the field is not a valid {@code int}
+     * @return the parsed value, or {@code fallback}
+     * @throws IndexOutOfBoundsException if the row has too few fields
+     */
+    public int getInt(int i, int fallback) {
+        checkIndex(i);
+        return CsvUtils.parseInt(view, starts[i], ends[i], fallback);
+    }
+
+    /**
+     * Splits a field into a list of trimmed, non-blank values.
+     *
+     * @param i the zero-based field index
+     * @param separator the character between values (e.g. {@code '|'})
+     * @return the values, in order
+     * @throws IndexOutOfBoundsException if the row has too few fields
+     */
+    public List<String> getList(int i, char separator) {
+        checkIndex(i);
+        return CsvUtils.split(view, starts[i], ends[i], separator);
+    }
+
+    @Override
+    public String toString() {
+        String[] fields = new String[size];
+        for (int i = 0; i < size; i++) {
+            fields[i] = get(i);
+        }
+        return Arrays.toString(fields);
+    }
+
+    // ---------------------------------------- Building -------------------------------------
+
+    /** Empties the record ready for the row starting on the given line. */
+    void clear(long lineNumber) {
+        this.lineNumber = lineNumber;
+        length = 0;
+        size = 0;
+        fieldStart = 0;
+    }
+
+    void append(char c) {
+        if (length == chars.length) {
+            chars = Arrays.copyOf(chars, length * 2);
+            view = CharBuffer.wrap(chars);
+        }
+        chars[length++] = c;
+    }
+
+    /** @return {@code true} if the field being built holds only whitespace so far */
+    boolean fieldIsBlank() {
+        for (int i = fieldStart; i < length; i++) {
+            if (chars[i] > ' ') return false;
+        }
+        return true;
+    }
+
+    /** Discards what has been appended to the field being built. */
+    void resetField() {
+        length = fieldStart;
+    }
+
+    /**
+     * Completes the field being built.
+     *
+     * @param quoted whether the field was quoted, in which case whitespace is kept
+     */
+    void endField(boolean quoted) {
+        int start = fieldStart;
+        int end = length;
+        if (!quoted) {
+            while (start < end && chars[start] <= ' ') start++;
+            while (end > start && chars[end - 1] <= ' ') end--;
+        }
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+        fieldStart = length;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Field " + i + " requested from a row with " + size + " fields");
+        }
+    }
+}
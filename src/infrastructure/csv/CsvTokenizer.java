@@ -0,0 +1,147 @@
+package infrastructure.csv;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits CSV text into rows following RFC 4180.
+ * <p>
+ *     Fields are separated by commas and rows by {@code \n} or {@code \r\n}. A field whose
+ *     first non-blank character is a double quote may contain commas, line breaks and
+ *     doubled quotes ({@code ""}), which stand for a single quote. Text is read through a
+ *     fixed buffer, and each row is written into a {@link CsvRecord} supplied by the
+ *     caller, so the same record can be reused for a whole file.
+ * </p>
+ * <p>
+ *     Malformed input is read leniently rather than rejected: characters after a closing
+ *     quote are kept, and an unterminated quote runs to the end of the input.
+ * </p>
+ */
+public final class CsvTokenizer {
+
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+
+    /** Source of more text, or null when tokenizing a fixed array. */
+    private final Reader in;
+
+    private final char[] buffer;
+    private int position;
+    private int limit;
+
+    /** The line the next row starts on. */
+    private long lineNumber;
+
+    /**
+     * Creates a tokenizer that streams text from a reader.
+     *
+     * @param in the text to tokenize; not closed by the tokenizer
+     */
+    public CsvTokenizer(Reader in) {
+        this.in = in;
+        this.buffer = new char[1 << 16];
+        this.lineNumber = 1;
+    }
+
+    /**
+     * Creates a tokenizer over part of an array, without copying it.
+     *
+     * @param chars the text to tokenize
+     * @param offset where the text starts
+     * @param length how many characters to tokenize
+     * @param firstLineNumber the line number of the first row
+     */
+    public CsvTokenizer(char[] chars, int offset, int length, long firstLineNumber) {
+        this.in = null;
+        this.buffer = chars;
+        this.position = offset;
+        this.limit = offset + length;
+        this.lineNumber = firstLineNumber;
+    }
+
+    /**
+     * Reads the next row into a record, replacing its previous contents.
+     *
+     * @param record the record to fill
+     * @return {@code false} if there are no more rows
+     * @throws IOException if the reader fails
+     */
+    public boolean next(CsvRecord record) throws IOException {
+        if (!ensureAvailable()) return false;
+        record.clear(lineNumber);
+
+        boolean inQuotes = false;
+        boolean fieldQuoted = false;
+        while (ensureAvailable()) {
+            char c = buffer[position++];
+            if (inQuotes) {
+                if (c == QUOTE) {
+                    if (ensureAvailable() && buffer[position] == QUOTE) {
+                        record.append(QUOTE);
+                        position++;
+                    } else {
+                        inQuotes = false;
+                    }
+                } else {
+                    if (c == '\n') lineNumber++;
+                    record.append(c);
+                }
+                continue;
+            }
+            switch (c) {
+                case SEPARATOR -> {
+                    record.endField(fieldQuoted);
+                    fieldQuoted = false;
+                }
+                case '\n' -> {
+                    lineNumber++;
+                    record.endField(fieldQuoted);
+                    return true;
+                }
+                case '\r' -> {
+                    // Dropped when it is part of a \r\n line break
+                    if (!ensureAvailable() || buffer[position] != '\n') record.append(c);
+                }
+                case QUOTE -> {
+                    if (!fieldQuoted && record.fieldIsBlank()) {
+                        record.resetField();
+                        inQuotes = true;
+                        fieldQuoted = true;
+                    } else {
+                        record.append(c);
+                    }
+                }
+                default -> {
+                    // Whitespace between a closing quote and the separator is not content
+                    if (!fieldQuoted || c > ' ') record.append(c);
+                }
+            }
+        }
+        record.endField(fieldQuoted);
+        return true;
+    }
+
+    /** @return the line number the next row starts on */
+    public long lineNumber() {
+        return lineNumber;
+    }
+
+    /** @return the index in the array of the next unread character, when tokenizing an array */
+    public int offset() {
+        return position;
+    }
+
+    /** @return {@code true} if at least one more character can be read */
+    private boolean ensureAvailable() throws IOException {
+        if (position < limit) return true;
+        if (in == null) return false;
+        int read;
+        do {
+            read = in.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        if (read < 0) return false;
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
@@ -15,14 +15,19 @@ public final class CsvUtils {
 
     /**
      * Parses an {@code int} value from a string taken from a CSV file. Returns a fallback value
-     * if the input produces an error during parsing.
+     * if the input is not a valid decimal {@code int}.
      *
-     * @param s the string to parse
+     * @param s the string to parse; surrounding whitespace is ignored
      * @param fallback backup value to return if parsing fails
      * @return the parsed {@code int}, or {@code fallback} if parsing fails
      */
-    public static int parseInt(String s, int fallback) {
-        try { return Integer.parseInt(s.trim()); } catch (Exception e) { return fallback; }
+    public static int parseInt(CharSequence s, int fallback) {
+        if (s == null) return fallback;
+        int start = 0;
+        int end = s.length();
+        while (start < end && s.charAt(start) <= ' ') start++;
+        while (end > start && s.charAt(end - 1) <= ' ') end--;
+        return parseInt(s, start, end, fallback);
     }
 
     /**
@@ -32,11 +37,52 @@ public final class CsvUtils {
      * @return a list of non-blank category strings
      */
     public static List<String> splitCats(String field) {
+        if (field == null) return new ArrayList<>();
+        return split(field, 0, field.length(), '|');
+    }
+
+    /**
+     * Parses the digits of {@code s[start, end)} directly, with an optional leading sign.
+     *
+     * @return the parsed value, or {@code fallback} if the range is empty, holds anything
+     *         other than digits, or overflows an {@code int}
+     */
+    static int parseInt(CharSequence s, int start, int end, int fallback) {
+        if (start >= end) return fallback;
+        boolean negative = false;
+        char first = s.charAt(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++start == end) return fallback;
+        }
+        // Accumulates negatively so that Integer.MIN_VALUE can be represented
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) return fallback;
+            value = value * 10 - digit;
+            if (value < Integer.MIN_VALUE) return fallback;
+        }
+        if (!negative && value == Integer.MIN_VALUE) return fallback;
+        return (int) (negative ? value : -value);
+    }
+
+    /**
+     * Splits {@code s[start, end)} on a separator character.
+     *
+     * @return the trimmed, non-blank values, in order
+     */
+    static List<String> split(CharSequence s, int start, int end, char separator) {
         List<String> out = new ArrayList<>();
-        if (field == null || field.isBlank()) return out;
-        for (String c : field.split("\\|")) {
-            String v = c.trim();
-            if (!v.isBlank()) out.add(v);
+        int valueStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i < end && s.charAt(i) != separator) continue;
+            int from = valueStart;
+            int to = i;
+            while (from < to && s.charAt(from) <= ' ') from++;
+            while (to > from && s.charAt(to - 1) <= ' ') to--;
+            if (from < to) out.add(s.subSequence(from, to).toString());
+            valueStart = i + 1;
         }
         return out;
     }
@@ -4,12 +4,12 @@ import domain.model.Dvd;
 
 public class DvdFactory implements CsvFactory<Dvd> {
     @Override
-    public Dvd fromRow(String[] r) {
-        String title  = r[0].trim();
-        int year      = CsvUtils.parseInt(r[1], 0);
-        int duration  = CsvUtils.parseInt(r[2], 0);
-        String rating = r[3].trim();
-        var cats      = CsvUtils.splitCats(r[4]);
+    public Dvd fromRecord(CsvRecord r) {
+        String title  = r.get(0);
+        int year      = r.getInt(1, 0);
+        int duration  = r.getInt(2, 0);
+        String rating = r.get(3);
+        var cats      = r.getList(4, '|');
         return new Dvd(title, year, duration, rating, cats);
     }
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package infrastructure.csv;
+
+import java.util.List;
+
+/**
+ * Outcome of importing one CSV source with {@link CsvImporter}.
+ *
+ * @param source the name of the file or resource imported
+ * @param rowsImported number of rows turned into objects and handed to the sink
+ * @param rowsRejected number of rows that could not be turned into objects
+ * @param errors the first rejected rows, up to the importer's error limit, in no particular order
+ */
+public record ImportReport(String source, long rowsImported, long rowsRejected, List<RowError> errors) {
+
+    /**
+     * A data row that was rejected.
+     *
+     * @param source the name of the file or resource it came from
+     * @param lineNumber its one-based line number in the source
+     * @param message why it was rejected
+     */
+    public record RowError(String source, long lineNumber, String message) {
+
+        @Override
+        public String toString() {
+            return source + ":" + lineNumber + ": " + message;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return source + ": " + rowsImported + " imported, " + rowsRejected + " rejected";
+    }
+}
@@ -4,11 +4,11 @@ import domain.model.Magazine;
 
 public class MagazineFactory implements CsvFactory<Magazine> {
     @Override
-    public Magazine fromRow(String[] r) {
-        String title     = r[0].trim();
-        String publisher = r[1].trim();
-        int year         = CsvUtils.parseInt(r[2], 0);
-        var cats         = CsvUtils.splitCats(r[3]);
+    public Magazine fromRecord(CsvRecord r) {
+        String title     = r.get(0);
+        String publisher = r.get(1);
+        int year         = r.getInt(2, 0);
+        var cats         = r.getList(3, '|');
         return new Magazine(title, publisher, year, cats);
     }
 }
\ No newline at end of file
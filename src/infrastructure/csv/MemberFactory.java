@@ -4,9 +4,9 @@ import domain.model.Member;
 
 public class MemberFactory implements CsvFactory<Member> {
     @Override
-    public Member fromRow(String[] r) {
-        String name  = r[0].trim();
-        String email = r[1].trim();
+    public Member fromRecord(CsvRecord r) {
+        String name  = r.get(0);
+        String email = r.get(1);
         return new Member(name, email);
     }
 }
\ No newline at end of file
@@ -0,0 +1,418 @@
+package infrastructure.persistence;
+
+import common.ValidationException;
+import domain.model.*;
+import domain.service.Library;
+import domain.service.LibraryEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Compact binary file holding a library's catalogue: its media items and members, with
+ * their IDs, but none of their loans or reservations.
+ * <p>
+ *     The file starts with {@code [int magic][int version][int items][int members]} and is
+ *     followed by one length-prefixed record per item and then per member. Integers are
+ *     fixed width and strings are length-prefixed UTF-8, so loading is a sequential walk
+ *     over a memory-mapped file with no text parsing. Files larger than one mapping are
+ *     read through a sliding window that is re-mapped at a record boundary.
+ * </p>
+ * <p>
+ *     Use {@link LibraryStore} to keep loans and reservations; this format is for bringing
+ *     a large catalogue up quickly, e.g. in place of the demo CSV files.
+ * </p>
+ */
+public final class CatalogSnapshot {
+
+    private static final int MAGIC = 0x4C4D5343; // "LMSC"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+
+    private static final byte BOOK = 1;
+    private static final byte DVD = 2;
+    private static final byte MAGAZINE = 3;
+    private static final byte MEMBER = 4;
+
+    /** Largest region mapped at once; records never span two regions. */
+    private static final long WINDOW_BYTES = 1L << 30;
+
+    /** Size of the buffer records are gathered in before being written out. */
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    private CatalogSnapshot() {
+        // Private constructor to prevent instantiation of utility class
+    }
+
+    /**
+     * Writes the library's media items and members to a file, replacing it atomically.
+     * <p>
+     *     Mutations to the library are blocked while the catalogue is written, so the file
+     *     reflects a single point in time.
+     * </p>
+     *
+     * @param library the library to copy the catalogue from
+     * @param file the file to write
+     * @return the number of items and members written
+     * @throws IOException if the file cannot be written; the existing file is left as it was
+     */
+    public static int write(Library library, Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            return write(library, file, temp);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    private static int write(Library library, Path file, Path temp) throws IOException {
+        int[] counts = new int[2];
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Writer writer = new Writer(channel);
+            writer.buffer.position(HEADER_BYTES);
+            try {
+                library.exportState(event -> {
+                    switch (event) {
+                        case LibraryEvent.ItemAdded e -> {
+                            writer.item(e.item());
+                            counts[0]++;
+                        }
+                        case LibraryEvent.MemberAdded e -> {
+                            writer.member(e.member());
+                            counts[1]++;
+                        }
+                        default -> {
+                            // Loans and reservations are not part of the catalogue
+                        }
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC).putInt(VERSION).putInt(counts[0]).putInt(counts[1]).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return counts[0] + counts[1];
+    }
+
+    /**
+     * Adds every media item and member in a catalogue file to a library.
+     *
+     * @param file the file to read
+     * @param library the library to add them to
+     * @throws IOException if the file cannot be read or is not a catalogue snapshot
+     */
+    public static void load(Path file, Library library) throws IOException {
+        read(file, library::addItem, library::addMember);
+    }
+
+    /**
+     * Reads a catalogue file, passing each media item and member to a consumer.
+     *
+     * @param file the file to read
+     * @param items receives each media item, in the order they were written
+     * @param members receives each member, in the order they were written
+     * @throws IOException if the file cannot be read or is not a catalogue snapshot
+     */
+    public static void read(Path file, Consumer<MediaItem> items, Consumer<Member> members) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Not a catalogue snapshot: " + file);
+            }
+            Reader reader = new Reader(channel, size);
+            ByteBuffer header = reader.window(HEADER_BYTES);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a catalogue snapshot: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported catalogue snapshot version " + version + ": " + file);
+            }
+            int itemCount = header.getInt();
+            int memberCount = header.getInt();
+
+            for (int i = 0; i < itemCount + memberCount; i++) {
+                ByteBuffer record = reader.next();
+                byte type = record.get();
+                if (type == MEMBER) {
+                    members.accept(reader.member(record));
+                } else {
+                    items.accept(reader.item(type, record));
+                }
+            }
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IOException("Catalogue snapshot is truncated: " + file, e);
+        }
+    }
+
+    // ---------------------------------------- Writing --------------------------------------
+
+    /**
+     * Gathers records in a buffer and writes it out whenever the next record will not fit.
+     * Each record is {@code [int length][byte type][uuid]} followed by its fields.
+     */
+    private static final class Writer {
+
+        private final FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+
+        private Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void item(MediaItem item) {
+            switch (item) {
+                case Book book -> {
+                    byte[] title = utf8(book.getTitle());
+                    byte[] author = utf8(book.getAuthor());
+                    byte[][] categories = utf8(book.getCategories());
+                    int start = begin(BOOK, book.getMediaId(),
+                            stringBytes(title) + stringBytes(author) + Integer.BYTES + stringsBytes(categories));
+                    putString(title);
+                    putString(author);
+                    buffer.putInt(book.getYearOfPublish());
+                    putStrings(categories);
+                    end(start);
+                }
+                case Dvd dvd -> {
+                    byte[] title = utf8(dvd.getTitle());
+                    byte[] rating = utf8(dvd.getAgeRating());
+                    byte[][] categories = utf8(dvd.getCategories());
+                    int start = begin(DVD, dvd.getMediaId(),
+                            stringBytes(title) + 2 * Integer.BYTES + stringBytes(rating) + stringsBytes(categories));
+                    putString(title);
+                    buffer.putInt(dvd.getYearOfRelease());
+                    buffer.putInt(dvd.getDurationMinutes());
+                    putString(rating);
+                    putStrings(categories);
+                    end(start);
+                }
+                case Magazine magazine -> {
+                    byte[] title = utf8(magazine.getTitle());
+                    byte[] publisher = utf8(magazine.getPublisher());
+                    byte[][] categories = utf8(magazine.getCategories());
+                    int start = begin(MAGAZINE, magazine.getMediaId(),
+                            stringBytes(title) + stringBytes(publisher) + Integer.BYTES + stringsBytes(categories));
+                    putString(title);
+                    putString(publisher);
+                    buffer.putInt(magazine.getYearOfPublish());
+                    putStrings(categories);
+                    end(start);
+                }
+                default -> throw new IllegalArgumentException(
+                        "Unsupported media type: " + item.getClass().getSimpleName());
+            }
+        }
+
+        void member(Member member) {
+            byte[] name = utf8(member.getName());
+            byte[] email = utf8(member.getEmail());
+            int start = begin(MEMBER, member.getId(), stringBytes(name) + stringBytes(email) + 1);
+            putString(name);
+            putString(email);
+            buffer.put((byte) (member.isActiveMember() ? 1 : 0));
+            end(start);
+        }
+
+        /**
+         * Makes room for a record and writes its header.
+         *
+         * @return the position of the record's length field
+         */
+        private int begin(byte type, UUID id, int fieldBytes) {
+            int recordBytes = Integer.BYTES + 1 + 2 * Long.BYTES + fieldBytes;
+            if (buffer.remaining() < recordBytes) {
+                flush();
+                if (buffer.capacity() < recordBytes) {
+                    buffer = ByteBuffer.allocate(recordBytes);
+                }
+            }
+            int start = buffer.position();
+            buffer.putInt(0);
+            buffer.put(type);
+            buffer.putLong(id.getMostSignificantBits());
+            buffer.putLong(id.getLeastSignificantBits());
+            return start;
+        }
+
+        private void end(int start) {
+            buffer.putInt(start, buffer.position() - start - Integer.BYTES);
+        }
+
+        void flush() {
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.clear();
+        }
+
+        private void putString(byte[] bytes) {
+            if (bytes == null) {
+                buffer.putInt(-1);
+                return;
+            }
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+
+        private void putStrings(byte[][] strings) {
+            buffer.putInt(strings.length);
+            for (byte[] s : strings) {
+                putString(s);
+            }
+        }
+
+        private static byte[] utf8(String s) {
+            return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static byte[][] utf8(List<String> strings) {
+            byte[][] bytes = new byte[strings.size()][];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = utf8(strings.get(i));
+            }
+            return bytes;
+        }
+
+        private static int stringBytes(byte[] bytes) {
+            return Integer.BYTES + (bytes == null ? 0 : bytes.length);
+        }
+
+        private static int stringsBytes(byte[][] strings) {
+            int total = Integer.BYTES;
+            for (byte[] s : strings) {
+                total += stringBytes(s);
+            }
+            return total;
+        }
+    }
+
+    // ---------------------------------------- Reading --------------------------------------
+
+    /** Walks the records of a mapped file, re-mapping whenever a record crosses the window. */
+    private static final class Reader {
+
+        private final FileChannel channel;
+        private final long size;
+
+        /** The mapped region and the file offset it starts at. */
+        private MappedByteBuffer mapped;
+        private long mappedStart;
+
+        /** Reused for decoding strings, grown as needed. */
+        private byte[] scratch = new byte[256];
+
+        private Reader(FileChannel channel, long size) {
+            this.channel = channel;
+            this.size = size;
+        }
+
+        /**
+         * Maps the next {@code bytes} bytes of the file if they are not already mapped.
+         *
+         * @return the mapped region, positioned at those bytes
+         */
+        ByteBuffer window(int bytes) throws IOException {
+            long offset = mapped == null ? 0 : mappedStart + mapped.position();
+            if (offset + bytes > size) {
+                throw new IOException("Catalogue snapshot is truncated at byte " + offset);
+            }
+            if (mapped == null || mapped.remaining() < bytes) {
+                long length = Math.min(size - offset, Math.max(WINDOW_BYTES, bytes));
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                mappedStart = offset;
+            }
+            return mapped;
+        }
+
+        /** @return the next record's body, as a slice positioned at its type byte */
+        ByteBuffer next() throws IOException {
+            int length = window(Integer.BYTES).getInt();
+            if (length <= 0) {
+                throw new IOException("Corrupt catalogue record length " + length);
+            }
+            ByteBuffer region = window(length);
+            ByteBuffer record = region.slice(region.position(), length);
+            region.position(region.position() + length);
+            return record;
+        }
+
+        MediaItem item(byte type, ByteBuffer record) throws IOException {
+            UUID id = new UUID(record.getLong(), record.getLong());
+            try {
+                return switch (type) {
+                    case BOOK -> new Book(id, string(record), string(record), record.getInt(), strings(record));
+                    case DVD -> new Dvd(id, string(record), record.getInt(), record.getInt(), string(record),
+                            strings(record));
+                    case MAGAZINE -> new Magazine(id, string(record), string(record), record.getInt(), strings(record));
+                    default -> throw new IOException("Unknown catalogue record type: " + type);
+                };
+            } catch (IllegalArgumentException | ValidationException e) {
+                // The model refused a field, e.g. a blank title
+                throw new IOException("Corrupt catalogue record " + id + ": " + e.getMessage(), e);
+            }
+        }
+
+        Member member(ByteBuffer record) throws IOException {
+            UUID id = new UUID(record.getLong(), record.getLong());
+            try {
+                Member member = new Member(id, string(record), string(record));
+                member.setActiveMember(record.get() != 0);
+                return member;
+            } catch (IllegalArgumentException | ValidationException e) {
+                throw new IOException("Corrupt catalogue record " + id + ": " + e.getMessage(), e);
+            }
+        }
+
+        private String string(ByteBuffer record) {
+            int length = record.getInt();
+            if (length < 0) return null;
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            record.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private List<String> strings(ByteBuffer record) {
+            int count = record.getInt();
+            List<String> strings = new ArrayList<>(Math.clamp(count, 0, record.remaining()));
+            for (int i = 0; i < count; i++) {
+                strings.add(string(record));
+            }
+            return strings;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package infrastructure.persistence;
+
+import domain.model.*;
+import domain.service.LibraryEvent;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Binary encoding of {@link LibraryEvent}s for the write-ahead log and snapshots.
+ * <p>
+ *     Each event is written as a one byte tag followed by its fields. Entities are written
+ *     with their full state (IDs, statuses, dates and fines) so that replaying the decoded
+ *     event recreates them exactly.
+ * </p>
+ */
+public final class EventCodec {
+
+    private static final byte ITEM_ADDED = 1;
+    private static final byte ITEM_REMOVED = 2;
+    private static final byte MEMBER_ADDED = 3;
+    private static final byte MEMBER_REMOVED = 4;
+    private static final byte ITEM_LOANED = 5;
+    private static final byte ITEM_RETURNED = 6;
+    private static final byte RESERVATION_PLACED = 7;
+    private static final byte RESERVATION_FULFILLED = 8;
+    private static final byte RESERVATION_CANCELLED = 9;
+    private static final byte LOAN_ARCHIVED = 10;
+
+    private static final byte BOOK = 1;
+    private static final byte DVD = 2;
+    private static final byte MAGAZINE = 3;
+
+    private EventCodec() {
+        // Private constructor to prevent instantiation of utility class
+    }
+
+    /**
+     * Writes an event.
+     *
+     * @param event the event to encode
+     * @param out the destination
+     * @throws IOException if the destination cannot be written
+     */
+    public static void write(LibraryEvent event, DataOutput out) throws IOException {
+        switch (event) {
+            case LibraryEvent.ItemAdded e -> {
+                out.writeByte(ITEM_ADDED);
+                writeItem(e.item(), out);
+            }
+            case LibraryEvent.ItemRemoved e -> {
+                out.writeByte(ITEM_REMOVED);
+                writeUuid(e.mediaId(), out);
+            }
+            case LibraryEvent.MemberAdded e -> {
+                out.writeByte(MEMBER_ADDED);
+                writeMember(e.member(), out);
+            }
+            case LibraryEvent.MemberRemoved e -> {
+                out.writeByte(MEMBER_REMOVED);
+                writeUuid(e.memberId(), out);
+            }
+            case LibraryEvent.ItemLoaned e -> {
+                out.writeByte(ITEM_LOANED);
+                writeLoan(e.loan(), out);
+            }
+            case LibraryEvent.ItemReturned e -> {
+                out.writeByte(ITEM_RETURNED);
+                writeUuid(e.loanId(), out);
+                writeDate(e.returnDate(), out);
+                out.writeInt(e.fine());
+            }
+            case LibraryEvent.LoanArchived e -> {
+                out.writeByte(LOAN_ARCHIVED);
+                writeLoan(e.loan(), out);
+            }
+            case LibraryEvent.ReservationPlaced e -> {
+                out.writeByte(RESERVATION_PLACED);
+                writeReservation(e.reservation(), out);
+            }
+            case LibraryEvent.ReservationFulfilled e -> {
+                out.writeByte(RESERVATION_FULFILLED);
+                writeUuid(e.mediaId(), out);
+            }
+            case LibraryEvent.ReservationCancelled e -> {
+                out.writeByte(RESERVATION_CANCELLED);
+                writeUuid(e.reservationId(), out);
+            }
+        }
+    }
+
+    /**
+     * Reads an event previously written by {@link #write}.
+     *
+     * @param in the source
+     * @return the decoded event
+     * @throws IOException if the source cannot be read or holds an unknown event
+     */
+    public static LibraryEvent read(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case ITEM_ADDED -> new LibraryEvent.ItemAdded(readItem(in));
+            case ITEM_REMOVED -> new LibraryEvent.ItemRemoved(readUuid(in));
+            case MEMBER_ADDED -> new LibraryEvent.MemberAdded(readMember(in));
+            case MEMBER_REMOVED -> new LibraryEvent.MemberRemoved(readUuid(in));
+            case ITEM_LOANED -> new LibraryEvent.ItemLoaned(readLoan(in));
+            case ITEM_RETURNED -> new LibraryEvent.ItemReturned(readUuid(in), readDate(in), in.readInt());
+            case LOAN_ARCHIVED -> new LibraryEvent.LoanArchived(readLoan(in));
+            case RESERVATION_PLACED -> new LibraryEvent.ReservationPlaced(readReservation(in));
+            case RESERVATION_FULFILLED -> new LibraryEvent.ReservationFulfilled(readUuid(in));
+            case RESERVATION_CANCELLED -> new LibraryEvent.ReservationCancelled(readUuid(in));
+            default -> throw new IOException("Unknown event tag: " + tag);
+        };
+    }
+
+    // ---------------------------------------- Entities -------------------------------------
+
+    private static void writeItem(MediaItem item, DataOutput out) throws IOException {
+        switch (item) {
+            case Book book -> {
+                out.writeByte(BOOK);
+                writeUuid(book.getMediaId(), out);
+                out.writeUTF(book.getTitle());
+                out.writeUTF(book.getAuthor());
+                out.writeInt(book.getYearOfPublish());
+                writeStrings(book.getCategories(), out);
+            }
+            case Dvd dvd -> {
+                out.writeByte(DVD);
+                writeUuid(dvd.getMediaId(), out);
+                out.writeUTF(dvd.getTitle());
+                out.writeInt(dvd.getYearOfRelease());
+                out.writeInt(dvd.getDurationMinutes());
+                out.writeUTF(dvd.getAgeRating());
+                writeStrings(dvd.getCategories(), out);
+            }
+            case Magazine magazine -> {
+                out.writeByte(MAGAZINE);
+                writeUuid(magazine.getMediaId(), out);
+                out.writeUTF(magazine.getTitle());
+                out.writeUTF(magazine.getPublisher());
+                out.writeInt(magazine.getYearOfPublish());
+                writeStrings(magazine.getCategories(), out);
+            }
+            default -> throw new IOException("Unsupported media type: " + item.getClass().getSimpleName());
+        }
+        out.writeByte(item.getStatus().ordinal());
+    }
+
+    private static MediaItem readItem(DataInput in) throws IOException {
+        byte type = in.readByte();
+        MediaItem item = switch (type) {
+            case BOOK -> new Book(readUuid(in), in.readUTF(), in.readUTF(), in.readInt(), readStrings(in));
+            case DVD -> new Dvd(readUuid(in), in.readUTF(), in.readInt(), in.readInt(), in.readUTF(), readStrings(in));
+            case MAGAZINE -> new Magazine(readUuid(in), in.readUTF(), in.readUTF(), in.readInt(), readStrings(in));
+            default -> throw new IOException("Unknown media type: " + type);
+        };
+        item.setStatus(AvailabilityStatus.values()[in.readByte()]);
+        return item;
+    }
+
+    private static void writeMember(Member member, DataOutput out) throws IOException {
+        writeUuid(member.getId(), out);
+        writeNullableString(member.getName(), out);
+        out.writeUTF(member.getEmail());
+        out.writeBoolean(member.isActiveMember());
+    }
+
+    private static Member readMember(DataInput in) throws IOException {
+        Member member = new Member(readUuid(in), readNullableString(in), in.readUTF());
+        member.setActiveMember(in.readBoolean());
+        return member;
+    }
+
+    private static void writeLoan(Loan loan, DataOutput out) throws IOException {
+        writeUuid(loan.getLoanId(), out);
+        writeUuid(loan.getMemberId(), out);
+        writeUuid(loan.getMediaId(), out);
+        writeDate(loan.getLoanDate(), out);
+        writeDate(loan.getDueDate(), out);
+        out.writeInt(loan.getFineAccrued());
+        out.writeBoolean(loan.getStatus() == LoanStatus.RETURNED);
+        if (loan.getStatus() == LoanStatus.RETURNED) {
+            writeDate(loan.getReturnDate(), out);
+        }
+    }
+
+    private static Loan readLoan(DataInput in) throws IOException {
+        Loan loan = new Loan(readUuid(in), readUuid(in), readUuid(in), readDate(in), readDate(in));
+        loan.setFineAccrued(in.readInt());
+        if (in.readBoolean()) {
+            loan.markReturned(readDate(in));
+        }
+        return loan;
+    }
+
+    private static void writeReservation(Reservation reservation, DataOutput out) throws IOException {
+        writeUuid(reservation.getReservationId(), out);
+        writeUuid(reservation.getMemberId(), out);
+        writeUuid(reservation.getMediaId(), out);
+        writeDate(reservation.getCreatedDate(), out);
+        out.writeByte(reservation.getStatus().ordinal());
+    }
+
+    private static Reservation readReservation(DataInput in) throws IOException {
+        Reservation reservation = new Reservation(readUuid(in), readUuid(in), readUuid(in), readDate(in));
+        ReservationStatus status = ReservationStatus.values()[in.readByte()];
+        if (status == ReservationStatus.FULFILLED) {
+            reservation.fulfil();
+        } else if (status == ReservationStatus.CANCELLED) {
+            reservation.cancel();
+        }
+        return reservation;
+    }
+
+    // ---------------------------------------- Values ---------------------------------------
+
+    private static void writeUuid(UUID id, DataOutput out) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeDate(LocalDate date, DataOutput out) throws IOException {
+        out.writeLong(date.toEpochDay());
+    }
+
+    private static LocalDate readDate(DataInput in) throws IOException {
+        return LocalDate.ofEpochDay(in.readLong());
+    }
+
+    private static void writeNullableString(String s, DataOutput out) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    private static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeStrings(List<String> strings, DataOutput out) throws IOException {
+        out.writeInt(strings.size());
+        for (String s : strings) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static List<String> readStrings(DataInput in) throws IOException {
+        int count = in.readInt();
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(in.readUTF());
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,239 @@
+package infrastructure.persistence;
+
+import domain.service.Library;
+import domain.service.LibraryEvent;
+import domain.service.LibraryEventListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps a {@link Library} durable in a directory of snapshots and write-ahead log segments.
+ * <p>
+ *     Opening a store rebuilds the library from the newest snapshot plus every logged event
+ *     after it, then logs each subsequent mutation. A checkpoint writes a fresh snapshot
+ *     and deletes the log segments and snapshots it makes redundant, so recovery time stays
+ *     proportional to the work done since the last checkpoint rather than to the library's
+ *     whole history.
+ * </p>
+ * <p>
+ *     Each mutation is logged while its entities are locked, but waits for the disk only
+ *     after releasing them. If a record cannot be written or forced to disk, the library
+ *     stops accepting changes; reopening the store recovers what reached the log.
+ * </p>
+ */
+public final class LibraryStore implements Closeable {
+
+    private final Path directory;
+    private final Library library;
+    private final WriteAheadLog log;
+    private final LibraryEventListener logger;
+
+    /** Number of records logged since the last checkpoint after which another is started. */
+    private final long checkpointEveryRecords;
+
+    private final AtomicLong recordsSinceCheckpoint = new AtomicLong();
+    private final AtomicBoolean checkpointScheduled = new AtomicBoolean();
+    private final ExecutorService checkpointer;
+
+    /** The first background checkpoint failure not yet reported to the owner; else null. */
+    private final AtomicReference<IOException> checkpointFailure = new AtomicReference<>();
+
+    /** The sequence number of the newest snapshot on disk, or 0 if there is none. */
+    private long snapshotSequence;
+
+    /** Whether the directory held no state when the store was opened. */
+    private final boolean fresh;
+
+    private LibraryStore(Path directory, Library library, SyncPolicy policy, long checkpointEveryRecords)
+            throws IOException {
+        this.directory = directory;
+        this.library = library;
+        this.checkpointEveryRecords = checkpointEveryRecords;
+        this.fresh = recover();
+        this.log = new WriteAheadLog(directory, policy, snapshotSequence);
+        this.checkpointer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "library-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.logger = new LibraryEventListener() {
+            @Override
+            public void onEvent(long sequence, LibraryEvent event) {
+                log.append(sequence, event);
+                if (recordsSinceCheckpoint.incrementAndGet() >= LibraryStore.this.checkpointEveryRecords
+                        && checkpointScheduled.compareAndSet(false, true)) {
+                    checkpointer.execute(LibraryStore.this::backgroundCheckpoint);
+                }
+            }
+
+            @Override
+            public void afterEvents() {
+                // Outside the library's locks, so other desks carry on during the fsync
+                log.awaitDurable();
+            }
+        };
+        library.addEventListener(logger);
+    }
+
+    /**
+     * Restores a library from a directory and keeps it durable there from now on.
+     *
+     * @param directory the directory holding the store; created if missing
+     * @param library an empty library to restore into
+     * @param policy when logged events are forced to disk
+     * @param checkpointEveryRecords number of logged events after which a checkpoint is
+     *                               taken in the background; must be positive
+     * @return the open store
+     * @throws IOException if the store cannot be read or the log cannot be opened
+     */
+    public static LibraryStore open(Path directory, Library library, SyncPolicy policy, long checkpointEveryRecords)
+            throws IOException {
+        if (directory == null || library == null || policy == null) {
+            throw new IllegalArgumentException("Directory, library and sync policy cannot be null");
+        }
+        if (checkpointEveryRecords <= 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive");
+        }
+        Files.createDirectories(directory);
+        return new LibraryStore(directory, library, policy, checkpointEveryRecords);
+    }
+
+    /** @return {@code true} if the directory held no snapshot or log when the store was opened */
+    public boolean isFresh() {
+        return fresh;
+    }
+
+    /**
+     * Writes a snapshot of the library's current state and deletes the log segments and
+     * snapshots it supersedes. Mutations are blocked while the state is streamed into the
+     * snapshot file, but not while it is forced to disk.
+     *
+     * @throws IOException if the snapshot cannot be written, logging has failed, or a
+     *                     background checkpoint failed since the last call; in that case no
+     *                     snapshot is attempted and the next call tries again
+     */
+    public void checkpoint() throws IOException {
+        IOException failure = checkpointFailure.getAndSet(null);
+        if (failure != null) {
+            throw new IOException("Background checkpoint failed", failure);
+        }
+        writeCheckpoint();
+    }
+
+    /**
+     * Stops logging, waits for any background checkpoint and closes the log. Every event
+     * logged so far is on disk when this returns.
+     *
+     * @throws IOException if the log cannot be forced to disk, or a background checkpoint
+     *                     failed and was not reported by {@link #checkpoint}
+     */
+    @Override
+    public void close() throws IOException {
+        library.removeEventListener(logger);
+        checkpointer.shutdown();
+        try {
+            checkpointer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+        IOException failure = checkpointFailure.getAndSet(null);
+        if (failure != null) {
+            throw new IOException("Background checkpoint failed", failure);
+        }
+    }
+
+    // ---------------------------------------- Internals ------------------------------------
+
+    private synchronized void writeCheckpoint() throws IOException {
+        if (library.listenerFailure() != null) {
+            // The library may hold changes the log failed to record
+            throw new IOException("Library stopped accepting changes", library.listenerFailure());
+        }
+        recordsSinceCheckpoint.set(0);
+        Path previousSegment = log.currentSegment();
+
+        long sequence;
+        try (SnapshotFile.Writer snapshot = SnapshotFile.create(directory)) {
+            try {
+                sequence = library.exportState(snapshot::append);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (sequence == snapshotSequence) return;
+
+            // Events after the snapshot go to the new segment; those already in the previous
+            // segment are skipped on recovery by their sequence numbers
+            log.roll(sequence);
+            snapshot.commit(sequence);
+            snapshotSequence = sequence;
+        }
+
+        for (Path segment : WriteAheadLog.segments(directory)) {
+            if (segment.compareTo(previousSegment) < 0) Files.deleteIfExists(segment);
+        }
+        for (Path snapshot : SnapshotFile.list(directory)) {
+            if (snapshot.compareTo(SnapshotFile.path(directory, sequence)) < 0) Files.deleteIfExists(snapshot);
+        }
+    }
+
+    /**
+     * Replays the newest snapshot and then every logged event after it into the library,
+     * truncating a record torn by a crash at the end of the newest segment.
+     *
+     * @return {@code true} if there was nothing to recover
+     */
+    private boolean recover() throws IOException {
+        LibraryEventListener replay = library::replay;
+
+        List<Path> snapshots = SnapshotFile.list(directory);
+        if (!snapshots.isEmpty()) {
+            snapshotSequence = SnapshotFile.read(snapshots.getLast(), replay);
+            library.restoreSequence(snapshotSequence);
+        }
+
+        List<Path> segments = WriteAheadLog.segments(directory);
+        long after = snapshotSequence;
+        for (int i = 0; i < segments.size(); i++) {
+            Path segment = segments.get(i);
+            long valid = RecordFormat.readAll(segment, 0, (sequence, event) -> {
+                if (sequence > after) replay.onEvent(sequence, event);
+            });
+            long size = Files.size(segment);
+            if (valid == size) continue;
+            if (i < segments.size() - 1) {
+                throw new IOException("Log segment is damaged at byte " + valid + ": " + segment);
+            }
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+                channel.force(true);
+            }
+        }
+        return snapshots.isEmpty() && segments.isEmpty();
+    }
+
+    private void backgroundCheckpoint() {
+        try {
+            writeCheckpoint();
+        } catch (IOException e) {
+            // The log still holds every event, so a failed checkpoint only delays cleanup;
+            // kept for the owner to see, as nothing waits on this thread
+            checkpointFailure.compareAndSet(null, e);
+        } finally {
+            checkpointScheduled.set(false);
+        }
+    }
+}
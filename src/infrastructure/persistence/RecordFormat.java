@@ -0,0 +1,104 @@
+package infrastructure.persistence;
+
+import domain.service.LibraryEvent;
+import domain.service.LibraryEventListener;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Framing shared by log segments and snapshot files.
+ * <p>
+ *     Each record is laid out as {@code [int length][int crc][long sequence][payload]}, where
+ *     the payload is an event encoded by {@link EventCodec} and the CRC-32 covers the
+ *     sequence number and payload. A record cut short by a crash, or whose checksum does not
+ *     match, marks the end of the valid data in a file.
+ * </p>
+ */
+final class RecordFormat {
+
+    /** Bytes taken by the length, checksum and sequence number ahead of each payload. */
+    static final int HEADER_BYTES = Integer.BYTES + Integer.BYTES + Long.BYTES;
+
+    /** Upper bound on a single payload, used to reject garbage lengths in a torn tail. */
+    private static final int MAX_PAYLOAD_BYTES = 16 * 1024 * 1024;
+
+    private RecordFormat() {
+        // Private constructor to prevent instantiation of utility class
+    }
+
+    /**
+     * Encodes an event as a complete framed record.
+     *
+     * @param sequence the event's sequence number
+     * @param event the event to encode
+     * @return the framed record
+     */
+    static byte[] encode(long sequence, LibraryEvent event) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            // Placeholders for the length and checksum, filled in once the payload is known
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeLong(sequence);
+            EventCodec.write(event, out);
+            out.flush();
+
+            byte[] record = bytes.toByteArray();
+            ByteBuffer header = ByteBuffer.wrap(record);
+            header.putInt(0, record.length - HEADER_BYTES);
+            header.putInt(Integer.BYTES, checksum(record, 2 * Integer.BYTES, record.length - 2 * Integer.BYTES));
+            return record;
+        } catch (IOException e) {
+            // Writing to an in-memory stream cannot fail for I/O reasons
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the valid records of a file in order.
+     *
+     * @param file the file to read
+     * @param offset the byte offset of the first record
+     * @param handler receives each valid record
+     * @return the byte offset just past the last valid record
+     * @throws IOException if the file cannot be read
+     */
+    static long readAll(Path file, long offset, LibraryEventListener handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(offset);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+            long valid = offset;
+            long remaining = channel.size() - offset;
+            while (remaining >= HEADER_BYTES) {
+                int length = in.readInt();
+                int crc = in.readInt();
+                if (length < 0 || length > MAX_PAYLOAD_BYTES || length > remaining - HEADER_BYTES) break;
+
+                byte[] body = new byte[Long.BYTES + length];
+                in.readFully(body);
+                if (checksum(body, 0, body.length) != crc) break;
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(body));
+                long sequence = record.readLong();
+                handler.onEvent(sequence, EventCodec.read(record));
+
+                valid += HEADER_BYTES + length;
+                remaining -= HEADER_BYTES + length;
+            }
+            return valid;
+        }
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}
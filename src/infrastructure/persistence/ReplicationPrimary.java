@@ -0,0 +1,266 @@
+package infrastructure.persistence;
+
+import common.metrics.Counter;
+import common.metrics.MetricsRegistry;
+import domain.service.Library;
+import domain.service.LibraryEventListener;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ships every change made to a {@link Library} to {@link ReplicationReplica}s connected over
+ * a socket, so that another branch can hold a warm standby copy.
+ * <p>
+ *     A replica that connects is first sent the library's whole state, exported as for a
+ *     checkpoint into a temporary file and sent from there, and then every event published
+ *     after it, in sequence order. Events are
+ *     encoded on the thread that publishes them and queued for each replica; a sender
+ *     thread per replica writes them to its socket, so a slow network never holds up the
+ *     library. A replica that falls more than {@code maxBacklog} events behind is
+ *     disconnected rather than buffered without bound, and must start again from a fresh
+ *     snapshot.
+ * </p>
+ * <p>
+ *     Reports {@code replication.replicas}, the number connected, {@code replication.backlog},
+ *     the most events queued for any one replica, and {@code replication.dropped}, the
+ *     number of replicas disconnected for falling behind or for an event that never arrived.
+ * </p>
+ */
+public final class ReplicationPrimary implements Closeable {
+
+    /**
+     * How long an event is held back waiting for one with an earlier sequence number. Events
+     * from different threads can reach the queue out of order; if the missing one still has
+     * not arrived, the replica is disconnected rather than sent a copy with a hole in it.
+     */
+    private static final long GAP_WAIT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Library library;
+    private final ServerSocket serverSocket;
+    private final int maxBacklog;
+    private final Set<Follower> followers = ConcurrentHashMap.newKeySet();
+    private final LibraryEventListener shipper;
+    private final Thread acceptor;
+    private final Counter dropped;
+    private volatile boolean closed;
+
+    private ReplicationPrimary(Library library, ServerSocket serverSocket, int maxBacklog, MetricsRegistry metrics) {
+        this.library = library;
+        this.serverSocket = serverSocket;
+        this.maxBacklog = maxBacklog;
+        this.dropped = metrics.counter("replication.dropped");
+        metrics.gauge("replication.replicas", followers::size);
+        metrics.gauge("replication.backlog",
+                () -> followers.stream().mapToLong(follower -> follower.queue.size()).max().orElse(0));
+        this.shipper = (sequence, event) -> {
+            if (followers.isEmpty()) return;
+            // Encoded now, while the event's entities are still locked
+            byte[] frame = ReplicationProtocol.eventFrame(sequence, ReplicationProtocol.wallMicros(), event);
+            for (Follower follower : followers) {
+                follower.offer(new Pending(sequence, frame, System.nanoTime()));
+            }
+        };
+        this.acceptor = new Thread(this::acceptLoop, "replication-acceptor");
+        this.acceptor.setDaemon(true);
+    }
+
+    /**
+     * Starts accepting replicas of a library.
+     *
+     * @param library the library to replicate
+     * @param address the address to listen on; port 0 picks a free port
+     * @param maxBacklog the most events queued for one replica before it is disconnected;
+     *                   must be positive
+     * @param metrics the registry to record replication metrics into
+     * @return the running primary
+     * @throws IOException if the address cannot be bound
+     */
+    public static ReplicationPrimary start(Library library, InetSocketAddress address, int maxBacklog,
+                                           MetricsRegistry metrics) throws IOException {
+        if (library == null || address == null || metrics == null) {
+            throw new IllegalArgumentException("Library, address and metrics registry cannot be null");
+        }
+        if (maxBacklog <= 0) {
+            throw new IllegalArgumentException("Backlog must be positive");
+        }
+        ServerSocket serverSocket = new ServerSocket();
+        serverSocket.bind(address);
+        ReplicationPrimary primary = new ReplicationPrimary(library, serverSocket, maxBacklog, metrics);
+        library.addEventListener(primary.shipper);
+        primary.acceptor.start();
+        return primary;
+    }
+
+    /** @return the port replicas connect to */
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** @return the number of replicas currently connected */
+    public int replicaCount() {
+        return followers.size();
+    }
+
+    /**
+     * Stops shipping events and disconnects every replica. Events already written to a
+     * replica's socket may still reach it.
+     *
+     * @throws IOException if the listening socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        library.removeEventListener(shipper);
+        serverSocket.close();
+        for (Follower follower : followers) {
+            follower.disconnect();
+        }
+        try {
+            acceptor.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---------------------------------------- Internals ------------------------------------
+
+    private void acceptLoop() {
+        int accepted = 0;
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+            } catch (IOException e) {
+                if (closed) return;
+                continue;
+            }
+            // Registered before the snapshot is taken, so no event falls between the two
+            Follower follower = new Follower(socket);
+            followers.add(follower);
+            Thread sender = new Thread(follower, "replication-sender-" + accepted++);
+            sender.setDaemon(true);
+            sender.start();
+        }
+    }
+
+    /** An encoded event waiting to be sent, and when it was queued, in nanos. */
+    private record Pending(long sequence, byte[] frame, long queuedNanos) {
+    }
+
+    /** One connected replica, with the events waiting to be sent to it. */
+    private final class Follower implements Runnable {
+
+        private final Socket socket;
+        private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>(maxBacklog);
+
+        private Follower(Socket socket) {
+            this.socket = socket;
+        }
+
+        private void offer(Pending pending) {
+            if (!queue.offer(pending) && followers.remove(this)) {
+                dropped.increment();
+                disconnect();
+            }
+        }
+
+        private void disconnect() {
+            followers.remove(this);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Already closed; the sender stops on its next write
+            }
+        }
+
+        @Override
+        public void run() {
+            try (socket) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+                out.writeInt(ReplicationProtocol.MAGIC);
+
+                // Catches the replica up from the library's current state, spooled to a file
+                // while the library is locked and sent once it is released
+                Path snapshot = Files.createTempFile("replication-snapshot-", ".tmp");
+                long snapshotSequence;
+                try {
+                    try (OutputStream spool = new BufferedOutputStream(Files.newOutputStream(snapshot), 1 << 16)) {
+                        snapshotSequence = library.exportState(event -> {
+                            try {
+                                spool.write(ReplicationProtocol.snapshotFrame(event));
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                    Files.copy(snapshot, out);
+                } finally {
+                    Files.deleteIfExists(snapshot);
+                }
+                out.writeByte(ReplicationProtocol.SNAPSHOT_END);
+                out.writeLong(snapshotSequence);
+                out.flush();
+
+                stream(out, snapshotSequence);
+            } catch (IOException e) {
+                // The replica went away, or was disconnected for falling behind or for a gap
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                followers.remove(this);
+            }
+        }
+
+        /** Sends every event after the snapshot in sequence order, until disconnected. */
+        private void stream(DataOutputStream out, long snapshotSequence) throws IOException, InterruptedException {
+            long next = snapshotSequence + 1;
+            PriorityQueue<Pending> early = new PriorityQueue<>(Comparator.comparingLong(Pending::sequence));
+            while (!closed && !socket.isClosed()) {
+                Pending pending = queue.poll(ReplicationProtocol.HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                if (pending == null && early.isEmpty()) {
+                    out.writeByte(ReplicationProtocol.HEARTBEAT);
+                    out.writeLong(library.currentSequence());
+                    out.writeLong(ReplicationProtocol.wallMicros());
+                    out.flush();
+                    continue;
+                }
+                // Events queued before the snapshot was taken are already part of it
+                for (; pending != null; pending = queue.poll()) {
+                    if (pending.sequence() >= next) early.add(pending);
+                }
+                while (!early.isEmpty()) {
+                    Pending head = early.peek();
+                    if (head.sequence() != next) {
+                        if (System.nanoTime() - head.queuedNanos() < GAP_WAIT_NANOS) break;
+                        // The replica has to start again from a snapshot that includes it
+                        if (followers.remove(this)) dropped.increment();
+                        throw new IOException("Event " + next + " was never queued for shipping");
+                    }
+                    early.poll();
+                    out.write(head.frame());
+                    next++;
+                }
+                out.flush();
+            }
+        }
+    }
+}
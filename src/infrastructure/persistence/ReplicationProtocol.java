@@ -0,0 +1,88 @@
+package infrastructure.persistence;
+
+import domain.service.LibraryEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+
+/**
+ * Frames sent from a {@link ReplicationPrimary} to each {@link ReplicationReplica}.
+ * <p>
+ *     The stream opens with {@link #MAGIC}, then carries the primary's state as
+ *     {@code SNAPSHOT_RECORD} frames closed by one {@code SNAPSHOT_END}, then every later
+ *     event in sequence order, with a {@code HEARTBEAT} whenever the primary has been idle
+ *     for {@link #HEARTBEAT_MILLIS}. Each frame is a one byte tag followed by:
+ * </p>
+ * <ul>
+ *     <li>{@code SNAPSHOT_RECORD} - an event encoded by {@link EventCodec}</li>
+ *     <li>{@code SNAPSHOT_END} - {@code [long sequence]} the snapshot reflects</li>
+ *     <li>{@code EVENT} - {@code [long sequence][long publishedMicros][event]}</li>
+ *     <li>{@code HEARTBEAT} - {@code [long primarySequence][long sentMicros]}</li>
+ * </ul>
+ * <p>
+ *     Times are microseconds since the epoch on the primary's wall clock, so lag measured
+ *     by a replica in another process is only as accurate as the two clocks agree. TCP
+ *     already checksums the stream, so unlike {@link RecordFormat} frames carry no CRC.
+ * </p>
+ */
+final class ReplicationProtocol {
+
+    /** Written first by the primary, to reject a connection to something else. */
+    static final int MAGIC = 0x4C524550;    // "LREP"
+
+    static final byte SNAPSHOT_RECORD = 1;
+    static final byte SNAPSHOT_END = 2;
+    static final byte EVENT = 3;
+    static final byte HEARTBEAT = 4;
+
+    /** How long the primary stays silent before telling a replica it is still there. */
+    static final long HEARTBEAT_MILLIS = 100;
+
+    private ReplicationProtocol() {
+        // Private constructor to prevent instantiation of utility class
+    }
+
+    /** @return the wall-clock time in microseconds since the epoch */
+    static long wallMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000L + now.getNano() / 1_000;
+    }
+
+    /** @return a complete {@code EVENT} frame */
+    static byte[] eventFrame(long sequence, long publishedMicros, LibraryEvent event) {
+        return frame(out -> {
+            out.writeByte(EVENT);
+            out.writeLong(sequence);
+            out.writeLong(publishedMicros);
+            EventCodec.write(event, out);
+        });
+    }
+
+    /** @return a complete {@code SNAPSHOT_RECORD} frame */
+    static byte[] snapshotFrame(LibraryEvent event) {
+        return frame(out -> {
+            out.writeByte(SNAPSHOT_RECORD);
+            EventCodec.write(event, out);
+        });
+    }
+
+    private interface FrameWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] frame(FrameWriter writer) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            writer.write(out);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // Writing to an in-memory stream cannot fail for I/O reasons
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package infrastructure.persistence;
+
+import common.metrics.LatencyHistogram;
+import common.metrics.MetricsRegistry;
+import domain.service.Library;
+import domain.service.LibraryEvent;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps a {@link Library} a copy of one served by a {@link ReplicationPrimary}, so that it
+ * can answer searches and listings, and take over if the primary fails.
+ * <p>
+ *     Connecting loads the primary's current state into the library and then replays each
+ *     event the primary ships, on a thread of its own. The library must not be changed
+ *     any other way while it follows the primary; once the replica is closed, e.g. to
+ *     promote it after the primary has failed, it holds every event applied so far and
+ *     numbers new events after them. Events must arrive in unbroken sequence; if one is
+ *     missing the replica stops following with a failure, and has to be started again
+ *     from an empty library.
+ * </p>
+ * <p>
+ *     Measures how far it trails the primary: {@code replication.lag} records the time
+ *     from each event being published on the primary to it being applied here, and
+ *     {@code replication.lagEvents} reports how many events the primary was last known to
+ *     have published that are not yet applied. Both lags are also available directly.
+ * </p>
+ */
+public final class ReplicationReplica implements Closeable {
+
+    private final Library library;
+    private final Socket socket;
+    private final Thread applier;
+    private final LatencyHistogram lag;
+
+    /** Guards the fields below. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Signalled when an event is applied or the connection ends. */
+    private final Condition progress = lock.newCondition();
+
+    private long appliedSequence;
+    private long primarySequence;
+    private boolean caughtUp;
+    private boolean connected = true;
+    private IOException failure;
+
+    /** Set once {@link #close} is called, so the connection ending is not reported as a failure. */
+    private volatile boolean closing;
+
+    /** Time from publishing to applying the most recent event, in nanos. */
+    private volatile long lastLagNanos;
+
+    private ReplicationReplica(Library library, Socket socket, MetricsRegistry metrics) {
+        this.library = library;
+        this.socket = socket;
+        this.lag = metrics.histogram("replication.lag");
+        metrics.gauge("replication.appliedSequence", this::appliedSequence);
+        metrics.gauge("replication.lagEvents", this::lagEvents);
+        this.applier = new Thread(this::applyLoop, "replication-replica");
+        this.applier.setDaemon(true);
+    }
+
+    /**
+     * Connects to a primary and starts following it.
+     *
+     * @param primary the address the primary listens on
+     * @param library an empty library to load the primary's state into
+     * @param metrics the registry to record replication lag into
+     * @return the connected replica
+     * @throws IOException if the primary cannot be reached
+     */
+    public static ReplicationReplica connect(InetSocketAddress primary, Library library, MetricsRegistry metrics)
+            throws IOException {
+        if (primary == null || library == null || metrics == null) {
+            throw new IllegalArgumentException("Primary address, library and metrics registry cannot be null");
+        }
+        if (library.currentSequence() != 0) {
+            throw new IllegalArgumentException("A replica must start from an empty library");
+        }
+        Socket socket = new Socket();
+        socket.connect(primary);
+        ReplicationReplica replica = new ReplicationReplica(library, socket, metrics);
+        replica.applier.start();
+        return replica;
+    }
+
+    /** @return the sequence number of the most recent event applied */
+    public long appliedSequence() {
+        lock.lock();
+        try {
+            return appliedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return the number of events the primary was last known to have published that are not yet applied */
+    public long lagEvents() {
+        lock.lock();
+        try {
+            return Math.max(0, primarySequence - appliedSequence);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return the time from publishing to applying the most recent event, in nanos */
+    public long lastLagNanos() {
+        return lastLagNanos;
+    }
+
+    /** @return {@code true} until the connection to the primary ends */
+    public boolean isConnected() {
+        lock.lock();
+        try {
+            return connected;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the primary's snapshot has been loaded and every event up to a sequence
+     * number applied, e.g. so that a client reads its own writes.
+     *
+     * @param sequence the primary's sequence number to wait for
+     * @param timeout how long to wait
+     * @param unit the unit of {@code timeout}
+     * @return {@code true} if the replica caught up, {@code false} if it timed out first
+     * @throws IOException if the connection failed before the replica caught up
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitSequence(long sequence, long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!caughtUp || appliedSequence < sequence) {
+                if (!connected) {
+                    if (failure != null) throw failure;
+                    return false;
+                }
+                if (remaining <= 0) return false;
+                remaining = progress.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops following the primary. The library keeps every event applied so far.
+     *
+     * @throws IOException if the connection cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        socket.close();
+        try {
+            applier.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---------------------------------------- Internals ------------------------------------
+
+    private void applyLoop() {
+        IOException error = null;
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            if (in.readInt() != ReplicationProtocol.MAGIC) {
+                throw new IOException("Not a replication primary: " + socket.getRemoteSocketAddress());
+            }
+            while (true) {
+                byte tag = in.readByte();
+                switch (tag) {
+                    case ReplicationProtocol.SNAPSHOT_RECORD -> library.replay(0, EventCodec.read(in));
+                    case ReplicationProtocol.SNAPSHOT_END -> {
+                        long sequence = in.readLong();
+                        library.restoreSequence(sequence);
+                        advance(sequence, sequence, true);
+                    }
+                    case ReplicationProtocol.EVENT -> {
+                        long sequence = in.readLong();
+                        long publishedMicros = in.readLong();
+                        LibraryEvent event = EventCodec.read(in);
+                        long expected = appliedSequence() + 1;
+                        if (sequence != expected) {
+                            throw new IOException("Expected event " + expected + " from the primary but got " + sequence);
+                        }
+                        library.replay(sequence, event);
+                        long lagNanos = Math.max(0, ReplicationProtocol.wallMicros() - publishedMicros) * 1_000;
+                        lag.record(lagNanos);
+                        lastLagNanos = lagNanos;
+                        advance(sequence, sequence, true);
+                    }
+                    case ReplicationProtocol.HEARTBEAT -> {
+                        long sequence = in.readLong();
+                        in.readLong();
+                        advance(0, sequence, false);
+                    }
+                    default -> throw new IOException("Unknown replication frame: " + tag);
+                }
+            }
+        } catch (EOFException e) {
+            // The primary closed the connection
+        } catch (IOException e) {
+            // The socket is already closed here either way, so only close() says it was asked for
+            if (!closing) error = e;
+        } catch (RuntimeException e) {
+            error = new IOException("Failed to apply a replicated event", e);
+        } finally {
+            lock.lock();
+            try {
+                connected = false;
+                failure = error;
+                progress.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void advance(long applied, long primary, boolean loaded) {
+        lock.lock();
+        try {
+            appliedSequence = Math.max(appliedSequence, applied);
+            primarySequence = Math.max(primarySequence, primary);
+            caughtUp |= loaded;
+            progress.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
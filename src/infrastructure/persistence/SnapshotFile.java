@@ -0,0 +1,165 @@
+package infrastructure.persistence;
+
+import domain.service.LibraryEvent;
+import domain.service.LibraryEventListener;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Snapshot files holding the library's entire state as of one sequence number.
+ * <p>
+ *     A snapshot starts with a header of {@code [int magic][int version][long sequence]}
+ *     followed by the records produced by {@link domain.service.Library#exportState}, framed
+ *     by {@link RecordFormat}. Snapshots are streamed to a temporary file, forced to disk and
+ *     then renamed into place, so a snapshot that exists is always complete.
+ * </p>
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x4C4D5353; // "LMSS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = Integer.BYTES + Integer.BYTES + Long.BYTES;
+
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    private SnapshotFile() {
+        // Private constructor to prevent instantiation of utility class
+    }
+
+    /**
+     * Starts writing a snapshot to a temporary file in a directory, replacing any left
+     * behind by a crash. Nothing is visible under a snapshot name until
+     * {@link Writer#commit} is called.
+     *
+     * @param directory the directory to write it to
+     * @return a writer for the snapshot's records
+     * @throws IOException if the temporary file cannot be created
+     */
+    static Writer create(Path directory) throws IOException {
+        return new Writer(directory);
+    }
+
+    /**
+     * A snapshot being written record by record. The header is written last, once the
+     * sequence number the records correspond to is known.
+     */
+    static final class Writer implements Closeable {
+
+        private final Path directory;
+        private final Path temp;
+        private final FileChannel channel;
+        private final OutputStream out;
+        private boolean committed;
+
+        private Writer(Path directory) throws IOException {
+            this.directory = directory;
+            this.temp = directory.resolve(PREFIX + "in-progress.tmp");
+            this.channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            this.out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            out.write(new byte[HEADER_BYTES]);
+        }
+
+        /**
+         * Appends one record of the state.
+         *
+         * @param event the event to record
+         * @throws UncheckedIOException if the record cannot be written, since this is
+         *                              called from inside {@link domain.service.Library#exportState}
+         */
+        void append(LibraryEvent event) {
+            try {
+                out.write(RecordFormat.encode(0, event));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Writes the header, forces the snapshot to disk and renames it into place.
+         *
+         * @param sequence the sequence number the records correspond to
+         * @return the path of the new snapshot
+         * @throws IOException if the snapshot cannot be completed
+         */
+        Path commit(long sequence) throws IOException {
+            out.flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).putLong(sequence).flip();
+            for (long position = 0; header.hasRemaining(); ) {
+                position += channel.write(header, position);
+            }
+            channel.force(true);
+            channel.close();
+            Path target = path(directory, sequence);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+            return target;
+        }
+
+        /** Discards the snapshot unless it was committed. */
+        @Override
+        public void close() throws IOException {
+            channel.close();
+            if (!committed) Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads a snapshot, passing each of its records to a handler.
+     *
+     * @param file the snapshot to read
+     * @param handler receives each record
+     * @return the sequence number the snapshot corresponds to
+     * @throws IOException if the snapshot cannot be read or is damaged
+     */
+    static long read(Path file, LibraryEventListener handler) throws IOException {
+        long sequence;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a snapshot file: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + file);
+            }
+            sequence = in.readLong();
+        }
+        long end = RecordFormat.readAll(file, HEADER_BYTES, handler);
+        if (end != Files.size(file)) {
+            throw new IOException("Snapshot is damaged at byte " + end + ": " + file);
+        }
+        return sequence;
+    }
+
+    /**
+     * Lists the snapshots in a directory, oldest first.
+     *
+     * @param directory the directory holding the snapshots
+     * @return the snapshot paths
+     * @throws IOException if the directory cannot be listed
+     */
+    static List<Path> list(Path directory) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(SnapshotFile::isSnapshot).sorted().forEach(snapshots::add);
+        }
+        return snapshots;
+    }
+
+    static Path path(Path directory, long sequence) {
+        return directory.resolve(String.format("%s%019d%s", PREFIX, sequence, SUFFIX));
+    }
+
+    private static boolean isSnapshot(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+}
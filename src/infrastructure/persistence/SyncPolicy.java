@@ -0,0 +1,58 @@
+package infrastructure.persistence;
+
+/**
+ * Controls how often the write-ahead log forces its records to disk.
+ * <p>
+ *     Forcing is done by a background thread so that one fsync can cover every record
+ *     appended since the previous one (group commit). It is triggered once
+ *     {@code maxBatchRecords} records are waiting, or once the oldest waiting record is
+ *     {@code maxDelayMillis} old, whichever comes first.
+ * </p>
+ *
+ * @param maxBatchRecords number of waiting records that triggers an fsync straight away
+ * @param maxDelayMillis longest a record may wait before an fsync is triggered
+ * @param waitForSync whether appenders block until their record is on disk
+ */
+public record SyncPolicy(int maxBatchRecords, long maxDelayMillis, boolean waitForSync) {
+
+    public SyncPolicy {
+        if (maxBatchRecords <= 0) {
+            throw new IllegalArgumentException("maxBatchRecords must be positive");
+        }
+        if (maxDelayMillis < 0) {
+            throw new IllegalArgumentException("maxDelayMillis cannot be negative");
+        }
+    }
+
+    /**
+     * Every mutation waits until it is on disk. Mutations arriving while an fsync is in
+     * progress still share the next one.
+     *
+     * @return the strictest policy
+     */
+    public static SyncPolicy everyRecord() {
+        return new SyncPolicy(1, 0, true);
+    }
+
+    /**
+     * Mutations wait until they are on disk, but fsyncs are delayed to batch them up.
+     *
+     * @param maxBatchRecords batch size that triggers an fsync straight away
+     * @param maxDelayMillis longest a mutation waits for its batch to fill
+     * @return a group commit policy
+     */
+    public static SyncPolicy groupCommit(int maxBatchRecords, long maxDelayMillis) {
+        return new SyncPolicy(maxBatchRecords, maxDelayMillis, true);
+    }
+
+    /**
+     * Mutations do not wait for the disk, and up to {@code intervalMillis} of them can be lost
+     * in a power failure.
+     *
+     * @param intervalMillis how often waiting records are forced to disk
+     * @return an asynchronous policy
+     */
+    public static SyncPolicy periodic(long intervalMillis) {
+        return new SyncPolicy(Integer.MAX_VALUE, intervalMillis, false);
+    }
+}
@@ -0,0 +1,303 @@
+package infrastructure.persistence;
+
+import domain.service.LibraryEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of library events, split into segments.
+ * <p>
+ *     Records are appended to the current segment by the calling thread and forced to disk
+ *     by a background flusher thread according to the {@link SyncPolicy}, so that one fsync
+ *     covers every record appended while the previous fsync was running. Each segment is
+ *     named after the snapshot sequence number it follows ({@code wal-<sequence>.log}), so
+ *     sorting segment names gives the order they were written in.
+ * </p>
+ */
+public final class WriteAheadLog implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final SyncPolicy policy;
+
+    /** Guards the channel and the counters below. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Signalled when records are appended or the log is closed. */
+    private final Condition recordsWaiting = lock.newCondition();
+
+    /** Signalled when an fsync completes or fails. */
+    private final Condition syncCompleted = lock.newCondition();
+
+    private FileChannel channel;
+    private Path segment;
+
+    /** Number of records appended since the log was opened. */
+    private long appended;
+
+    /** Number of those records known to be on disk. */
+    private long durable;
+
+    /** When the oldest record not yet on disk was appended, in nanos. */
+    private long oldestWaitingNanos;
+
+    /** The first failed write or fsync; once set, nothing more is appended. */
+    private IOException failure;
+
+    private boolean closed;
+
+    private final Thread flusher;
+
+    /**
+     * Opens the log, appending to its newest segment or creating the first one.
+     *
+     * @param directory the directory holding the segments
+     * @param policy when to force records to disk
+     * @param firstSegmentSequence the sequence to name a new segment after if none exist
+     * @throws IOException if the segment cannot be opened
+     */
+    public WriteAheadLog(Path directory, SyncPolicy policy, long firstSegmentSequence) throws IOException {
+        this.directory = directory;
+        this.policy = policy;
+        List<Path> existing = segments(directory);
+        openSegment(existing.isEmpty() ? segmentPath(directory, firstSegmentSequence) : existing.getLast());
+
+        flusher = new Thread(this::flushLoop, "wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Appends an event to the current segment. Does not wait for it to reach disk; see
+     * {@link #awaitDurable}.
+     *
+     * @param sequence the event's sequence number
+     * @param event the event to log
+     * @throws UncheckedIOException if the record cannot be written, or an earlier write or
+     *                              fsync failed
+     */
+    public void append(long sequence, LibraryEvent event) {
+        ByteBuffer record = ByteBuffer.wrap(RecordFormat.encode(sequence, event));
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Write-ahead log is closed");
+            }
+            if (failure != null) throw failure;
+            try {
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+            } catch (IOException e) {
+                // A partly written record must not be followed by others
+                failure = e;
+                throw e;
+            }
+            if (++appended == durable + 1) {
+                oldestWaitingNanos = System.nanoTime();
+            }
+            recordsWaiting.signal();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write to the write-ahead log", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every record appended so far is on disk, if the policy requires it. Records
+     * appended by other threads meanwhile are covered by the same fsync.
+     *
+     * @throws UncheckedIOException if a write or fsync has failed
+     */
+    public void awaitDurable() {
+        if (!policy.waitForSync()) return;
+        lock.lock();
+        try {
+            long target = appended;
+            while (durable < target) {
+                if (failure != null) throw failure;
+                syncCompleted.awaitUninterruptibly();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to force the write-ahead log to disk", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces every appended record to disk.
+     *
+     * @throws IOException if the fsync fails
+     */
+    public void sync() throws IOException {
+        lock.lock();
+        try {
+            channel.force(false);
+            durable = appended;
+            syncCompleted.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces the current segment to disk and starts a new one. Records appended afterwards
+     * go to {@code wal-<sequence>.log}.
+     *
+     * @param sequence the snapshot sequence number the new segment follows
+     * @return the segment that was current before the roll
+     * @throws IOException if the segments cannot be switched
+     */
+    public Path roll(long sequence) throws IOException {
+        lock.lock();
+        try {
+            Path previous = segment;
+            Path next = segmentPath(directory, sequence);
+            if (next.equals(previous)) return previous;
+            channel.force(false);
+            channel.close();
+            durable = appended;
+            syncCompleted.signalAll();
+            openSegment(next);
+            return previous;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return the segment records are currently appended to */
+    public Path currentSegment() {
+        lock.lock();
+        try {
+            return segment;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces outstanding records to disk and closes the current segment.
+     *
+     * @throws IOException if the final fsync fails
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            recordsWaiting.signalAll();
+            channel.force(false);
+            durable = appended;
+            syncCompleted.signalAll();
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Lists the log segments in a directory in the order they were written.
+     *
+     * @param directory the directory holding the segments
+     * @return the segment paths, oldest first
+     * @throws IOException if the directory cannot be listed
+     */
+    public static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(WriteAheadLog::isSegment).sorted().forEach(segments::add);
+        }
+        return segments;
+    }
+
+    // ---------------------------------------- Internals ------------------------------------
+
+    private void openSegment(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        segment = path;
+    }
+
+    /**
+     * Body of the flusher thread: waits for records, lets a batch build up as far as the
+     * policy allows, then forces every record appended so far with a single fsync.
+     */
+    private void flushLoop() {
+        lock.lock();
+        try {
+            while (!closed) {
+                if (appended == durable || failure != null) {
+                    recordsWaiting.awaitUninterruptibly();
+                    continue;
+                }
+                long deadline = oldestWaitingNanos + TimeUnit.MILLISECONDS.toNanos(policy.maxDelayMillis());
+                long remaining = deadline - System.nanoTime();
+                if (appended - durable < policy.maxBatchRecords() && remaining > 0) {
+                    recordsWaiting.awaitNanos(remaining);
+                    continue;
+                }
+
+                long target = appended;
+                FileChannel syncing = channel;
+                lock.unlock();
+                IOException syncFailure = null;
+                try {
+                    // Appenders carry on writing while the fsync runs and join the next batch
+                    syncing.force(false);
+                } catch (IOException e) {
+                    syncFailure = e;
+                } finally {
+                    lock.lock();
+                }
+                if (syncing != channel) {
+                    // Rolled or closed meanwhile; that already forced everything
+                    continue;
+                }
+                if (syncFailure != null) {
+                    if (failure == null) failure = syncFailure;
+                } else {
+                    durable = Math.max(durable, target);
+                    if (appended > durable) oldestWaitingNanos = System.nanoTime();
+                }
+                syncCompleted.signalAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static Path segmentPath(Path directory, long sequence) {
+        return directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+}
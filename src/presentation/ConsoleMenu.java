@@ -3,6 +3,7 @@ package presentation;
 import common.ValidationException;
 import domain.model.*;
 import domain.service.Library;
+import domain.service.Page;
 
 import java.util.List;
 import java.util.Scanner;
@@ -14,6 +15,9 @@ import java.util.function.Function;
  */
 public class ConsoleMenu {
 
+    /** Number of entries shown at a time when listing media or members. */
+    private static final int PAGE_SIZE = 20;
+
     private final Library library;
     private final Scanner scanner = new Scanner(System.in); // Creates scanner object to allow input
 
@@ -84,23 +88,35 @@ public class ConsoleMenu {
     private void listItems(Library library) {
         System.out.println("\nMedia Items Catalogue:\n");
 
-        for (MediaItem item : library.listItems()) {
-            System.out.println(item);
-            System.out.println();
-        }
+        UUID cursor = null;
+        do {
+            Page<MediaItem> page = library.listItems(MediaItem.class, null, cursor, PAGE_SIZE);
+            for (MediaItem item : page.entries()) {
+                System.out.println(item);
+                System.out.println();
+            }
+            cursor = page.nextCursor();
+        } while (cursor != null && nextPage());
 
-        pause();
+        // Quitting part-way already took an answer from the user
+        if (cursor == null) pause();
     }
 
     private void listMembers(Library library) {
         System.out.println("\nMembers Catalogue:\n");
 
-        for (Member member : library.listMembers()) {
-            System.out.println(member);
-            System.out.println();
-        }
+        UUID cursor = null;
+        do {
+            Page<Member> page = library.listMembers(cursor, PAGE_SIZE);
+            for (Member member : page.entries()) {
+                System.out.println(member);
+                System.out.println();
+            }
+            cursor = page.nextCursor();
+        } while (cursor != null && nextPage());
 
-        pause();
+        // Quitting part-way already took an answer from the user
+        if (cursor == null) pause();
     }
 
     private void loanItem(Library library) {
@@ -384,6 +400,17 @@ public class ConsoleMenu {
         return name + email + " (id:" + shortId(member.getId()) + ")";
     }
 
+    /** @return {@code true} if the user asked for another page of a listing, {@code false} to stop */
+    private boolean nextPage() {
+        while (true) {
+            System.out.print("Press Enter for the next page, or q to stop: ");
+            String input = scanner.nextLine().trim();
+            System.out.println();
+            if (input.isEmpty()) return true;
+            if (input.equalsIgnoreCase("q")) return false;
+        }
+    }
+
     private void pause() {
         System.out.print("Press Enter to continue...");
         scanner.nextLine();
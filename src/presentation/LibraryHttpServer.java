@@ -0,0 +1,461 @@
+package presentation;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import common.ValidationException;
+import common.metrics.Counter;
+import common.metrics.LatencyHistogram;
+import common.metrics.MetricsRegistry;
+import domain.model.*;
+import domain.service.Library;
+import domain.service.Page;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded HTTP/JSON front end for a {@link Library}, for self-service kiosks and other
+ * clients that share the library with the {@link ConsoleMenu}.
+ * <p>
+ *     Endpoints, with parameters passed in the query string or, for POSTs, as a form body:
+ * </p>
+ * <ul>
+ *     <li>{@code GET /media?type=&status=&after=&size=} - one page of items in ID order</li>
+ *     <li>{@code GET /media/search?q=&status=&limit=} - items matching a keyword</li>
+ *     <li>{@code GET /members?after=&size=} - one page of members in ID order</li>
+ *     <li>{@code GET /members/search?q=&limit=} - members whose name matches a keyword</li>
+ *     <li>{@code POST /loans} with {@code memberId} and {@code mediaId} - loans an item</li>
+ *     <li>{@code POST /returns} with {@code mediaId} - returns an item</li>
+ *     <li>{@code POST /reservations} with {@code memberId} and {@code mediaId} - reserves an item</li>
+ * </ul>
+ * <p>
+ *     Each request is served on its own virtual thread, so a slow client ties up no
+ *     platform thread. Admission is bounded: at most {@code maxConcurrent} requests run at
+ *     once, up to {@code maxQueued} more wait up to {@link #MAX_QUEUE_WAIT_MILLIS} for
+ *     their turn, and any beyond that, or that wait too long, are turned away at once with
+ *     {@code 503 Service Unavailable} and a {@code Retry-After} header rather than piling up
+ *     in memory. Broken business rules are answered with {@code 409 Conflict} and the
+ *     rule's message, unknown member or item IDs with {@code 404 Not Found}, and malformed
+ *     parameters with {@code 400 Bad Request}. Any other failure is logged and answered
+ *     with {@code 500 Internal Server Error}.
+ * </p>
+ * <p>
+ *     A server started with {@link #startReadOnly} serves only the GET endpoints, e.g. for
+ *     a replica kept up to date by replication, and answers the POSTs with
+ *     {@code 403 Forbidden}.
+ * </p>
+ */
+public final class LibraryHttpServer implements Closeable {
+
+    /** How long an admitted request may wait for one of the running slots. */
+    static final long MAX_QUEUE_WAIT_MILLIS = 1000;
+
+    /** Records requests that fail unexpectedly, which clients only see as a 500. */
+    private static final System.Logger LOG = System.getLogger(LibraryHttpServer.class.getName());
+
+    /** Results returned by a search when the client gives no limit. */
+    private static final int DEFAULT_LIMIT = 50;
+
+    /** Largest page or search result a client may ask for. */
+    private static final int MAX_LIMIT = 500;
+
+    private final Library library;
+    private final boolean readOnly;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /** Permits for requests running or queued; a request that cannot get one is rejected. */
+    private final Semaphore admitted;
+
+    /** Permits for requests running. */
+    private final Semaphore running;
+
+    private final Counter requests;
+    private final Counter rejected;
+    private final LatencyHistogram latency;
+
+    private LibraryHttpServer(Library library, boolean readOnly, HttpServer server, int maxConcurrent, int maxQueued,
+                              MetricsRegistry metrics) {
+        this.library = library;
+        this.readOnly = readOnly;
+        this.server = server;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        int capacity = maxConcurrent + maxQueued;
+        this.admitted = new Semaphore(capacity);
+        this.running = new Semaphore(maxConcurrent);
+        this.requests = metrics.counter("http.requests");
+        this.rejected = metrics.counter("http.rejected");
+        this.latency = metrics.histogram("http.latency");
+        metrics.gauge("http.running", () -> maxConcurrent - running.availablePermits());
+        metrics.gauge("http.admitted", () -> capacity - admitted.availablePermits());
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts serving a library over HTTP.
+     *
+     * @param library the library to serve
+     * @param address the address to listen on; port 0 picks a free port
+     * @param maxConcurrent the most requests served at once; must be positive
+     * @param maxQueued the most requests waiting to be served; must not be negative
+     * @param metrics the registry to record request counts and latencies into
+     * @return the running server
+     * @throws IOException if the address cannot be bound
+     */
+    public static LibraryHttpServer start(Library library, InetSocketAddress address, int maxConcurrent,
+                                          int maxQueued, MetricsRegistry metrics) throws IOException {
+        return start(library, false, address, maxConcurrent, maxQueued, metrics);
+    }
+
+    /**
+     * Starts serving a library's searches and listings over HTTP, refusing loans, returns
+     * and reservations.
+     *
+     * @param library the library to serve
+     * @param address the address to listen on; port 0 picks a free port
+     * @param maxConcurrent the most requests served at once; must be positive
+     * @param maxQueued the most requests waiting to be served; must not be negative
+     * @param metrics the registry to record request counts and latencies into
+     * @return the running server
+     * @throws IOException if the address cannot be bound
+     */
+    public static LibraryHttpServer startReadOnly(Library library, InetSocketAddress address, int maxConcurrent,
+                                                  int maxQueued, MetricsRegistry metrics) throws IOException {
+        return start(library, true, address, maxConcurrent, maxQueued, metrics);
+    }
+
+    private static LibraryHttpServer start(Library library, boolean readOnly, InetSocketAddress address,
+                                           int maxConcurrent, int maxQueued, MetricsRegistry metrics)
+            throws IOException {
+        if (library == null || address == null || metrics == null) {
+            throw new IllegalArgumentException("Library, address and metrics registry cannot be null");
+        }
+        if (maxConcurrent <= 0 || maxQueued < 0) {
+            throw new IllegalArgumentException("Concurrency must be positive and queue length not negative");
+        }
+        HttpServer server = HttpServer.create(address, maxQueued);
+        LibraryHttpServer httpServer = new LibraryHttpServer(library, readOnly, server, maxConcurrent, maxQueued, metrics);
+        server.start();
+        return httpServer;
+    }
+
+    /** @return the port the server is listening on */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /** Stops accepting requests, lets those in progress finish for up to a second, and stops. */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.close();
+    }
+
+    // ---------------------------------------- Admission ------------------------------------
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try (exchange) {
+            requests.increment();
+            if (!admitted.tryAcquire()) {
+                overloaded(exchange);
+                return;
+            }
+            try {
+                if (!running.tryAcquire(MAX_QUEUE_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    overloaded(exchange);
+                    return;
+                }
+                try {
+                    respond(exchange);
+                } finally {
+                    running.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                overloaded(exchange);
+            } finally {
+                admitted.release();
+            }
+        } finally {
+            latency.recordSince(start);
+        }
+    }
+
+    private void overloaded(HttpExchange exchange) throws IOException {
+        rejected.increment();
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        send(exchange, 503, Json.object("error", "Server busy, please retry"));
+    }
+
+    // ---------------------------------------- Routing --------------------------------------
+
+    private void respond(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        try {
+            Map<String, String> params = params(exchange);
+            switch (path) {
+                case "/media" -> {
+                    requireMethod(method, "GET");
+                    send(exchange, 200, listItems(params));
+                }
+                case "/media/search" -> {
+                    requireMethod(method, "GET");
+                    List<MediaItem> found = library.searchMedia(params.get("q"), status(params.get("status")));
+                    send(exchange, 200, Json.object("items",
+                            found.stream().limit(limit(params)).map(LibraryHttpServer::toJson).toList()));
+                }
+                case "/members" -> {
+                    requireMethod(method, "GET");
+                    Page<Member> page = library.listMembers(uuid(params, "after", false), size(params));
+                    send(exchange, 200, Json.object(
+                            "members", page.entries().stream().map(LibraryHttpServer::toJson).toList(),
+                            "next", page.nextCursor()));
+                }
+                case "/members/search" -> {
+                    requireMethod(method, "GET");
+                    List<Member> found = library.searchMembers(params.get("q"));
+                    send(exchange, 200, Json.object("members",
+                            found.stream().limit(limit(params)).map(LibraryHttpServer::toJson).toList()));
+                }
+                case "/loans" -> {
+                    requireMethod(method, "POST");
+                    requireWritable();
+                    Loan loan = library.loanItem(knownMember(params), knownItem(params));
+                    send(exchange, 201, toJson(loan));
+                }
+                case "/returns" -> {
+                    requireMethod(method, "POST");
+                    requireWritable();
+                    send(exchange, 200, toJson(library.returnItem(knownItem(params))));
+                }
+                case "/reservations" -> {
+                    requireMethod(method, "POST");
+                    requireWritable();
+                    Reservation reservation = library.placeReservation(knownMember(params), knownItem(params));
+                    send(exchange, 201, toJson(reservation));
+                }
+                default -> send(exchange, 404, Json.object("error", "No such resource: " + path));
+            }
+        } catch (MethodNotAllowedException e) {
+            exchange.getResponseHeaders().set("Allow", e.getMessage());
+            send(exchange, 405, Json.object("error", "Use " + e.getMessage() + " for " + path));
+        } catch (ReadOnlyException e) {
+            send(exchange, 403, Json.object("error", "This server is read-only"));
+        } catch (NotFoundException e) {
+            send(exchange, 404, Json.object("error", e.getMessage()));
+        } catch (ValidationException e) {
+            send(exchange, 409, Json.object("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, Json.object("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            LOG.log(System.Logger.Level.ERROR, method + " " + path + " failed", e);
+            send(exchange, 500, Json.object("error", "Internal error"));
+        }
+    }
+
+    private Map<String, Object> listItems(Map<String, String> params) {
+        Class<? extends MediaItem> type = switch (params.getOrDefault("type", "").toLowerCase(Locale.ROOT)) {
+            case "" -> MediaItem.class;
+            case "book" -> Book.class;
+            case "dvd" -> Dvd.class;
+            case "magazine" -> Magazine.class;
+            default -> throw new IllegalArgumentException("Unknown type: " + params.get("type"));
+        };
+        Page<? extends MediaItem> page = library.listItems(type, status(params.get("status")),
+                uuid(params, "after", false), size(params));
+        return Json.object(
+                "items", page.entries().stream().map(LibraryHttpServer::toJson).toList(),
+                "next", page.nextCursor());
+    }
+
+    // ---------------------------------------- Parameters -----------------------------------
+
+    /** Signals a request made with the wrong method; the message is the method to use. */
+    @SuppressWarnings("serial") // never serialised; caught within the handler
+    private static final class MethodNotAllowedException extends RuntimeException {
+        private MethodNotAllowedException(String allowed) {
+            super(allowed);
+        }
+    }
+
+    /** Signals a change requested of a read-only server. */
+    @SuppressWarnings("serial") // never serialised; caught within the handler
+    private static final class ReadOnlyException extends RuntimeException {
+    }
+
+    /** Signals a request naming a member or item the library does not have. */
+    @SuppressWarnings("serial") // never serialised; caught within the handler
+    private static final class NotFoundException extends RuntimeException {
+        private NotFoundException(String message) {
+            super(message);
+        }
+    }
+
+    private void requireWritable() {
+        if (readOnly) {
+            throw new ReadOnlyException();
+        }
+    }
+
+    private static void requireMethod(String method, String allowed) {
+        if (!method.equals(allowed)) {
+            throw new MethodNotAllowedException(allowed);
+        }
+    }
+
+    /** @return the query parameters, and for a POST the form parameters of its body */
+    private static Map<String, String> params(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        if (exchange.getRequestMethod().equals("POST")) {
+            parseForm(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8), params);
+        }
+        return params;
+    }
+
+    private static void parseForm(String form, Map<String, String> params) {
+        if (form == null || form.isEmpty()) return;
+        for (String pair : form.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static UUID uuid(Map<String, String> params, String name, boolean required) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            if (required) throw new IllegalArgumentException("Missing parameter: " + name);
+            return null;
+        }
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Not a valid ID for " + name + ": " + value);
+        }
+    }
+
+    /** @return the required {@code memberId} parameter, checked against the current snapshot */
+    private UUID knownMember(Map<String, String> params) {
+        UUID memberId = uuid(params, "memberId", true);
+        if (library.snapshot().findMember(memberId) == null) {
+            throw new NotFoundException("No such member: " + memberId);
+        }
+        return memberId;
+    }
+
+    /** @return the required {@code mediaId} parameter, checked against the current snapshot */
+    private UUID knownItem(Map<String, String> params) {
+        UUID mediaId = uuid(params, "mediaId", true);
+        if (library.snapshot().findItem(mediaId) == null) {
+            throw new NotFoundException("No such item: " + mediaId);
+        }
+        return mediaId;
+    }
+
+    private static AvailabilityStatus status(String value) {
+        if (value == null || value.isEmpty()) return null;
+        try {
+            return AvailabilityStatus.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown status: " + value);
+        }
+    }
+
+    private static int size(Map<String, String> params) {
+        return boundedInt(params, "size");
+    }
+
+    private static int limit(Map<String, String> params) {
+        return boundedInt(params, "limit");
+    }
+
+    private static int boundedInt(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) return DEFAULT_LIMIT;
+        try {
+            int n = Integer.parseInt(value);
+            if (n > 0 && n <= MAX_LIMIT) return n;
+        } catch (NumberFormatException ignored) {
+            // Reported below
+        }
+        throw new IllegalArgumentException(name + " must be between 1 and " + MAX_LIMIT);
+    }
+
+    // ---------------------------------------- Responses ------------------------------------
+
+    private static void send(HttpExchange exchange, int status, Map<String, Object> body) throws IOException {
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, Object> toJson(MediaItem item) {
+        Map<String, Object> json = Json.object(
+                "mediaId", item.getMediaId(),
+                "type", item.getClass().getSimpleName(),
+                "title", item.getTitle(),
+                "status", item.getStatus(),
+                "categories", item.getCategories());
+        if (item instanceof Book book) {
+            json.put("author", book.getAuthor());
+            json.put("year", book.getYearOfPublish());
+        } else if (item instanceof Magazine magazine) {
+            json.put("publisher", magazine.getPublisher());
+            json.put("year", magazine.getYearOfPublish());
+        } else if (item instanceof Dvd dvd) {
+            json.put("year", dvd.getYearOfRelease());
+            json.put("durationMinutes", dvd.getDurationMinutes());
+            json.put("ageRating", dvd.getAgeRating());
+        }
+        return json;
+    }
+
+    private static Map<String, Object> toJson(Member member) {
+        return Json.object(
+                "memberId", member.getId(),
+                "name", member.getName(),
+                "active", member.isActiveMember());
+    }
+
+    private static Map<String, Object> toJson(Loan loan) {
+        return Json.object(
+                "loanId", loan.getLoanId(),
+                "memberId", loan.getMemberId(),
+                "mediaId", loan.getMediaId(),
+                "loanDate", loan.getLoanDate(),
+                "dueDate", loan.getDueDate(),
+                "returnDate", loan.getReturnDate(),
+                "status", loan.getStatus(),
+                "finePence", loan.getFineAccrued());
+    }
+
+    private static Map<String, Object> toJson(Reservation reservation) {
+        return Json.object(
+                "reservationId", reservation.getReservationId(),
+                "memberId", reservation.getMemberId(),
+                "mediaId", reservation.getMediaId(),
+                "createdDate", reservation.getCreatedDate(),
+                "status", reservation.getStatus());
+    }
+}
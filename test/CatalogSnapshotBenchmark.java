@@ -0,0 +1,131 @@
+import domain.policy.StandardFinePolicy;
+import domain.policy.StandardLoanPolicy;
+import domain.service.Library;
+import infrastructure.csv.BookFactory;
+import infrastructure.csv.CsvFactory;
+import infrastructure.csv.CsvRecord;
+import infrastructure.csv.CsvTokenizer;
+import infrastructure.csv.MemberFactory;
+import infrastructure.persistence.CatalogSnapshot;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Compares cold-start time of the CSV loading path with the binary catalogue snapshot.
+ * <p>
+ *     Usage: {@code java CatalogSnapshotBenchmark [books] [members]} (defaults 500000 and
+ *     50000). Each path is timed twice in a fresh library; the first run includes JIT warm-up.
+ *     Decoding is also timed on its own, since a full load includes building the library's
+ *     search indexes whichever format the catalogue comes from.
+ * </p>
+ */
+public class CatalogSnapshotBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int books = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int members = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+
+        Path directory = Files.createTempDirectory("catalog-benchmark");
+        Path booksCsv = directory.resolve("books.csv");
+        Path membersCsv = directory.resolve("members.csv");
+        Path snapshot = directory.resolve("catalog.bin");
+        try {
+            writeCsv(booksCsv, membersCsv, books, members);
+            Library source = loadCsv(booksCsv, membersCsv);
+            CatalogSnapshot.write(source, snapshot);
+            System.out.printf("%,d books and %,d members: CSV %,d KB, snapshot %,d KB%n", books, members,
+                    (Files.size(booksCsv) + Files.size(membersCsv)) / 1024, Files.size(snapshot) / 1024);
+
+            for (int run = 1; run <= 2; run++) {
+                // Collects the previous run's libraries so they are not charged to the next timing
+                System.gc();
+                long start = System.nanoTime();
+                long parsed = parseCsv(booksCsv, membersCsv);
+                long parseMillis = (System.nanoTime() - start) / 1_000_000;
+
+                System.gc();
+                start = System.nanoTime();
+                loadCsv(booksCsv, membersCsv);
+                long csvMillis = (System.nanoTime() - start) / 1_000_000;
+
+                System.gc();
+                start = System.nanoTime();
+                CatalogSnapshot.load(snapshot, emptyLibrary());
+                long snapshotMillis = (System.nanoTime() - start) / 1_000_000;
+
+                // Decoding alone, without the cost of adding to the library's indexes
+                long[] count = new long[1];
+                System.gc();
+                start = System.nanoTime();
+                CatalogSnapshot.read(snapshot, item -> count[0]++, member -> count[0]++);
+                long decodeMillis = (System.nanoTime() - start) / 1_000_000;
+
+                System.out.printf("run %d: decode only - CSV %,d ms, snapshot %,d ms (%,d records)%n",
+                        run, parseMillis, decodeMillis, count[0]);
+                System.out.printf("run %d: full load  - CSV %,d ms, snapshot %,d ms%n", run, csvMillis, snapshotMillis);
+                if (parsed != count[0]) {
+                    throw new IllegalStateException("Parsed " + parsed + " CSV rows but decoded " + count[0]);
+                }
+            }
+        } finally {
+            for (Path file : List.of(booksCsv, membersCsv, snapshot)) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static Library emptyLibrary() {
+        return new Library(new StandardLoanPolicy(14), new StandardFinePolicy(50));
+    }
+
+    /** Loads the CSV files row by row through the same tokenizer and factories as DemoDataLoader. */
+    private static Library loadCsv(Path booksCsv, Path membersCsv) throws IOException {
+        Library library = emptyLibrary();
+        readCsv(membersCsv, new MemberFactory(), library::addMember);
+        readCsv(booksCsv, new BookFactory(), library::addItem);
+        return library;
+    }
+
+    /** Parses the CSV files into domain objects without adding them to a library. */
+    private static long parseCsv(Path booksCsv, Path membersCsv) throws IOException {
+        long[] count = new long[1];
+        readCsv(membersCsv, new MemberFactory(), member -> count[0]++);
+        readCsv(booksCsv, new BookFactory(), book -> count[0]++);
+        return count[0];
+    }
+
+    private static <T> void readCsv(Path file, CsvFactory<T> factory, Consumer<T> consumer) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            CsvTokenizer tokenizer = new CsvTokenizer(in);
+            CsvRecord record = new CsvRecord();
+            tokenizer.next(record);
+            while (tokenizer.next(record)) {
+                consumer.accept(factory.fromRecord(record));
+            }
+        }
+    }
+
+    private static void writeCsv(Path booksCsv, Path membersCsv, int books, int members) throws IOException {
+        String[] words = {"Shadow", "River", "Glass", "Winter", "Garden", "Empire", "Silent", "Harbour", "Crown", "Ember"};
+        try (BufferedWriter out = Files.newBufferedWriter(booksCsv)) {
+            out.write("title,author,year,categories\n");
+            for (int i = 0; i < books; i++) {
+                out.write(words[i % 10] + " " + words[(i / 10) % 10] + " " + i + ",Author " + (i % 997) + ","
+                        + (1900 + i % 125) + ",Fiction|" + words[(i / 100) % 10] + "\n");
+            }
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(membersCsv)) {
+            out.write("name,email\n");
+            for (int i = 0; i < members; i++) {
+                out.write("Member " + words[i % 10] + " " + i + ",member" + i + "@example.com\n");
+            }
+        }
+    }
+}
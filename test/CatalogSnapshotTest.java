@@ -0,0 +1,167 @@
+import domain.model.Book;
+import domain.model.Dvd;
+import domain.model.Magazine;
+import domain.model.MediaItem;
+import domain.model.Member;
+import domain.policy.StandardFinePolicy;
+import domain.policy.StandardLoanPolicy;
+import domain.service.Library;
+import domain.service.LibraryEvent;
+import infrastructure.persistence.CatalogSnapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Unit tests for the CatalogSnapshot binary format.
+ */
+public class CatalogSnapshotTest {
+
+    public static void main(String[] args) throws IOException {
+        CatalogSnapshotTest test = new CatalogSnapshotTest();
+        test.testRoundTripKeepsIdsAndFields();
+        test.testLoanedItemsLoadAvailable();
+        test.testNonSnapshotRejected();
+        test.testCorruptRecordRejected();
+        test.testFailedWriteLeavesFileAlone();
+    }
+
+    private void testRoundTripKeepsIdsAndFields() throws IOException {
+        Library original = TestLibraries.library();
+        Book book = new Book("Één boek", "Author", 1999, List.of("Fiction", "Classic"));
+        Dvd dvd = new Dvd("Film", 2010, 95, "12A", List.of("Drama"));
+        Magazine magazine = new Magazine("Weekly", "Publisher", 2024, List.of("News"));
+        Member member = new Member("Test Member", "test@example.com");
+        member.setActiveMember(false);
+        original.addItem(book);
+        original.addItem(dvd);
+        original.addItem(magazine);
+        original.addMember(member);
+
+        Path file = Files.createTempFile("catalog", ".bin");
+        try {
+            int written = CatalogSnapshot.write(original, file);
+            List<MediaItem> items = new ArrayList<>();
+            List<Member> members = new ArrayList<>();
+            CatalogSnapshot.read(file, items::add, members::add);
+
+            Book readBook = (Book) items.stream().filter(i -> i.getMediaId().equals(book.getMediaId())).findFirst().orElseThrow();
+            Dvd readDvd = (Dvd) items.stream().filter(i -> i.getMediaId().equals(dvd.getMediaId())).findFirst().orElseThrow();
+            Member readMember = members.getFirst();
+
+            if (written == 4 && items.size() == 3 && members.size() == 1
+                    && readBook.getTitle().equals("Één boek") && readBook.getYearOfPublish() == 1999
+                    && readBook.getCategories().equals(List.of("Fiction", "Classic"))
+                    && readDvd.getDurationMinutes() == 95 && readDvd.getAgeRating().equals("12A")
+                    && readMember.getId().equals(member.getId()) && !readMember.isActiveMember()
+                    && readMember.getEmail().equals("test@example.com")) {
+                System.out.println("CT1 - PASS");
+            } else {
+                System.out.println("CT1 - FAIL (written=" + written + ", items=" + items.size()
+                        + ", members=" + members.size() + ")");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private void testLoanedItemsLoadAvailable() throws IOException {
+        Library original = TestLibraries.library();
+        Book book = new Book("On Loan", "Author", 2000, List.of("Fiction"));
+        Member member = new Member("Borrower", "borrower@example.com");
+        original.addItem(book);
+        original.addMember(member);
+        original.loanItem(member.getId(), book.getMediaId());
+
+        Path file = Files.createTempFile("catalog", ".bin");
+        try {
+            CatalogSnapshot.write(original, file);
+            Library restored = TestLibraries.library();
+            CatalogSnapshot.load(file, restored);
+
+            MediaItem item = restored.listItems().getFirst();
+            if (item.getMediaId().equals(book.getMediaId()) && item.isAvailable()
+                    && restored.searchMedia("loan").size() == 1) {
+                System.out.println("CT2 - PASS");
+            } else {
+                System.out.println("CT2 - FAIL (status=" + item.getStatus() + ")");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private void testNonSnapshotRejected() throws IOException {
+        Path file = Files.createTempFile("catalog", ".bin");
+        try {
+            Files.writeString(file, "title,author,year,categories\n");
+            CatalogSnapshot.load(file, TestLibraries.library());
+            System.out.println("CT3 - FAIL (no exception thrown)");
+        } catch (IOException e) {
+            System.out.println("CT3 - PASS (exception: " + e.getMessage().replace(file.toString(), "<file>") + ")");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /** CT4: a record whose fields the model refuses is reported as a damaged file. */
+    private void testCorruptRecordRejected() throws IOException {
+        Library original = TestLibraries.library();
+        original.addItem(new Book("X", "Author", 2000, List.of("Fiction")));
+        Path file = Files.createTempFile("catalog", ".bin");
+        try {
+            CatalogSnapshot.write(original, file);
+            byte[] bytes = Files.readAllBytes(file);
+            // Header, record length, type and ID, then the title's length and its one byte
+            bytes[4 * Integer.BYTES + Integer.BYTES + 1 + 2 * Long.BYTES + Integer.BYTES] = ' ';
+            Files.write(file, bytes);
+            CatalogSnapshot.load(file, TestLibraries.library());
+            System.out.println("CT4 - FAIL (no exception thrown)");
+        } catch (IOException e) {
+            System.out.println("CT4 - PASS (exception: " + e.getMessage().replaceAll("[0-9a-f-]{36}", "<id>") + ")");
+        } catch (RuntimeException e) {
+            System.out.println("CT4 - FAIL (" + e + ")");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /** CT5: a write that fails part-way leaves the previous file in place and no temporary file. */
+    private void testFailedWriteLeavesFileAlone() throws IOException {
+        Library original = TestLibraries.library();
+        original.addItem(new Book("Kept", "Author", 2000, List.of("Fiction")));
+        Library failing = new Library(new StandardLoanPolicy(14), new StandardFinePolicy(50)) {
+            @Override
+            public long exportState(Consumer<LibraryEvent> sink) {
+                throw new UncheckedIOException(new IOException("Disk full"));
+            }
+        };
+        Path file = Files.createTempFile("catalog", ".bin");
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            CatalogSnapshot.write(original, file);
+            boolean failed = false;
+            try {
+                CatalogSnapshot.write(failing, file);
+            } catch (IOException e) {
+                failed = true;
+            }
+            List<MediaItem> kept = new ArrayList<>();
+            CatalogSnapshot.read(file, kept::add, member -> {});
+
+            if (failed && !Files.exists(temp) && kept.size() == 1 && kept.getFirst().getTitle().equals("Kept")) {
+                System.out.println("CT5 - PASS");
+            } else {
+                System.out.println("CT5 - FAIL (failed=" + failed + ", temp=" + Files.exists(temp) + ")");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(temp);
+        }
+    }
+}
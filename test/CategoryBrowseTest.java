@@ -0,0 +1,140 @@
+import domain.model.AvailabilityStatus;
+import domain.model.Book;
+import domain.model.MediaItem;
+import domain.model.Member;
+import domain.service.CategoryBrowse;
+import domain.service.CategoryQuery;
+import domain.service.Library;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Unit tests for browsing the Library by category through the bitmap facet index.
+ */
+public class CategoryBrowseTest {
+
+    private static final String[] CATEGORIES = {"Fantasy", "Science Fiction", "Horror", "History", "Comedy"};
+
+    public static void main(String[] args) {
+        CategoryBrowseTest test = new CategoryBrowseTest();
+        test.testQueriesMatchBruteForce();
+        test.testFacetCountsAndNormalisation();
+        test.testAvailabilityFilter();
+        test.testRemovedItemsLeaveIndex();
+    }
+
+    private void testQueriesMatchBruteForce() {
+        // Enough items for the common categories to outgrow array containers
+        Library library = TestLibraries.library(4);
+        SplittableRandom random = new SplittableRandom(15);
+        List<MediaItem> added = new ArrayList<>();
+        for (int i = 0; i < 150_000; i++) {
+            List<String> categories = new ArrayList<>();
+            for (String category : CATEGORIES) {
+                if (random.nextInt(5) < (category.equals("Fantasy") ? 3 : 1)) categories.add(category);
+            }
+            if (categories.isEmpty()) categories.add("Poetry");
+            added.add(new Book("Book " + i, "Author", 2000, categories));
+        }
+        library.addItems(added);
+
+        CategoryQuery query = CategoryQuery.and(
+                CategoryQuery.anyOf("Fantasy", "Science Fiction"),
+                CategoryQuery.not(CategoryQuery.category("Horror")));
+        Predicate<MediaItem> expected = item -> {
+            List<String> c = item.getCategories();
+            return (c.contains("Fantasy") || c.contains("Science Fiction")) && !c.contains("Horror");
+        };
+        CategoryBrowse browse = library.browseCategories(query, null, 100);
+        long expectedTotal = added.stream().filter(expected).count();
+        CategoryBrowse everything = library.browseCategories(CategoryQuery.everything(), null, 0);
+        CategoryBrowse nothing = library.browseCategories(CategoryQuery.or(), null, 10);
+
+        if (browse.total() == expectedTotal && browse.items().size() == 100
+                && browse.items().stream().allMatch(expected)
+                && everything.total() == added.size() && everything.items().isEmpty()
+                && nothing.total() == 0 && nothing.categoryCounts().isEmpty()) {
+            System.out.println("CB1 - PASS");
+        } else {
+            System.out.println("CB1 - FAIL (total=" + browse.total() + ", expected=" + expectedTotal
+                    + ", everything=" + everything.total() + ")");
+        }
+    }
+
+    private void testFacetCountsAndNormalisation() {
+        Library library = TestLibraries.library(4);
+        library.addItem(new Book("One", "Author", 2000, List.of("Fantasy", "Comedy")));
+        library.addItem(new Book("Two", "Author", 2000, List.of(" fantasy ", "Horror")));
+        library.addItem(new Book("Three", "Author", 2000, List.of("History")));
+
+        CategoryBrowse browse = library.browseCategories(CategoryQuery.category("FANTASY"), null, 10);
+        Set<String> titles = browse.items().stream().map(MediaItem::getTitle).collect(Collectors.toSet());
+
+        if (browse.total() == 2 && titles.equals(Set.of("One", "Two"))
+                && browse.categoryCounts().equals(Map.of("Fantasy", 2, "Comedy", 1, "Horror", 1))
+                && browse.categoryCounts().keySet().iterator().next().equals("Fantasy")) {
+            System.out.println("CB2 - PASS");
+        } else {
+            System.out.println("CB2 - FAIL (total=" + browse.total() + ", counts=" + browse.categoryCounts() + ")");
+        }
+    }
+
+    private void testAvailabilityFilter() {
+        Library library = TestLibraries.library(4);
+        Member member = new Member("Test Member", "test@example.com");
+        Book onLoan = new Book("On Loan", "Author", 2000, List.of("Fantasy"));
+        Book available = new Book("Available", "Author", 2000, List.of("Fantasy", "Comedy"));
+        library.addMember(member);
+        library.addItem(onLoan);
+        library.addItem(available);
+        library.loanItem(member.getId(), onLoan.getMediaId());
+
+        CategoryBrowse browse = library.browseCategories(CategoryQuery.category("Fantasy"),
+                AvailabilityStatus.AVAILABLE, 10);
+        CategoryBrowse loaned = library.browseCategories(CategoryQuery.category("Fantasy"),
+                AvailabilityStatus.ON_LOAN, 10);
+
+        if (browse.items().equals(List.of(available)) && browse.categoryCounts().equals(Map.of("Fantasy", 1, "Comedy", 1))
+                && loaned.items().equals(List.of(onLoan)) && loaned.categoryCounts().equals(Map.of("Fantasy", 1))) {
+            System.out.println("CB3 - PASS");
+        } else {
+            System.out.println("CB3 - FAIL (available=" + browse.total() + ", loaned=" + loaned.total() + ")");
+        }
+    }
+
+    private void testRemovedItemsLeaveIndex() {
+        Library library = TestLibraries.library(4);
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            Book book = new Book("Book " + i, "Author", 2000, List.of(i % 2 == 0 ? "Even" : "Odd"));
+            books.add(book);
+            library.addItem(book);
+        }
+        // Shrinks the even category from a bitset container back to an array container
+        for (int i = 0; i < 20_000; i += 4) {
+            library.removeItem(books.get(i).getMediaId());
+        }
+        for (int i = 2; i < 8000; i += 4) {
+            library.removeItem(books.get(i).getMediaId());
+        }
+        // Surrogate IDs are never reused, so a late item takes a fresh ordinal
+        library.addItem(new Book("Late", "Author", 2000, List.of("Odd")));
+
+        CategoryBrowse even = library.browseCategories(CategoryQuery.category("Even"), null, 20_000);
+        CategoryBrowse odd = library.browseCategories(CategoryQuery.category("Odd"), null, 0);
+        boolean noRemoved = even.items().stream().map(b -> Integer.parseInt(b.getTitle().substring(5)))
+                .allMatch(i -> i % 4 == 2 && i >= 8000);
+
+        if (even.total() == 3000 && even.items().size() == 3000 && noRemoved && odd.total() == 10_001) {
+            System.out.println("CB4 - PASS");
+        } else {
+            System.out.println("CB4 - FAIL (even=" + even.total() + ", odd=" + odd.total() + ", noRemoved=" + noRemoved + ")");
+        }
+    }
+}
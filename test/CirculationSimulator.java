@@ -0,0 +1,216 @@
+import common.ValidationException;
+import common.metrics.InMemoryMetricsRegistry;
+import common.metrics.LatencyHistogram;
+import domain.model.AvailabilityStatus;
+import domain.model.MediaItem;
+import domain.model.Member;
+import domain.model.Reservation;
+import domain.service.Library;
+
+import java.lang.ref.Reference;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Drives a Library through years of simulated circulation on a {@link SimulatedClock}, to
+ * plan capacity before a busy period such as a new academic year.
+ * <p>
+ *     Usage: {@code java CirculationSimulator [--items 20000] [--years 3] [--loans-per-day 1000]
+ *     [--late-percent 10] [--reserve-percent 20] [--archive-after-days 90] [--report-days 91]
+ *     [--start 2025-09-01]}. The library holds a {@link SyntheticCatalog} of the given size.
+ *     Each simulated day:
+ * </p>
+ * <ul>
+ *     <li>items due back that day are returned, and any item a member is waiting for is
+ *     handed to them, by cancelling their reservation just before the return and lending
+ *     them the item;</li>
+ *     <li>{@code loans-per-day} checkouts are attempted by random members on random items;
+ *     those borrowed are returned 1 to 14 days later, or 15 to 44 days late for
+ *     {@code late-percent} of loans, and members with overdue loans are turned away until
+ *     they return them;</li>
+ *     <li>{@code reserve-percent} of members who find an item on loan reserve it;</li>
+ *     <li>overdue loans are collected daily, fines assessed weekly, and, unless
+ *     {@code archive-after-days} is 0, loans returned longer ago than that archived
+ *     monthly.</li>
+ * </ul>
+ * <p>
+ *     Every {@code report-days} simulated days it prints the Library calls made, their
+ *     throughput in wall-clock time, loan and return latency percentiles from the library's
+ *     own metrics, the number of open loans, and the live heap; a summary gives heap growth
+ *     per simulated year. Runs on one thread with seeded randomness, so two runs with the
+ *     same options make exactly the same calls; {@link LibraryBenchmark} measures
+ *     concurrency.
+ * </p>
+ */
+public class CirculationSimulator {
+
+    private static final long SEED = 20250901L;
+
+    public static void main(String[] args) {
+        int itemCount = Integer.parseInt(option(args, "--items", "20000"));
+        int years = Integer.parseInt(option(args, "--years", "3"));
+        int loansPerDay = Integer.parseInt(option(args, "--loans-per-day", "1000"));
+        int latePercent = Integer.parseInt(option(args, "--late-percent", "10"));
+        int reservePercent = Integer.parseInt(option(args, "--reserve-percent", "20"));
+        int archiveAfterDays = Integer.parseInt(option(args, "--archive-after-days", "90"));
+        int reportDays = Integer.parseInt(option(args, "--report-days", "91"));
+        LocalDate startDate = LocalDate.parse(option(args, "--start", "2025-09-01"));
+
+        SimulatedClock clock = new SimulatedClock(startDate);
+        InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+        SyntheticCatalog catalog = new SyntheticCatalog(itemCount, SEED);
+        Library library = catalog.newLibrary(64, metrics, clock);
+        List<MediaItem> items = catalog.items();
+        List<UUID> members = catalog.members().stream().map(Member::getId).toList();
+        catalog = null;
+
+        SplittableRandom random = new SplittableRandom(SEED);
+        Map<Long, List<MediaItem>> returnsByDay = new HashMap<>();
+        Map<UUID, Reservation> waitingByItem = new HashMap<>();
+        LatencyHistogram loanLatency = metrics.histogram("library.loanItem.latency");
+        LatencyHistogram returnLatency = metrics.histogram("library.returnItem.latency");
+
+        long startHeap = liveHeap();
+        long totalCalls = 0;
+        long totalNanos = 0;
+        long calls = 0;
+        long rejected = 0;
+        long periodNanos = 0;
+        LatencyHistogram.Snapshot loansBefore = loanLatency.snapshot();
+        LatencyHistogram.Snapshot returnsBefore = returnLatency.snapshot();
+
+        System.out.printf("%-10s %9s %6s %10s %9s %9s %9s %9s %10s %8s%n", "date", "calls", "rej%", "calls/s",
+                "loan p50", "loan p99", "ret p50", "ret p99", "open", "heap MB");
+        int days = years * 365;
+        for (int day = 1; day <= days; day++) {
+            LocalDate today = clock.today();
+            long dayStart = System.nanoTime();
+
+            // Returns, handing reserved items straight to the member waiting for them
+            for (MediaItem item : returnsByDay.getOrDefault(today.toEpochDay(), List.of())) {
+                Reservation waiting = waitingByItem.remove(item.getMediaId());
+                if (waiting != null) {
+                    // The library cannot loan a held item, so the desk withdraws the
+                    // reservation before the return and lends the item to its member
+                    library.cancelReservation(waiting.getReservationId());
+                    calls++;
+                }
+                library.returnItem(item.getMediaId());
+                calls++;
+                if (waiting == null) continue;
+                calls++;
+                if (!tryLoan(library, waiting.getMemberId(), item, random, latePercent, returnsByDay, today)) rejected++;
+            }
+            returnsByDay.remove(today.toEpochDay());
+
+            // Checkouts, with some members reserving the items they find on loan
+            for (int i = 0; i < loansPerDay; i++) {
+                UUID member = members.get(random.nextInt(members.size()));
+                MediaItem item = items.get(random.nextInt(items.size()));
+                calls++;
+                if (tryLoan(library, member, item, random, latePercent, returnsByDay, today)) continue;
+                rejected++;
+                if (item.getStatus() == AvailabilityStatus.ON_LOAN && random.nextInt(100) < reservePercent
+                        && !waitingByItem.containsKey(item.getMediaId())) {
+                    try {
+                        waitingByItem.put(item.getMediaId(), library.placeReservation(member, item.getMediaId()));
+                    } catch (ValidationException e) {
+                        rejected++;
+                    }
+                    calls++;
+                }
+            }
+
+            // Back-office jobs
+            library.collectNewlyOverdueLoans(today);
+            calls++;
+            if (day % 7 == 0) {
+                library.assessFines(today);
+                calls++;
+            }
+            if (archiveAfterDays > 0 && day % 30 == 0) {
+                library.archiveReturnedLoans(today.minusDays(archiveAfterDays));
+                calls++;
+            }
+            periodNanos += System.nanoTime() - dayStart;
+            clock.advanceDays(1);
+
+            if (day % reportDays == 0 || day == days) {
+                LatencyHistogram.Snapshot loans = loanLatency.snapshot();
+                LatencyHistogram.Snapshot returns = returnLatency.snapshot();
+                LatencyHistogram.Snapshot periodLoans = since(loans, loansBefore);
+                LatencyHistogram.Snapshot periodReturns = since(returns, returnsBefore);
+                System.out.printf("%-10s %,9d %5.1f%% %,10.0f %7.1fus %7.1fus %7.1fus %7.1fus %,10d %,8d%n",
+                        today, calls, 100.0 * rejected / Math.max(1, calls), calls * 1e9 / Math.max(1, periodNanos),
+                        periodLoans.valueAt(0.5) / 1e3, periodLoans.valueAt(0.99) / 1e3,
+                        periodReturns.valueAt(0.5) / 1e3, periodReturns.valueAt(0.99) / 1e3,
+                        library.snapshot().openLoanCount(), liveHeap() >> 20);
+                totalCalls += calls;
+                totalNanos += periodNanos;
+                calls = 0;
+                rejected = 0;
+                periodNanos = 0;
+                loansBefore = loans;
+                returnsBefore = returns;
+            }
+        }
+
+        long endHeap = liveHeap();
+        System.out.printf("%nsimulated %,d days (%s to %s): %,d calls in %.1f s, %,.0f calls/s; "
+                        + "heap %,d MB -> %,d MB, %,.1f MB per simulated year%n",
+                days, startDate, clock.today(), totalCalls, totalNanos / 1e9, totalCalls * 1e9 / Math.max(1, totalNanos),
+                startHeap >> 20, endHeap >> 20, (double) (endHeap - startHeap) / (1 << 20) / years);
+        // Keeps the library reachable until after the measurement
+        Reference.reachabilityFence(library);
+    }
+
+    /**
+     * Attempts a checkout, and if it succeeds schedules the item's return.
+     *
+     * @return {@code true} if the item was loaned
+     */
+    private static boolean tryLoan(Library library, UUID member, MediaItem item, SplittableRandom random,
+                                   int latePercent, Map<Long, List<MediaItem>> returnsByDay, LocalDate today) {
+        try {
+            library.loanItem(member, item.getMediaId());
+        } catch (ValidationException e) {
+            return false;
+        }
+        int days = random.nextInt(100) < latePercent ? 15 + random.nextInt(30) : 1 + random.nextInt(14);
+        returnsByDay.computeIfAbsent(today.toEpochDay() + days, d -> new ArrayList<>()).add(item);
+        return true;
+    }
+
+    /** @return the durations recorded between two snapshots of the same histogram */
+    private static LatencyHistogram.Snapshot since(LatencyHistogram.Snapshot now, LatencyHistogram.Snapshot before) {
+        long[] counts = now.counts().clone();
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] -= before.counts()[i];
+        }
+        return new LatencyHistogram.Snapshot(counts, now.count() - before.count(), now.sum() - before.sum(), now.max());
+    }
+
+    private static long liveHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    private static String option(String[] args, String name, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
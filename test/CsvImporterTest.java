@@ -0,0 +1,201 @@
+import domain.model.Book;
+import domain.model.CatalogDictionary;
+import domain.model.MediaItem;
+import domain.policy.StandardFinePolicy;
+import domain.policy.StandardLoanPolicy;
+import domain.service.Library;
+import infrastructure.csv.BookFactory;
+import infrastructure.csv.CsvImporter;
+import infrastructure.csv.ImportReport;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Unit tests for the CsvImporter pipeline.
+ */
+public class CsvImporterTest {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        CsvImporterTest test = new CsvImporterTest();
+        test.testEveryRowImportedAcrossChunks();
+        test.testBadRowsReportedWithLineNumbers();
+        test.testChunksInFlightBounded();
+        test.testSinkFailureStopsImport();
+        test.testRepeatedAttributesShared();
+        test.testUnusedAttributesReleased();
+        test.testConcurrentInterningAgrees();
+    }
+
+    /** @return a books CSV with a header, a blank line and {@code rows} valid rows */
+    private String booksCsv(int rows) {
+        StringBuilder csv = new StringBuilder("title,author,year,categories\n\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append("Book ").append(i).append(",Author,2000,Fiction\n");
+        }
+        return csv.toString();
+    }
+
+    private void testEveryRowImportedAcrossChunks() throws IOException {
+        Library library = new Library(new StandardLoanPolicy(14), new StandardFinePolicy(50), 16);
+        ImportReport report;
+        try (CsvImporter importer = new CsvImporter(4, 7, 3)) {
+            report = importer.importFrom("books.csv", new StringReader(booksCsv(1000)), new BookFactory(), library::addItems);
+        }
+        Set<String> titles = library.listItems().stream().map(MediaItem::getTitle).collect(Collectors.toSet());
+        library.verifyIndexes();
+
+        if (report.rowsImported() == 1000 && report.rowsRejected() == 0 && titles.size() == 1000
+                && titles.contains("Book 0") && titles.contains("Book 999")
+                && library.searchMedia("Book 99").size() == 11) {
+            System.out.println("CI1 - PASS");
+        } else {
+            System.out.println("CI1 - FAIL (" + report + ", titles=" + titles.size() + ")");
+        }
+    }
+
+    private void testBadRowsReportedWithLineNumbers() throws IOException {
+        String csv = """
+                title,author,year,categories
+                Good One,Author,2000,Fiction
+
+                Too Short,Author
+                ,Author,2000,Fiction
+                Good Two,Author,2000,Fiction
+                """;
+        Set<Book> books = ConcurrentHashMap.newKeySet();
+        ImportReport report;
+        try (CsvImporter importer = new CsvImporter(2, 2, 2)) {
+            report = importer.importFrom("books.csv", new StringReader(csv), new BookFactory(), books::addAll);
+        }
+        List<Long> lines = report.errors().stream().map(ImportReport.RowError::lineNumber).sorted().toList();
+
+        if (report.rowsImported() == 2 && report.rowsRejected() == 2 && books.size() == 2
+                && lines.equals(List.of(4L, 5L))) {
+            System.out.println("CI2 - PASS (errors: " + report.errors().size() + ")");
+        } else {
+            System.out.println("CI2 - FAIL (" + report + ", lines=" + lines + ")");
+        }
+    }
+
+    private void testChunksInFlightBounded() throws IOException {
+        AtomicInteger inSink = new AtomicInteger();
+        AtomicInteger maxInSink = new AtomicInteger();
+        ImportReport report;
+        try (CsvImporter importer = new CsvImporter(8, 10, 2)) {
+            report = importer.importFrom("books.csv", new StringReader(booksCsv(500)), new BookFactory(), batch -> {
+                maxInSink.accumulateAndGet(inSink.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inSink.decrementAndGet();
+            });
+        }
+        if (report.rowsImported() == 500 && maxInSink.get() <= 2) {
+            System.out.println("CI3 - PASS");
+        } else {
+            System.out.println("CI3 - FAIL (imported=" + report.rowsImported() + ", maxInSink=" + maxInSink.get() + ")");
+        }
+    }
+
+    private void testSinkFailureStopsImport() throws IOException {
+        try (CsvImporter importer = new CsvImporter(2, 10, 2)) {
+            importer.importFrom("books.csv", new StringReader(booksCsv(100)), new BookFactory(), batch -> {
+                throw new IllegalStateException("Sink unavailable");
+            });
+            System.out.println("CI4 - FAIL (no exception thrown)");
+        } catch (IllegalStateException e) {
+            System.out.println("CI4 - PASS (exception: " + e.getMessage() + ")");
+        }
+    }
+
+    private void testRepeatedAttributesShared() throws IOException {
+        Set<Book> books = ConcurrentHashMap.newKeySet();
+        try (CsvImporter importer = new CsvImporter(2, 5, 2)) {
+            importer.importFrom("books.csv", new StringReader(booksCsv(100)), new BookFactory(), books::addAll);
+        }
+        Book setter = new Book("Setter", "Someone", 2000, List.of("History"));
+        setter.setAuthor(new String("Author"));
+        setter.setCategories(List.of(new String("Fiction")));
+
+        // Every copy parsed from the file is replaced by one shared instance
+        Set<Integer> authors = books.stream().map(b -> System.identityHashCode(b.getAuthor())).collect(Collectors.toSet());
+        Set<Integer> categories = books.stream().map(b -> System.identityHashCode(b.getCategories().getFirst()))
+                .collect(Collectors.toSet());
+        Book first = books.iterator().next();
+
+        if (books.size() == 100 && authors.size() == 1 && categories.size() == 1
+                && setter.getAuthor() == first.getAuthor()
+                && setter.getCategories().getFirst() == first.getCategories().getFirst()
+                && first.getCategories().equals(List.of("Fiction"))) {
+            System.out.println("CI5 - PASS");
+        } else {
+            System.out.println("CI5 - FAIL (authors=" + authors.size() + ", categories=" + categories.size() + ")");
+        }
+    }
+
+    /**
+     * CI6: values no item uses any more are dropped from the dictionary, so discarding a
+     * catalogue releases its authors and categories.
+     */
+    private void testUnusedAttributesReleased() {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            books.add(new Book("Released " + i, "Released Author " + i, 2000, List.of("Released " + i)));
+        }
+        int withBooks = CatalogDictionary.size();
+        books = null;
+        int remaining = withBooks;
+        for (int attempt = 0; attempt < 50 && remaining > withBooks - 2000; attempt++) {
+            System.gc();
+            remaining = CatalogDictionary.size();
+        }
+
+        if (remaining <= withBooks - 2000) {
+            System.out.println("CI6 - PASS");
+        } else {
+            System.out.println("CI6 - FAIL (before=" + withBooks + ", after=" + remaining + ")");
+        }
+    }
+
+    /**
+     * CI7: threads interning equal values at the same time all get the same instance.
+     */
+    private void testConcurrentInterningAgrees() throws InterruptedException {
+        int threads = 4;
+        List<List<String>> results = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<String> interned = new ArrayList<>();
+            results.add(interned);
+            workers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    interned.add(CatalogDictionary.intern(new String("Concurrent " + i)));
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        boolean shared = true;
+        for (int i = 0; i < 5000 && shared; i++) {
+            for (int t = 1; t < threads; t++) {
+                shared &= results.get(t).get(i) == results.get(0).get(i);
+            }
+        }
+        if (shared) {
+            System.out.println("CI7 - PASS");
+        } else {
+            System.out.println("CI7 - FAIL (threads got different instances of one value)");
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import domain.model.Book;
+import infrastructure.csv.BookFactory;
+import infrastructure.csv.CsvImporter;
+import infrastructure.csv.CsvRecord;
+import infrastructure.csv.CsvTokenizer;
+import infrastructure.csv.CsvUtils;
+import infrastructure.csv.ImportReport;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Unit tests for the CsvTokenizer and the slice-based field parsing.
+ */
+public class CsvTokenizerTest {
+
+    public static void main(String[] args) throws IOException {
+        CsvTokenizerTest test = new CsvTokenizerTest();
+        test.testQuotedFields();
+        test.testLineEndingsAndWhitespace();
+        test.testParseIntWithoutExceptions();
+        test.testImporterKeepsQuotedLineBreaksInOneRow();
+    }
+
+    private List<String> rows(String csv) throws IOException {
+        CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(csv));
+        CsvRecord record = new CsvRecord();
+        List<String> rows = new ArrayList<>();
+        while (tokenizer.next(record)) {
+            rows.add(record.lineNumber() + ":" + record);
+        }
+        return rows;
+    }
+
+    private void testQuotedFields() throws IOException {
+        List<String> rows = rows("""
+                Good Omens,"Terry Pratchett, Neil Gaiman",1990
+                "Say ""hello""\", " padded " ,x
+                "two
+                lines",after
+                """);
+        List<String> expected = List.of(
+                "1:[Good Omens, Terry Pratchett, Neil Gaiman, 1990]",
+                "2:[Say \"hello\",  padded , x]",
+                "3:[two\nlines, after]");
+
+        if (rows.equals(expected)) {
+            System.out.println("TK1 - PASS");
+        } else {
+            System.out.println("TK1 - FAIL (rows=" + rows + ")");
+        }
+    }
+
+    private void testLineEndingsAndWhitespace() throws IOException {
+        List<String> rows = rows("a , b\r\n\r\n  c,,d  \r\nlast,row");
+        List<String> expected = List.of("1:[a, b]", "2:[]", "3:[c, , d]", "4:[last, row]");
+
+        if (rows.equals(expected)) {
+            System.out.println("TK2 - PASS");
+        } else {
+            System.out.println("TK2 - FAIL (rows=" + rows + ")");
+        }
+    }
+
+    private void testParseIntWithoutExceptions() {
+        boolean valid = CsvUtils.parseInt(" 42 ", -1) == 42
+                && CsvUtils.parseInt("-7", -1) == -7
+                && CsvUtils.parseInt("+5", -1) == 5
+                && CsvUtils.parseInt("-2147483648", -1) == Integer.MIN_VALUE
+                && CsvUtils.parseInt("2147483647", -1) == Integer.MAX_VALUE;
+        boolean invalid = CsvUtils.parseInt("2147483648", -1) == -1
+                && CsvUtils.parseInt("12a", -1) == -1
+                && CsvUtils.parseInt("", -1) == -1
+                && CsvUtils.parseInt("-", -1) == -1
+                && CsvUtils.parseInt(null, -1) == -1;
+
+        if (valid && invalid) {
+            System.out.println("TK3 - PASS");
+        } else {
+            System.out.println("TK3 - FAIL (valid=" + valid + ", invalid=" + invalid + ")");
+        }
+    }
+
+    private void testImporterKeepsQuotedLineBreaksInOneRow() throws IOException {
+        String csv = """
+                title,author,year,categories
+                "Multi
+                Line Title","Pratchett, Gaiman",1990,Fantasy|Comedy
+                Short Row
+                Plain,Author,2000,Fiction
+                """;
+        Set<Book> books = ConcurrentHashMap.newKeySet();
+        ImportReport report;
+        try (CsvImporter importer = new CsvImporter(2, 1, 2)) {
+            report = importer.importFrom("books.csv", new StringReader(csv), new BookFactory(), books::addAll);
+        }
+        boolean multiLine = books.stream().anyMatch(b -> b.getTitle().equals("Multi\nLine Title")
+                && b.getAuthor().equals("Pratchett, Gaiman") && b.getCategories().equals(List.of("Fantasy", "Comedy")));
+        long errorLine = report.errors().isEmpty() ? -1 : report.errors().getFirst().lineNumber();
+
+        if (report.rowsImported() == 2 && report.rowsRejected() == 1 && multiLine && errorLine == 4) {
+            System.out.println("TK4 - PASS");
+        } else {
+            System.out.println("TK4 - FAIL (" + report + ", multiLine=" + multiLine + ", errorLine=" + errorLine + ")");
+        }
+    }
+}
@@ -0,0 +1,229 @@
+import common.ValidationException;
+import domain.model.MediaItem;
+import domain.model.Member;
+import domain.model.Reservation;
+import domain.service.Library;
+import infrastructure.csv.BookFactory;
+import infrastructure.csv.CsvImporter;
+import infrastructure.csv.MemberFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
+
+/**
+ * Throughput benchmarks for the Library's hot paths, run against reproducible synthetic
+ * catalogues (see {@link SyntheticCatalog}).
+ * <p>
+ *     Usage: {@code java LibraryBenchmark [--sizes 1000,100000] [--threads 1,4] [--seconds 2]
+ *     [--only loan,search]}. Sizes up to 10,000,000 are supported given enough heap
+ *     (roughly 2 GB per million items). Each benchmark runs for one warm-up period and then
+ *     one measured period on every thread count; each thread has its own seeded random
+ *     source so runs are repeatable.
+ * </p>
+ * <p>
+ *     Benchmarks: {@code loan} (checkout then return of a random item, each thread on its
+ *     own items and members), {@code loan-contended} (every thread competing for the same
+ *     16 items; rejected checkouts are counted), {@code reserve} (place then cancel a
+ *     reservation), {@code search-media}, {@code search-members} and {@code csv} (parallel
+ *     import of the catalogue's books and members into an empty library).
+ * </p>
+ */
+public class LibraryBenchmark {
+
+    private static final long SEED = 20251101L;
+
+    /** Search terms covering a common word, a rare title, a short query and a miss. */
+    private static final String[] MEDIA_QUERIES = {"shadow", "glass crown 1", "ri", "zzqx"};
+    private static final String[] MEMBER_QUERIES = {"taylor", "alex smith 1", "sa", "zzqx"};
+
+    /** A benchmark operation; returns a value that is folded into a sink so it is not optimised away. */
+    private interface Operation {
+        long run(SplittableRandom random);
+    }
+
+    private record Result(long operations, long rejected, long nanos) {
+    }
+
+    private static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = ints(option(args, "--sizes", "1000,100000"));
+        int[] threadCounts = ints(option(args, "--threads", "1," + Runtime.getRuntime().availableProcessors()));
+        long periodMillis = (long) (Double.parseDouble(option(args, "--seconds", "2")) * 1000);
+        Set<String> only = new HashSet<>(Arrays.asList(option(args, "--only", "").split(",")));
+        only.remove("");
+
+        System.out.printf("%-16s %10s %8s %14s %12s %10s%n", "benchmark", "size", "threads", "ops/s", "us/op", "rejected");
+        for (int size : sizes) {
+            SyntheticCatalog catalog = new SyntheticCatalog(size, SEED);
+            Library library = catalog.newLibrary(64);
+            List<UUID> items = catalog.items().stream().map(MediaItem::getMediaId).toList();
+            List<UUID> members = catalog.members().stream().map(Member::getId).toList();
+
+            for (int threads : threadCounts) {
+                if (selected(only, "loan")) {
+                    report("loan", size, threads, run(threads, periodMillis, t -> random -> {
+                        // Each thread owns the items and members whose index is congruent to it
+                        UUID item = items.get(partitioned(random, items.size(), t, threads));
+                        UUID member = members.get(partitioned(random, members.size(), t, threads));
+                        library.loanItem(member, item);
+                        return library.returnItem(item).getFineAccrued();
+                    }));
+                }
+                if (selected(only, "loan-contended")) {
+                    report("loan-contended", size, threads, run(threads, periodMillis, t -> random -> {
+                        UUID item = items.get(random.nextInt(Math.min(16, items.size())));
+                        UUID member = members.get(random.nextInt(members.size()));
+                        library.loanItem(member, item);
+                        return library.returnItem(item).getFineAccrued();
+                    }));
+                }
+                if (selected(only, "reserve")) {
+                    report("reserve", size, threads, run(threads, periodMillis, t -> random -> {
+                        UUID item = items.get(random.nextInt(items.size()));
+                        UUID member = members.get(random.nextInt(members.size()));
+                        Reservation reservation = library.placeReservation(member, item);
+                        return library.cancelReservation(reservation.getReservationId()) ? 1 : 0;
+                    }));
+                }
+                if (selected(only, "search-media")) {
+                    report("search-media", size, threads, run(threads, periodMillis, t -> random ->
+                            library.searchMedia(MEDIA_QUERIES[random.nextInt(MEDIA_QUERIES.length)]).size()));
+                }
+                if (selected(only, "search-members")) {
+                    report("search-members", size, threads, run(threads, periodMillis, t -> random ->
+                            library.searchMembers(MEMBER_QUERIES[random.nextInt(MEMBER_QUERIES.length)]).size()));
+                }
+            }
+            if (selected(only, "csv")) {
+                csvLoad(catalog, size, threadCounts);
+            }
+        }
+    }
+
+    /**
+     * Times importing the catalogue's books and members from CSV into an empty library,
+     * with each thread count as the importer's parallelism.
+     */
+    private static void csvLoad(SyntheticCatalog catalog, int size, int[] threadCounts) throws IOException {
+        Path directory = Files.createTempDirectory("library-benchmark");
+        Path booksCsv = directory.resolve("books.csv");
+        Path membersCsv = directory.resolve("members.csv");
+        try {
+            catalog.writeCsv(booksCsv, membersCsv);
+            for (int threads : threadCounts) {
+                for (int run = 0; run < 2; run++) {
+                    // The first run warms up the importer and is not reported
+                    Library library = new SyntheticCatalog(0, SEED).newLibrary(64);
+                    System.gc();
+                    long start = System.nanoTime();
+                    long rows;
+                    try (CsvImporter importer = new CsvImporter(threads, 4096, 2 * threads)) {
+                        rows = importer.importFile(membersCsv, new MemberFactory(), library::addMembers).rowsImported()
+                                + importer.importFile(booksCsv, new BookFactory(), library::addItems).rowsImported();
+                    }
+                    if (run == 1) {
+                        report("csv", size, threads, new Result(rows, 0, System.nanoTime() - start));
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(booksCsv);
+            Files.deleteIfExists(membersCsv);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Runs an operation on several threads for a warm-up period and then a measured period.
+     *
+     * @param threads number of threads
+     * @param periodMillis length of each period
+     * @param operations creates each thread's operation from its index
+     * @return the operations completed and rejected during the measured period
+     */
+    private static Result run(int threads, long periodMillis, IntFunction<Operation> operations)
+            throws InterruptedException {
+        AtomicBoolean measuring = new AtomicBoolean();
+        AtomicBoolean stopped = new AtomicBoolean();
+        CountDownLatch ready = new CountDownLatch(threads);
+        long[] completed = new long[threads];
+        long[] rejected = new long[threads];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            Operation operation = operations.apply(t);
+            Thread worker = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(SEED + index);
+                long local = 0;
+                long ops = 0;
+                long failures = 0;
+                boolean counting = false;
+                ready.countDown();
+                while (!stopped.get()) {
+                    if (!counting && measuring.get()) {
+                        counting = true;
+                        ops = 0;
+                        failures = 0;
+                    }
+                    try {
+                        local += operation.run(random);
+                    } catch (ValidationException e) {
+                        failures++;
+                    }
+                    ops++;
+                }
+                completed[index] = ops;
+                rejected[index] = failures;
+                sink += local;
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        ready.await();
+        Thread.sleep(periodMillis);
+        measuring.set(true);
+        long start = System.nanoTime();
+        Thread.sleep(periodMillis);
+        stopped.set(true);
+        long elapsed = System.nanoTime() - start;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return new Result(Arrays.stream(completed).sum(), Arrays.stream(rejected).sum(), elapsed);
+    }
+
+    private static void report(String name, int size, int threads, Result result) {
+        double seconds = result.nanos() / 1e9;
+        double opsPerSecond = result.operations() / seconds;
+        double micros = result.operations() == 0 ? 0 : result.nanos() * threads / 1e3 / result.operations();
+        System.out.printf("%-16s %,10d %8d %,14.0f %,12.2f %,10d%n",
+                name, size, threads, opsPerSecond, micros, result.rejected());
+    }
+
+    /** Picks a random index below {@code bound} that is congruent to {@code thread} modulo {@code threads}. */
+    private static int partitioned(SplittableRandom random, int bound, int thread, int threads) {
+        int slots = Math.max(1, (bound - thread + threads - 1) / threads);
+        return Math.min(bound - 1, thread + threads * random.nextInt(slots));
+    }
+
+    private static boolean selected(Set<String> only, String name) {
+        return only.isEmpty() || only.contains(name);
+    }
+
+    private static String option(String[] args, String name, String fallback) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) return args[i + 1];
+        }
+        return fallback;
+    }
+
+    private static int[] ints(String csv) {
+        return Arrays.stream(csv.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+}
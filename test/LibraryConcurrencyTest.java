@@ -0,0 +1,140 @@
+import common.ValidationException;
+import domain.model.AvailabilityStatus;
+import domain.model.Book;
+import domain.model.MediaItem;
+import domain.model.Member;
+import domain.service.Library;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multi-threaded stress tests for a Library shared between several desks.
+ */
+public class LibraryConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    public static void main(String[] args) throws Exception {
+        LibraryConcurrencyTest test = new LibraryConcurrencyTest();
+        test.testSameItemLoanedOnlyOnce();
+        test.testMixedWorkloadKeepsInvariants();
+    }
+
+    private void testSameItemLoanedOnlyOnce() throws Exception {
+        Library library = TestLibraries.library(64);
+        Book book = new Book("Contended", "Test Author", 2000, List.of("Fiction"));
+        library.addItem(book);
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Member member = new Member("Member " + i, "member" + i + "@example.com");
+            library.addMember(member);
+            members.add(member);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        int rounds = 500;
+        int badRounds = 0;
+        try {
+            for (int round = 0; round < rounds; round++) {
+                CountDownLatch start = new CountDownLatch(1);
+                AtomicInteger successes = new AtomicInteger();
+                List<Future<?>> futures = new ArrayList<>();
+                for (Member member : members) {
+                    futures.add(pool.submit(() -> {
+                        start.await();
+                        try {
+                            library.loanItem(member.getId(), book.getMediaId());
+                            successes.incrementAndGet();
+                        } catch (ValidationException ignored) {
+                            // Another desk won the race
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                if (successes.get() != 1) badRounds++;
+                library.returnItem(book.getMediaId());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (badRounds == 0) {
+            System.out.println("LC1 - PASS");
+        } else {
+            System.out.println("LC1 - FAIL (" + badRounds + " of " + rounds + " rounds without exactly one loan)");
+        }
+    }
+
+    private void testMixedWorkloadKeepsInvariants() throws Exception {
+        Library library = TestLibraries.library(64);
+        List<MediaItem> books = new ArrayList<>();
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Book book = new Book("Book " + i, "Author " + (i % 20), 2000, List.of("Fiction"));
+            library.addItem(book);
+            books.add(book);
+        }
+        for (int i = 0; i < 50; i++) {
+            Member member = new Member("Member " + i, "member" + i + "@example.com");
+            library.addMember(member);
+            members.add(member);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger unexpected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int op = 0; op < 20_000; op++) {
+                    MediaItem book = books.get(random.nextInt(books.size()));
+                    Member member = members.get(random.nextInt(members.size()));
+                    try {
+                        // Reservations are kept rare as a reserved item never becomes loanable again
+                        int roll = random.nextInt(1000);
+                        if (roll < 450) {
+                            library.loanItem(member.getId(), book.getMediaId());
+                        } else if (roll < 900) {
+                            library.returnItem(book.getMediaId());
+                        } else if (roll < 902) {
+                            library.placeReservation(member.getId(), book.getMediaId());
+                        } else {
+                            library.searchMedia("book 1");
+                        }
+                    } catch (ValidationException ignored) {
+                        // Rejected by a business rule, which is expected under random load
+                    } catch (RuntimeException e) {
+                        unexpected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        int onLoan = 0;
+        for (MediaItem book : books) {
+            if (book.getStatus() == AvailabilityStatus.ON_LOAN) onLoan++;
+        }
+        try {
+            library.verifyIndexes();
+            if (unexpected.get() == 0) {
+                System.out.println("LC2 - PASS (" + onLoan + " items on loan)");
+            } else {
+                System.out.println("LC2 - FAIL (" + unexpected.get() + " unexpected exceptions)");
+            }
+        } catch (IllegalStateException e) {
+            System.out.println("LC2 - FAIL (" + e.getMessage() + ")");
+        }
+    }
+}
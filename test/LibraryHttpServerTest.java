@@ -0,0 +1,226 @@
+import common.metrics.InMemoryMetricsRegistry;
+import domain.model.AvailabilityStatus;
+import domain.model.Book;
+import domain.model.MediaItem;
+import domain.model.Member;
+import domain.policy.StandardFinePolicy;
+import domain.policy.StandardLoanPolicy;
+import domain.service.Library;
+import presentation.LibraryHttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the HTTP front end.
+ */
+public class LibraryHttpServerTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    public static void main(String[] args) throws Exception {
+        LibraryHttpServerTest test = new LibraryHttpServerTest();
+        test.testLoanAndReturnOverHttp();
+        test.testErrorsMapToStatusCodes();
+        test.testSearchAndListing();
+        test.testOverloadRejectedWith503();
+        test.testReadOnlyServerRefusesChanges();
+    }
+
+    private LibraryHttpServer start(Library library, int maxConcurrent, int maxQueued) throws IOException {
+        return LibraryHttpServer.start(library, new InetSocketAddress("127.0.0.1", 0), maxConcurrent, maxQueued,
+                new InMemoryMetricsRegistry());
+    }
+
+    private HttpResponse<String> get(LibraryHttpServer server, String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.port() + path)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(LibraryHttpServer server, String path, String form) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.port() + path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * HS1: an item loaned and returned over HTTP goes through the shared library.
+     */
+    private void testLoanAndReturnOverHttp() throws Exception {
+        Library library = TestLibraries.library(8);
+        Member member = new Member("Kiosk User", "kiosk@example.com");
+        Book book = new Book("Served Book", "Author", 2001, List.of("Fiction"));
+        library.addMember(member);
+        library.addItem(book);
+
+        try (LibraryHttpServer server = start(library, 4, 4)) {
+            HttpResponse<String> loaned = post(server, "/loans",
+                    "memberId=" + member.getId() + "&mediaId=" + book.getMediaId());
+            AvailabilityStatus whileLoaned = book.getStatus();
+            HttpResponse<String> returned = post(server, "/returns", "mediaId=" + book.getMediaId());
+
+            if (loaned.statusCode() == 201 && loaned.body().contains("\"status\":\"OUTSTANDING\"")
+                    && whileLoaned == AvailabilityStatus.ON_LOAN
+                    && returned.statusCode() == 200 && returned.body().contains("\"status\":\"RETURNED\"")
+                    && book.getStatus() == AvailabilityStatus.AVAILABLE) {
+                System.out.println("HS1 - PASS");
+            } else {
+                System.out.println("HS1 - FAIL (loan=" + loaned.statusCode() + " " + loaned.body()
+                        + ", return=" + returned.statusCode() + ")");
+            }
+        }
+    }
+
+    /**
+     * HS2: broken rules, bad parameters, unknown paths, unknown members and items, and wrong
+     * methods get distinct codes.
+     */
+    private void testErrorsMapToStatusCodes() throws Exception {
+        Library library = TestLibraries.library(8);
+        Book book = new Book("Idle Book", "Author", 2001, List.of("Fiction"));
+        Member member = new Member("Idle Member", "idle@example.com");
+        library.addItem(book);
+        library.addMember(member);
+
+        try (LibraryHttpServer server = start(library, 4, 4)) {
+            int notOnLoan = post(server, "/returns", "mediaId=" + book.getMediaId()).statusCode();
+            int badId = post(server, "/returns", "mediaId=not-a-uuid").statusCode();
+            int missing = post(server, "/loans", "mediaId=" + book.getMediaId()).statusCode();
+            int unknown = get(server, "/nowhere").statusCode();
+            HttpResponse<String> wrongMethod = get(server, "/loans");
+            int unknownMember = post(server, "/loans",
+                    "memberId=" + UUID.randomUUID() + "&mediaId=" + book.getMediaId()).statusCode();
+            int unknownItem = post(server, "/reservations",
+                    "memberId=" + member.getId() + "&mediaId=" + UUID.randomUUID()).statusCode();
+
+            if (notOnLoan == 409 && badId == 400 && missing == 400 && unknown == 404
+                    && unknownMember == 404 && unknownItem == 404
+                    && wrongMethod.statusCode() == 405
+                    && wrongMethod.headers().firstValue("Allow").orElse("").equals("POST")) {
+                System.out.println("HS2 - PASS");
+            } else {
+                System.out.println("HS2 - FAIL (" + notOnLoan + ", " + badId + ", " + missing + ", " + unknown
+                        + ", " + wrongMethod.statusCode() + ", " + unknownMember + ", " + unknownItem + ")");
+            }
+        }
+    }
+
+    /**
+     * HS3: searches and pages return JSON for the library's items and members.
+     */
+    private void testSearchAndListing() throws Exception {
+        Library library = TestLibraries.library(8);
+        for (int i = 0; i < 30; i++) {
+            library.addItem(new Book("Title \"" + i + "\"", "Author", 2001, List.of("Fiction")));
+        }
+        library.addMember(new Member("Searchable Name", "search@example.com"));
+
+        try (LibraryHttpServer server = start(library, 4, 4)) {
+            HttpResponse<String> search = get(server, "/media/search?q=title%20%2212%22&status=available");
+            HttpResponse<String> firstPage = get(server, "/media?type=book&size=25");
+            HttpResponse<String> members = get(server, "/members/search?q=searchable");
+            int badSize = get(server, "/media?size=0").statusCode();
+
+            if (search.statusCode() == 200 && search.body().contains("\"title\":\"Title \\\"12\\\"\"")
+                    && count(search.body(), "\"mediaId\"") == 1
+                    && firstPage.statusCode() == 200 && count(firstPage.body(), "\"mediaId\"") == 25
+                    && !firstPage.body().contains("\"next\":null")
+                    && members.body().contains("\"name\":\"Searchable Name\"") && badSize == 400) {
+                System.out.println("HS3 - PASS");
+            } else {
+                System.out.println("HS3 - FAIL (search=" + search.body() + ", page=" + firstPage.statusCode()
+                        + ", badSize=" + badSize + ")");
+            }
+        }
+    }
+
+    /**
+     * HS4: once every slot and queue place is taken, further requests are turned away with
+     * 503 and a Retry-After header instead of waiting.
+     */
+    private void testOverloadRejectedWith503() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Library library = new Library(new StandardLoanPolicy(14), new StandardFinePolicy(50)) {
+            @Override
+            public List<MediaItem> searchMedia(String keyword, AvailabilityStatus status) {
+                entered.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.searchMedia(keyword, status);
+            }
+        };
+
+        try (LibraryHttpServer server = start(library, 1, 0)) {
+            CompletableFuture<HttpResponse<String>> slow = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return get(server, "/media/search?q=slow");
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            boolean blocked = entered.await(10, TimeUnit.SECONDS);
+            HttpResponse<String> turnedAway = get(server, "/members");
+            release.countDown();
+            int slowStatus = slow.get(10, TimeUnit.SECONDS).statusCode();
+            int afterwards = get(server, "/members").statusCode();
+
+            if (blocked && turnedAway.statusCode() == 503
+                    && turnedAway.headers().firstValue("Retry-After").isPresent()
+                    && slowStatus == 200 && afterwards == 200) {
+                System.out.println("HS4 - PASS");
+            } else {
+                System.out.println("HS4 - FAIL (blocked=" + blocked + ", turnedAway=" + turnedAway.statusCode()
+                        + ", slow=" + slowStatus + ", afterwards=" + afterwards + ")");
+            }
+        }
+    }
+
+    /**
+     * HS5: a read-only server answers searches but refuses loans with 403, leaving the
+     * library unchanged.
+     */
+    private void testReadOnlyServerRefusesChanges() throws Exception {
+        Library library = TestLibraries.library(8);
+        Member member = new Member("Replica Reader", "reader@example.com");
+        Book book = new Book("Replicated Book", "Author", 2001, List.of("Fiction"));
+        library.addMember(member);
+        library.addItem(book);
+
+        try (LibraryHttpServer server = LibraryHttpServer.startReadOnly(library,
+                new InetSocketAddress("127.0.0.1", 0), 4, 4, new InMemoryMetricsRegistry())) {
+            HttpResponse<String> search = get(server, "/media/search?q=replicated");
+            int loan = post(server, "/loans", "memberId=" + member.getId() + "&mediaId=" + book.getMediaId())
+                    .statusCode();
+
+            if (search.statusCode() == 200 && count(search.body(), "\"mediaId\"") == 1 && loan == 403
+                    && book.getStatus() == AvailabilityStatus.AVAILABLE) {
+                System.out.println("HS5 - PASS");
+            } else {
+                System.out.println("HS5 - FAIL (search=" + search.statusCode() + ", loan=" + loan + ")");
+            }
+        }
+    }
+
+    private static int count(String text, String fragment) {
+        int count = 0;
+        for (int i = text.indexOf(fragment); i >= 0; i = text.indexOf(fragment, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
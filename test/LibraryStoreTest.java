@@ -0,0 +1,349 @@
+import domain.model.Book;
+import domain.model.Dvd;
+import domain.model.Magazine;
+import domain.model.Member;
+import domain.service.Library;
+import domain.service.LibraryEvent;
+import domain.service.LibraryEventListener;
+import infrastructure.persistence.EventCodec;
+import infrastructure.persistence.LibraryStore;
+import infrastructure.persistence.SyncPolicy;
+import infrastructure.persistence.WriteAheadLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Unit tests for the LibraryStore write-ahead log and snapshots.
+ */
+public class LibraryStoreTest {
+
+    public static void main(String[] args) throws IOException {
+        LibraryStoreTest test = new LibraryStoreTest();
+        test.testReopenRestoresState();
+        test.testCheckpointReplacesOldLog();
+        test.testTornTailTruncated();
+        test.testBackgroundCheckpoints();
+        test.testListenerFailureStopsChanges();
+        test.testArchivedLoansStayArchived();
+        test.testBackgroundCheckpointFailureReported();
+    }
+
+    /** Adds a few items and members, then loans, returns and reserves some of them. */
+    private void populate(Library library, int round) {
+        Member first = new Member("Member " + round + "a", "a" + round + "@example.com");
+        Member second = new Member("Member " + round + "b", "b" + round + "@example.com");
+        Book book = new Book("Book " + round, "Author", 2000, List.of("Fiction"));
+        Dvd dvd = new Dvd("Dvd " + round, 2010, 120, "PG", List.of("Drama"));
+        Magazine magazine = new Magazine("Magazine " + round, "Publisher", 2020, List.of("News"));
+        library.addMember(first);
+        library.addMember(second);
+        library.addItem(book);
+        library.addItem(dvd);
+        library.addItem(magazine);
+
+        library.loanItem(first.getId(), book.getMediaId());
+        library.placeReservation(second.getId(), book.getMediaId());
+        library.loanItem(second.getId(), dvd.getMediaId());
+        library.returnItem(dvd.getMediaId());
+        library.removeItem(magazine.getMediaId());
+    }
+
+    /** @return the library's state as sorted encoded events, for comparing two libraries */
+    private List<String> describe(Library library) {
+        List<String> state = new ArrayList<>();
+        library.exportState(event -> {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                EventCodec.write(event, new DataOutputStream(bytes));
+                state.add(Base64.getEncoder().encodeToString(bytes.toByteArray()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        state.sort(null);
+        return state;
+    }
+
+    private long fileCount(Path directory, String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.getFileName().toString().startsWith(prefix)).count();
+        }
+    }
+
+    private void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private void testReopenRestoresState() throws IOException {
+        Path directory = Files.createTempDirectory("library-store");
+        try {
+            Library original = TestLibraries.library();
+            try (LibraryStore store = LibraryStore.open(directory, original, SyncPolicy.everyRecord(), 1_000_000)) {
+                populate(original, 1);
+                populate(original, 2);
+            }
+
+            Library restored = TestLibraries.library();
+            boolean fresh;
+            try (LibraryStore store = LibraryStore.open(directory, restored, SyncPolicy.everyRecord(), 1_000_000)) {
+                fresh = store.isFresh();
+            }
+            restored.verifyIndexes();
+
+            if (!fresh && describe(restored).equals(describe(original))
+                    && restored.currentSequence() == original.currentSequence()) {
+                System.out.println("LS1 - PASS");
+            } else {
+                System.out.println("LS1 - FAIL (fresh=" + fresh + ", sequence=" + restored.currentSequence()
+                        + " vs " + original.currentSequence() + ")");
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private void testCheckpointReplacesOldLog() throws IOException {
+        Path directory = Files.createTempDirectory("library-store");
+        try {
+            Library original = TestLibraries.library();
+            try (LibraryStore store = LibraryStore.open(directory, original, SyncPolicy.periodic(10), 1_000_000)) {
+                populate(original, 1);
+                store.checkpoint();
+                populate(original, 2);
+                store.checkpoint();
+                populate(original, 3);
+            }
+
+            Library restored = TestLibraries.library();
+            try (LibraryStore ignored = LibraryStore.open(directory, restored, SyncPolicy.periodic(10), 1_000_000)) {
+                restored.verifyIndexes();
+            }
+            long snapshots = fileCount(directory, "snapshot-");
+            long segments = fileCount(directory, "wal-");
+
+            if (describe(restored).equals(describe(original)) && snapshots == 1 && segments <= 2) {
+                System.out.println("LS2 - PASS");
+            } else {
+                System.out.println("LS2 - FAIL (snapshots=" + snapshots + ", segments=" + segments + ")");
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private void testTornTailTruncated() throws IOException {
+        Path directory = Files.createTempDirectory("library-store");
+        try {
+            Library original = TestLibraries.library();
+            try (LibraryStore store = LibraryStore.open(directory, original, SyncPolicy.everyRecord(), 1_000_000)) {
+                populate(original, 1);
+            }
+            // Simulates a crash part way through appending a record
+            Path segment = WriteAheadLog.segments(directory).getLast();
+            long validSize = Files.size(segment);
+            Files.write(segment, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+            Library restored = TestLibraries.library();
+            boolean recovered;
+            try (LibraryStore store = LibraryStore.open(directory, restored, SyncPolicy.everyRecord(), 1_000_000)) {
+                recovered = describe(restored).equals(describe(original));
+                // Records appended after recovery must not be hidden behind the torn one
+                populate(restored, 2);
+            }
+
+            Library reopened = TestLibraries.library();
+            try (LibraryStore ignored = LibraryStore.open(directory, reopened, SyncPolicy.everyRecord(), 1_000_000)) {
+                reopened.verifyIndexes();
+            }
+
+            if (recovered && describe(reopened).equals(describe(restored)) && Files.size(segment) > validSize) {
+                System.out.println("LS3 - PASS");
+            } else {
+                System.out.println("LS3 - FAIL (recovered=" + recovered + ", items=" + reopened.listItems().size()
+                        + " vs " + restored.listItems().size() + ")");
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private void testBackgroundCheckpoints() throws IOException {
+        Path directory = Files.createTempDirectory("library-store");
+        try {
+            Library original = TestLibraries.library();
+            try (LibraryStore store = LibraryStore.open(directory, original, SyncPolicy.groupCommit(16, 1), 7)) {
+                for (int round = 0; round < 20; round++) {
+                    populate(original, round);
+                }
+            }
+
+            Library restored = TestLibraries.library();
+            try (LibraryStore ignored = LibraryStore.open(directory, restored, SyncPolicy.groupCommit(16, 1), 7)) {
+                restored.verifyIndexes();
+            }
+            long snapshots = fileCount(directory, "snapshot-");
+
+            if (describe(restored).equals(describe(original)) && snapshots >= 1) {
+                System.out.println("LS4 - PASS");
+            } else {
+                System.out.println("LS4 - FAIL (snapshots=" + snapshots + ", items=" + restored.listItems().size()
+                        + " vs " + original.listItems().size() + ")");
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * LS5: once a listener throws, every other listener still sees the event, and later
+     * changes and checkpoints are refused instead of recording state the listener missed.
+     */
+    private void testListenerFailureStopsChanges() throws IOException {
+        Path directory = Files.createTempDirectory("library-store");
+        try {
+            Library original = TestLibraries.library();
+            AtomicInteger seenAfterFailure = new AtomicInteger();
+            boolean firstFailed = false;
+            boolean laterRefused = false;
+            boolean checkpointRefused = false;
+            try (LibraryStore store = LibraryStore.open(directory, original, SyncPolicy.everyRecord(), 1_000_000)) {
+                LibraryEventListener failing = (sequence, event) -> {
+                    throw new IllegalStateException("Listener failed");
+                };
+                original.addEventListener(failing);
+                original.addEventListener((sequence, event) -> seenAfterFailure.incrementAndGet());
+                try {
+                    original.addItem(new Book("Logged", "Author", 2000, List.of("Fiction")));
+                } catch (IllegalStateException e) {
+                    firstFailed = true;
+                }
+                original.removeEventListener(failing);
+                try {
+                    original.addItem(new Book("Refused", "Author", 2000, List.of("Fiction")));
+                } catch (IllegalStateException e) {
+                    laterRefused = true;
+                }
+                try {
+                    store.checkpoint();
+                } catch (IOException e) {
+                    checkpointRefused = true;
+                }
+            }
+
+            Library restored = TestLibraries.library();
+            try (LibraryStore ignored = LibraryStore.open(directory, restored, SyncPolicy.everyRecord(), 1_000_000)) {
+                restored.verifyIndexes();
+            }
+
+            if (firstFailed && laterRefused && checkpointRefused && seenAfterFailure.get() == 1
+                    && restored.listItems().size() == 1 && fileCount(directory, "snapshot-") == 0) {
+                System.out.println("LS5 - PASS");
+            } else {
+                System.out.println("LS5 - FAIL (firstFailed=" + firstFailed + ", laterRefused=" + laterRefused
+                        + ", checkpointRefused=" + checkpointRefused + ", seen=" + seenAfterFailure.get()
+                        + ", restored=" + restored.listItems().size() + ")");
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    /** @return the number of loans a library holds in its archive rather than its loan table */
+    private int archivedLoans(Library library) {
+        AtomicInteger archived = new AtomicInteger();
+        library.exportState(event -> {
+            if (event instanceof LibraryEvent.LoanArchived) archived.incrementAndGet();
+        });
+        return archived.get();
+    }
+
+    /**
+     * LS6: archived loans are logged, so they are back in the archive, not the loan table,
+     * after recovering from the log and from a snapshot.
+     */
+    private void testArchivedLoansStayArchived() throws IOException {
+        Path directory = Files.createTempDirectory("library-store");
+        try {
+            Library original = TestLibraries.library();
+            try (LibraryStore store = LibraryStore.open(directory, original, SyncPolicy.everyRecord(), 1_000_000)) {
+                populate(original, 1);
+                populate(original, 2);
+                original.archiveReturnedLoans(LocalDate.now().plusDays(1));
+            }
+
+            Library fromLog = TestLibraries.library();
+            try (LibraryStore store = LibraryStore.open(directory, fromLog, SyncPolicy.everyRecord(), 1_000_000)) {
+                fromLog.verifyIndexes();
+                store.checkpoint();
+            }
+            Library fromSnapshot = TestLibraries.library();
+            try (LibraryStore ignored = LibraryStore.open(directory, fromSnapshot, SyncPolicy.everyRecord(), 1_000_000)) {
+                fromSnapshot.verifyIndexes();
+            }
+
+            if (archivedLoans(original) == 2 && describe(fromLog).equals(describe(original))
+                    && describe(fromSnapshot).equals(describe(original))) {
+                System.out.println("LS6 - PASS");
+            } else {
+                System.out.println("LS6 - FAIL (archived=" + archivedLoans(original) + ", fromLog="
+                        + archivedLoans(fromLog) + ", fromSnapshot=" + archivedLoans(fromSnapshot) + ")");
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * LS7: a background checkpoint that fails is reported when the store is closed, and the
+     * log still recovers everything.
+     */
+    private void testBackgroundCheckpointFailureReported() throws IOException {
+        Path directory = Files.createTempDirectory("library-store");
+        try {
+            Library original = TestLibraries.library();
+            LibraryStore store = LibraryStore.open(directory, original, SyncPolicy.everyRecord(), 5);
+            // A directory where the snapshot's temporary file goes makes every snapshot fail
+            Path blocker = Files.createDirectory(directory.resolve("snapshot-in-progress.tmp"));
+            Files.createFile(blocker.resolve("keep"));
+            populate(original, 1);
+            String reported = null;
+            try {
+                store.close();
+            } catch (IOException e) {
+                reported = e.getMessage();
+            }
+            deleteDirectory(blocker);
+
+            Library restored = TestLibraries.library();
+            try (LibraryStore reopened = LibraryStore.open(directory, restored, SyncPolicy.everyRecord(), 5)) {
+                reopened.checkpoint();
+            }
+
+            if ("Background checkpoint failed".equals(reported) && describe(restored).equals(describe(original))
+                    && fileCount(directory, "snapshot-") == 1) {
+                System.out.println("LS7 - PASS");
+            } else {
+                System.out.println("LS7 - FAIL (reported=" + reported + ")");
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+}
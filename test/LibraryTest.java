@@ -0,0 +1,660 @@
+import common.ValidationException;
+import common.metrics.InMemoryMetricsRegistry;
+import domain.model.AvailabilityStatus;
+import domain.model.Book;
+import domain.model.Dvd;
+import domain.model.Loan;
+import domain.model.LoanStatus;
+import domain.model.Magazine;
+import domain.model.MediaItem;
+import domain.model.Member;
+import domain.model.Reservation;
+import domain.model.ReservationStatus;
+import domain.policy.StandardFinePolicy;
+import domain.policy.StandardLoanPolicy;
+import domain.service.FineAssessment;
+import domain.service.Library;
+import domain.service.LibraryEvent;
+import domain.service.LibrarySnapshot;
+import domain.service.Page;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Unit tests for the Library aggregate.
+ */
+public class LibraryTest {
+
+    public static void main(String[] args) {
+        LibraryTest test = new LibraryTest();
+        test.testReturnUsesOpenLoanIndex();
+        test.testReturnWithoutOpenLoanRejected();
+        test.testOpenLoanIndexConsistentAfterManyLoans();
+        test.testOverdueLoanBlocksCheckout();
+        test.testReturningOverdueLoanUnblocksCheckout();
+        test.testSearchMediaMatchesSubstringSemantics();
+        test.testSearchMediaForgetsRemovedItems();
+        test.testSearchMembersSortedByName();
+        test.testSearchMembersFollowsRename();
+        test.testSearchMembersByPrefix();
+        test.testFulfillSkipsCancelledReservations();
+        test.testPagedListingVisitsEveryItemOnce();
+        test.testListingFiltersByTypeAndStatus();
+        test.testStatusIndexFollowsTransitions();
+        test.testSearchMediaFiltersByStatus();
+        test.testLoanHistorySpansArchive();
+        test.testFineAssessmentIsIncremental();
+        test.testSnapshotUnaffectedByLaterChanges();
+        test.testDatesComeFromInjectedClock();
+        test.testSearchMediaFollowsRename();
+        test.testRecoveredOverdueLoanReported();
+        test.testUnknownMemberOrItemRejected();
+    }
+
+    private void testReturnUsesOpenLoanIndex() {
+        Library library = TestLibraries.library();
+        Member member = new Member("Test Member", "test@example.com");
+        Book book = TestLibraries.book("Indexed");
+        library.addMember(member);
+        library.addItem(book);
+
+        Loan loan = library.loanItem(member.getId(), book.getMediaId());
+        Loan returned = library.returnItem(book.getMediaId());
+
+        if (returned == loan
+                && returned.getStatus() == LoanStatus.RETURNED
+                && book.getStatus() == AvailabilityStatus.AVAILABLE) {
+            System.out.println("LB1 - PASS");
+        } else {
+            System.out.println("LB1 - FAIL (status=" + returned.getStatus() + ", item=" + book.getStatus() + ")");
+        }
+    }
+
+    private void testReturnWithoutOpenLoanRejected() {
+        Library library = TestLibraries.library();
+        Member member = new Member("Test Member", "test@example.com");
+        Book book = TestLibraries.book("Returned Twice");
+        library.addMember(member);
+        library.addItem(book);
+
+        library.loanItem(member.getId(), book.getMediaId());
+        library.returnItem(book.getMediaId());
+        try {
+            library.returnItem(book.getMediaId());
+            System.out.println("LB2 - FAIL (no exception thrown)");
+        } catch (ValidationException e) {
+            System.out.println("LB2 - PASS (exception: " + e.getMessage() + ")");
+        }
+    }
+
+    private void testOpenLoanIndexConsistentAfterManyLoans() {
+        Library library = TestLibraries.library();
+        Member member = new Member("Test Member", "test@example.com");
+        library.addMember(member);
+
+        for (int i = 0; i < 100; i++) {
+            Book book = TestLibraries.book("Book " + i);
+            library.addItem(book);
+            library.loanItem(member.getId(), book.getMediaId());
+            if (i % 2 == 0) {
+                library.returnItem(book.getMediaId());
+            }
+        }
+
+        try {
+            library.verifyIndexes();
+            System.out.println("LB3 - PASS");
+        } catch (IllegalStateException e) {
+            System.out.println("LB3 - FAIL (" + e.getMessage() + ")");
+        }
+    }
+
+    private void testOverdueLoanBlocksCheckout() {
+        // Negative loan period makes every loan due yesterday, so it is immediately overdue
+        Library library = new Library(new StandardLoanPolicy(-1), new StandardFinePolicy(50));
+        Member member = new Member("Test Member", "test@example.com");
+        Book first = TestLibraries.book("First");
+        Book second = TestLibraries.book("Second");
+        library.addMember(member);
+        library.addItem(first);
+        library.addItem(second);
+
+        library.loanItem(member.getId(), first.getMediaId());
+        try {
+            library.loanItem(member.getId(), second.getMediaId());
+            System.out.println("LB4 - FAIL (no exception thrown)");
+        } catch (ValidationException e) {
+            System.out.println("LB4 - PASS (exception: " + e.getMessage() + ")");
+        }
+    }
+
+    private void testReturningOverdueLoanUnblocksCheckout() {
+        Library library = new Library(new StandardLoanPolicy(-1), new StandardFinePolicy(50));
+        Member member = new Member("Test Member", "test@example.com");
+        Book first = TestLibraries.book("First");
+        Book second = TestLibraries.book("Second");
+        library.addMember(member);
+        library.addItem(first);
+        library.addItem(second);
+
+        library.loanItem(member.getId(), first.getMediaId());
+        library.returnItem(first.getMediaId());
+        try {
+            library.loanItem(member.getId(), second.getMediaId());
+            library.verifyIndexes();
+            System.out.println("LB5 - PASS");
+        } catch (RuntimeException e) {
+            System.out.println("LB5 - FAIL (" + e.getMessage() + ")");
+        }
+    }
+
+    private void testSearchMediaMatchesSubstringSemantics() {
+        Library library = TestLibraries.library();
+        List<MediaItem> catalogue = List.of(
+                new Book("The Hobbit", "J.R.R. Tolkien", 1937, List.of("Fantasy")),
+                new Book("Clean Code", "Robert C. Martin", 2008, List.of("Programming")),
+                new Dvd("Toy Story", 1995, 81, "3+", List.of("Animation")),
+                new Magazine("The Economist", "The Economist Group", 2025, List.of("Business"))
+        );
+        for (MediaItem item : catalogue) {
+            library.addItem(item);
+        }
+
+        List<String> failures = new ArrayList<>();
+        for (String q : List.of("", "t", "HO", "hob", "tolk", "ROBERT c", "story", "group", "xyz", "he e")) {
+            List<MediaItem> expected = new ArrayList<>();
+            for (MediaItem item : catalogue) {
+                if (containsIgnoreCase(item, q)) expected.add(item);
+            }
+            List<MediaItem> actual = library.searchMedia(q);
+            if (actual.size() != expected.size() || !actual.containsAll(expected)) {
+                failures.add(q);
+            }
+        }
+
+        if (failures.isEmpty()) {
+            System.out.println("LB6 - PASS");
+        } else {
+            System.out.println("LB6 - FAIL (mismatched queries: " + failures + ")");
+        }
+    }
+
+    private void testSearchMediaForgetsRemovedItems() {
+        Library library = TestLibraries.library();
+        Book book = TestLibraries.book("Removable");
+        library.addItem(book);
+        library.removeItem(book.getMediaId());
+
+        if (library.searchMedia("removable").isEmpty()) {
+            System.out.println("LB7 - PASS");
+        } else {
+            System.out.println("LB7 - FAIL (removed item still found)");
+        }
+    }
+
+    private boolean containsIgnoreCase(MediaItem item, String q) {
+        String query = q.toLowerCase();
+        List<String> fields = new ArrayList<>(List.of(item.getTitle()));
+        if (item instanceof Book book) fields.add(book.getAuthor());
+        if (item instanceof Magazine magazine) fields.add(magazine.getPublisher());
+        for (String field : fields) {
+            if (field.toLowerCase().contains(query)) return true;
+        }
+        return false;
+    }
+
+    private void testSearchMembersSortedByName() {
+        Library library = TestLibraries.library();
+        library.addMember(new Member("sarah Cooper", "sarah@example.com"));
+        library.addMember(new Member("Kyle Smith", "kyle@example.com"));
+        library.addMember(new Member("Philip Johnson", "philip@example.com"));
+
+        List<String> names = new ArrayList<>();
+        for (Member member : library.searchMembers("")) {
+            names.add(member.getName());
+        }
+
+        if (names.equals(List.of("Kyle Smith", "Philip Johnson", "sarah Cooper"))) {
+            System.out.println("LB8 - PASS");
+        } else {
+            System.out.println("LB8 - FAIL (order=" + names + ")");
+        }
+    }
+
+    private void testSearchMembersFollowsRename() {
+        Library library = TestLibraries.library();
+        Member member = new Member("Kyle Smith", "kyle@example.com");
+        library.addMember(member);
+
+        member.setName("Kyle Jones");
+        boolean oldGone = library.searchMembers("smith").isEmpty();
+        boolean newFound = library.searchMembers("jones").contains(member);
+
+        if (oldGone && newFound) {
+            System.out.println("LB9 - PASS");
+        } else {
+            System.out.println("LB9 - FAIL (oldGone=" + oldGone + ", newFound=" + newFound + ")");
+        }
+    }
+
+    private void testSearchMembersByPrefix() {
+        Library library = TestLibraries.library();
+        Member kyle = new Member("Kyle Smith", "kyle@example.com");
+        Member kylie = new Member("kylie Brown", "kylie@example.com");
+        library.addMember(kyle);
+        library.addMember(kylie);
+        library.addMember(new Member("Mike Kyle", "mike@example.com"));
+
+        List<Member> results = library.searchMembersByPrefix("KYL");
+        if (results.equals(List.of(kyle, kylie))) {
+            System.out.println("LB10 - PASS");
+        } else {
+            System.out.println("LB10 - FAIL (results=" + results.size() + ")");
+        }
+    }
+
+    private void testFulfillSkipsCancelledReservations() {
+        Library library = TestLibraries.library();
+        Book book = TestLibraries.book("Popular");
+        library.addItem(book);
+        List<Reservation> placed = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Member member = new Member("Member " + i, "member" + i + "@example.com");
+            library.addMember(member);
+            placed.add(library.placeReservation(member.getId(), book.getMediaId()));
+        }
+
+        library.cancelReservation(placed.get(0).getReservationId());
+        boolean fulfilled = library.fulfillReservation(book.getMediaId());
+
+        if (fulfilled
+                && placed.get(0).getStatus() == ReservationStatus.CANCELLED
+                && placed.get(1).getStatus() == ReservationStatus.FULFILLED
+                && placed.get(2).getStatus() == ReservationStatus.ACTIVE
+                && book.getStatus() == AvailabilityStatus.RESERVED) {
+            System.out.println("LB11 - PASS");
+        } else {
+            System.out.println("LB11 - FAIL (statuses=" + placed.stream().map(Reservation::getStatus).toList() + ")");
+        }
+    }
+
+    private void testPagedListingVisitsEveryItemOnce() {
+        Library library = TestLibraries.library();
+        for (int i = 0; i < 25; i++) {
+            library.addItem(TestLibraries.book("Paged " + i));
+        }
+
+        List<MediaItem> seen = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        UUID cursor = null;
+        do {
+            Page<MediaItem> page = library.listItems(MediaItem.class, null, cursor, 10);
+            seen.addAll(page.entries());
+            pageSizes.add(page.entries().size());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        List<UUID> ids = seen.stream().map(MediaItem::getMediaId).toList();
+        boolean ordered = ids.equals(ids.stream().sorted().toList());
+        if (pageSizes.equals(List.of(10, 10, 5)) && ordered && seen.size() == 25
+                && ids.stream().distinct().count() == 25
+                && library.streamItems(MediaItem.class, null).toList().equals(seen)) {
+            System.out.println("LB12 - PASS");
+        } else {
+            System.out.println("LB12 - FAIL (pages=" + pageSizes + ", ordered=" + ordered + ")");
+        }
+    }
+
+    private void testListingFiltersByTypeAndStatus() {
+        Library library = TestLibraries.library();
+        Member member = new Member("Test Member", "test@example.com");
+        Book onLoan = TestLibraries.book("On Loan");
+        Book available = TestLibraries.book("Available");
+        library.addMember(member);
+        library.addItem(onLoan);
+        library.addItem(available);
+        library.addItem(new Dvd("Film", 2001, 120, "PG", List.of("Drama")));
+        library.loanItem(member.getId(), onLoan.getMediaId());
+
+        Page<Book> books = library.listItems(Book.class, AvailabilityStatus.AVAILABLE, null, 10);
+        List<Dvd> dvds = library.streamItems(Dvd.class, null).toList();
+        Page<Member> members = library.listMembers(null, 1);
+
+        if (books.entries().equals(List.of(available)) && !books.hasNext()
+                && dvds.size() == 1 && members.entries().equals(List.of(member)) && members.hasNext()
+                && library.listMembers(members.nextCursor(), 1).entries().isEmpty()) {
+            System.out.println("LB13 - PASS");
+        } else {
+            System.out.println("LB13 - FAIL (books=" + books.entries().size() + ", dvds=" + dvds.size() + ")");
+        }
+    }
+
+    private void testStatusIndexFollowsTransitions() {
+        Library library = TestLibraries.library();
+        Member borrower = new Member("Borrower", "borrower@example.com");
+        Member waiting = new Member("Waiting", "waiting@example.com");
+        library.addMember(borrower);
+        library.addMember(waiting);
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Book book = TestLibraries.book("Status " + i);
+            books.add(book);
+            library.addItem(book);
+        }
+
+        library.loanItem(borrower.getId(), books.get(0).getMediaId());
+        library.loanItem(borrower.getId(), books.get(1).getMediaId());
+        library.placeReservation(waiting.getId(), books.get(1).getMediaId());
+        library.returnItem(books.get(1).getMediaId());
+        library.removeItem(books.get(9).getMediaId());
+        // Changes made directly on the entity are picked up too
+        books.get(2).setStatus(AvailabilityStatus.RESERVED);
+        library.verifyIndexes();
+
+        List<MediaItem> reserved = library.findItemsByStatus(AvailabilityStatus.RESERVED, 10);
+        if (library.countItems(AvailabilityStatus.AVAILABLE) == 6
+                && library.countItems(AvailabilityStatus.ON_LOAN) == 1
+                && library.countItems(AvailabilityStatus.RESERVED) == 2
+                && reserved.size() == 2 && reserved.containsAll(List.of(books.get(1), books.get(2)))
+                && library.findItemsByStatus(AvailabilityStatus.AVAILABLE, 4).size() == 4
+                && library.findItemsByStatus(AvailabilityStatus.ON_LOAN, 10).equals(List.of(books.get(0)))) {
+            System.out.println("LB14 - PASS");
+        } else {
+            System.out.println("LB14 - FAIL (available=" + library.countItems(AvailabilityStatus.AVAILABLE)
+                    + ", onLoan=" + library.countItems(AvailabilityStatus.ON_LOAN)
+                    + ", reserved=" + library.countItems(AvailabilityStatus.RESERVED) + ")");
+        }
+    }
+
+    private void testSearchMediaFiltersByStatus() {
+        Library library = TestLibraries.library();
+        Member member = new Member("Test Member", "test@example.com");
+        Book loaned = TestLibraries.book("Dune");
+        Book available = TestLibraries.book("Dune Messiah");
+        library.addMember(member);
+        library.addItem(loaned);
+        library.addItem(available);
+        library.loanItem(member.getId(), loaned.getMediaId());
+
+        List<MediaItem> results = library.searchMedia("dune", AvailabilityStatus.AVAILABLE);
+        if (results.equals(List.of(available)) && library.searchMedia("dune").size() == 2) {
+            System.out.println("LB15 - PASS");
+        } else {
+            System.out.println("LB15 - FAIL (results=" + results.size() + ")");
+        }
+    }
+
+    private void testLoanHistorySpansArchive() {
+        Library library = TestLibraries.library();
+        Member member = new Member("Test Member", "test@example.com");
+        Book first = TestLibraries.book("First");
+        Book second = TestLibraries.book("Second");
+        library.addMember(member);
+        library.addItem(first);
+        library.addItem(second);
+        Loan returned = library.loanItem(member.getId(), first.getMediaId());
+        library.returnItem(first.getMediaId());
+        library.loanItem(member.getId(), first.getMediaId());
+        library.returnItem(first.getMediaId());
+        Loan outstanding = library.loanItem(member.getId(), second.getMediaId());
+
+        int keptRecent = library.archiveReturnedLoans(LocalDate.now());
+        int archived = library.archiveReturnedLoans(LocalDate.now().plusDays(1));
+        // A later loan may reuse the surrogate ID an archived loan gave up
+        library.loanItem(member.getId(), first.getMediaId());
+        library.verifyIndexes();
+
+        List<Loan> history = library.loanHistoryOfMember(member.getId());
+        List<Loan> firstHistory = library.loanHistoryOfItem(first.getMediaId());
+        Loan archivedCopy = firstHistory.stream().filter(l -> l.getLoanId().equals(returned.getLoanId()))
+                .findFirst().orElse(null);
+
+        Library restored = TestLibraries.library();
+        library.exportState(event -> restored.replay(restored.currentSequence() + 1, event));
+
+        if (keptRecent == 0 && archived == 2 && history.size() == 4 && history.contains(outstanding)
+                && firstHistory.size() == 3 && archivedCopy != null && archivedCopy != returned
+                && archivedCopy.getStatus() == LoanStatus.RETURNED
+                && archivedCopy.getReturnDate().equals(returned.getReturnDate())
+                && archivedCopy.getDueDate().equals(returned.getDueDate())
+                && archivedCopy.getMemberId().equals(member.getId())
+                && library.loanHistoryOfItem(second.getMediaId()).equals(List.of(outstanding))
+                && restored.loanHistoryOfMember(member.getId()).size() == 4) {
+            System.out.println("LB16 - PASS");
+        } else {
+            System.out.println("LB16 - FAIL (recent=" + keptRecent + ", archived=" + archived
+                    + ", history=" + history.size() + ", first=" + firstHistory.size() + ")");
+        }
+    }
+
+    private void testFineAssessmentIsIncremental() {
+        Library library = TestLibraries.library();
+        LocalDate today = LocalDate.now();
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Member member = new Member("Member " + i, "member" + i + "@example.com");
+            members.add(member);
+            library.addMember(member);
+        }
+        // Enough loans to split the assessment; every third loan is not yet due
+        long expected = 0;
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Book book = TestLibraries.book("Book " + i);
+            books.add(book);
+            library.addItem(book);
+            int daysLate = i % 3 == 0 ? -(i % 7) : 1 + i % 20;
+            Loan loan = new Loan(members.get(i % 50).getId(), book.getMediaId(), today.minusDays(30),
+                    today.minusDays(daysLate));
+            library.replay(library.currentSequence() + 1, new LibraryEvent.ItemLoaned(loan));
+            if (i % 50 == 0) expected += 50L * Math.max(0, daysLate);
+        }
+        UUID first = members.get(0).getId();
+
+        FineAssessment initial = library.assessFines(today);
+        FineAssessment repeat = library.assessFines(today);
+        Loan returned = library.returnItem(books.get(50).getMediaId());
+        FineAssessment afterReturn = library.assessFines(today);
+        FineAssessment later = library.assessFines(today.plusDays(1));
+        long total = later.penceByMember().values().stream().mapToLong(Long::longValue).sum();
+
+        boolean rejected = false;
+        try {
+            library.assessFines(null);
+        } catch (ValidationException e) {
+            rejected = true;
+        }
+
+        if (initial.owedBy(first) == expected && initial.overdueLoans() == 3333 && initial.loansRecomputed() == 3333
+                && repeat.loansRecomputed() == 0 && repeat.totalPence() == initial.totalPence()
+                && afterReturn.owedBy(first) == expected - returned.getFineAccrued()
+                && afterReturn.loansRecomputed() == 0 && afterReturn.overdueLoans() == 3332
+                && later.loansRecomputed() > 3332 && later.totalPence() == total && rejected) {
+            System.out.println("LB17 - PASS");
+        } else {
+            System.out.println("LB17 - FAIL (owed=" + initial.owedBy(first) + ", expected=" + expected
+                    + ", overdue=" + initial.overdueLoans() + ", repeat=" + repeat.loansRecomputed()
+                    + ", later=" + later.loansRecomputed() + ")");
+        }
+    }
+
+    /**
+     * LB18: a snapshot keeps the items, statuses and open loans it was taken with while the
+     * library moves on, and large snapshots stay consistent as items are added and removed.
+     */
+    private void testSnapshotUnaffectedByLaterChanges() {
+        Library library = TestLibraries.library();
+        Member member = new Member("Snapshot Reader", "reader@example.com");
+        library.addMember(member);
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Book book = TestLibraries.book("Snapshot " + i);
+            books.add(book);
+            library.addItem(book);
+        }
+        Book loaned = books.get(7);
+        LibrarySnapshot before = library.snapshot();
+
+        library.loanItem(member.getId(), loaned.getMediaId());
+        for (int i = 0; i < books.size(); i += 2) {
+            library.removeItem(books.get(i).getMediaId());
+        }
+        LibrarySnapshot after = library.snapshot();
+        library.verifyIndexes();
+
+        boolean beforeKept = before.itemCount() == 5000 && before.openLoanCount() == 0
+                && before.statusOf(loaned.getMediaId()) == AvailabilityStatus.AVAILABLE
+                && before.countItems(AvailabilityStatus.AVAILABLE) == 5000
+                && before.findItem(books.get(0).getMediaId()) == books.get(0)
+                && before.items().parallel().count() == 5000
+                && before.searchMedia("snapshot 4999", null).size() == 1;
+        boolean afterMoved = after.version() > before.version() && after.itemCount() == 2500
+                && after.findOpenLoan(loaned.getMediaId()) != null
+                && after.statusOf(loaned.getMediaId()) == AvailabilityStatus.ON_LOAN
+                && after.countItems(AvailabilityStatus.ON_LOAN) == 1
+                && after.findItem(books.get(0).getMediaId()) == null
+                && after.items().parallel().count() == 2500
+                && after.searchMedia("snapshot", AvailabilityStatus.ON_LOAN).equals(List.of(loaned))
+                && after.searchMembers("READER").equals(List.of(member))
+                && library.countItems(AvailabilityStatus.AVAILABLE) == 2499;
+
+        if (beforeKept && afterMoved) {
+            System.out.println("LB18 - PASS");
+        } else {
+            System.out.println("LB18 - FAIL (before=" + beforeKept + ", after=" + afterMoved
+                    + ", items=" + after.itemCount() + ")");
+        }
+    }
+
+    /**
+     * LB19: loans, returns, reservations and overdue checks all take today's date from the
+     * library's clock.
+     */
+    private void testDatesComeFromInjectedClock() {
+        SimulatedClock clock = new SimulatedClock(LocalDate.of(2030, 1, 1));
+        Library library = new Library(new StandardLoanPolicy(14), new StandardFinePolicy(50), 1,
+                new InMemoryMetricsRegistry(), clock);
+        Member member = new Member("Clocked Member", "clock@example.com");
+        Book first = TestLibraries.book("Clocked One");
+        Book second = TestLibraries.book("Clocked Two");
+        library.addMember(member);
+        library.addItem(first);
+        library.addItem(second);
+
+        Loan loan = library.loanItem(member.getId(), first.getMediaId());
+        clock.advanceDays(20);
+        boolean blocked = false;
+        try {
+            library.loanItem(member.getId(), second.getMediaId());
+        } catch (ValidationException e) {
+            blocked = true;
+        }
+        Loan returned = library.returnItem(first.getMediaId());
+        Reservation reservation = library.placeReservation(member.getId(), second.getMediaId());
+
+        if (loan.getLoanDate().equals(LocalDate.of(2030, 1, 1)) && loan.getDueDate().equals(LocalDate.of(2030, 1, 15))
+                && blocked && returned.getReturnDate().equals(LocalDate.of(2030, 1, 21))
+                && returned.getFineAccrued() == 6 * 50
+                && reservation.getCreatedDate().equals(LocalDate.of(2030, 1, 21))) {
+            System.out.println("LB19 - PASS");
+        } else {
+            System.out.println("LB19 - FAIL (loaned=" + loan.getLoanDate() + ", blocked=" + blocked
+                    + ", returned=" + returned.getReturnDate() + ", fine=" + returned.getFineAccrued() + ")");
+        }
+    }
+
+    /**
+     * LB20: changing an item's title, author or publisher on the entity re-indexes it for
+     * keyword searches, as a member rename does for member searches.
+     */
+    private void testSearchMediaFollowsRename() {
+        Library library = TestLibraries.library();
+        Book book = TestLibraries.book("Old Title");
+        Magazine magazine = new Magazine("Monthly", "Old Press", 2001, List.of("News"));
+        Dvd dvd = new Dvd("Old Film", 2001, 90, "PG", List.of("Drama"));
+        library.addItem(book);
+        library.addItem(magazine);
+        library.addItem(dvd);
+        library.removeItem(dvd.getMediaId());
+
+        book.setTitle("New Title");
+        book.setAuthor("Renamed Author");
+        magazine.setPublisher("New Press");
+        dvd.setTitle("New Film");
+
+        boolean oldGone = library.searchMedia("old title").isEmpty() && library.searchMedia("old press").isEmpty();
+        boolean newFound = library.searchMedia("new title").equals(List.of(book))
+                && library.searchMedia("renamed author").equals(List.of(book))
+                && library.searchMedia("new press").equals(List.of(magazine));
+        boolean removedIgnored = library.searchMedia("film").isEmpty();
+
+        if (oldGone && newFound && removedIgnored) {
+            System.out.println("LB20 - PASS");
+        } else {
+            System.out.println("LB20 - FAIL (oldGone=" + oldGone + ", newFound=" + newFound
+                    + ", removedIgnored=" + removedIgnored + ")");
+        }
+    }
+
+    /**
+     * LB21: a loan that is already overdue when replayed, e.g. recovered from the log after
+     * a restart, is still reported as newly overdue.
+     */
+    private void testRecoveredOverdueLoanReported() {
+        LocalDate restart = LocalDate.of(2030, 3, 1);
+        Library library = new Library(new StandardLoanPolicy(14), new StandardFinePolicy(50), 1,
+                new InMemoryMetricsRegistry(), new SimulatedClock(restart));
+        Member member = new Member("Recovered Member", "recovered@example.com");
+        Book book = TestLibraries.book("Recovered Loan");
+        library.replay(1, new LibraryEvent.MemberAdded(member));
+        library.replay(2, new LibraryEvent.ItemAdded(book));
+        Loan loan = new Loan(member.getId(), book.getMediaId(), restart.minusDays(20), restart.minusDays(6));
+        library.replay(3, new LibraryEvent.ItemLoaned(loan));
+
+        List<Loan> overdue = library.collectNewlyOverdueLoans(restart);
+        List<Loan> again = library.collectNewlyOverdueLoans(restart.plusDays(1));
+
+        if (overdue.equals(List.of(loan)) && again.isEmpty()) {
+            System.out.println("LB21 - PASS");
+        } else {
+            System.out.println("LB21 - FAIL (overdue=" + overdue.size() + ", again=" + again.size() + ")");
+        }
+    }
+
+    /**
+     * LB22: loans, reservations and removals naming an unknown member or item are rejected
+     * as broken rules, and leave nothing behind.
+     */
+    private void testUnknownMemberOrItemRejected() {
+        Library library = TestLibraries.library();
+        Member member = new Member("Known Member", "known@example.com");
+        Book book = TestLibraries.book("Known Book");
+        library.addMember(member);
+        library.addItem(book);
+
+        List<Runnable> attempts = List.of(
+                () -> library.loanItem(UUID.randomUUID(), book.getMediaId()),
+                () -> library.loanItem(member.getId(), UUID.randomUUID()),
+                () -> library.placeReservation(member.getId(), UUID.randomUUID()),
+                () -> library.removeItem(UUID.randomUUID()));
+        int rejected = 0;
+        for (Runnable attempt : attempts) {
+            try {
+                attempt.run();
+            } catch (ValidationException e) {
+                rejected++;
+            }
+        }
+        library.verifyIndexes();
+
+        if (rejected == attempts.size() && library.currentSequence() == 2
+                && book.getStatus() == AvailabilityStatus.AVAILABLE) {
+            System.out.println("LB22 - PASS");
+        } else {
+            System.out.println("LB22 - FAIL (rejected=" + rejected + ", sequence=" + library.currentSequence() + ")");
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import domain.model.MediaItem;
+import domain.model.Member;
+import domain.service.Library;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Measures how much heap the Library retains per loan in its loan history.
+ * <p>
+ *     Usage: {@code java -Xmx4g LoanFootprintBenchmark [loans] [items] [archive]}, 10,000,000
+ *     loans over 100,000 items by default; with {@code archive}, returned loans are moved to
+ *     the loan archive after every {@value #ARCHIVE_EVERY} loans, as a periodic job would.
+ *     Builds a library from a {@link SyntheticCatalog}, measures the live heap, then checks
+ *     out and returns items round-robin until the history holds the requested number of
+ *     loans and measures it again. The difference divided by the number of loans is the
+ *     cost of one returned loan, including its indexes.
+ * </p>
+ */
+public class LoanFootprintBenchmark {
+
+    private static final int ARCHIVE_EVERY = 100_000;
+
+    public static void main(String[] args) {
+        int loanCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int itemCount = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        boolean archive = args.length > 2 && args[2].equals("archive");
+
+        SyntheticCatalog catalog = new SyntheticCatalog(itemCount, 17L);
+        Library library = catalog.newLibrary(64);
+        List<UUID> items = catalog.items().stream().map(MediaItem::getMediaId).toList();
+        List<UUID> members = catalog.members().stream().map(Member::getId).toList();
+        catalog = null;
+        long before = liveHeap();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < loanCount; i++) {
+            UUID item = items.get(i % items.size());
+            library.loanItem(members.get(i % members.size()), item);
+            library.returnItem(item);
+            if (archive && (i + 1) % ARCHIVE_EVERY == 0) {
+                library.archiveReturnedLoans(LocalDate.now().plusDays(1));
+            }
+        }
+        long seconds = (System.nanoTime() - start) / 1_000_000_000L;
+        long after = liveHeap();
+
+        System.out.printf("loans=%,d items=%,d heapBefore=%,d MB heapAfter=%,d MB bytesPerLoan=%.1f (%d s)%n",
+                loanCount, items.size(), before >> 20, after >> 20, (double) (after - before) / loanCount, seconds);
+        // Keeps the library reachable until after the measurement
+        if (library.currentSequence() < 0) System.out.println(library);
+    }
+
+    private static long liveHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
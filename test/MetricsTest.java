@@ -0,0 +1,111 @@
+import common.ValidationException;
+import common.metrics.InMemoryMetricsRegistry;
+import common.metrics.LatencyHistogram;
+import domain.model.Book;
+import domain.model.Member;
+import domain.policy.StandardFinePolicy;
+import domain.policy.StandardLoanPolicy;
+import domain.service.Library;
+
+import java.util.List;
+
+/**
+ * Unit tests for the metrics registry, latency histograms and the Library's instrumentation.
+ */
+public class MetricsTest {
+
+    public static void main(String[] args) {
+        MetricsTest test = new MetricsTest();
+        test.testHistogramPercentiles();
+        test.testLibraryCountsCallsAndRejections();
+        test.testLibraryGauges();
+        test.testTextDump();
+    }
+
+    private void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        histogram.record(-5);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        long p50 = snapshot.valueAt(0.5);
+        long p99 = snapshot.valueAt(0.99);
+
+        // Buckets are an eighth of a power of two wide, so estimates are within 12.5% above
+        boolean accurate = p50 >= 500_000 && p50 <= 562_500 && p99 >= 990_000 && p99 <= 1_113_750;
+        if (snapshot.count() == 1001 && snapshot.max() == 1_000_000 && snapshot.valueAt(0) == 0 && accurate) {
+            System.out.println("MT1 - PASS");
+        } else {
+            System.out.println("MT1 - FAIL (count=" + snapshot.count() + ", p50=" + p50 + ", p99=" + p99
+                    + ", max=" + snapshot.max() + ")");
+        }
+    }
+
+    private void testLibraryCountsCallsAndRejections() {
+        InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+        Library library = new Library(new StandardLoanPolicy(14), new StandardFinePolicy(50), 4, metrics);
+        Member member = new Member("Test Member", "test@example.com");
+        Book book = new Book("Counted", "Test Author", 2000, List.of("Fiction"));
+        library.addMember(member);
+        library.addItem(book);
+
+        library.loanItem(member.getId(), book.getMediaId());
+        try {
+            library.loanItem(member.getId(), book.getMediaId());
+        } catch (ValidationException expected) {
+            // Already on loan
+        }
+        library.returnItem(book.getMediaId());
+
+        long calls = metrics.counter("library.loanItem.calls").count();
+        long rejected = metrics.counter("library.loanItem.rejected").count();
+        long returns = metrics.counter("library.returnItem.calls").count();
+        long latencies = metrics.histogram("library.loanItem.latency").snapshot().count();
+        if (calls == 2 && rejected == 1 && returns == 1 && latencies == 2) {
+            System.out.println("MT2 - PASS");
+        } else {
+            System.out.println("MT2 - FAIL (calls=" + calls + ", rejected=" + rejected + ", returns=" + returns
+                    + ", latencies=" + latencies + ")");
+        }
+    }
+
+    private void testLibraryGauges() {
+        InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+        Library library = new Library(new StandardLoanPolicy(14), new StandardFinePolicy(50), 4, metrics);
+        Member first = new Member("First Member", "first@example.com");
+        Member second = new Member("Second Member", "second@example.com");
+        Book book = new Book("Popular", "Test Author", 2000, List.of("Fiction"));
+        library.addMember(first);
+        library.addMember(second);
+        library.addItem(book);
+        library.loanItem(first.getId(), book.getMediaId());
+        library.placeReservation(first.getId(), book.getMediaId());
+        library.placeReservation(second.getId(), book.getMediaId());
+
+        String text = metrics.toText();
+        boolean gauges = text.contains("library.items 1\n") && text.contains("library.members 2\n")
+                && text.contains("library.loans.open 1\n") && text.contains("library.reservations.waiting 2\n")
+                && text.contains("library.reservations.longestWaitlist 2\n");
+        if (gauges) {
+            System.out.println("MT3 - PASS");
+        } else {
+            System.out.println("MT3 - FAIL (\n" + text + ")");
+        }
+    }
+
+    private void testTextDump() {
+        InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+        metrics.counter("b.counter").add(3);
+        metrics.gauge("a.gauge", () -> 7);
+        metrics.histogram("c.latency").record(1500);
+        String text = metrics.toText();
+        String expected = "a.gauge 7\nb.counter 3\nc.latency count=1 mean=1.5us p50=1.5us p90=1.5us p99=1.5us max=1.5us\n";
+
+        if (text.equals(expected) && metrics.counter("b.counter").count() == 3) {
+            System.out.println("MT4 - PASS");
+        } else {
+            System.out.println("MT4 - FAIL (text=" + text + ")");
+        }
+    }
+}
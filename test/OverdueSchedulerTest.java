@@ -0,0 +1,119 @@
+import domain.model.Loan;
+import domain.service.OverdueScheduler;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Unit tests for the OverdueScheduler class.
+ */
+public class OverdueSchedulerTest {
+
+    private static final LocalDate START = LocalDate.of(2025, 11, 1);
+
+    public static void main(String[] args) {
+        OverdueSchedulerTest test = new OverdueSchedulerTest();
+        test.testLoanReportedDayAfterDueDate();
+        test.testReturnedLoanNotReported();
+        test.testSkippingDaysReportsEveryMissedLoan();
+        test.testLoansBeyondHorizonReported();
+        test.testAlreadyOverdueLoanReportedByNextAdvance();
+    }
+
+    private Loan testLoan(LocalDate dueDate) {
+        return new Loan(UUID.randomUUID(), UUID.randomUUID(), START, dueDate);
+    }
+
+    private void testLoanReportedDayAfterDueDate() {
+        OverdueScheduler scheduler = new OverdueScheduler(START);
+        Loan loan = testLoan(START.plusDays(14));
+        scheduler.schedule(loan);
+
+        List<Loan> onDueDate = scheduler.advanceTo(START.plusDays(14));
+        List<Loan> dayAfter = scheduler.advanceTo(START.plusDays(15));
+
+        if (onDueDate.isEmpty() && dayAfter.equals(List.of(loan)) && scheduler.size() == 0) {
+            System.out.println("OS1 - PASS");
+        } else {
+            System.out.println("OS1 - FAIL (onDueDate=" + onDueDate.size() + ", dayAfter=" + dayAfter.size() + ")");
+        }
+    }
+
+    private void testReturnedLoanNotReported() {
+        OverdueScheduler scheduler = new OverdueScheduler(START);
+        Loan loan = testLoan(START.plusDays(14));
+        scheduler.schedule(loan);
+        scheduler.cancel(loan);
+
+        List<Loan> due = scheduler.advanceTo(START.plusDays(30));
+        if (due.isEmpty()) {
+            System.out.println("OS2 - PASS");
+        } else {
+            System.out.println("OS2 - FAIL (reported " + due.size() + " loans)");
+        }
+    }
+
+    private void testSkippingDaysReportsEveryMissedLoan() {
+        OverdueScheduler scheduler = new OverdueScheduler(START);
+        Loan first = testLoan(START.plusDays(3));
+        Loan second = testLoan(START.plusDays(7));
+        Loan later = testLoan(START.plusDays(20));
+        scheduler.schedule(later);
+        scheduler.schedule(second);
+        scheduler.schedule(first);
+
+        List<Loan> due = scheduler.advanceTo(START.plusDays(10));
+        if (due.equals(List.of(first, second)) && scheduler.size() == 1) {
+            System.out.println("OS3 - PASS");
+        } else {
+            System.out.println("OS3 - FAIL (reported " + due.size() + " loans)");
+        }
+    }
+
+    private void testLoansBeyondHorizonReported() {
+        OverdueScheduler scheduler = new OverdueScheduler(START);
+        Loan farOut = testLoan(START.plusDays(3000));
+        Loan cancelled = testLoan(START.plusDays(2500));
+        scheduler.schedule(farOut);
+        scheduler.schedule(cancelled);
+
+        boolean early = scheduler.advanceTo(START.plusDays(2000)).isEmpty();
+        scheduler.cancel(cancelled);
+        boolean stillEarly = scheduler.advanceTo(START.plusDays(3000)).isEmpty();
+        List<Loan> due = scheduler.advanceTo(START.plusDays(3001));
+
+        if (early && stillEarly && due.equals(List.of(farOut))) {
+            System.out.println("OS4 - PASS");
+        } else {
+            System.out.println("OS4 - FAIL (early=" + early + ", stillEarly=" + stillEarly + ", due=" + due.size() + ")");
+        }
+    }
+
+    /**
+     * OS5: loans already overdue when scheduled, e.g. recovered after a restart, are
+     * reported by the next advance, even one to the same day, unless returned first.
+     */
+    private void testAlreadyOverdueLoanReportedByNextAdvance() {
+        OverdueScheduler scheduler = new OverdueScheduler(START);
+        Loan longOverdue = testLoan(START.minusDays(10));
+        Loan overdueToday = testLoan(START.minusDays(1));
+        Loan returned = testLoan(START.minusDays(5));
+        scheduler.schedule(overdueToday);
+        scheduler.schedule(longOverdue);
+        scheduler.schedule(returned);
+        int scheduled = scheduler.size();
+        boolean cancelled = scheduler.cancel(returned);
+
+        List<Loan> due = scheduler.advanceTo(START);
+        List<Loan> again = scheduler.advanceTo(START.plusDays(1));
+
+        if (scheduled == 3 && cancelled && due.equals(List.of(longOverdue, overdueToday)) && again.isEmpty()
+                && scheduler.size() == 0) {
+            System.out.println("OS5 - PASS");
+        } else {
+            System.out.println("OS5 - FAIL (scheduled=" + scheduled + ", cancelled=" + cancelled
+                    + ", due=" + due.size() + ", again=" + again.size() + ")");
+        }
+    }
+}
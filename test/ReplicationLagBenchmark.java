@@ -0,0 +1,133 @@
+import common.metrics.InMemoryMetricsRegistry;
+import common.metrics.LatencyHistogram;
+import domain.model.MediaItem;
+import domain.model.Member;
+import domain.policy.StandardFinePolicy;
+import domain.policy.StandardLoanPolicy;
+import domain.service.Library;
+import infrastructure.persistence.ReplicationPrimary;
+import infrastructure.persistence.ReplicationReplica;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how far replicas trail a primary under a steady load of checkouts and returns.
+ * <p>
+ *     Usage: {@code java ReplicationLagBenchmark [--items 20000] [--replicas 1] [--rate 20000]
+ *     [--seconds 5]}. The primary holds a {@link SyntheticCatalog} of the given size; each
+ *     replica is started in-process over a loopback socket, and the time it takes to load
+ *     the primary's snapshot is reported. One thread then checks out and returns a random
+ *     item {@code rate} times a second ({@code 0} for as fast as possible), and
+ *     every second the benchmark prints the throughput achieved, publish-to-apply lag
+ *     percentiles over every replica, and the most events any replica was behind when
+ *     sampled every millisecond. Lag includes the wait for the next batch to be flushed.
+ * </p>
+ */
+public class ReplicationLagBenchmark {
+
+    private static final long SEED = 20251201L;
+
+    public static void main(String[] args) throws Exception {
+        int itemCount = Integer.parseInt(option(args, "--items", "20000"));
+        int replicaCount = Integer.parseInt(option(args, "--replicas", "1"));
+        int rate = Integer.parseInt(option(args, "--rate", "20000"));
+        int seconds = Integer.parseInt(option(args, "--seconds", "5"));
+
+        SyntheticCatalog catalog = new SyntheticCatalog(itemCount, SEED);
+        Library library = catalog.newLibrary(64);
+        List<UUID> items = catalog.items().stream().map(MediaItem::getMediaId).toList();
+        List<UUID> members = catalog.members().stream().map(Member::getId).toList();
+
+        InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+        List<ReplicationReplica> replicas = new ArrayList<>();
+        try (ReplicationPrimary primary = ReplicationPrimary.start(library, new InetSocketAddress("127.0.0.1", 0),
+                1_000_000, new InMemoryMetricsRegistry())) {
+            InetSocketAddress address = new InetSocketAddress("127.0.0.1", primary.port());
+            for (int i = 0; i < replicaCount; i++) {
+                long start = System.nanoTime();
+                Library copy = new Library(new StandardLoanPolicy(14), new StandardFinePolicy(50), 64);
+                ReplicationReplica replica = ReplicationReplica.connect(address, copy, metrics);
+                replica.awaitSequence(library.currentSequence(), 1, TimeUnit.MINUTES);
+                System.out.printf("replica %d loaded %,d items in %.1f ms%n", i, itemCount,
+                        (System.nanoTime() - start) / 1e6);
+                replicas.add(replica);
+            }
+
+            LatencyHistogram lag = metrics.histogram("replication.lag");
+            LatencyHistogram.Snapshot before = lag.snapshot();
+            SplittableRandom random = new SplittableRandom(SEED);
+            long intervalNanos = rate == 0 ? 0 : 1_000_000_000L / rate;
+
+            System.out.printf("%n%6s %12s %10s %10s %10s %12s%n", "second", "ops/s", "lag p50", "lag p99",
+                    "lag max", "max behind");
+            for (int second = 1; second <= seconds; second++) {
+                long periodStart = System.nanoTime();
+                long periodEnd = periodStart + 1_000_000_000L;
+                long nextSample = periodStart;
+                long operations = 0;
+                long maxBehind = 0;
+                while (System.nanoTime() < periodEnd) {
+                    if (intervalNanos > 0 && System.nanoTime() < periodStart + operations * intervalNanos) {
+                        Thread.onSpinWait();
+                    } else {
+                        UUID item = items.get(random.nextInt(items.size()));
+                        try {
+                            library.loanItem(members.get(random.nextInt(members.size())), item);
+                            library.returnItem(item);
+                        } catch (RuntimeException e) {
+                            // A member with overdue loans or a reserved item; counted all the same
+                        }
+                        operations++;
+                    }
+                    if (System.nanoTime() >= nextSample) {
+                        for (ReplicationReplica replica : replicas) {
+                            maxBehind = Math.max(maxBehind, library.currentSequence() - replica.appliedSequence());
+                        }
+                        nextSample += 1_000_000L;
+                    }
+                }
+                LatencyHistogram.Snapshot now = lag.snapshot();
+                LatencyHistogram.Snapshot period = since(now, before);
+                before = now;
+                System.out.printf("%6d %,12d %8.2fms %8.2fms %8.2fms %,12d%n", second,
+                        operations * 1_000_000_000L / (System.nanoTime() - periodStart),
+                        period.valueAt(0.5) / 1e6, period.valueAt(0.99) / 1e6, period.valueAt(1.0) / 1e6, maxBehind);
+            }
+
+            long end = library.currentSequence();
+            long drainStart = System.nanoTime();
+            for (ReplicationReplica replica : replicas) {
+                replica.awaitSequence(end, 1, TimeUnit.MINUTES);
+            }
+            System.out.printf("%nreplicas applied all %,d events %.1f ms after the load stopped%n", end,
+                    (System.nanoTime() - drainStart) / 1e6);
+        } finally {
+            for (ReplicationReplica replica : replicas) {
+                replica.close();
+            }
+        }
+    }
+
+    /** @return the durations recorded between two snapshots of the same histogram */
+    private static LatencyHistogram.Snapshot since(LatencyHistogram.Snapshot now, LatencyHistogram.Snapshot before) {
+        long[] counts = now.counts().clone();
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] -= before.counts()[i];
+        }
+        return new LatencyHistogram.Snapshot(counts, now.count() - before.count(), now.sum() - before.sum(), now.max());
+    }
+
+    private static String option(String[] args, String name, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
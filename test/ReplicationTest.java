@@ -0,0 +1,204 @@
+import common.ValidationException;
+import common.metrics.InMemoryMetricsRegistry;
+import domain.model.AvailabilityStatus;
+import domain.model.Book;
+import domain.model.Loan;
+import domain.model.MediaItem;
+import domain.model.Member;
+import domain.model.Reservation;
+import domain.service.Library;
+import domain.service.LibraryEvent;
+import infrastructure.persistence.EventCodec;
+import infrastructure.persistence.ReplicationPrimary;
+import infrastructure.persistence.ReplicationReplica;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for log-shipping replication.
+ */
+public class ReplicationTest {
+
+    public static void main(String[] args) throws Exception {
+        ReplicationTest test = new ReplicationTest();
+        test.testReplicaCatchesUpFromSnapshotThenFollows();
+        test.testPromotedReplicaContinuesSequence();
+        test.testReplicaFallingBehindIsDisconnected();
+        test.testReplicaRejectsMissingEvent();
+    }
+
+    private ReplicationPrimary startPrimary(Library library, int maxBacklog) throws IOException {
+        return ReplicationPrimary.start(library, new InetSocketAddress("127.0.0.1", 0), maxBacklog,
+                new InMemoryMetricsRegistry());
+    }
+
+    private ReplicationReplica connect(ReplicationPrimary primary, Library library, InMemoryMetricsRegistry metrics)
+            throws IOException {
+        return ReplicationReplica.connect(new InetSocketAddress("127.0.0.1", primary.port()), library, metrics);
+    }
+
+    /**
+     * RP1: a replica joining late is loaded with the primary's state, then applies every
+     * later change, and measures its lag.
+     */
+    private void testReplicaCatchesUpFromSnapshotThenFollows() throws Exception {
+        Library library = TestLibraries.library(8);
+        Member member = new Member("Replicated Member", "replicated@example.com");
+        library.addMember(member);
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            books.add(TestLibraries.book("Replicated " + i));
+        }
+        library.addItems(books);
+        library.loanItem(member.getId(), books.get(0).getMediaId());
+
+        InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+        Library copy = TestLibraries.library(8);
+        try (ReplicationPrimary primary = startPrimary(library, 1000);
+             ReplicationReplica replica = connect(primary, copy, metrics)) {
+            boolean loaded = replica.awaitSequence(library.currentSequence(), 10, TimeUnit.SECONDS);
+            int availableAfterSnapshot = copy.countItems(AvailabilityStatus.AVAILABLE);
+
+            library.returnItem(books.get(0).getMediaId());
+            library.loanItem(member.getId(), books.get(1).getMediaId());
+            Reservation reservation = library.placeReservation(member.getId(), books.get(1).getMediaId());
+            library.addItem(TestLibraries.book("Added Later"));
+            boolean followed = replica.awaitSequence(library.currentSequence(), 10, TimeUnit.SECONDS);
+
+            List<MediaItem> found = copy.searchMedia("added later");
+            MediaItem loaned = copy.snapshot().findItem(books.get(1).getMediaId());
+            copy.verifyIndexes();
+
+            if (loaded && availableAfterSnapshot == 49 && followed && found.size() == 1
+                    && loaned.getStatus() == AvailabilityStatus.ON_LOAN
+                    && copy.loanHistoryOfMember(member.getId()).size() == 2
+                    && copy.currentSequence() == library.currentSequence()
+                    && replica.lagEvents() == 0 && reservation.getMediaId().equals(loaned.getMediaId())
+                    && metrics.histogram("replication.lag").snapshot().count() == 4) {
+                System.out.println("RP1 - PASS");
+            } else {
+                System.out.println("RP1 - FAIL (loaded=" + loaded + ", available=" + availableAfterSnapshot
+                        + ", followed=" + followed + ", found=" + found.size() + ", sequence="
+                        + copy.currentSequence() + "/" + library.currentSequence() + ")");
+            }
+        }
+    }
+
+    /**
+     * RP2: when the primary goes away the replica notices, and once promoted it enforces
+     * the same rules and numbers its own events after the primary's.
+     */
+    private void testPromotedReplicaContinuesSequence() throws Exception {
+        Library library = TestLibraries.library(8);
+        Member member = new Member("Failover Member", "failover@example.com");
+        Book book = TestLibraries.book("Failover Book");
+        Book other = TestLibraries.book("Failover Other");
+        library.addMember(member);
+        library.addItems(List.of(book, other));
+
+        Library copy = TestLibraries.library(8);
+        ReplicationReplica replica;
+        long primarySequence;
+        try (ReplicationPrimary primary = startPrimary(library, 1000)) {
+            replica = connect(primary, copy, new InMemoryMetricsRegistry());
+            library.loanItem(member.getId(), book.getMediaId());
+            primarySequence = library.currentSequence();
+            replica.awaitSequence(primarySequence, 10, TimeUnit.SECONDS);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (replica.isConnected() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        boolean noticed = !replica.isConnected();
+        replica.close();
+
+        boolean stillOnLoan = false;
+        try {
+            copy.loanItem(member.getId(), book.getMediaId());
+        } catch (ValidationException e) {
+            stillOnLoan = true;
+        }
+        Loan loan = copy.loanItem(member.getId(), other.getMediaId());
+
+        if (noticed && stillOnLoan && loan != null && copy.currentSequence() == primarySequence + 1) {
+            System.out.println("RP2 - PASS");
+        } else {
+            System.out.println("RP2 - FAIL (noticed=" + noticed + ", stillOnLoan=" + stillOnLoan
+                    + ", sequence=" + copy.currentSequence() + "/" + primarySequence + ")");
+        }
+    }
+
+    /**
+     * RP3: a replica that stops reading is disconnected once its backlog fills, rather than
+     * buffered without bound, and the primary carries on.
+     */
+    private void testReplicaFallingBehindIsDisconnected() throws Exception {
+        Library library = TestLibraries.library(8);
+        InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+        try (ReplicationPrimary primary = ReplicationPrimary.start(library, new InetSocketAddress("127.0.0.1", 0),
+                16, metrics);
+             Socket stalled = new Socket("127.0.0.1", primary.port())) {
+            stalled.setReceiveBufferSize(4096);
+            new DataInputStream(stalled.getInputStream()).readInt();
+            while (primary.replicaCount() == 0) {
+                Thread.onSpinWait();
+            }
+            for (int i = 0; i < 100_000 && primary.replicaCount() > 0; i++) {
+                library.addItem(TestLibraries.book("Flood " + i));
+            }
+
+            if (primary.replicaCount() == 0 && metrics.counter("replication.dropped").count() == 1) {
+                System.out.println("RP3 - PASS");
+            } else {
+                System.out.println("RP3 - FAIL (replicas=" + primary.replicaCount() + ")");
+            }
+        }
+    }
+
+    /**
+     * RP4: a replica sent an event that does not follow the last one it applied stops with
+     * a failure instead of applying it over the hole.
+     */
+    private void testReplicaRejectsMissingEvent() throws Exception {
+        Library copy = TestLibraries.library(8);
+        try (ServerSocket fakePrimary = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            ReplicationReplica replica = ReplicationReplica.connect(
+                    new InetSocketAddress("127.0.0.1", fakePrimary.getLocalPort()), copy, new InMemoryMetricsRegistry());
+            try (Socket socket = fakePrimary.accept()) {
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeInt(0x4C524550);   // ReplicationProtocol.MAGIC
+                out.writeByte(2);           // SNAPSHOT_END at sequence 0
+                out.writeLong(0);
+                out.writeByte(3);           // EVENT 2, skipping event 1
+                out.writeLong(2);
+                out.writeLong(0);
+                EventCodec.write(new LibraryEvent.ItemAdded(TestLibraries.book("After The Gap")), out);
+                out.flush();
+
+                boolean failed = false;
+                try {
+                    replica.awaitSequence(2, 10, TimeUnit.SECONDS);
+                } catch (IOException e) {
+                    failed = true;
+                }
+
+                if (failed && !replica.isConnected() && copy.listItems().isEmpty() && copy.currentSequence() == 0) {
+                    System.out.println("RP4 - PASS");
+                } else {
+                    System.out.println("RP4 - FAIL (failed=" + failed + ", items=" + copy.listItems().size() + ")");
+                }
+            } finally {
+                replica.close();
+            }
+        }
+    }
+}
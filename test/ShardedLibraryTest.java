@@ -0,0 +1,216 @@
+import common.ValidationException;
+import common.metrics.InMemoryMetricsRegistry;
+import domain.model.AvailabilityStatus;
+import domain.model.Book;
+import domain.model.MediaItem;
+import domain.model.Member;
+import domain.model.Reservation;
+import domain.policy.StandardFinePolicy;
+import domain.policy.StandardLoanPolicy;
+import domain.service.Page;
+import domain.service.ShardedLibrary;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Unit tests for the sharded library.
+ */
+public class ShardedLibraryTest {
+
+    public static void main(String[] args) {
+        ShardedLibraryTest test = new ShardedLibraryTest();
+        test.testOverdueLoanOnOneShardBlocksCheckoutOnAnother();
+        test.testSearchMergesShardsInTitleOrder();
+        test.testPagedListingVisitsEveryItemOnce();
+        test.testRoutedOperationsAndCounts();
+        test.testShardsRecordIntoSharedRegistry();
+    }
+
+    /** @return a book that the library places on a different shard from {@code other} */
+    private Book bookOnOtherShard(ShardedLibrary library, MediaItem other, String title) {
+        Book book = TestLibraries.book(title);
+        while (library.shardOf(book.getMediaId()) == library.shardOf(other.getMediaId())) {
+            book = TestLibraries.book(title);
+        }
+        return book;
+    }
+
+    /**
+     * SL1: a loan overdue on one shard blocks checkouts and removal on every shard, until
+     * it is returned.
+     */
+    private void testOverdueLoanOnOneShardBlocksCheckoutOnAnother() {
+        SimulatedClock clock = new SimulatedClock(LocalDate.of(2030, 1, 1));
+        try (ShardedLibrary library = TestLibraries.shardedLibrary(4, clock)) {
+            Member member = new Member("Sharded Member", "sharded@example.com");
+            Book first = TestLibraries.book("First");
+            Book second = bookOnOtherShard(library, first, "Second");
+            library.addMember(member);
+            library.addItems(List.of(first, second));
+
+            library.loanItem(member.getId(), first.getMediaId());
+            clock.advanceDays(20);
+            boolean loanBlocked = false;
+            try {
+                library.loanItem(member.getId(), second.getMediaId());
+            } catch (ValidationException e) {
+                loanBlocked = true;
+            }
+            boolean removeBlocked = false;
+            try {
+                library.removeMember(member.getId());
+            } catch (ValidationException e) {
+                removeBlocked = true;
+            }
+            library.returnItem(first.getMediaId());
+            library.loanItem(member.getId(), second.getMediaId());
+
+            if (loanBlocked && removeBlocked && second.getStatus() == AvailabilityStatus.ON_LOAN) {
+                System.out.println("SL1 - PASS");
+            } else {
+                System.out.println("SL1 - FAIL (loanBlocked=" + loanBlocked + ", removeBlocked=" + removeBlocked
+                        + ", second=" + second.getStatus() + ")");
+            }
+        }
+    }
+
+    /**
+     * SL2: a search gathers matches from every shard, sorted by title as one library would.
+     */
+    private void testSearchMergesShardsInTitleOrder() {
+        try (ShardedLibrary library = TestLibraries.shardedLibrary(4, new SimulatedClock(LocalDate.of(2030, 1, 1)))) {
+            List<Book> books = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                books.add(TestLibraries.book((i % 2 == 0 ? "match " : "other ") + (char) ('a' + i % 26) + i));
+            }
+            library.addItems(books);
+
+            List<MediaItem> found = library.searchMedia("MATCH", null);
+            boolean sorted = true;
+            for (int i = 1; i < found.size(); i++) {
+                sorted &= String.CASE_INSENSITIVE_ORDER.compare(found.get(i - 1).getTitle(), found.get(i).getTitle()) <= 0;
+            }
+
+            if (found.size() == 100 && sorted && found.stream().allMatch(m -> m.getTitle().startsWith("match"))) {
+                System.out.println("SL2 - PASS");
+            } else {
+                System.out.println("SL2 - FAIL (found=" + found.size() + ", sorted=" + sorted + ")");
+            }
+        }
+    }
+
+    /**
+     * SL3: paging through every shard's items visits each once, in ID order.
+     */
+    private void testPagedListingVisitsEveryItemOnce() {
+        try (ShardedLibrary library = TestLibraries.shardedLibrary(4, new SimulatedClock(LocalDate.of(2030, 1, 1)))) {
+            List<Book> books = new ArrayList<>();
+            for (int i = 0; i < 250; i++) {
+                books.add(TestLibraries.book("Paged " + i));
+            }
+            library.addItems(books);
+
+            List<UUID> seen = new ArrayList<>();
+            UUID cursor = null;
+            int pages = 0;
+            do {
+                Page<MediaItem> page = library.listItems(MediaItem.class, null, cursor, 40);
+                page.entries().forEach(m -> seen.add(m.getMediaId()));
+                cursor = page.nextCursor();
+                pages++;
+            } while (cursor != null && pages < 100);
+            Set<UUID> distinct = new HashSet<>(seen);
+            boolean ordered = true;
+            for (int i = 1; i < seen.size(); i++) {
+                ordered &= seen.get(i - 1).compareTo(seen.get(i)) < 0;
+            }
+
+            if (seen.size() == 250 && distinct.size() == 250 && ordered) {
+                System.out.println("SL3 - PASS");
+            } else {
+                System.out.println("SL3 - FAIL (seen=" + seen.size() + ", distinct=" + distinct.size()
+                        + ", ordered=" + ordered + ")");
+            }
+        }
+    }
+
+    /**
+     * SL4: reservations are found on whichever shard holds them, and status counts are
+     * summed across shards.
+     */
+    private void testRoutedOperationsAndCounts() {
+        try (ShardedLibrary library = TestLibraries.shardedLibrary(4, new SimulatedClock(LocalDate.of(2030, 1, 1)))) {
+            Member borrower = new Member("Borrower", "borrower@example.com");
+            Member waiter = new Member("Waiter", "waiter@example.com");
+            library.addMembers(List.of(borrower, waiter));
+            List<Book> books = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                books.add(TestLibraries.book("Counted " + i));
+            }
+            library.addItems(books);
+            for (int i = 0; i < 10; i++) {
+                library.loanItem(borrower.getId(), books.get(i).getMediaId());
+            }
+            Reservation reservation = library.placeReservation(waiter.getId(), books.get(3).getMediaId());
+            boolean cancelled = library.cancelReservation(reservation.getReservationId());
+            boolean unknownRejected = false;
+            try {
+                library.cancelReservation(UUID.randomUUID());
+            } catch (ValidationException e) {
+                unknownRejected = true;
+            }
+            library.verifyIndexes();
+
+            if (library.countItems(AvailabilityStatus.ON_LOAN) == 10
+                    && library.countItems(AvailabilityStatus.AVAILABLE) == 30
+                    && cancelled && unknownRejected && library.searchMembers("wait").size() == 1) {
+                System.out.println("SL4 - PASS");
+            } else {
+                System.out.println("SL4 - FAIL (onLoan=" + library.countItems(AvailabilityStatus.ON_LOAN)
+                        + ", cancelled=" + cancelled + ", unknownRejected=" + unknownRejected + ")");
+            }
+        }
+    }
+
+    /**
+     * SL5: every shard records its metrics into the registry given to the coordinator, under
+     * its own prefix.
+     */
+    private void testShardsRecordIntoSharedRegistry() {
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        try (ShardedLibrary library = new ShardedLibrary(4, new StandardLoanPolicy(14), new StandardFinePolicy(50),
+                registry, new SimulatedClock(LocalDate.of(2030, 1, 1)))) {
+            Member member = new Member("Measured", "measured@example.com");
+            library.addMember(member);
+            List<Book> books = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                books.add(TestLibraries.book("Measured " + i));
+            }
+            library.addItems(books);
+            for (int i = 0; i < 10; i++) {
+                library.loanItem(member.getId(), books.get(i).getMediaId());
+            }
+
+            long loans = 0;
+            int shardsWithMembers = 0;
+            for (int i = 0; i < library.shardCount(); i++) {
+                loans += registry.counter("shard" + i + ".library.loanItem.calls").count();
+                if (registry.toText().contains("shard" + i + ".library.members 1\n")) {
+                    shardsWithMembers++;
+                }
+            }
+            boolean allPrefixed = registry.toText().lines().allMatch(line -> line.startsWith("shard"));
+            if (loans == 10 && shardsWithMembers == 4 && allPrefixed) {
+                System.out.println("SL5 - PASS");
+            } else {
+                System.out.println("SL5 - FAIL (loans=" + loans + ", shardsWithMembers=" + shardsWithMembers
+                        + ", allPrefixed=" + allPrefixed + ")");
+            }
+        }
+    }
+}
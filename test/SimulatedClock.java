@@ -0,0 +1,79 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Clock that stands still until it is moved forward by hand, for driving a
+ * {@link domain.service.Library} through simulated days and years.
+ * <p>
+ *     Reads UTC; {@link #withZone} gives a view in another zone that moves with this clock.
+ *     Thread-safe; every reader sees the latest time set.
+ * </p>
+ */
+public class SimulatedClock extends Clock {
+
+    private volatile Instant now;
+
+    /**
+     * @param start the date the clock starts at, at midnight UTC
+     */
+    public SimulatedClock(LocalDate start) {
+        this.now = start.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    /** @return the date the clock is at */
+    public LocalDate today() {
+        return LocalDate.ofInstant(now, ZoneOffset.UTC);
+    }
+
+    /**
+     * Moves the clock forward.
+     *
+     * @param days the number of days to move by
+     */
+    public void advanceDays(int days) {
+        now = now.plusSeconds(days * 86_400L);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return zone.equals(ZoneOffset.UTC) ? this : new Zoned(zone);
+    }
+
+    @Override
+    public Instant instant() {
+        return now;
+    }
+
+    /** This clock's time, read in another zone. */
+    private final class Zoned extends Clock {
+
+        private final ZoneId zone;
+
+        private Zoned(ZoneId zone) {
+            this.zone = zone;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return SimulatedClock.this.withZone(zone);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
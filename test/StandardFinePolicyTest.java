@@ -15,6 +15,7 @@ public class StandardFinePolicyTest {
         test.testReturnOneDayLate();
         test.testReturnFiveDaysLate();
         test.testNegativePencePerDay();
+        test.testHugeFineSaturates();
 
     }
 
@@ -79,4 +80,19 @@ public class StandardFinePolicyTest {
         }
     }
 
+    private void testHugeFineSaturates() {
+        // 2,000,000 days at 5,000 pence overflows an int; at 50 pence it does not
+        StandardFinePolicy policy = new StandardFinePolicy(5000);
+        LocalDate due = LocalDate.of(2025, 11, 15);
+        LocalDate returnDate = due.plusDays(2_000_000);
+
+        int fine = policy.calculateFine(due, returnDate);
+        int smaller = new StandardFinePolicy(50).calculateFine(due, returnDate);
+        if (fine == Integer.MAX_VALUE && smaller == 100_000_000) {
+            System.out.println("FP6 - PASS");
+        } else {
+            System.out.println("FP6 - FAIL (fine=" + fine + ", smaller=" + smaller + ")");
+        }
+    }
+
 }
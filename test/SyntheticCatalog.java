@@ -0,0 +1,161 @@
+import common.metrics.InMemoryMetricsRegistry;
+import common.metrics.MetricsRegistry;
+import domain.model.Book;
+import domain.model.Dvd;
+import domain.model.Magazine;
+import domain.model.MediaItem;
+import domain.model.Member;
+import domain.policy.StandardFinePolicy;
+import domain.policy.StandardLoanPolicy;
+import domain.service.Library;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Generates reproducible catalogues of media items and members for benchmarks.
+ * <p>
+ *     Everything, including the IDs, is derived from the seed, so two runs with the same
+ *     size and seed build identical libraries. About 70% of items are books, 15% DVDs and
+ *     15% magazines, and there is one member for every ten items (at least 100).
+ * </p>
+ */
+public class SyntheticCatalog {
+
+    /** Words titles and names are built from; search terms below are drawn from these. */
+    static final String[] WORDS = {
+            "Shadow", "River", "Glass", "Winter", "Garden", "Empire", "Silent", "Harbour", "Crown", "Ember",
+            "Northern", "Falling", "Hidden", "Iron", "Paper", "Storm", "Golden", "Last", "Distant", "Wild",
+            "Light", "Stone", "Ocean", "Forest", "City", "Night", "Mirror", "Engine", "Letter", "Summer"};
+
+    private static final String[] FIRST_NAMES = {
+            "Alex", "Sam", "Jordan", "Taylor", "Morgan", "Casey", "Riley", "Jamie", "Avery", "Quinn",
+            "Robin", "Charlie", "Emerson", "Harper", "Rowan", "Sage"};
+
+    private static final String[] SURNAMES = {
+            "Smith", "Jones", "Taylor", "Brown", "Williams", "Wilson", "Johnson", "Davies", "Patel", "Wright",
+            "Walker", "Evans", "Thomas", "Roberts", "Green", "Hall", "Wood", "Clarke", "Hughes", "Khan"};
+
+    private static final String[] CATEGORIES = {
+            "Fiction", "Fantasy", "History", "Science", "Drama", "Comedy", "Crime", "Biography", "Travel", "Art"};
+
+    private final List<MediaItem> items;
+    private final List<Member> members;
+
+    /**
+     * Generates a catalogue.
+     *
+     * @param itemCount number of media items
+     * @param seed seed for every random choice
+     */
+    public SyntheticCatalog(int itemCount, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            items.add(item(random, i));
+        }
+        int memberCount = Math.max(100, itemCount / 10);
+        members = new ArrayList<>(memberCount);
+        for (int i = 0; i < memberCount; i++) {
+            members.add(member(random, i));
+        }
+    }
+
+    public List<MediaItem> items() {
+        return items;
+    }
+
+    public List<Member> members() {
+        return members;
+    }
+
+    /**
+     * Builds a library holding the catalogue.
+     *
+     * @param lockStripes number of lock stripes for the library
+     * @return a new library
+     */
+    public Library newLibrary(int lockStripes) {
+        return newLibrary(lockStripes, new InMemoryMetricsRegistry(), Clock.systemDefaultZone());
+    }
+
+    /**
+     * Builds a library holding the catalogue that records into the given registry and
+     * reads the date from the given clock.
+     *
+     * @param lockStripes number of lock stripes for the library
+     * @param metrics where the library records its metrics
+     * @param clock the library's clock
+     * @return a new library
+     */
+    public Library newLibrary(int lockStripes, MetricsRegistry metrics, Clock clock) {
+        Library library = new Library(new StandardLoanPolicy(14), new StandardFinePolicy(50), lockStripes, metrics,
+                clock);
+        for (int from = 0; from < items.size(); from += 4096) {
+            library.addItems(items.subList(from, Math.min(items.size(), from + 4096)));
+        }
+        for (int from = 0; from < members.size(); from += 4096) {
+            library.addMembers(members.subList(from, Math.min(members.size(), from + 4096)));
+        }
+        return library;
+    }
+
+    /**
+     * Writes the catalogue's books and members in the demo CSV layout.
+     *
+     * @param booksCsv where to write the books
+     * @param membersCsv where to write the members
+     * @throws IOException if a file cannot be written
+     */
+    public void writeCsv(Path booksCsv, Path membersCsv) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(booksCsv)) {
+            out.write("title,author,year,categories\n");
+            for (MediaItem item : items) {
+                if (item instanceof Book book) {
+                    out.write(book.getTitle() + ",\"" + book.getAuthor() + "\"," + book.getYearOfPublish() + ","
+                            + String.join("|", book.getCategories()) + "\n");
+                }
+            }
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(membersCsv)) {
+            out.write("name,email\n");
+            for (Member member : members) {
+                out.write(member.getName() + "," + member.getEmail() + "\n");
+            }
+        }
+    }
+
+    // ---------------------------------------- Generation -----------------------------------
+
+    private static MediaItem item(SplittableRandom random, int index) {
+        UUID id = new UUID(random.nextLong(), random.nextLong());
+        String title = pick(random, WORDS) + " " + pick(random, WORDS) + " " + index;
+        List<String> categories = List.of(pick(random, CATEGORIES), pick(random, CATEGORIES));
+        int kind = random.nextInt(100);
+        if (kind < 70) {
+            String author = pick(random, FIRST_NAMES) + " " + pick(random, SURNAMES);
+            return new Book(id, title, author, 1900 + random.nextInt(125), categories);
+        } else if (kind < 85) {
+            return new Dvd(id, title, 1950 + random.nextInt(75), 80 + random.nextInt(100),
+                    random.nextBoolean() ? "PG" : "15", categories);
+        }
+        return new Magazine(id, title, pick(random, SURNAMES) + " Press", 2000 + random.nextInt(25), categories);
+    }
+
+    private static Member member(SplittableRandom random, int index) {
+        UUID id = new UUID(random.nextLong(), random.nextLong());
+        String name = pick(random, FIRST_NAMES) + " " + pick(random, SURNAMES) + " " + index;
+        return new Member(id, name, "member" + index + "@example.com");
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,51 @@
+import domain.model.Book;
+import domain.policy.StandardFinePolicy;
+import domain.policy.StandardLoanPolicy;
+import domain.service.Library;
+import domain.service.ShardedLibrary;
+
+import java.time.Clock;
+import java.util.List;
+
+/**
+ * Builds the libraries and books the tests share.
+ * <p>
+ *     Every library lends for 14 days and fines 50 cents a day, so tests only spell out a
+ *     policy when the policy is what they check.
+ * </p>
+ */
+public final class TestLibraries {
+
+    private TestLibraries() {
+    }
+
+    /** @return a library with the default number of lock stripes */
+    public static Library library() {
+        return new Library(new StandardLoanPolicy(14), new StandardFinePolicy(50));
+    }
+
+    /**
+     * @param lockStripes number of lock stripes for the library
+     * @return a new library
+     */
+    public static Library library(int lockStripes) {
+        return new Library(new StandardLoanPolicy(14), new StandardFinePolicy(50), lockStripes);
+    }
+
+    /**
+     * @param shardCount number of shards
+     * @param clock clock every shard reads
+     * @return a new sharded library; the caller closes it
+     */
+    public static ShardedLibrary shardedLibrary(int shardCount, Clock clock) {
+        return new ShardedLibrary(shardCount, new StandardLoanPolicy(14), new StandardFinePolicy(50), clock);
+    }
+
+    /**
+     * @param title title of the book
+     * @return a fiction book by "Test Author" from 2000
+     */
+    public static Book book(String title) {
+        return new Book(title, "Test Author", 2000, List.of("Fiction"));
+    }
+}